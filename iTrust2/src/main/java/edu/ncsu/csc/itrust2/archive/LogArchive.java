@@ -0,0 +1,605 @@
+package edu.ncsu.csc.itrust2.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.utils.AuditWriter;
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+
+/**
+ * Keeps the LogEntries table down to recent history by moving older entries
+ * out of the database into {@link LogSegment}s, one per month, on local disk.
+ * Every entry logged before the "archived-through" time lives in the archive,
+ * and every entry from then on in the database; LogEntry's finders add the
+ * two together, so callers never need to know where an entry is kept.
+ *
+ * Archiving is off unless `archive.ageDays` is set in db.properties, and is
+ * configured with these settings:
+ * <ul>
+ * <li>`archive.ageDays`: entries older than this many days are archived</li>
+ * <li>`archive.dir`: directory the segments are kept in (`archive`)</li>
+ * <li>`archive.intervalHours`: how often the archiver runs (24)</li>
+ * <li>`archive.blockSize`: most entries compressed together (2000)</li>
+ * </ul>
+ *
+ * It can also be run by hand, such as from cron with the background archiver
+ * turned off:
+ *
+ * <pre>
+ * java -cp ... edu.ncsu.csc.itrust2.archive.LogArchive
+ * </pre>
+ *
+ * Entries are copied to the archive before the archived-through time is moved
+ * and only deleted from the database after that, so a crash at any point
+ * leaves every entry readable from exactly one of the two. Only one node
+ * archives at a time. Where several nodes serve the application, `archive.dir`
+ * must be storage they all share.
+ */
+public class LogArchive {
+
+    /** Entries older than this many days are archived; off if less than 1 */
+    private static final int                      AGE_DAYS       = DBUtil.setting( "archive.ageDays", 0 );
+
+    /** Directory the archive is kept in */
+    private static final File                     DIR            = new File(
+            DBUtil.setting( "archive.dir", "archive" ) );
+
+    /** Hours between runs of the background archiver */
+    private static final int                      INTERVAL_HOURS = DBUtil.setting( "archive.intervalHours", 24 );
+
+    /** Most entries compressed together in one block */
+    private static final int                      BLOCK_SIZE     = DBUtil.setting( "archive.blockSize", 2000 );
+
+    /** Most entries deleted from the database in one statement */
+    private static final int                      DELETE_BATCH   = 5000;
+
+    /** File the archived-through time is kept in */
+    private static final String                   WATERMARK      = "archived-through";
+
+    /** Name of the MySQL lock held while archiving */
+    private static final String                   LOCK           = "iTrust2.log_archive";
+
+    /** The archived-through time last read, or null if there is none */
+    private static Calendar                       archivedThrough;
+
+    /** When the archived-through time last read was written */
+    private static long                           archivedThroughModified = -1;
+
+    /** Runs the background archiver, if started */
+    private static ScheduledExecutorService       scheduler;
+
+    /**
+     * Retrieves the time before which every LogEntry is in the archive rather
+     * than the database. The file it is kept in is checked on each call, so a
+     * change made by another node is picked up straight away.
+     *
+     * @return The time, or null if nothing has been archived
+     */
+    public static synchronized Calendar getArchivedThrough () {
+        final File file = new File( DIR, WATERMARK );
+        final long modified = file.lastModified();
+        if ( modified != archivedThroughModified ) {
+            archivedThrough = null;
+            if ( 0 != modified ) {
+                try {
+                    final Calendar through = Calendar.getInstance();
+                    through.setTimeInMillis( Long.parseLong(
+                            new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 ).trim() ) );
+                    archivedThrough = through;
+                }
+                catch ( final IOException | NumberFormatException e ) {
+                    e.printStackTrace();
+                }
+            }
+            archivedThroughModified = modified;
+        }
+        return null == archivedThrough ? null : (Calendar) archivedThrough.clone();
+    }
+
+    /**
+     * Archives every LogEntry older than `archive.ageDays` days, counted back
+     * from the start of today.
+     *
+     * @return The number of entries archived
+     * @throws SQLException
+     *             If the entries could not be read or deleted
+     * @throws IOException
+     *             If the entries could not be written to the archive
+     */
+    public static int archive () throws SQLException, IOException {
+        if ( AGE_DAYS < 1 ) {
+            return 0;
+        }
+        final Calendar cutoff = Calendar.getInstance();
+        cutoff.set( Calendar.HOUR_OF_DAY, 0 );
+        cutoff.set( Calendar.MINUTE, 0 );
+        cutoff.set( Calendar.SECOND, 0 );
+        cutoff.set( Calendar.MILLISECOND, 0 );
+        cutoff.add( Calendar.DAY_OF_MONTH, -AGE_DAYS );
+        return archive( cutoff );
+    }
+
+    /**
+     * Archives every LogEntry logged before a given time, and seals the
+     * segments of the months that are then archived in full. Does nothing if
+     * the entries up to then are archived already, or another node is
+     * archiving.
+     *
+     * @param cutoff
+     *            Time to archive the entries before
+     * @return The number of entries archived
+     * @throws SQLException
+     *             If the entries could not be read or deleted
+     * @throws IOException
+     *             If the entries could not be written to the archive
+     */
+    public static int archive ( final Calendar cutoff ) throws SQLException, IOException {
+        AuditWriter.flush();
+        int archived = 0;
+        // Held for the whole run, which can take longer than the pool lets a
+        // connection be held, so it is a connection of its own
+        try ( final Connection conn = DBUtil.getDedicatedConnection() ) {
+            if ( !lock( conn ) ) {
+                return 0;
+            }
+            try {
+                final Calendar from = getArchivedThrough();
+                if ( null != from && !cutoff.after( from ) ) {
+                    return 0;
+                }
+                if ( null != from ) {
+                    // Left behind if the last run stopped part way
+                    purge( conn, from );
+                }
+                archived = copy( conn, from, cutoff );
+                setArchivedThrough( cutoff );
+                for ( final String month : LogSegment.months( DIR ) ) {
+                    final Calendar end = LogSegment.startOf( month );
+                    end.add( Calendar.MONTH, 1 );
+                    if ( !end.after( cutoff ) ) {
+                        new LogSegment( DIR, month ).seal();
+                    }
+                }
+                purge( conn, cutoff );
+            }
+            finally {
+                unlock( conn );
+            }
+        }
+        DomainObject.changed( LogEntry.class );
+        return archived;
+    }
+
+    /**
+     * Starts archiving in the background every `archive.intervalHours` hours,
+     * if `archive.ageDays` is set. The first run is a minute after this is
+     * called.
+     */
+    public static synchronized void start () {
+        if ( AGE_DAYS < 1 || null != scheduler ) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-log-archiver" );
+            t.setDaemon( true );
+            return t;
+        } );
+        scheduler.scheduleWithFixedDelay( () -> {
+            try {
+                final int archived = archive();
+                if ( archived > 0 ) {
+                    org.apache.log4j.Logger.getLogger( LogArchive.class ).info( "Archived " + archived + " log entries" );
+                }
+            }
+            catch ( final Exception e ) {
+                e.printStackTrace();
+            }
+        }, 1, TimeUnit.HOURS.toMinutes( INTERVAL_HOURS ), TimeUnit.MINUTES );
+    }
+
+    /**
+     * Stops the background archiver, interrupting it if it is running. Whatever
+     * it had copied is copied again on its next run.
+     */
+    public static synchronized void shutdown () {
+        if ( null != scheduler ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Archives every LogEntry older than `archive.ageDays` days, once.
+     *
+     * @param args
+     *            Unused
+     */
+    public static void main ( final String args[] ) {
+        int status = 0;
+        try {
+            System.out.println( archive() + " log entries archived" );
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace();
+            status = 1;
+        }
+        finally {
+            DBUtil.shutdown();
+        }
+        System.exit( status );
+    }
+
+    /**
+     * Runs an action on every archived LogEntry, oldest first. Entries are
+     * read a month at a time.
+     *
+     * @param action
+     *            The action to run on each LogEntry
+     */
+    public static void scan ( final Consumer<LogEntry> action ) {
+        scan( null, null, action );
+    }
+
+    /**
+     * Runs an action on every archived LogEntry logged in a range of time,
+     * oldest first. Only the months in the range are read, a block at a time,
+     * so the whole archive can be worked through in little memory. A segment
+     * that cannot be read is reported and skipped over.
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param action
+     *            The action to run on each LogEntry
+     */
+    public static void scan ( final Calendar from, final Calendar to, final Consumer<LogEntry> action ) {
+        final Calendar stop = earlier( to, getArchivedThrough() );
+        if ( null == stop ) {
+            return;
+        }
+        final List<String> months = months( from, stop );
+        Collections.reverse( months );
+        for ( final String month : months ) {
+            try {
+                new LogSegment( DIR, month ).scan( from, stop, action );
+            }
+            catch ( final IOException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Retrieves archived LogEntries where the user provided was either the
+     * primary or secondary user, newest first. Only the blocks holding any of
+     * the user's entries are read, and whole months are skipped over by count,
+     * so reading further back through the archive does not mean reading every
+     * month before.
+     *
+     * @param user
+     *            The user to match on
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @param skip
+     *            Number of matching entries to skip over first
+     * @param limit
+     *            Most entries to retrieve
+     * @return The entries
+     */
+    public static List<LogEntry> getForUser ( final String user, final Calendar from, final Calendar to,
+            final Set<TransactionType> types, final int skip, final int limit ) {
+        final List<LogEntry> found = new ArrayList<LogEntry>();
+        final Calendar stop = earlier( to, getArchivedThrough() );
+        if ( null == stop || limit < 1 ) {
+            return found;
+        }
+        int toSkip = skip;
+        for ( final String month : months( from, stop ) ) {
+            if ( found.size() >= limit ) {
+                break;
+            }
+            if ( toSkip > 0 ) {
+                final int count = count( month, user, from, stop, types );
+                if ( count <= toSkip ) {
+                    toSkip -= count;
+                    continue;
+                }
+            }
+            final List<LogEntry> entries = read( month, user, from, stop, types );
+            for ( int i = toSkip; i < entries.size() && found.size() < limit; i++ ) {
+                found.add( entries.get( i ) );
+            }
+            toSkip = Math.max( 0, toSkip - entries.size() );
+        }
+        return found;
+    }
+
+    /**
+     * Counts the archived LogEntries
+     * {@link #getForUser(String, Calendar, Calendar, Set, int, int)} finds,
+     * mostly from the users recorded for each block rather than by reading the
+     * entries
+     *
+     * @param user
+     *            The user to match on
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @return The number of matching entries
+     */
+    public static long countForUser ( final String user, final Calendar from, final Calendar to,
+            final Set<TransactionType> types ) {
+        final Calendar stop = earlier( to, getArchivedThrough() );
+        if ( null == stop ) {
+            return 0;
+        }
+        long total = 0;
+        for ( final String month : months( from, stop ) ) {
+            total += count( month, user, from, stop, types );
+        }
+        return total;
+    }
+
+    /**
+     * Finds the months with a segment that may hold entries in a range of
+     * time
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before
+     * @return The months, newest first
+     */
+    private static List<String> months ( final Calendar from, final Calendar to ) {
+        final List<String> months = new ArrayList<String>();
+        final String first = null == from ? null : LogSegment.monthOf( from );
+        for ( final String month : LogSegment.months( DIR ) ) {
+            if ( ( null == first || month.compareTo( first ) >= 0 ) && LogSegment.startOf( month ).before( to ) ) {
+                months.add( month );
+            }
+        }
+        Collections.reverse( months );
+        return months;
+    }
+
+    /**
+     * Reads the entries involving a user in one month's segment. A segment
+     * that cannot be read is reported and treated as empty, so that the rest
+     * of the log can still be viewed.
+     *
+     * @param month
+     *            The month, as yyyy-MM
+     * @param user
+     *            The user to match on
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @return The matching entries, newest first
+     */
+    private static List<LogEntry> read ( final String month, final String user, final Calendar from,
+            final Calendar to, final Set<TransactionType> types ) {
+        try {
+            return new LogSegment( DIR, month ).readForUser( user, from, to, types );
+        }
+        catch ( final IOException | RuntimeException e ) {
+            e.printStackTrace();
+            return new ArrayList<LogEntry>();
+        }
+    }
+
+    /**
+     * Counts the entries involving a user in one month's segment. A segment
+     * that cannot be read is reported and counted as empty.
+     *
+     * @param month
+     *            The month, as yyyy-MM
+     * @param user
+     *            The user to match on
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @return The number of matching entries
+     */
+    private static int count ( final String month, final String user, final Calendar from, final Calendar to,
+            final Set<TransactionType> types ) {
+        try {
+            return new LogSegment( DIR, month ).countForUser( user, from, to, types );
+        }
+        catch ( final IOException | RuntimeException e ) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the earlier of two times
+     *
+     * @param time
+     *            A time, or null for no limit
+     * @param through
+     *            The archived-through time, or null if nothing is archived
+     * @return The earlier time, or null if nothing is archived
+     */
+    private static Calendar earlier ( final Calendar time, final Calendar through ) {
+        if ( null == through ) {
+            return null;
+        }
+        return null != time && time.before( through ) ? time : through;
+    }
+
+    /**
+     * Copies the entries in the database logged in a range of time to the
+     * archive, oldest first, in blocks of up to {@link #BLOCK_SIZE}. The rows
+     * are streamed from MySQL rather than read in all at once.
+     *
+     * @param conn
+     *            Connection to read the entries over
+     * @param from
+     *            Earliest time to copy, or null for no limit
+     * @param to
+     *            Time to stop before
+     * @return The number of entries copied
+     * @throws SQLException
+     *             If the entries could not be read
+     * @throws IOException
+     *             If the entries could not be written
+     */
+    private static int copy ( final Connection conn, final Calendar from, final Calendar to )
+            throws SQLException, IOException {
+        final TransactionType[] codes = TransactionType.values();
+        final String sql = "select id, logCode, message, primaryUser, secondaryUser, time, primaryRole, secondaryRole, "
+                + "patientViewable from LogEntries "
+                + "where time < ?" + ( null == from ? "" : " and time >= ?" ) + " order by time, id";
+        int copied = 0;
+        try ( final PreparedStatement ps = conn.prepareStatement( sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY ) ) {
+            ps.setFetchSize( Integer.MIN_VALUE );
+            ps.setTimestamp( 1, new Timestamp( to.getTimeInMillis() ) );
+            if ( null != from ) {
+                ps.setTimestamp( 2, new Timestamp( from.getTimeInMillis() ) );
+            }
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                String month = null;
+                final List<LogEntry> block = new ArrayList<LogEntry>();
+                while ( rs.next() ) {
+                    final Calendar time = Calendar.getInstance();
+                    time.setTimeInMillis( rs.getTimestamp( 6 ).getTime() );
+                    final String entryMonth = LogSegment.monthOf( time );
+                    if ( !entryMonth.equals( month ) || block.size() >= BLOCK_SIZE ) {
+                        if ( null != month ) {
+                            new LogSegment( DIR, month ).append( block );
+                        }
+                        block.clear();
+                        month = entryMonth;
+                    }
+                    final LogEntry entry = new LogEntry( rs.getLong( 1 ), codes[rs.getInt( 2 )], rs.getString( 4 ),
+                            rs.getString( 5 ), rs.getString( 3 ), time );
+                    entry.setPrimaryRole( null == rs.getString( 7 ) ? null : Role.valueOf( rs.getString( 7 ) ) );
+                    entry.setSecondaryRole( null == rs.getString( 8 ) ? null : Role.valueOf( rs.getString( 8 ) ) );
+                    final boolean viewable = rs.getBoolean( 9 );
+                    entry.setPatientViewable( rs.wasNull() ? null : viewable );
+                    block.add( entry );
+                    copied++;
+                }
+                if ( null != month ) {
+                    new LogSegment( DIR, month ).append( block );
+                }
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Deletes the entries logged before a time from the database, a batch at a
+     * time so as not to hold locks on the table for long
+     *
+     * @param conn
+     *            Connection to delete over
+     * @param before
+     *            Time to delete the entries before
+     * @throws SQLException
+     *             If the entries could not be deleted
+     */
+    private static void purge ( final Connection conn, final Calendar before ) throws SQLException {
+        try ( final PreparedStatement ps = conn
+                .prepareStatement( "delete from LogEntries where time < ? limit " + DELETE_BATCH ) ) {
+            ps.setTimestamp( 1, new Timestamp( before.getTimeInMillis() ) );
+            while ( ps.executeUpdate() >= DELETE_BATCH ) {
+                // Keep going until a batch comes up short
+            }
+        }
+    }
+
+    /**
+     * Moves the archived-through time, replacing the file it is kept in
+     * atomically
+     *
+     * @param through
+     *            The new time
+     * @throws IOException
+     *             If the file could not be written
+     */
+    private static synchronized void setArchivedThrough ( final Calendar through ) throws IOException {
+        DIR.mkdirs();
+        final File file = new File( DIR, WATERMARK );
+        final File temp = new File( DIR, WATERMARK + ".tmp" );
+        try ( final FileOutputStream out = new FileOutputStream( temp ) ) {
+            out.write( String.valueOf( through.getTimeInMillis() ).getBytes( StandardCharsets.UTF_8 ) );
+            out.getFD().sync();
+        }
+        Files.move( temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING );
+        archivedThrough = (Calendar) through.clone();
+        archivedThroughModified = file.lastModified();
+    }
+
+    /**
+     * Takes the archiving lock, if no other node holds it
+     *
+     * @param conn
+     *            Connection to hold the lock on
+     * @return true if the lock was taken
+     * @throws SQLException
+     *             If the lock cannot be requested
+     */
+    private static boolean lock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement ps = conn.prepareStatement( "select get_lock(?, 0)" ) ) {
+            ps.setString( 1, LOCK );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                return rs.next() && 1 == rs.getInt( 1 );
+            }
+        }
+    }
+
+    /**
+     * Releases the archiving lock
+     *
+     * @param conn
+     *            Connection the lock is held on
+     * @throws SQLException
+     *             If the lock cannot be released
+     */
+    private static void unlock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement ps = conn.prepareStatement( "select release_lock(?)" ) ) {
+            ps.setString( 1, LOCK );
+            ps.executeQuery().close();
+        }
+    }
+
+}
@@ -0,0 +1,786 @@
+package edu.ncsu.csc.itrust2.archive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * One month of archived LogEntries, kept in two files on local disk:
+ * <ul>
+ * <li>`LogEntries-yyyy-MM.seg`, the entries themselves, in blocks of up to a
+ * few thousand entries, each block compressed on its own</li>
+ * <li>`LogEntries-yyyy-MM.idx`, a sparse index with one fixed-size record per
+ * block: the earliest and latest time in the block, where the block starts
+ * and how long it is, how many entries it holds, and a checksum of it</li>
+ * <li>`LogEntries-yyyy-MM.usr`, the users in each block: for each, how many
+ * entries of each type in the block they are the primary or secondary user
+ * of</li>
+ * </ul>
+ *
+ * The users in each block let a search for one user's entries read only the
+ * blocks that hold any, and count the entries in a block without reading it
+ * at all. Blocks archived before the users were kept have none recorded, and
+ * are always read.
+ *
+ * Segments are append-only: blocks are only ever added at the end, and a
+ * block's index record is written only once the block itself is safely on
+ * disk, so a reader (which goes by the index alone) never sees a block that is
+ * half written. Anything left past the last indexed block by a crash is
+ * discarded before the next append. Once its month has been archived in full
+ * a segment is sealed, with a `LogEntries-yyyy-MM.sealed` marker and its files
+ * made read-only, and never changes again.
+ *
+ * Each entry is stored with its ID, so an entry archived twice (after a crash
+ * part way through archiving) is only returned once (and is not appended again
+ * after the last entry already in the segment), and with its
+ * TransactionType by name rather than by position, so that history years old
+ * still reads back correctly after the enum changes. The roles its users had
+ * and whether patients could see it when it was logged are stored with it
+ * too, so that archiving does not replace them with the users' current roles.
+ * Blocks archived before these were kept are read back without them.
+ */
+public class LogSegment {
+
+    /** Prefix of every segment file's name */
+    private static final String PREFIX       = "LogEntries-";
+
+    /** Extension of the data file */
+    private static final String DATA         = ".seg";
+
+    /** Extension of the index file */
+    private static final String INDEX        = ".idx";
+
+    /** Extension of the marker file that shows a segment is sealed */
+    private static final String SEALED       = ".sealed";
+
+    /** Extension of the file of the users in each block */
+    private static final String USERS        = ".usr";
+
+    /**
+     * Version of the format of the entries in each block. Blocks start with
+     * this, negated, before their entries; blocks from before the version was
+     * kept (version 1) start with the ID of their first entry instead, which
+     * is never negative.
+     */
+    private static final int    FORMAT       = 2;
+
+    /** Size in bytes of each index record */
+    private static final int    INDEX_RECORD = 40;
+
+    /** Most segments whose users are kept in memory */
+    private static final int    CACHED_USERS = 12;
+
+    /**
+     * The users in each block of the segments read most recently, least
+     * recently used first, by file; each is read again once its file has
+     * grown
+     */
+    private static final Map<String, Users> USERS_READ = new LinkedHashMap<String, Users>( 16, 0.75f, true ) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry ( final Map.Entry<String, Users> eldest ) {
+            return size() > CACHED_USERS;
+        }
+    };
+
+    /** The month, as yyyy-MM */
+    private final String        month;
+
+    /** File the entries are kept in */
+    private final File          data;
+
+    /** File the sparse index is kept in */
+    private final File          index;
+
+    /** File the users in each block are kept in */
+    private final File          users;
+
+    /** File whose presence shows this segment is sealed */
+    private final File          sealed;
+
+    /**
+     * Opens the segment for a month. The files are created on the first append.
+     *
+     * @param dir
+     *            Directory the archive is kept in
+     * @param month
+     *            The month, as yyyy-MM
+     */
+    public LogSegment ( final File dir, final String month ) {
+        this.month = month;
+        this.data = new File( dir, PREFIX + month + DATA );
+        this.index = new File( dir, PREFIX + month + INDEX );
+        this.users = new File( dir, PREFIX + month + USERS );
+        this.sealed = new File( dir, PREFIX + month + SEALED );
+    }
+
+    /**
+     * Finds the month a time falls in, which names the segment an entry
+     * logged at that time is archived to
+     *
+     * @param time
+     *            The time
+     * @return The month, as yyyy-MM
+     */
+    public static String monthOf ( final Calendar time ) {
+        return String.format( "%04d-%02d", time.get( Calendar.YEAR ), time.get( Calendar.MONTH ) + 1 );
+    }
+
+    /**
+     * Finds the start of a month
+     *
+     * @param month
+     *            The month, as yyyy-MM
+     * @return Midnight on the first day of the month
+     */
+    public static Calendar startOf ( final String month ) {
+        final Calendar start = Calendar.getInstance();
+        start.clear();
+        start.set( Integer.parseInt( month.substring( 0, 4 ) ), Integer.parseInt( month.substring( 5 ) ) - 1, 1 );
+        return start;
+    }
+
+    /**
+     * Lists the months that have a segment in the archive
+     *
+     * @param dir
+     *            Directory the archive is kept in
+     * @return The months, as yyyy-MM, oldest first
+     */
+    public static List<String> months ( final File dir ) {
+        final List<String> months = new ArrayList<String>();
+        final String[] names = dir.list();
+        if ( null != names ) {
+            for ( final String name : names ) {
+                if ( name.startsWith( PREFIX ) && name.endsWith( INDEX ) ) {
+                    months.add( name.substring( PREFIX.length(), name.length() - INDEX.length() ) );
+                }
+            }
+        }
+        Collections.sort( months );
+        return months;
+    }
+
+    /**
+     * Retrieves the month this segment holds
+     *
+     * @return The month, as yyyy-MM
+     */
+    public String getMonth () {
+        return month;
+    }
+
+    /**
+     * Checks whether this segment has been sealed
+     *
+     * @return true if no more entries may be added to it
+     */
+    public boolean isSealed () {
+        return sealed.exists();
+    }
+
+    /**
+     * Seals this segment, once its whole month has been archived, so that
+     * nothing can change it from then on. Its files are also made read-only.
+     *
+     * @throws IOException
+     *             If the segment could not be marked as sealed
+     */
+    public void seal () throws IOException {
+        if ( data.exists() && !isSealed() ) {
+            sealed.createNewFile();
+            data.setReadOnly();
+            index.setReadOnly();
+            users.setReadOnly();
+        }
+    }
+
+    /**
+     * Appends entries to the end of this segment, as one compressed block,
+     * leaving out any already in it. Every file is flushed to disk before this
+     * returns.
+     *
+     * @param entries
+     *            The entries, all logged during this segment's month
+     * @throws IOException
+     *             If the entries could not be written, or the segment is
+     *             damaged
+     * @throws IllegalStateException
+     *             If the segment has been sealed
+     */
+    public synchronized void append ( final List<LogEntry> entries ) throws IOException {
+        if ( entries.isEmpty() ) {
+            return;
+        }
+        if ( isSealed() ) {
+            throw new IllegalStateException( "Archive segment " + month + " is sealed" );
+        }
+        index.getParentFile().mkdirs();
+
+        // Entries are archived in order of time and ID, so any not after the
+        // last one in the segment are already in it
+        final long[] last = last();
+        final List<LogEntry> added = new ArrayList<LogEntry>();
+        for ( final LogEntry entry : entries ) {
+            final long time = entry.getTime().getTimeInMillis();
+            if ( null == last || time > last[0] || time == last[0] && entry.getId() > last[1] ) {
+                added.add( entry );
+            }
+        }
+        if ( added.isEmpty() ) {
+            return;
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        final Map<String, Map<String, Integer>> byUser = new TreeMap<String, Map<String, Integer>>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater( Deflater.BEST_COMPRESSION );
+        try ( final DataOutputStream out = new DataOutputStream( new DeflaterOutputStream( bytes, deflater ) ) ) {
+            out.writeLong( -FORMAT );
+            for ( final LogEntry entry : added ) {
+                final long time = entry.getTime().getTimeInMillis();
+                min = Math.min( min, time );
+                max = Math.max( max, time );
+                byUser.computeIfAbsent( entry.getPrimaryUser(), u -> new TreeMap<String, Integer>() )
+                        .merge( entry.getLogCode().name(), 1, Integer::sum );
+                if ( null != entry.getSecondaryUser() && !entry.getSecondaryUser().equals( entry.getPrimaryUser() ) ) {
+                    byUser.computeIfAbsent( entry.getSecondaryUser(), u -> new TreeMap<String, Integer>() )
+                            .merge( entry.getLogCode().name(), 1, Integer::sum );
+                }
+                out.writeLong( entry.getId() );
+                out.writeLong( time );
+                out.writeUTF( entry.getLogCode().name() );
+                out.writeUTF( entry.getPrimaryUser() );
+                writeOptional( out, entry.getSecondaryUser() );
+                writeOptional( out, entry.getMessage() );
+                writeOptional( out, null == entry.getPrimaryRole() ? null : entry.getPrimaryRole().name() );
+                writeOptional( out, null == entry.getSecondaryRole() ? null : entry.getSecondaryRole().name() );
+                out.writeByte( null == entry.getPatientViewable() ? -1 : entry.getPatientViewable() ? 1 : 0 );
+            }
+        }
+        finally {
+            deflater.end();
+        }
+        final byte[] block = bytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update( block );
+
+        final ByteArrayOutputStream userBytes = new ByteArrayOutputStream();
+        try ( final DataOutputStream out = new DataOutputStream( userBytes ) ) {
+            out.writeInt( byUser.size() );
+            for ( final Map.Entry<String, Map<String, Integer>> user : byUser.entrySet() ) {
+                out.writeUTF( user.getKey() );
+                out.writeShort( user.getValue().size() );
+                for ( final Map.Entry<String, Integer> type : user.getValue().entrySet() ) {
+                    out.writeUTF( type.getKey() );
+                    out.writeInt( type.getValue() );
+                }
+            }
+        }
+
+        try ( final RandomAccessFile idx = new RandomAccessFile( index, "rwd" );
+                final RandomAccessFile seg = new RandomAccessFile( data, "rwd" );
+                final RandomAccessFile usr = new RandomAccessFile( users, "rwd" ) ) {
+            // Drop anything a crash left after the last complete block
+            final long records = idx.length() / INDEX_RECORD;
+            idx.setLength( records * INDEX_RECORD );
+            long end = 0;
+            if ( records > 0 ) {
+                idx.seek( ( records - 1 ) * INDEX_RECORD + 16 );
+                end = idx.readLong() + idx.readInt();
+            }
+            if ( seg.length() < end ) {
+                throw new IOException( "Archive segment " + month + " is shorter than its index" );
+            }
+            seg.setLength( end );
+
+            seg.seek( end );
+            seg.write( block );
+
+            // The block's users go after those of the last complete block,
+            // each block's as its number, their length and then the users
+            long usersEnd = 0;
+            while ( usersEnd + 8 <= usr.length() ) {
+                usr.seek( usersEnd );
+                final int number = usr.readInt();
+                final int length = usr.readInt();
+                if ( number >= records || usersEnd + 8 + length > usr.length() ) {
+                    break;
+                }
+                usersEnd += 8 + length;
+            }
+            usr.setLength( usersEnd );
+            usr.seek( usersEnd );
+            usr.writeInt( (int) records );
+            usr.writeInt( userBytes.size() );
+            usr.write( userBytes.toByteArray() );
+
+            final ByteBuffer record = ByteBuffer.allocate( INDEX_RECORD );
+            record.putLong( min ).putLong( max ).putLong( end ).putInt( block.length ).putInt( added.size() )
+                    .putLong( crc.getValue() );
+            idx.seek( records * INDEX_RECORD );
+            idx.write( record.array() );
+        }
+    }
+
+    /**
+     * Reads the entries in this segment that were logged in a range of time
+     * and match a filter. Only the blocks the index shows overlap the range
+     * are read.
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param filter
+     *            Which entries to include
+     * @return The matching entries, newest first
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    public List<LogEntry> read ( final Calendar from, final Calendar to, final Predicate<LogEntry> filter )
+            throws IOException {
+        return read( from, to, filter, block -> true );
+    }
+
+    /**
+     * Reads the entries in this segment where a user was the primary or
+     * secondary user, logged in a range of time. Only the blocks that hold
+     * any of the user's entries are read.
+     *
+     * @param user
+     *            The user to match on
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @return The matching entries, newest first
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    public List<LogEntry> readForUser ( final String user, final Calendar from, final Calendar to,
+            final Set<TransactionType> types ) throws IOException {
+        final Users read = users();
+        return read( from, to, forUser( user, types ),
+                block -> !read.recorded.get( block ) || read.count( block, user, types ) > 0 );
+    }
+
+    /**
+     * Counts the entries {@link #readForUser(String, Calendar, Calendar, Set)}
+     * finds. Blocks wholly inside the range are counted from their users
+     * alone; only blocks the range cuts through, or whose users were not
+     * recorded, are read.
+     *
+     * @param user
+     *            The user to match on
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @return The number of matching entries
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    public int countForUser ( final String user, final Calendar from, final Calendar to,
+            final Set<TransactionType> types ) throws IOException {
+        final long start = null == from ? Long.MIN_VALUE : from.getTimeInMillis();
+        final long stop = null == to ? Long.MAX_VALUE : to.getTimeInMillis();
+        final Users read = users();
+        final BitSet toRead = new BitSet();
+        int counted = 0;
+        final List<long[]> blocks = blocks();
+        for ( int b = 0; b < blocks.size(); b++ ) {
+            final long min = blocks.get( b )[0];
+            final long max = blocks.get( b )[1];
+            if ( max < start || min >= stop ) {
+                continue;
+            }
+            if ( !read.recorded.get( b ) ) {
+                toRead.set( b );
+                continue;
+            }
+            final int count = read.count( b, user, types );
+            if ( count > 0 ) {
+                if ( min >= start && max < stop ) {
+                    counted += count;
+                }
+                else {
+                    toRead.set( b );
+                }
+            }
+        }
+        if ( !toRead.isEmpty() ) {
+            counted += read( from, to, forUser( user, types ), toRead::get ).size();
+        }
+        return counted;
+    }
+
+    /**
+     * Reads the entries in some blocks of this segment that were logged in a
+     * range of time and match a filter
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param filter
+     *            Which entries to include
+     * @param wanted
+     *            Which blocks to read, by number
+     * @return The matching entries, newest first
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    private List<LogEntry> read ( final Calendar from, final Calendar to, final Predicate<LogEntry> filter,
+            final IntPredicate wanted ) throws IOException {
+        final List<LogEntry> found = new ArrayList<LogEntry>();
+        final Set<Long> seen = new HashSet<Long>();
+        each( from, to, wanted, entry -> {
+            if ( filter.test( entry ) && seen.add( entry.getId() ) ) {
+                found.add( entry );
+            }
+        } );
+        found.sort( Comparator.comparing( LogEntry::getTime ).thenComparing( LogEntry::getId ).reversed() );
+        return found;
+    }
+
+    /**
+     * Runs an action on each entry in this segment logged in a range of time,
+     * oldest first, holding only one block in memory at a time however large
+     * the segment is. Entries are archived in order of time and ID, so an
+     * entry archived twice is recognised by not coming after the one before
+     * it, and skipped.
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param action
+     *            The action to run on each entry
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    public void scan ( final Calendar from, final Calendar to, final Consumer<LogEntry> action ) throws IOException {
+        final long[] last = { Long.MIN_VALUE, Long.MIN_VALUE };
+        each( from, to, block -> true, entry -> {
+            final long time = entry.getTime().getTimeInMillis();
+            if ( time > last[0] || time == last[0] && entry.getId() > last[1] ) {
+                last[0] = time;
+                last[1] = entry.getId();
+                action.accept( entry );
+            }
+        } );
+    }
+
+    /**
+     * Runs an action on each entry in some blocks of this segment logged in a
+     * range of time, in the order they are stored. Only the blocks wanted that
+     * the index shows overlap the range are read.
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param wanted
+     *            Which blocks to read, by number
+     * @param action
+     *            The action to run on each entry
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    private void each ( final Calendar from, final Calendar to, final IntPredicate wanted,
+            final Consumer<LogEntry> action ) throws IOException {
+        final long start = null == from ? Long.MIN_VALUE : from.getTimeInMillis();
+        final long stop = null == to ? Long.MAX_VALUE : to.getTimeInMillis();
+        final List<long[]> blocks = blocks();
+        if ( blocks.isEmpty() ) {
+            return;
+        }
+        try ( final RandomAccessFile seg = new RandomAccessFile( data, "r" ) ) {
+            for ( int b = 0; b < blocks.size(); b++ ) {
+                final long[] block = blocks.get( b );
+                if ( block[1] < start || block[0] >= stop || !wanted.test( b ) ) {
+                    continue;
+                }
+                for ( final LogEntry entry : entries( seg, block ) ) {
+                    final long t = entry.getTime().getTimeInMillis();
+                    if ( t >= start && t < stop ) {
+                        action.accept( entry );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the index
+     *
+     * @return Each block's earliest and latest time, offset, length, number
+     *         of entries and checksum, in order
+     * @throws IOException
+     *             If the index could not be read
+     */
+    private List<long[]> blocks () throws IOException {
+        final List<long[]> blocks = new ArrayList<long[]>();
+        if ( !index.exists() ) {
+            return blocks;
+        }
+        final byte[] bytes = Files.readAllBytes( index.toPath() );
+        final ByteBuffer idx = ByteBuffer.wrap( bytes );
+        for ( int r = 0; r < bytes.length / INDEX_RECORD; r++ ) {
+            idx.position( r * INDEX_RECORD );
+            blocks.add( new long[] { idx.getLong(), idx.getLong(), idx.getLong(), idx.getInt(), idx.getInt(),
+                    idx.getLong() } );
+        }
+        return blocks;
+    }
+
+    /**
+     * Reads and decompresses one block
+     *
+     * @param seg
+     *            The data file
+     * @param block
+     *            The block's index record, as from {@link #blocks()}
+     * @return The entries in it, in the order they are stored
+     * @throws IOException
+     *             If the block could not be read or is damaged
+     */
+    private List<LogEntry> entries ( final RandomAccessFile seg, final long[] block ) throws IOException {
+        final long offset = block[2];
+        final byte[] bytes = new byte[(int) block[3]];
+        seg.seek( offset );
+        seg.readFully( bytes );
+        final CRC32 crc = new CRC32();
+        crc.update( bytes );
+        if ( crc.getValue() != block[5] ) {
+            throw new IOException( "Archive segment " + month + " is damaged at offset " + offset );
+        }
+
+        final List<LogEntry> entries = new ArrayList<LogEntry>( (int) block[4] );
+        try ( final DataInputStream in = new DataInputStream(
+                new InflaterInputStream( new ByteArrayInputStream( bytes ) ) ) ) {
+            final long first = in.readLong();
+            final long format = first < 0 ? -first : 1;
+            if ( format > FORMAT ) {
+                throw new IOException( "Archive segment " + month + " has a block in unknown format " + format );
+            }
+            for ( int i = 0; i < block[4]; i++ ) {
+                final long id = 1 == format && 0 == i ? first : in.readLong();
+                final Calendar time = Calendar.getInstance();
+                time.setTimeInMillis( in.readLong() );
+                final LogEntry entry = new LogEntry( id, TransactionType.valueOf( in.readUTF() ), in.readUTF(),
+                        readOptional( in ), readOptional( in ), time );
+                if ( format >= 2 ) {
+                    final String primaryRole = readOptional( in );
+                    final String secondaryRole = readOptional( in );
+                    entry.setPrimaryRole( null == primaryRole ? null : Role.valueOf( primaryRole ) );
+                    entry.setSecondaryRole( null == secondaryRole ? null : Role.valueOf( secondaryRole ) );
+                    final byte viewable = in.readByte();
+                    entry.setPatientViewable( viewable < 0 ? null : 1 == viewable );
+                }
+                entries.add( entry );
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Finds the time and ID of the last entry in this segment
+     *
+     * @return The time and ID, or null if the segment is empty
+     * @throws IOException
+     *             If the segment could not be read or is damaged
+     */
+    private long[] last () throws IOException {
+        final List<long[]> blocks = blocks();
+        if ( blocks.isEmpty() ) {
+            return null;
+        }
+        try ( final RandomAccessFile seg = new RandomAccessFile( data, "r" ) ) {
+            final List<LogEntry> entries = entries( seg, blocks.get( blocks.size() - 1 ) );
+            final LogEntry entry = entries.get( entries.size() - 1 );
+            return new long[] { entry.getTime().getTimeInMillis(), entry.getId() };
+        }
+    }
+
+    /**
+     * Reads the users in each block, or takes them from memory if the file has
+     * not grown since it was last read
+     *
+     * @return The users in each block
+     * @throws IOException
+     *             If the file could not be read
+     */
+    private Users users () throws IOException {
+        final String key = users.getAbsolutePath();
+        final long length = users.length();
+        synchronized ( USERS_READ ) {
+            final Users cached = USERS_READ.get( key );
+            if ( null != cached && cached.length == length ) {
+                return cached;
+            }
+        }
+        final Users read = new Users( length );
+        if ( length > 0 ) {
+            try ( final DataInputStream in = new DataInputStream(
+                    new BufferedInputStream( new FileInputStream( users ) ) ) ) {
+                long position = 0;
+                while ( position + 8 <= length ) {
+                    final int block = in.readInt();
+                    final int size = in.readInt();
+                    if ( position + 8 + size > length ) {
+                        break;
+                    }
+                    final int count = in.readInt();
+                    for ( int u = 0; u < count; u++ ) {
+                        final Map<String, Integer> types = new HashMap<String, Integer>();
+                        final String user = in.readUTF();
+                        final int typeCount = in.readUnsignedShort();
+                        for ( int t = 0; t < typeCount; t++ ) {
+                            types.put( in.readUTF(), in.readInt() );
+                        }
+                        read.blocks.computeIfAbsent( user, k -> new HashMap<Integer, Map<String, Integer>>() )
+                                .put( block, types );
+                    }
+                    read.recorded.set( block );
+                    position += 8 + size;
+                }
+            }
+        }
+        synchronized ( USERS_READ ) {
+            USERS_READ.put( key, read );
+        }
+        return read;
+    }
+
+    /**
+     * Builds the filter for the entries involving a user
+     *
+     * @param user
+     *            The user to match on
+     * @param types
+     *            Types of entry to include, or null to include all
+     * @return The filter
+     */
+    private static Predicate<LogEntry> forUser ( final String user, final Set<TransactionType> types ) {
+        return entry -> ( user.equals( entry.getPrimaryUser() ) || user.equals( entry.getSecondaryUser() ) )
+                && ( null == types || types.contains( entry.getLogCode() ) );
+    }
+
+    /**
+     * Writes a string that may be null
+     *
+     * @param out
+     *            Stream to write to
+     * @param value
+     *            The string, or null
+     * @throws IOException
+     *             If it could not be written
+     */
+    private static void writeOptional ( final DataOutputStream out, final String value ) throws IOException {
+        out.writeBoolean( null != value );
+        if ( null != value ) {
+            out.writeUTF( value );
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeOptional(DataOutputStream, String)}
+     *
+     * @param in
+     *            Stream to read from
+     * @return The string, or null
+     * @throws IOException
+     *             If it could not be read
+     */
+    private static String readOptional ( final DataInputStream in ) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * The users in each block of a segment
+     */
+    private static final class Users {
+
+        /** Length of the file when it was read */
+        private final long                                           length;
+
+        /** Blocks whose users were recorded, by number */
+        private final BitSet                                         recorded = new BitSet();
+
+        /**
+         * For each user, the number of entries of each type, by name, they
+         * are in, in each block they are in, by number
+         */
+        private final Map<String, Map<Integer, Map<String, Integer>>> blocks   = new HashMap<String, Map<Integer, Map<String, Integer>>>();
+
+        private Users ( final long length ) {
+            this.length = length;
+        }
+
+        /**
+         * Counts the entries in a block that a user is in
+         *
+         * @param block
+         *            Number of the block
+         * @param user
+         *            The user
+         * @param types
+         *            Types of entry to count, or null to count all
+         * @return The number of entries
+         */
+        private int count ( final int block, final String user, final Set<TransactionType> types ) {
+            final Map<Integer, Map<String, Integer>> inBlocks = blocks.get( user );
+            final Map<String, Integer> byType = null == inBlocks ? null : inBlocks.get( block );
+            if ( null == byType ) {
+                return 0;
+            }
+            int count = 0;
+            for ( final Map.Entry<String, Integer> type : byType.entrySet() ) {
+                if ( null == types || types.stream().anyMatch( t -> t.name().equals( type.getKey() ) ) ) {
+                    count += type.getValue();
+                }
+            }
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Archival of old LogEntries out of the database into compressed monthly
+ * segment files, and reading them back.
+ */
+package edu.ncsu.csc.itrust2.archive;
@@ -0,0 +1,358 @@
+package edu.ncsu.csc.itrust2.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+
+/**
+ * Looks up users for Spring Security, keeping what it found in memory for a
+ * short while so that a login (or a check on the current user) usually needs
+ * no database access. A user is read in a single query that uses the indexes
+ * on the ban and lockout tables, and the lockout is kept as the time it ends,
+ * so a lockout running out does not need the user read again. The user
+ * returned to Spring Security carries their specialty along with them, so
+ * that security checks on the logged-in user need not look it up at all.
+ *
+ * Anything that changes a user's password, role, enabled flag, specialty, or
+ * bans and lockouts must call {@link #invalidate(String)} once it has saved the
+ * change. Changes made on another node are picked up when the entry expires.
+ * The cache is configured with these settings in db.properties:
+ * <ul>
+ * <li>`login.userCacheSeconds`: how long a user is kept for (60)</li>
+ * <li>`login.userCacheSize`: how many users are kept at most (10000)</li>
+ * </ul>
+ */
+public class CachedUserDetailsService implements UserDetailsService {
+
+    /** How long a user is kept for, in milliseconds */
+    private static final long                  TTL        = TimeUnit.SECONDS
+            .toMillis( DBUtil.setting( "login.userCacheSeconds", 60 ) );
+
+    /** How many users are kept at most */
+    private static final int                   SIZE       = DBUtil.setting( "login.userCacheSize", 10000 );
+
+    /** How long a lockout lasts, in milliseconds */
+    private static final long                  LOCKOUT    = TimeUnit.MINUTES.toMillis( 60 );
+
+    /** Reads a user with their bans and latest lockout */
+    private static final String                QUERY      = "select u.username, u.password, u.enabled, u.role, u.specialty, "
+            + "(select count(*) from LoginBans b where b.user_id = u.username and b.time is not null), "
+            + "(select max(c.time) from LoginLockouts c where c.user_id = u.username and c.time > ?) "
+            + "from Users u where u.username = ?";
+
+    /** Users read recently, by lowercased username, least recently used first */
+    private static final Map<String, Account>  ACCOUNTS   = new LinkedHashMap<String, Account>( 16, 0.75f, true ) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry ( final Map.Entry<String, Account> eldest ) {
+            return size() > SIZE;
+        }
+    };
+
+    /**
+     * Bumped on every invalidation, so that a read which raced with a change
+     * does not put data from before the change back into the cache
+     */
+    private static long                        generation = 0;
+
+    /**
+     * When each user who has changed recently last changed, in epoch millis,
+     * by lowercased username, least recently changed first; a logged-in user
+     * read from the database before then is out of date. At most as many are
+     * kept as users are cached, and the latest change dropped is kept in
+     * {@link #forgotten}.
+     */
+    private static final Map<String, Long>     CHANGED    = new LinkedHashMap<String, Long>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry ( final Map.Entry<String, Long> eldest ) {
+            if ( size() > SIZE ) {
+                forgotten = Math.max( forgotten, eldest.getValue() );
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Latest change dropped from {@link #CHANGED}, in epoch millis; any
+     * logged-in user read from the database before then, and not in it, may
+     * be out of date
+     */
+    private static long                        forgotten  = 0;
+
+    /**
+     * Retrieves a user for Spring Security to authenticate. A user who is
+     * banned or locked out is returned disabled, so that the FailureHandler
+     * can tell them why.
+     *
+     * @param username
+     *            Name of the user
+     * @return The user, with their role as their only authority, and their
+     *         specialty
+     * @throws UsernameNotFoundException
+     *             If there is no such user
+     */
+    @Override
+    public UserDetails loadUserByUsername ( final String username ) throws UsernameNotFoundException {
+        final Account account;
+        try {
+            account = get( username );
+        }
+        catch ( final SQLException e ) {
+            throw new InternalAuthenticationServiceException( e.getMessage(), e );
+        }
+        if ( null == account || null == account.role ) {
+            throw new UsernameNotFoundException( "No user found with username " + username );
+        }
+        return new Principal( account );
+    }
+
+    /**
+     * Retrieves the specialty of a logged-in user. It is taken from the user
+     * that Spring Security logged in, unless they have changed since, in which
+     * case it is looked up again.
+     *
+     * @param authentication
+     *            The logged-in user
+     * @return The name of their specialty, or null if they have none or could
+     *         not be read
+     */
+    public static String getSpecialty ( final Authentication authentication ) {
+        if ( null == authentication ) {
+            return null;
+        }
+        if ( authentication.getPrincipal() instanceof Principal ) {
+            final Principal principal = (Principal) authentication.getPrincipal();
+            final boolean current;
+            synchronized ( ACCOUNTS ) {
+                final Long changedAt = CHANGED.get( principal.getUsername().toLowerCase( Locale.ROOT ) );
+                current = ( null == changedAt ? forgotten : changedAt ) < principal.readAt;
+            }
+            if ( current ) {
+                return principal.specialty;
+            }
+        }
+        return getSpecialty( authentication.getName() );
+    }
+
+    /**
+     * Retrieves the specialty of a user
+     *
+     * @param username
+     *            Name of the user
+     * @return The name of their specialty, or null if they have none or could
+     *         not be read
+     */
+    public static String getSpecialty ( final String username ) {
+        try {
+            final Account account = get( username );
+            return null == account ? null : account.specialty;
+        }
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Drops a user from the cache, so that they are read again on the next
+     * lookup. They are dropped again once the current unit of work (if any)
+     * has ended, as until then other threads may still read the user as they
+     * were before the change.
+     *
+     * @param username
+     *            Name of the user that changed
+     */
+    public static void invalidate ( final String username ) {
+        if ( null == username ) {
+            return;
+        }
+        final String key = username.toLowerCase( Locale.ROOT );
+        remove( key );
+        HibernateUtil.afterUnitOfWork( () -> remove( key ) );
+    }
+
+    /**
+     * Drops a user from the cache right away
+     *
+     * @param key
+     *            Lowercased name of the user
+     */
+    private static void remove ( final String key ) {
+        synchronized ( ACCOUNTS ) {
+            generation++;
+            ACCOUNTS.remove( key );
+            // Removed first so that it goes to the end, as the latest change
+            CHANGED.remove( key );
+            CHANGED.put( key, System.currentTimeMillis() );
+        }
+    }
+
+    /**
+     * Retrieves a user from the cache, reading them from the database if they
+     * are not there or have expired
+     *
+     * @param username
+     *            Name of the user
+     * @return The user, or null if there is no such user
+     * @throws SQLException
+     *             If the user could not be read
+     */
+    private static Account get ( final String username ) throws SQLException {
+        final String key = username.toLowerCase( Locale.ROOT );
+        final long now = System.currentTimeMillis();
+        final long readAt;
+        synchronized ( ACCOUNTS ) {
+            final Account cached = ACCOUNTS.get( key );
+            if ( null != cached && cached.readAt + TTL > now ) {
+                return cached;
+            }
+            readAt = generation;
+        }
+        final Account account = read( username, now );
+        if ( null != account ) {
+            synchronized ( ACCOUNTS ) {
+                if ( readAt == generation ) {
+                    ACCOUNTS.put( key, account );
+                }
+            }
+        }
+        return account;
+    }
+
+    /**
+     * Reads a user from the database
+     *
+     * @param username
+     *            Name of the user
+     * @param now
+     *            The time now, in epoch millis
+     * @return The user, or null if there is no such user
+     * @throws SQLException
+     *             If the user could not be read
+     */
+    private static Account read ( final String username, final long now ) throws SQLException {
+        try ( final Connection conn = DBUtil.getConnection();
+                final PreparedStatement ps = conn.prepareStatement( QUERY ) ) {
+            ps.setTimestamp( 1, new Timestamp( now - LOCKOUT ) );
+            ps.setString( 2, username );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                if ( !rs.next() ) {
+                    return null;
+                }
+                final Timestamp locked = rs.getTimestamp( 7 );
+                return new Account( rs.getString( 1 ), rs.getString( 2 ), 0 != rs.getInt( 3 ), rs.getString( 4 ),
+                        rs.getString( 5 ), rs.getLong( 6 ) > 0, null == locked ? 0 : locked.getTime() + LOCKOUT,
+                        now );
+            }
+        }
+    }
+
+    /**
+     * What is kept in memory about a user
+     */
+    private static final class Account {
+
+        /**
+         * The user's name as stored, which may differ in case from the name
+         * they logged in with
+         */
+        private final String  username;
+
+        /** Hash of the user's password */
+        private final String  password;
+
+        /** Whether the user's account is enabled */
+        private final boolean enabled;
+
+        /** The user's role */
+        private final String  role;
+
+        /** The user's specialty, if they are personnel */
+        private final String  specialty;
+
+        /** Whether the user is banned */
+        private final boolean banned;
+
+        /** When the user's latest lockout ends, in epoch millis */
+        private final long    lockedUntil;
+
+        /** When this was read from the database, in epoch millis */
+        private final long    readAt;
+
+        private Account ( final String username, final String password, final boolean enabled,
+                final String role, final String specialty, final boolean banned, final long lockedUntil,
+                final long readAt ) {
+            this.username = username;
+            this.password = password;
+            this.enabled = enabled;
+            this.role = role;
+            this.specialty = specialty;
+            this.banned = banned;
+            this.lockedUntil = lockedUntil;
+            this.readAt = readAt;
+        }
+
+        /**
+         * Checks whether the user may log in
+         *
+         * @param now
+         *            The time now, in epoch millis
+         * @return true if they are enabled, and neither banned nor locked out
+         */
+        private boolean isEnabled ( final long now ) {
+            return enabled && !banned && lockedUntil <= now;
+        }
+    }
+
+    /**
+     * A user as logged in by Spring Security, with their specialty. A new one
+     * is made for each login, as Spring erases its password after
+     * authenticating.
+     */
+    private static final class Principal extends User {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The user's specialty, if they are personnel */
+        private final String      specialty;
+
+        /** When the user was read from the database, in epoch millis */
+        private final long        readAt;
+
+        /**
+         * Creates the user to log in, under their name as stored
+         *
+         * @param account
+         *            What is known about them
+         */
+        private Principal ( final Account account ) {
+            super( account.username, account.password, account.isEnabled( System.currentTimeMillis() ), true, true, true,
+                    Collections.singletonList( new SimpleGrantedAuthority( account.role ) ) );
+            this.specialty = account.specialty;
+            this.readAt = account.readAt;
+        }
+    }
+
+}
@@ -4,12 +4,20 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 
+import edu.ncsu.csc.itrust2.archive.LogArchive;
+import edu.ncsu.csc.itrust2.models.persistent.IPBlocks;
+import edu.ncsu.csc.itrust2.utils.AuditJournal;
+import edu.ncsu.csc.itrust2.utils.AuditWriter;
+import edu.ncsu.csc.itrust2.utils.DBUtil;
 import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.IndexCheck;
+import edu.ncsu.csc.itrust2.utils.LoginThrottle;
 
 /**
  * Simple listener that can bind actions to startup or shutdown of the web
- * application server. Used to close the database connection pool when
- * everything is finished.
+ * application server. Used to check the database indexes and start the log
+ * archiver and login throttle on startup, and to close the database connection
+ * pool when everything is finished.
  *
  * @author Kai Presler-Marshall
  *
@@ -18,17 +26,36 @@ import edu.ncsu.csc.itrust2.utils.HibernateUtil;
 public class ContextListener implements ServletContextListener {
 
     /**
-     * Gracefully tell Hibernate to close the connections to the database rather
-     * than dropping everything on the floor.
+     * Stop the log archiver, save the failed login counts, stop refreshing the
+     * blocked IPs, write out any log
+     * entries still waiting to be saved and flush the audit journal, then gracefully tell Hibernate to
+     * close the connections to the database rather than dropping everything on
+     * the floor, and then close the connection pool that it shares with Spring
+     * Security.
      */
     @Override
     public void contextDestroyed ( final ServletContextEvent arg0 ) {
+        LogArchive.shutdown();
+        LoginThrottle.shutdown();
+        IPBlocks.shutdown();
+        AuditWriter.shutdown();
+        AuditJournal.shutdown();
         HibernateUtil.shutdown();
+        DBUtil.shutdown();
     }
 
+    /**
+     * Check that the database has every index the persistent classes declare,
+     * and warn about any that are missing, then start archiving old log
+     * entries if that is turned on, read back the failed login counts, and
+     * start refreshing the blocked IPs
+     */
     @Override
     public void contextInitialized ( final ServletContextEvent arg0 ) {
-        // There's nothing that we need to do here
+        IndexCheck.report();
+        LogArchive.start();
+        LoginThrottle.start();
+        IPBlocks.start();
     }
 
 }
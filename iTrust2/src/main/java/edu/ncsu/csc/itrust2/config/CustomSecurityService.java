@@ -1,10 +1,8 @@
 package edu.ncsu.csc.itrust2.config;
 
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
-import edu.ncsu.csc.itrust2.models.persistent.Personnel;
-import edu.ncsu.csc.itrust2.utils.LoggerUtil;
-
 /**
  * Custom security service for iTrust2. Allows us to add additional methods that
  * can be used by Spring Security Annotations (such as PreAuthorize).
@@ -17,19 +15,17 @@ public class CustomSecurityService {
 
     /**
      * Determines if the current logged in user has the specified specialty.
+     * The specialty is kept with the logged-in user, so this needs no database
+     * access unless their record has changed since they logged in.
      *
      * @param specialty
      *            The specialty to check against.
      * @return True if the user has the specialty, false otherwise.
      */
     public boolean hasSpecialty ( final String specialty ) {
-        final Personnel p = Personnel.getByName( LoggerUtil.currentUser() );
-
-        if ( p.getSpecialty() != null ) {
-            return p.getSpecialty().toString().equals( specialty );
-        }
-
-        return false;
+        final String current = CachedUserDetailsService
+                .getSpecialty( SecurityContextHolder.getContext().getAuthentication() );
+        return null != current && current.equals( specialty );
     }
 
 }
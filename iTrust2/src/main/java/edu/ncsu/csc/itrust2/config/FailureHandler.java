@@ -15,16 +15,19 @@ import org.springframework.security.web.authentication.SimpleUrlAuthenticationFa
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
-import edu.ncsu.csc.itrust2.models.persistent.LoginAttempt;
 import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
 import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.EmailUtil;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+import edu.ncsu.csc.itrust2.utils.LoginThrottle;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
 
 /**
  * Custom AuthenticationFailureHandler to record Failed attempts, and lockout or
- * ban a user or IP if necessary.
+ * ban a user or IP if necessary. Failed attempts are counted in memory by the
+ * {@link LoginThrottle}, so that a flood of bad logins does not turn into a
+ * flood of database writes.
  *
  * @author Thomas
  *
@@ -43,10 +46,17 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
         User user = null;
         final String addr = request.getRemoteAddr();
 
+        // The password was never checked, so this is not a failed attempt
+        if ( ae instanceof PasswordHasher.BusyException ) {
+            response.setHeader( "Retry-After", String.valueOf( PasswordHasher.RETRY_AFTER_SECONDS ) );
+            response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, ae.getMessage() );
+            return;
+        }
+
         if ( ae instanceof BadCredentialsException ) {
             // need to lockout IP
-            if ( LoginAttempt.getIPFailures( addr ) >= 5 ) {
-                LoginAttempt.clearIP( addr );
+            if ( LoginThrottle.getIPFailures( addr ) >= 5 ) {
+                LoginThrottle.clearIP( addr );
                 // Check if need to ban IP
                 if ( LoginLockout.getRecentIPLockouts( addr ) >= 2 ) {
                     // BAN
@@ -87,10 +97,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
             }
             else {
                 // fail for IP
-                final LoginAttempt attempt = new LoginAttempt();
-                attempt.setTime( Calendar.getInstance() );
-                attempt.setIp( addr );
-                attempt.save();
+                LoginThrottle.recordIPFailure( addr );
             }
 
             // check username
@@ -100,8 +107,8 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
 
             if ( user != null ) {
                 // check if need to lockout username
-                if ( LoginAttempt.getUserFailures( user ) >= 2 ) {
-                    LoginAttempt.clearUser( user );
+                if ( LoginThrottle.getUserFailures( username ) >= 2 ) {
+                    LoginThrottle.clearUser( username );
                     // check if need to ban user
                     if ( LoginLockout.getRecentUserLockouts( user ) >= 2 ) {
                         LoginLockout.clearUser( user );
@@ -109,6 +116,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                         ban.setTime( Calendar.getInstance() );
                         ban.setUser( user );
                         ban.save();
+                        CachedUserDetailsService.invalidate( username );
                         LoggerUtil.log( TransactionType.USER_BANNED, username, null, username + " has been banned." );
                         this.getRedirectStrategy().sendRedirect( request, response, "/login?banned" );
 
@@ -134,6 +142,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                         lock.setTime( Calendar.getInstance() );
                         lock.setUser( user );
                         lock.save();
+                        CachedUserDetailsService.invalidate( username );
                         LoggerUtil.log( TransactionType.USER_LOCKOUT, username, null,
                                 username + " has been locked out for 1 hour." );
                         this.getRedirectStrategy().sendRedirect( request, response, "/login?locked" );
@@ -158,10 +167,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                 }
                 else {
                     // fail for username
-                    final LoginAttempt attempt = new LoginAttempt();
-                    attempt.setTime( Calendar.getInstance() );
-                    attempt.setUser( user );
-                    attempt.save();
+                    LoginThrottle.recordUserFailure( username );
                 }
             }
 
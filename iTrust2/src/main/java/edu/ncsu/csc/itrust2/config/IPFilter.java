@@ -16,7 +16,8 @@ import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
 
 /**
  * Custom Http Filter to redirect all requests from banned or locked out IP
- * addresses.
+ * addresses. This runs for every request, static resources included, so the
+ * bans and lockouts are checked in memory rather than in the database.
  *
  * @author Thomas
  *
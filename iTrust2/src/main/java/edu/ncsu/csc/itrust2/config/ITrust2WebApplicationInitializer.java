@@ -10,9 +10,20 @@
  */
 package edu.ncsu.csc.itrust2.config;
 
+import javax.servlet.ServletContext;
+
 import org.springframework.core.annotation.Order;
 import org.springframework.security.web.context.AbstractSecurityWebApplicationInitializer;
 
 @Order ( 2 )
 public class ITrust2WebApplicationInitializer extends AbstractSecurityWebApplicationInitializer {
+
+    /**
+     * Opens the per-request unit of work before Spring Security runs, so that
+     * authentication and the IP filter share it with the rest of the request.
+     */
+    @Override
+    protected void beforeSpringSecurityFilterChain ( final ServletContext servletContext ) {
+        insertFilters( servletContext, new UnitOfWorkFilter() );
+    }
 }
@@ -13,9 +13,9 @@ import org.springframework.stereotype.Component;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
 import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
-import edu.ncsu.csc.itrust2.models.persistent.LoginAttempt;
-import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+import edu.ncsu.csc.itrust2.utils.LoginThrottle;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
 
 /**
  * Listens for AuthenticationEvents to Log them and to clear FaieldAttempts on
@@ -42,8 +42,8 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
             // bypassed the lockout page via a direct API call).
             final String addr = det.getRemoteAddress();
             if ( !LoginLockout.isIPLocked( addr ) && !LoginBan.isIPBanned( addr ) ) {
-                LoginAttempt.clearIP( addr );
-                LoginAttempt.clearUser( User.getByName( details.getUsername() ) );
+                LoginThrottle.clearIP( addr );
+                LoginThrottle.clearUser( details.getUsername() );
                 LoggerUtil.log( TransactionType.LOGIN_SUCCESS, details.getUsername() );
             }
 
@@ -51,6 +51,10 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
 
         if ( event instanceof AbstractAuthenticationFailureEvent ) {
             final AbstractAuthenticationFailureEvent authEvent = (AbstractAuthenticationFailureEvent) event;
+            // Turned away before the password was checked
+            if ( authEvent.getException() instanceof PasswordHasher.BusyException ) {
+                return;
+            }
             final Authentication authentication = authEvent.getAuthentication();
             LoggerUtil.log( TransactionType.LOGIN_FAILURE, authentication.getPrincipal().toString() );
         }
@@ -0,0 +1,55 @@
+package edu.ncsu.csc.itrust2.config;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.web.filter.GenericFilterBean;
+
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+
+/**
+ * Http Filter that wraps each request in a single unit of work, so that every
+ * DomainObject read and write made while handling it shares one Hibernate
+ * Session and Transaction. The Transaction is committed once the request has
+ * been handled, or rolled back if handling it threw. The Session is only
+ * opened once the request first reads or writes a DomainObject, and requests
+ * for static resources are passed straight through, so neither takes a
+ * connection from the pool.
+ *
+ * Registered ahead of the Spring Security filter chain so the IP, login and
+ * lockout checks it performs are covered too.
+ */
+public class UnitOfWorkFilter extends GenericFilterBean {
+
+    /** Path under which static resources are served */
+    private static final String RESOURCES = "/resources/";
+
+    @Override
+    public void doFilter ( final ServletRequest request, final ServletResponse response, final FilterChain chain )
+            throws IOException, ServletException {
+        if ( request instanceof HttpServletRequest
+                && ( (HttpServletRequest) request ).getServletPath().startsWith( RESOURCES ) ) {
+            chain.doFilter( request, response );
+            return;
+        }
+        // Nested dispatches (errors, forwards) join the outer unit of work
+        if ( !HibernateUtil.beginUnitOfWork() ) {
+            chain.doFilter( request, response );
+            return;
+        }
+
+        boolean commit = false;
+        try {
+            chain.doFilter( request, response );
+            commit = true;
+        }
+        finally {
+            HibernateUtil.endUnitOfWork( commit );
+        }
+    }
+}
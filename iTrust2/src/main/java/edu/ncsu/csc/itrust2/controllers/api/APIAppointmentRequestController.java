@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.forms.patient.AppointmentRequestForm;
@@ -38,13 +39,27 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APIAppointmentRequestController extends APIController {
 
     /**
-     * Retrieves a list of all AppointmentRequests in the database
+     * Retrieves a list of all AppointmentRequests in the database. If any of
+     * the paging parameters are provided, only a single page of
+     * AppointmentRequests is returned.
      *
-     * @return list of appointment requests
+     * @param page
+     *            Zero-based number of the page to retrieve (optional)
+     * @param after
+     *            Continuation token from the previous page (optional)
+     * @param size
+     *            Number of records per page (optional)
+     * @return list of appointment requests, or page of appointment requests if
+     *         requested
      */
     @GetMapping ( BASE_PATH + "/appointmentrequests" )
-    public List<AppointmentRequest> getAppointmentRequests () {
-        return AppointmentRequest.getAppointmentRequests();
+    public ResponseEntity getAppointmentRequests ( @RequestParam ( value = "page", required = false ) final Integer page,
+            @RequestParam ( value = "after", required = false ) final String after,
+            @RequestParam ( value = "size", required = false ) final Integer size ) {
+        if ( isPaged( page, after, size ) ) {
+            return pageResponse( () -> AppointmentRequest.getAppointmentRequests( page, after, size ) );
+        }
+        return new ResponseEntity( AppointmentRequest.getAppointmentRequests(), HttpStatus.OK );
     }
 
     /**
@@ -1,7 +1,17 @@
 package edu.ncsu.csc.itrust2.controllers.api;
 
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
 import com.google.gson.Gson;
 
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
+
 /**
  * Base class for all of the API controllers for manipulating DomainObjects. Add
  * in any fields or functionality that ought to be shared throughout.
@@ -99,6 +109,58 @@ public abstract class APIController {
         return responseMessage( "success", message );
     }
 
+    /**
+     * Checks whether the client asked a list endpoint for a single page of
+     * records, rather than the whole list, by providing any of the `page`,
+     * `after`, or `size` request parameters.
+     *
+     * @param page
+     *            Zero-based number of the page requested, or null
+     * @param after
+     *            Continuation token of the previous page, or null
+     * @param size
+     *            Number of records per page requested, or null
+     * @return True if a page was requested
+     */
+    static final protected boolean isPaged ( final Integer page, final String after, final Integer size ) {
+        return null != page || null != after || null != size;
+    }
+
+    /**
+     * Retrieves a page of records and wraps it up as a response. If the paging
+     * parameters the client provided are invalid, a BAD_REQUEST response is
+     * sent instead.
+     *
+     * @param query
+     *            Retrieves the page of records
+     * @return The resulting response
+     */
+    static final protected ResponseEntity<Object> pageResponse ( final Supplier<Page< ? >> query ) {
+        try {
+            return new ResponseEntity<Object>( query.get(), HttpStatus.OK );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity<Object>( errorResponse( "Invalid page requested: " + e.getMessage() ),
+                    HttpStatus.BAD_REQUEST );
+        }
+    }
+
+    /**
+     * Creates the response sent when a password could not be hashed because
+     * too many are waiting already: SERVICE_UNAVAILABLE, telling the client
+     * when to try again.
+     *
+     * @param e
+     *            The reason the password was not hashed
+     * @return The resulting response
+     */
+    @ExceptionHandler ( PasswordHasher.BusyException.class )
+    protected ResponseEntity<Object> busyResponse ( final PasswordHasher.BusyException e ) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set( HttpHeaders.RETRY_AFTER, String.valueOf( PasswordHasher.RETRY_AFTER_SECONDS ) );
+        return new ResponseEntity<Object>( errorResponse( e.getMessage() ), headers, HttpStatus.SERVICE_UNAVAILABLE );
+    }
+
     /**
      * Small class used for creating simple success/error messages to return via
      * the REST API. Contains a status of the action and an message.
@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.forms.personnel.LabProcedureForm;
@@ -36,28 +37,45 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APILabProcedureController extends APIController {
 
     /**
-     * Retrieves a list of all LabProcedures in the database
+     * Retrieves a list of all LabProcedures in the database. If any of the
+     * paging parameters are provided, only a single page of LabProcedures is
+     * returned.
      *
-     * @return list of lab procedures
+     * @param page
+     *            Zero-based number of the page to retrieve (optional)
+     * @param after
+     *            Continuation token from the previous page (optional)
+     * @param size
+     *            Number of records per page (optional)
+     * @return list of lab procedures, or page of lab procedures if requested
      */
     @PreAuthorize ( "hasRole('ROLE_HCP') or hasRole('ROLE_LABTECH')" )
     @GetMapping ( BASE_PATH + "/labprocedures" )
-    public ResponseEntity getLabProcedures () {
+    public ResponseEntity getLabProcedures ( @RequestParam ( value = "page", required = false ) final Integer page,
+            @RequestParam ( value = "after", required = false ) final String after,
+            @RequestParam ( value = "size", required = false ) final Integer size ) {
+        final boolean paged = isPaged( page, after, size );
         final List<LabProcedure> procs;
         final TransactionType logCode;
         final boolean isHCP = SecurityContextHolder.getContext().getAuthentication().getAuthorities()
                 .contains( new SimpleGrantedAuthority( "ROLE_HCP" ) );
         if ( isHCP ) {
             logCode = TransactionType.HCP_VIEW_PROCS;
-            procs = LabProcedure.getLabProcedures();
             LoggerUtil.log( logCode, LoggerUtil.currentUser(), null,
                     "HCP " + LoggerUtil.currentUser() + " Views Lab Procedures" );
+            if ( paged ) {
+                return pageResponse( () -> LabProcedure.getLabProcedures( page, after, size ) );
+            }
+            procs = LabProcedure.getLabProcedures();
         }
         else {
             logCode = TransactionType.LABTECH_VIEW_PROCS;
-            procs = LabProcedure.getForLabtech( LoggerUtil.currentUser() );
             LoggerUtil.log( logCode, LoggerUtil.currentUser(), null,
                     "LabTech " + LoggerUtil.currentUser() + " Views Their Lab Procedures" );
+            if ( paged ) {
+                return pageResponse( () -> LabProcedure.getForLabtech( LoggerUtil.currentUser(), page, after, size ) );
+            }
+            procs = LabProcedure.getForLabtech( LoggerUtil.currentUser() );
         }
         return new ResponseEntity( procs, HttpStatus.OK );
     }
@@ -1,17 +1,35 @@
 package edu.ncsu.csc.itrust2.controllers.api;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryRequestBody;
@@ -19,7 +37,10 @@ import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTableRow;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.utils.LogExport;
+import edu.ncsu.csc.itrust2.utils.LogSearch;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -37,7 +58,10 @@ public class APILogEntryController extends APIController {
 
     /**
      * Handles GET requests for the current user's log entries when searching by
-     * date and using a page system.
+     * date and using a page system. Entries are returned newest first; the
+     * filtering (to the events patients may see, for patients), sorting and
+     * paging are all done by the database, and the total number of matching
+     * entries is returned in the `X-Total-Count` header.
      *
      * @param body
      *            the request body of the GET request
@@ -47,102 +71,287 @@ public class APILogEntryController extends APIController {
     public ResponseEntity getEntryByDateRange ( @RequestBody final LogEntryRequestBody body ) {
         // If no dates are specified, get all entries, otherwise use the date
         // range
-        List<LogEntry> entries = null;
         final DateFormat df = new SimpleDateFormat( "MM/dd/yyyy" );
         df.setLenient( false );
+        Date start = null;
+        Date end = null;
         try {
             if ( body.getStartDate().equals( "" ) || body.getEndDate().equals( "" ) ) {
                 throw new ParseException( "Date", 1 );
             }
 
-            Date start = null;
-            Date end = null;
-
             start = df.parse( body.getStartDate() );
             end = df.parse( body.getEndDate() );
 
             if ( start.after( end ) ) {
                 return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
             }
-            entries = LogEntry.getByDateRange( start, end );
         }
         catch ( final ParseException ex ) {
-            entries = LogEntry.getAllForUser( LoggerUtil.currentUser() );
+            start = null;
+            end = null;
         }
 
-        // If the entries array is null give an error response
-        if ( entries == null ) {
-            return new ResponseEntity( errorResponse( "Error retrieving Log Entries" ),
-                    HttpStatus.INTERNAL_SERVER_ERROR );
+        // Use only log entries that are viewable by the user
+        final String current = LoggerUtil.currentUser();
+        final boolean patient = Role.ROLE_PATIENT == User.getRoles( Collections.singleton( current ) ).get( current );
+
+        final long total;
+        final Page<LogEntry> page;
+        try {
+            total = LogEntry.countForUser( current, start, end, patient );
+            page = LogEntry.getPageForUser( current, start, end, patient, body.getPage() - 1,
+                    body.getPageLength() );
         }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+        final int numPages = (int) Math.max( 1, ( total + body.getPageLength() - 1 ) / body.getPageLength() );
 
-        // Use only log entries that are viewable by the user
-        List<LogEntry> visible;
-        final User user = User.getByName( LoggerUtil.currentUser() );
-        if ( user.getRole() == Role.ROLE_PATIENT ) {
-            visible = new ArrayList<LogEntry>();
-
-            for ( int i = 0; i < entries.size(); i++ ) {
-                final LogEntry le = entries.get( i );
-                if ( le.getLogCode().isPatientViewable() ) {
-                    visible.add( entries.get( i ) );
-                }
-            }
+        final List<LogEntryTableRow> table = toRows( page.getItems(), current, patient );
+        table.forEach( row -> row.setNumPages( numPages ) );
+
+        // Create a log entry as long as the user is on the first page
+        if ( body.page == 1 ) {
+            LoggerUtil.log( TransactionType.VIEW_USER_LOG, current );
+        }
+        return ResponseEntity.ok().header( "X-Total-Count", String.valueOf( total ) ).body( table );
+    }
+
+    /**
+     * Handles GET requests for the current user's most recent log entries, for
+     * the landing pages. Patients see only the events patients may see.
+     *
+     * @param top
+     *            Number of entries to return (default 10)
+     * @return ResponseEntity with an error or list of LogEntries, newest first
+     */
+    @GetMapping ( BASE_PATH + "/logentries/recent" )
+    public ResponseEntity getRecentEntries ( @RequestParam ( value = "top", required = false ) final Integer top ) {
+        final String current = LoggerUtil.currentUser();
+        final boolean patient = Role.ROLE_PATIENT == User.getRoles( Collections.singleton( current ) ).get( current );
+        try {
+            final List<LogEntry> recent = LogEntry.getTopForUser( current, null == top ? 10 : top, patient );
+            return new ResponseEntity( toRows( recent, current, patient ), HttpStatus.OK );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+    }
+
+    /**
+     * Handles GET requests to search the whole log, for admins. Entries
+     * containing every word of the search in their message, users or type are
+     * found through the {@link LogSearch} index and returned newest first, a
+     * page at a time, with the total number found in the `X-Total-Count`
+     * header.
+     *
+     * @param query
+     *            The words to search for
+     * @param start
+     *            First day to search, as MM/dd/yyyy (default the start of the
+     *            log)
+     * @param end
+     *            Last day to search, as MM/dd/yyyy (default today)
+     * @param page
+     *            One-based number of the page (default 1)
+     * @param pageLength
+     *            Number of entries per page (default 10)
+     * @return ResponseEntity with an error or list of LogEntries
+     */
+    @GetMapping ( BASE_PATH + "/logentries/search" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity search ( @RequestParam ( "q" ) final String query,
+            @RequestParam ( value = "start", required = false ) final String start,
+            @RequestParam ( value = "end", required = false ) final String end,
+            @RequestParam ( value = "page", required = false, defaultValue = "1" ) final int page,
+            @RequestParam ( value = "pageLength", required = false, defaultValue = "10" ) final int pageLength ) {
+        final DateFormat df = new SimpleDateFormat( "MM/dd/yyyy" );
+        df.setLenient( false );
+        final Calendar from = Calendar.getInstance();
+        final Calendar to = Calendar.getInstance();
+        try {
+            from.setTime( null == start ? new Date( 0 ) : df.parse( start ) );
+            to.setTime( null == end ? df.parse( df.format( new Date() ) ) : df.parse( end ) );
+            to.add( Calendar.DAY_OF_MONTH, 1 );
+        }
+        catch ( final ParseException e ) {
+            return new ResponseEntity( errorResponse( "Dates must be given as MM/dd/yyyy" ), HttpStatus.BAD_REQUEST );
+        }
+        if ( !from.before( to ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+        if ( page < 1 || pageLength < 1 || pageLength > 1000 ) {
+            return new ResponseEntity( errorResponse( "Invalid page" ), HttpStatus.BAD_REQUEST );
+        }
+
+        final LogSearch.Hits hits;
+        try {
+            hits = LogSearch.search( query, from, to, ( page - 1 ) * pageLength, pageLength );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
         }
-        else {
-            visible = entries;
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+            return new ResponseEntity( errorResponse( "Could not search the log" ), HttpStatus.INTERNAL_SERVER_ERROR );
         }
+        final int numPages = (int) Math.max( 1, ( hits.getTotal() + pageLength - 1 ) / pageLength );
+
+        final String current = LoggerUtil.currentUser();
+        final List<LogEntryTableRow> table = toRows( hits.getEntries(), current, false );
+        table.forEach( row -> row.setNumPages( numPages ) );
+        if ( 1 == page ) {
+            LoggerUtil.log( TransactionType.VIEW_USER_LOG, current,
+                    "Searched the log for " + ( query.length() > 200 ? query.substring( 0, 200 ) : query ) );
+        }
+        return ResponseEntity.ok().header( "X-Total-Count", String.valueOf( hits.getTotal() ) ).body( table );
+    }
 
-        final int numPages = 1 + visible.size() / body.getPageLength();
+    /**
+     * Handles GET requests to export the log for a range of days, for admins.
+     * The entries are written straight to the response as they are read,
+     * oldest first, so the response is sent in chunks and an export of any
+     * size takes the same memory on the server.
+     *
+     * @param start
+     *            First day to export, as MM/dd/yyyy
+     * @param end
+     *            Last day to export, as MM/dd/yyyy
+     * @param format
+     *            `ndjson` (default) or `csv`
+     * @param gzip
+     *            Whether to send the export as a gzipped file
+     * @param response
+     *            The response to write the export to
+     * @return ResponseEntity with an error, or null once the export has been
+     *         written
+     * @throws IOException
+     *             If the export could not be sent
+     */
+    @GetMapping ( BASE_PATH + "/logentries/export" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity export ( @RequestParam ( "start" ) final String start,
+            @RequestParam ( "end" ) final String end,
+            @RequestParam ( value = "format", required = false, defaultValue = "ndjson" ) final String format,
+            @RequestParam ( value = "gzip", required = false, defaultValue = "false" ) final boolean gzip,
+            final HttpServletResponse response ) throws IOException {
+        final DateFormat df = new SimpleDateFormat( "MM/dd/yyyy" );
+        df.setLenient( false );
+        final Calendar from = Calendar.getInstance();
+        final Calendar to = Calendar.getInstance();
+        try {
+            from.setTime( df.parse( start ) );
+            to.setTime( df.parse( end ) );
+        }
+        catch ( final ParseException e ) {
+            return new ResponseEntity( errorResponse( "Dates must be given as MM/dd/yyyy" ), HttpStatus.BAD_REQUEST );
+        }
+        if ( from.after( to ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+        final DateFormat fileDate = new SimpleDateFormat( "yyyyMMdd" );
+        final String name = "log-" + fileDate.format( from.getTime() ) + "-" + fileDate.format( to.getTime() );
+        to.add( Calendar.DAY_OF_MONTH, 1 ); // to make inclusive
+        final LogExport.Format type;
+        try {
+            type = LogExport.Format.valueOf( format.toUpperCase( Locale.ROOT ) );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( "Format must be ndjson or csv" ), HttpStatus.BAD_REQUEST );
+        }
 
-        Collections.reverse( visible );
+        final String current = LoggerUtil.currentUser();
+        LoggerUtil.log( TransactionType.VIEW_USER_LOG, current, "Exported the log from " + start + " to " + end );
 
-        // Find only the entries that should show up on the page given the page
-        // and page length
-        final List<LogEntry> page = new ArrayList<LogEntry>();
-        for ( int i = 0; i < body.getPageLength(); i++ ) {
-            final int idx = ( body.getPage() - 1 ) * body.getPageLength() + i;
-            if ( idx >= 0 && visible.size() > idx ) {
-                page.add( visible.get( idx ) );
+        response.setContentType( gzip ? "application/gzip" : type.getContentType() + ";charset=UTF-8" );
+        response.setHeader( "Content-Disposition",
+                "attachment; filename=\"" + name + "." + type.getExtension() + ( gzip ? ".gz" : "" ) + "\"" );
+        OutputStream body = response.getOutputStream();
+        if ( gzip ) {
+            body = new GZIPOutputStream( body, 65536 );
+        }
+        try ( final Writer out = new BufferedWriter( new OutputStreamWriter( body, StandardCharsets.UTF_8 ),
+                65536 ) ) {
+            LogExport.export( from, to, type, out );
+        }
+        catch ( final SQLException e ) {
+            // The response has been started, so all that can be done is to
+            // cut it short
+            e.printStackTrace();
+            throw new IOException( "Log export failed", e );
+        }
+        return null;
+    }
+
+    /**
+     * Turns log entries into proper table rows for the application to display.
+     * For patients, the role of the other user on each entry is filled in
+     * from the role recorded with the entry. Only entries with no role
+     * recorded (archived ones, and any not yet backfilled) need a lookup, and
+     * those are all looked up at once.
+     *
+     * @param entries
+     *            The entries to display
+     * @param current
+     *            The user viewing them
+     * @param patient
+     *            Whether that user is a patient
+     * @return A row for each entry
+     */
+    private static List<LogEntryTableRow> toRows ( final List<LogEntry> entries, final String current,
+            final boolean patient ) {
+        Map<String, Role> roles = Collections.emptyMap();
+        if ( patient ) {
+            final Set<String> unknown = new HashSet<String>();
+            for ( final LogEntry le : entries ) {
+                final String other = counterpart( le, current );
+                if ( null != other && null == le.getRoleOf( other ) ) {
+                    unknown.add( other );
+                }
+            }
+            if ( !unknown.isEmpty() ) {
+                roles = User.getRoles( unknown );
             }
         }
 
-        // Turn these log entries into proper table rows for the application to
-        // display
         final List<LogEntryTableRow> table = new ArrayList<LogEntryTableRow>();
-        for ( int i = 0; i < page.size(); i++ ) {
-            final LogEntry le = page.get( i );
+        for ( final LogEntry le : entries ) {
             final LogEntryTableRow row = new LogEntryTableRow();
 
             row.setPrimary( le.getPrimaryUser() );
             row.setSecondary( le.getSecondaryUser() );
             row.setDateTime( le.getTime().getTime().toString() );
             row.setTransactionType( le.getLogCode().getDescription() );
-            row.setNumPages( numPages );
 
-            if ( user.getRole() == Role.ROLE_PATIENT ) {
+            if ( patient ) {
                 row.setPatient( true );
 
-                if ( le.getPrimaryUser().equals( LoggerUtil.currentUser() ) ) {
-                    final User secondary = User.getByName( le.getSecondaryUser() );
-                    if ( secondary != null ) {
-                        row.setRole( secondary.getRole().toString() );
-                    }
-                }
-                else {
-                    final User primary = User.getByName( le.getPrimaryUser() );
-                    row.setRole( primary.getRole().toString() );
+                final String other = counterpart( le, current );
+                final Role recorded = le.getRoleOf( other );
+                final Role role = null != recorded ? recorded : roles.get( other );
+                if ( null != role ) {
+                    row.setRole( role.toString() );
                 }
             }
 
             table.add( row );
         }
+        return table;
+    }
 
-        // Create a log entry as long as the user is on the first page
-        if ( body.page == 1 ) {
-            LoggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser() );
-        }
-        return new ResponseEntity( table, HttpStatus.OK );
+    /**
+     * Finds the other user involved in a LogEntry
+     *
+     * @param le
+     *            The LogEntry
+     * @param user
+     *            The user viewing the entry
+     * @return The secondary user if the viewer is the primary user, otherwise
+     *         the primary user; may be null
+     */
+    private static String counterpart ( final LogEntry le, final String user ) {
+        return le.getPrimaryUser().equals( user ) ? le.getSecondaryUser() : le.getPrimaryUser();
     }
 
 }
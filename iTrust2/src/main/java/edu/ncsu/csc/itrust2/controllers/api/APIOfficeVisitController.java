@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.forms.hcp.OfficeVisitForm;
@@ -38,16 +39,29 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APIOfficeVisitController extends APIController {
 
     /**
-     * Retrieves a list of all OfficeVisits in the database
+     * Retrieves a list of all OfficeVisits in the database. If any of the
+     * paging parameters are provided, only a single page of OfficeVisits is
+     * returned.
      *
-     * @return list of office visits
+     * @param page
+     *            Zero-based number of the page to retrieve (optional)
+     * @param after
+     *            Continuation token from the previous page (optional)
+     * @param size
+     *            Number of records per page (optional)
+     * @return list of office visits, or page of office visits if requested
      * @deprecated This should be removed as it provides too much information to
      *             the outside world without authentication.
      */
     @Deprecated
     @GetMapping ( BASE_PATH + "/officevisits" )
-    public List<OfficeVisit> getOfficeVisits () {
-        return OfficeVisit.getOfficeVisits();
+    public ResponseEntity getOfficeVisits ( @RequestParam ( value = "page", required = false ) final Integer page,
+            @RequestParam ( value = "after", required = false ) final String after,
+            @RequestParam ( value = "size", required = false ) final Integer size ) {
+        if ( isPaged( page, after, size ) ) {
+            return pageResponse( () -> OfficeVisit.getOfficeVisits( page, after, size ) );
+        }
+        return new ResponseEntity( OfficeVisit.getOfficeVisits(), HttpStatus.OK );
     }
 
     /**
@@ -9,13 +9,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import edu.ncsu.csc.itrust2.config.CachedUserDetailsService;
 import edu.ncsu.csc.itrust2.forms.personnel.PasswordChangeForm;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.PasswordResetToken;
@@ -24,6 +24,7 @@ import edu.ncsu.csc.itrust2.models.persistent.Personnel;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.EmailUtil;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
 
 /**
  * REST Controller that provides the endpoints for password changing and
@@ -38,7 +39,7 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APIPasswordController extends APIController {
 
     /** Password encoder instance */
-    static PasswordEncoder pe = new BCryptPasswordEncoder();
+    static PasswordEncoder pe = PasswordHasher.getInstance();
 
     @Autowired
     Environment            environment;
@@ -62,6 +63,7 @@ public class APIPasswordController extends APIController {
             if ( form.validateChange( user ) ) {
                 user.setPassword( pe.encode( form.getNewPassword() ) );
                 user.save();
+                CachedUserDetailsService.invalidate( user.getUsername() );
                 LoggerUtil.log( TransactionType.PASSWORD_UPDATE_SUCCESS, user.getUsername(),
                         "Successfully changed password for user " + user.getUsername() );
 
@@ -87,6 +89,9 @@ public class APIPasswordController extends APIController {
                     "Could not change password for user " + user.getUsername() );
             return new ResponseEntity( errorResponse( "Failed to change password" ), HttpStatus.BAD_REQUEST );
         }
+        catch ( final PasswordHasher.BusyException e ) {
+            return busyResponse( e );
+        }
         catch ( final Exception e ) {
             LoggerUtil.log( TransactionType.PASSWORD_UPDATE_FAILURE, user.getUsername(),
                     "Could not change password for user " + user.getUsername() );
@@ -147,6 +152,9 @@ public class APIPasswordController extends APIController {
                     "Successfully changed password for user " + user.getUsername() );
             return new ResponseEntity( successResponse( "" ), HttpStatus.OK );
         }
+        catch ( final PasswordHasher.BusyException e ) {
+            return busyResponse( e );
+        }
         catch ( final Exception e ) {
             e.printStackTrace();
             LoggerUtil.log( TransactionType.PASSWORD_UPDATE_FAILURE, user.getUsername(),
@@ -179,6 +187,7 @@ public class APIPasswordController extends APIController {
             if ( form.validateReset( token ) ) {
                 user.setPassword( pe.encode( form.getNewPassword() ) );
                 user.save();
+                CachedUserDetailsService.invalidate( user.getUsername() );
                 token.delete();
 
                 LoggerUtil.log( TransactionType.PASSWORD_UPDATE_SUCCESS, user.getUsername(),
@@ -212,6 +221,9 @@ public class APIPasswordController extends APIController {
             return new ResponseEntity( errorResponse( "Could not change password for user with username "
                     + user.getUsername() + " because of " + e.getMessage() ), HttpStatus.BAD_REQUEST );
         }
+        catch ( final PasswordHasher.BusyException e ) {
+            return busyResponse( e );
+        }
         catch ( final Exception e ) {
             LoggerUtil.log( TransactionType.PASSWORD_UPDATE_FAILURE, user.getUsername(),
                     "Could not change password for user with username " + user.getUsername() );
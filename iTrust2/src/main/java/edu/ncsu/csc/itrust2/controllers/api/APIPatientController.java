@@ -13,11 +13,13 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.forms.hcp_patient.PatientForm;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
 import edu.ncsu.csc.itrust2.models.persistent.Patient;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
@@ -34,18 +36,44 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APIPatientController extends APIController {
 
     /**
-     * Retrieves and returns a list of all Patients stored in the system
+     * Retrieves and returns a list of all Patients stored in the system. If
+     * any of the paging parameters are provided, only a single page of
+     * Patients is returned.
      *
-     * @return list of patients
+     * @param page
+     *            Zero-based number of the page to retrieve (optional)
+     * @param after
+     *            Continuation token from the previous page (optional)
+     * @param size
+     *            Number of records per page (optional)
+     * @return list of patients, or page of patients if requested
      */
     @GetMapping ( BASE_PATH + "/patients" )
-    public List<Patient> getPatients () {
-        final List<Patient> patients = Patient.getPatients();
-        for ( final Patient p : patients ) {
-            p.setRepresentatives( null );
-            p.setRepresented( null );
+    public ResponseEntity getPatients ( @RequestParam ( value = "page", required = false ) final Integer page,
+            @RequestParam ( value = "after", required = false ) final String after,
+            @RequestParam ( value = "size", required = false ) final Integer size ) {
+        if ( isPaged( page, after, size ) ) {
+            return pageResponse( () -> {
+                final Page<Patient> patients = Patient.getPatients( page, after, size );
+                patients.getItems().forEach( APIPatientController::hideRepresentatives );
+                return patients;
+            } );
         }
-        return patients;
+        final List<Patient> patients = Patient.getPatients();
+        patients.forEach( APIPatientController::hideRepresentatives );
+        return new ResponseEntity( patients, HttpStatus.OK );
+    }
+
+    /**
+     * Clears out the representatives of a Patient being returned as part of a
+     * list, where they are not needed
+     *
+     * @param p
+     *            The Patient to clear the representatives of
+     */
+    private static void hideRepresentatives ( final Patient p ) {
+        p.setRepresentatives( null );
+        p.setRepresented( null );
     }
 
     /**
@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import edu.ncsu.csc.itrust2.config.CachedUserDetailsService;
 import edu.ncsu.csc.itrust2.forms.personnel.PersonnelForm;
 import edu.ncsu.csc.itrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.itrust2.models.enums.Role;
@@ -106,6 +107,7 @@ public class APIPersonnelController extends APIController {
         }
         try {
             personnel.save();
+            CachedUserDetailsService.invalidate( personnel.getUsername() );
             LoggerUtil.log( TransactionType.CREATE_DEMOGRAPHICS, self );
             return new ResponseEntity( personnel, HttpStatus.OK );
         }
@@ -143,6 +145,7 @@ public class APIPersonnelController extends APIController {
         dbPersonnel = personnel;
         try {
             dbPersonnel.save();
+            CachedUserDetailsService.invalidate( id );
             LoggerUtil.log( TransactionType.EDIT_DEMOGRAPHICS, LoggerUtil.currentUser() );
             return new ResponseEntity( personnel, HttpStatus.OK );
         }
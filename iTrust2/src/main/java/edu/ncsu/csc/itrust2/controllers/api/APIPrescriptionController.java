@@ -1,7 +1,5 @@
 package edu.ncsu.csc.itrust2.controllers.api;
 
-import java.util.List;
-
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,6 +11,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.forms.hcp.PrescriptionForm;
@@ -117,27 +116,44 @@ public class APIPrescriptionController extends APIController {
     }
 
     /**
-     * Returns a collection of all the prescriptions in the system.
+     * Returns a collection of all the prescriptions in the system. If any of
+     * the paging parameters are provided, only a single page of prescriptions
+     * is returned.
      *
-     * @return all saved prescriptions
+     * @param page
+     *            Zero-based number of the page to retrieve (optional)
+     * @param after
+     *            Continuation token from the previous page (optional)
+     * @param size
+     *            Number of records per page (optional)
+     * @return all saved prescriptions, or a page of them if requested
      */
     @PreAuthorize ( "hasAnyRole('ROLE_HCP', 'ROLE_PATIENT')" )
     @GetMapping ( BASE_PATH + "/prescriptions" )
-    public List<Prescription> getPrescriptions () {
+    public ResponseEntity getPrescriptions ( @RequestParam ( value = "page", required = false ) final Integer page,
+            @RequestParam ( value = "after", required = false ) final String after,
+            @RequestParam ( value = "size", required = false ) final Integer size ) {
+        final boolean paged = isPaged( page, after, size );
         final boolean isHCP = SecurityContextHolder.getContext().getAuthentication().getAuthorities()
                 .contains( new SimpleGrantedAuthority( "ROLE_HCP" ) );
         if ( isHCP ) {
             // Return all prescriptions in system
             LoggerUtil.log( TransactionType.PRESCRIPTION_VIEW, LoggerUtil.currentUser(),
                     "HCP viewed a list of all prescriptions" );
-            return Prescription.getPrescriptions();
+            if ( paged ) {
+                return pageResponse( () -> Prescription.getPrescriptions( page, after, size ) );
+            }
+            return new ResponseEntity( Prescription.getPrescriptions(), HttpStatus.OK );
         }
         else {
             // Issue #106
             // Return only prescriptions assigned to the patient
             LoggerUtil.log( TransactionType.PATIENT_PRESCRIPTION_VIEW, LoggerUtil.currentUser(),
                     "Patient viewed a list of their prescriptions" );
-            return Prescription.getForPatient( LoggerUtil.currentUser() );
+            if ( paged ) {
+                return pageResponse( () -> Prescription.getForPatient( LoggerUtil.currentUser(), page, after, size ) );
+            }
+            return new ResponseEntity( Prescription.getForPatient( LoggerUtil.currentUser() ), HttpStatus.OK );
         }
     }
 
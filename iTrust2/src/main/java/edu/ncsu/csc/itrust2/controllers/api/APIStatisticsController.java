@@ -0,0 +1,206 @@
+package edu.ncsu.csc.itrust2.controllers.api;
+
+import java.sql.SQLException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import edu.ncsu.csc.itrust2.controllers.api.comm.ActivityCount;
+import edu.ncsu.csc.itrust2.controllers.api.comm.HashingStatistics;
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.utils.LogRollups;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
+
+/**
+ * REST controller for statistics about activity in the system, for admins.
+ * Counts come from the hourly {@link LogRollups}, so they cost the same however
+ * many log entries there are. Also reports how busy password hashing is.
+ */
+@RestController
+@SuppressWarnings ( { "unchecked", "rawtypes" } )
+public class APIStatisticsController extends APIController {
+
+    /** Most hours or days a single series may have */
+    static final int MAX_BUCKETS = 10000;
+
+    /**
+     * Counts log entries by hour or by day
+     *
+     * @param types
+     *            Types of entry to count (default all)
+     * @param user
+     *            Primary user to count the entries of (default everyone)
+     * @param start
+     *            First day to count, as MM/dd/yyyy (default a week before the
+     *            end)
+     * @param end
+     *            Last day to count, as MM/dd/yyyy (default today)
+     * @param bucket
+     *            `hour` or `day` (default)
+     * @return ResponseEntity with an error or the count for each hour or day,
+     *         oldest first
+     */
+    @GetMapping ( BASE_PATH + "/statistics/series" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity getSeries (
+            @RequestParam ( value = "type", required = false ) final List<TransactionType> types,
+            @RequestParam ( value = "user", required = false ) final String user,
+            @RequestParam ( value = "start", required = false ) final String start,
+            @RequestParam ( value = "end", required = false ) final String end,
+            @RequestParam ( value = "bucket", required = false, defaultValue = "day" ) final String bucket ) {
+        final boolean daily = "day".equals( bucket );
+        if ( !daily && !"hour".equals( bucket ) ) {
+            return new ResponseEntity( errorResponse( "Bucket must be hour or day" ), HttpStatus.BAD_REQUEST );
+        }
+        final Calendar[] range;
+        try {
+            range = range( start, end );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+        final long span = range[1].getTimeInMillis() - range[0].getTimeInMillis();
+        if ( span / ( daily ? 86400000L : 3600000L ) > MAX_BUCKETS ) {
+            return new ResponseEntity( errorResponse( "Range has more than " + MAX_BUCKETS + " buckets" ),
+                    HttpStatus.BAD_REQUEST );
+        }
+
+        try {
+            final Map<Date, Long> series = LogRollups.series( set( types ), user, range[0], range[1], daily );
+            final DateFormat df = new SimpleDateFormat( "MM/dd/yyyy HH:mm" );
+            final List<ActivityCount> counts = new ArrayList<ActivityCount>();
+            series.forEach( ( time, count ) -> counts.add( new ActivityCount( df.format( time ), user, count ) ) );
+            return new ResponseEntity( counts, HttpStatus.OK );
+        }
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+            return new ResponseEntity( errorResponse( "Could not read activity statistics" ),
+                    HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+    }
+
+    /**
+     * Finds the users with the most log entries
+     *
+     * @param types
+     *            Types of entry to count (default all)
+     * @param role
+     *            Role of the users to count (default any)
+     * @param start
+     *            First day to count, as MM/dd/yyyy (default a week before the
+     *            end)
+     * @param end
+     *            Last day to count, as MM/dd/yyyy (default today)
+     * @param limit
+     *            Most users to return (default 10)
+     * @return ResponseEntity with an error or the count for each user, most
+     *         first
+     */
+    @GetMapping ( BASE_PATH + "/statistics/top" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity getTopUsers (
+            @RequestParam ( value = "type", required = false ) final List<TransactionType> types,
+            @RequestParam ( value = "role", required = false ) final Role role,
+            @RequestParam ( value = "start", required = false ) final String start,
+            @RequestParam ( value = "end", required = false ) final String end,
+            @RequestParam ( value = "limit", required = false, defaultValue = "10" ) final int limit ) {
+        if ( limit < 1 || limit > 1000 ) {
+            return new ResponseEntity( errorResponse( "Limit must be between 1 and 1000" ), HttpStatus.BAD_REQUEST );
+        }
+        final Calendar[] range;
+        try {
+            range = range( start, end );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+
+        try {
+            final Map<String, Long> top = LogRollups.top( set( types ), role, range[0], range[1], limit );
+            final List<ActivityCount> counts = new ArrayList<ActivityCount>();
+            top.forEach( ( user, count ) -> counts.add( new ActivityCount( null, user, count ) ) );
+            return new ResponseEntity( counts, HttpStatus.OK );
+        }
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+            return new ResponseEntity( errorResponse( "Could not read activity statistics" ),
+                    HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+    }
+
+    /**
+     * Reports how busy password hashing is: the depth of its queue, how many
+     * requests it has turned away, and how long hashes take
+     *
+     * @return ResponseEntity with the statistics
+     */
+    @GetMapping ( BASE_PATH + "/statistics/hashing" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity getHashing () {
+        return new ResponseEntity( new HashingStatistics( PasswordHasher.getInstance() ), HttpStatus.OK );
+    }
+
+    /**
+     * Turns the days requested into the start of the first and the end of the
+     * last
+     *
+     * @param start
+     *            First day, as MM/dd/yyyy, or null for a week before the last
+     * @param end
+     *            Last day, as MM/dd/yyyy, or null for today
+     * @return The start and (exclusive) end of the range
+     * @throws IllegalArgumentException
+     *             If a date is invalid or the start is after the end
+     */
+    private static Calendar[] range ( final String start, final String end ) {
+        final DateFormat df = new SimpleDateFormat( "MM/dd/yyyy" );
+        df.setLenient( false );
+        final Calendar to = Calendar.getInstance();
+        final Calendar from = Calendar.getInstance();
+        try {
+            to.setTime( null == end ? df.parse( df.format( new Date() ) ) : df.parse( end ) );
+            to.add( Calendar.DAY_OF_MONTH, 1 );
+            if ( null == start ) {
+                from.setTime( to.getTime() );
+                from.add( Calendar.DAY_OF_MONTH, -7 );
+            }
+            else {
+                from.setTime( df.parse( start ) );
+            }
+        }
+        catch ( final ParseException e ) {
+            throw new IllegalArgumentException( "Dates must be given as MM/dd/yyyy" );
+        }
+        if ( !from.before( to ) ) {
+            throw new IllegalArgumentException( "Start Date is after End Date" );
+        }
+        return new Calendar[] { from, to };
+    }
+
+    /**
+     * Turns the types of entry requested into the set to count
+     *
+     * @param types
+     *            The types requested, or null
+     * @return The set of types, or null to count every type
+     */
+    private static Set<TransactionType> set ( final List<TransactionType> types ) {
+        return null == types || types.isEmpty() ? null : EnumSet.copyOf( types );
+    }
+
+}
@@ -1,7 +1,5 @@
 package edu.ncsu.csc.itrust2.controllers.api;
 
-import java.util.List;
-
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -15,8 +13,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import edu.ncsu.csc.itrust2.config.CachedUserDetailsService;
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
@@ -54,14 +54,26 @@ public class APIUserController extends APIController {
     /**
      * Retrieves and returns a list of all Users in the system, regardless of
      * their classification (including all Patients, all Personnel, and all
-     * users who do not have a further status specified)
+     * users who do not have a further status specified). If any of the paging
+     * parameters are provided, only a single page of Users is returned.
      *
-     * @return list of users
+     * @param page
+     *            Zero-based number of the page to retrieve (optional)
+     * @param after
+     *            Continuation token from the previous page (optional)
+     * @param size
+     *            Number of records per page (optional)
+     * @return list of users, or page of users if requested
      */
     @GetMapping ( BASE_PATH + "/users" )
-    public List<User> getUsers () {
+    public ResponseEntity getUsers ( @RequestParam ( value = "page", required = false ) final Integer page,
+            @RequestParam ( value = "after", required = false ) final String after,
+            @RequestParam ( value = "size", required = false ) final Integer size ) {
         LoggerUtil.log( TransactionType.VIEW_USERS, LoggerUtil.currentUser() );
-        return User.getUsers();
+        if ( isPaged( page, after, size ) ) {
+            return pageResponse( () -> User.getUsers( page, after, size ) );
+        }
+        return new ResponseEntity( User.getUsers(), HttpStatus.OK );
     }
 
     /**
@@ -102,6 +114,7 @@ public class APIUserController extends APIController {
         }
         try {
             user.save();
+            CachedUserDetailsService.invalidate( user.getUsername() );
             LoggerUtil.log( TransactionType.CREATE_USER, LoggerUtil.currentUser(), user.getUsername(), null );
             return new ResponseEntity( user, HttpStatus.OK );
         }
@@ -138,6 +151,7 @@ public class APIUserController extends APIController {
         }
         try {
             user.save(); /* Will overwrite existing user */
+            CachedUserDetailsService.invalidate( id );
             LoggerUtil.log( TransactionType.UPDATE_USER, LoggerUtil.currentUser() );
             return new ResponseEntity( user, HttpStatus.OK );
         }
@@ -166,12 +180,14 @@ public class APIUserController extends APIController {
                 return new ResponseEntity( errorResponse( "No user found for id " + id ), HttpStatus.NOT_FOUND );
             }
             user.delete();
+            CachedUserDetailsService.invalidate( id );
             LoggerUtil.log( TransactionType.DELETE_USER, LoggerUtil.currentUser() );
             return new ResponseEntity( id, HttpStatus.OK );
         }
         catch ( final Exception e ) {
             try {
                 user.delete();
+                CachedUserDetailsService.invalidate( id );
                 return new ResponseEntity( id, HttpStatus.OK );
             }
             catch ( final Exception f ) {
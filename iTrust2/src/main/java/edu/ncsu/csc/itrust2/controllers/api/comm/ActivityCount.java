@@ -0,0 +1,97 @@
+package edu.ncsu.csc.itrust2.controllers.api.comm;
+
+/**
+ * A count of log entries, either for one hour or day of an activity series or
+ * for one user of a list of the most active users.
+ */
+public class ActivityCount {
+
+    /** Start of the hour or day counted, as MM/dd/yyyy HH:mm */
+    private String bucket;
+    /** User counted */
+    private String user;
+    /** Number of log entries */
+    private long   count;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public ActivityCount () {
+        // Empty Constructor
+    }
+
+    /**
+     * Creates a count
+     *
+     * @param bucket
+     *            Start of the hour or day counted, or null
+     * @param user
+     *            User counted, or null
+     * @param count
+     *            Number of log entries
+     */
+    public ActivityCount ( final String bucket, final String user, final long count ) {
+        setBucket( bucket );
+        setUser( user );
+        setCount( count );
+    }
+
+    /**
+     * Returns the start of the hour or day counted
+     *
+     * @return start of the bucket
+     */
+    public String getBucket () {
+        return bucket;
+    }
+
+    /**
+     * Sets the start of the hour or day counted
+     *
+     * @param bucket
+     *            start of the bucket
+     */
+    public void setBucket ( final String bucket ) {
+        this.bucket = bucket;
+    }
+
+    /**
+     * Returns the user counted
+     *
+     * @return the user
+     */
+    public String getUser () {
+        return user;
+    }
+
+    /**
+     * Sets the user counted
+     *
+     * @param user
+     *            the user
+     */
+    public void setUser ( final String user ) {
+        this.user = user;
+    }
+
+    /**
+     * Returns the number of log entries
+     *
+     * @return the count
+     */
+    public long getCount () {
+        return count;
+    }
+
+    /**
+     * Sets the number of log entries
+     *
+     * @param count
+     *            the count
+     */
+    public void setCount ( final long count ) {
+        this.count = count;
+    }
+
+}
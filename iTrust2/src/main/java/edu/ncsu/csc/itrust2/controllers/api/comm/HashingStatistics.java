@@ -0,0 +1,205 @@
+package edu.ncsu.csc.itrust2.controllers.api.comm;
+
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
+
+/**
+ * How busy password hashing is: the depth of its queue and how long hashes
+ * take. See {@link PasswordHasher}.
+ */
+public class HashingStatistics {
+
+    /** Number of hashing threads */
+    private int    threads;
+    /** Passwords being hashed right now */
+    private int    active;
+    /** Passwords waiting for a thread right now */
+    private int    queued;
+    /** Passwords hashed or checked */
+    private long   hashes;
+    /** Requests to hash turned away as the queue was full */
+    private long   rejected;
+    /** Average time spent on one hash, in milliseconds */
+    private double averageHashMillis;
+    /** Longest time spent on one hash, in milliseconds */
+    private double maxHashMillis;
+    /** Average time a request waited for its hash, in milliseconds */
+    private double averageWaitMillis;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public HashingStatistics () {
+        // Empty Constructor
+    }
+
+    /**
+     * Takes the statistics of a hasher as they are now
+     *
+     * @param hasher
+     *            The hasher
+     */
+    public HashingStatistics ( final PasswordHasher hasher ) {
+        setThreads( hasher.getThreads() );
+        setActive( hasher.getActive() );
+        setQueued( hasher.getQueued() );
+        setHashes( hasher.getHashes() );
+        setRejected( hasher.getRejected() );
+        setAverageHashMillis( hasher.getAverageHashMillis() );
+        setMaxHashMillis( hasher.getMaxHashMillis() );
+        setAverageWaitMillis( hasher.getAverageWaitMillis() );
+    }
+
+    /**
+     * Returns the number of hashing threads
+     *
+     * @return threads
+     */
+    public int getThreads () {
+        return threads;
+    }
+
+    /**
+     * Sets the number of hashing threads
+     *
+     * @param threads
+     *            threads
+     */
+    public void setThreads ( final int threads ) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of passwords being hashed
+     *
+     * @return active
+     */
+    public int getActive () {
+        return active;
+    }
+
+    /**
+     * Sets the number of passwords being hashed
+     *
+     * @param active
+     *            active
+     */
+    public void setActive ( final int active ) {
+        this.active = active;
+    }
+
+    /**
+     * Returns the number of passwords waiting for a thread
+     *
+     * @return queued
+     */
+    public int getQueued () {
+        return queued;
+    }
+
+    /**
+     * Sets the number of passwords waiting for a thread
+     *
+     * @param queued
+     *            queued
+     */
+    public void setQueued ( final int queued ) {
+        this.queued = queued;
+    }
+
+    /**
+     * Returns the number of passwords hashed or checked
+     *
+     * @return hashes
+     */
+    public long getHashes () {
+        return hashes;
+    }
+
+    /**
+     * Sets the number of passwords hashed or checked
+     *
+     * @param hashes
+     *            hashes
+     */
+    public void setHashes ( final long hashes ) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * Returns the number of requests turned away
+     *
+     * @return rejected
+     */
+    public long getRejected () {
+        return rejected;
+    }
+
+    /**
+     * Sets the number of requests turned away
+     *
+     * @param rejected
+     *            rejected
+     */
+    public void setRejected ( final long rejected ) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * Returns the average time spent on one hash, in milliseconds
+     *
+     * @return average
+     */
+    public double getAverageHashMillis () {
+        return averageHashMillis;
+    }
+
+    /**
+     * Sets the average time spent on one hash, in milliseconds
+     *
+     * @param averageHashMillis
+     *            average
+     */
+    public void setAverageHashMillis ( final double averageHashMillis ) {
+        this.averageHashMillis = averageHashMillis;
+    }
+
+    /**
+     * Returns the longest time spent on one hash, in milliseconds
+     *
+     * @return longest
+     */
+    public double getMaxHashMillis () {
+        return maxHashMillis;
+    }
+
+    /**
+     * Sets the longest time spent on one hash, in milliseconds
+     *
+     * @param maxHashMillis
+     *            longest
+     */
+    public void setMaxHashMillis ( final double maxHashMillis ) {
+        this.maxHashMillis = maxHashMillis;
+    }
+
+    /**
+     * Returns the average time a request waited for its hash, in milliseconds
+     *
+     * @return average
+     */
+    public double getAverageWaitMillis () {
+        return averageWaitMillis;
+    }
+
+    /**
+     * Sets the average time a request waited for its hash, in milliseconds
+     *
+     * @param averageWaitMillis
+     *            average
+     */
+    public void setAverageWaitMillis ( final double averageWaitMillis ) {
+        this.averageWaitMillis = averageWaitMillis;
+    }
+
+}
@@ -0,0 +1,88 @@
+package edu.ncsu.csc.itrust2.migrations;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Adds the indexes behind the most frequent log, visit, appointment, lab,
+ * prescription, food diary and login lookups. Written in Java rather than SQL
+ * because databases baselined from an existing schema may already have some
+ * of these indexes (created by Hibernate's schema update), and MySQL has no
+ * `CREATE INDEX IF NOT EXISTS`.
+ */
+public class AddHotPathIndexes implements Migration {
+
+    /** Table, index name and columns of each index to add */
+    private static final String[][] INDEXES = {
+            { "AppointmentRequests", "idx_appointmentrequests_hcp_status", "hcp_id, status" },
+            { "AppointmentRequests", "idx_appointmentrequests_patient_status", "patient_id, status" },
+            { "FoodDiaryEntry", "idx_fooddiaryentry_patient_date", "patient, date" },
+            { "LabProcedures", "idx_labprocedures_labtech_status", "labtech, status" },
+            { "LabProcedures", "idx_labprocedures_visit", "visit" },
+            { "LogEntries", "idx_logentries_primary_time", "primaryUser, time" },
+            { "LogEntries", "idx_logentries_secondary_time", "secondaryUser, time" },
+            { "LogEntries", "idx_logentries_time", "time" },
+            { "LoginAttempts", "idx_loginattempts_ip", "ip" },
+            { "LoginAttempts", "idx_loginattempts_user", "user_id" },
+            { "LoginBans", "idx_loginbans_ip", "ip" },
+            { "LoginBans", "idx_loginbans_user", "user_id" },
+            { "LoginLockouts", "idx_loginlockouts_ip_time", "ip, time" },
+            { "LoginLockouts", "idx_loginlockouts_user_time", "user_id, time" },
+            { "OfficeVisits", "idx_officevisits_patient_date", "patient_id, date" },
+            { "OfficeVisits", "idx_officevisits_hcp_date", "hcp_id, date" },
+            { "Prescriptions", "idx_prescriptions_patient_end", "patient_id, endDate" } };
+
+    @Override
+    public int getVersion () {
+        return 2;
+    }
+
+    @Override
+    public String getDescription () {
+        return "hot path indexes";
+    }
+
+    @Override
+    public Long getChecksum () {
+        return null;
+    }
+
+    @Override
+    public void migrate ( final Connection conn ) throws SQLException {
+        try ( final Statement stmt = conn.createStatement() ) {
+            for ( final String[] index : INDEXES ) {
+                if ( !exists( conn, index[0], index[1] ) ) {
+                    stmt.execute( "create index " + index[1] + " on " + index[0] + " (" + index[2] + ")" );
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a table already has an index by the given name
+     *
+     * @param conn
+     *            Connection to check over
+     * @param table
+     *            Name of the table
+     * @param index
+     *            Name of the index
+     * @return true if the index exists
+     * @throws SQLException
+     *             If the schema cannot be read
+     */
+    private static boolean exists ( final Connection conn, final String table, final String index )
+            throws SQLException {
+        try ( final ResultSet rs = conn.getMetaData().getIndexInfo( conn.getCatalog(), null, table, false, true ) ) {
+            while ( rs.next() ) {
+                if ( index.equalsIgnoreCase( rs.getString( "INDEX_NAME" ) ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,76 @@
+package edu.ncsu.csc.itrust2.migrations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+
+/**
+ * Fills in the roles and patient-viewable flag added to LogEntries for the
+ * rows logged before they existed. Rows are updated a range of IDs at a time,
+ * each range committed on its own, so the table is never locked for long, and
+ * only rows not yet filled in are touched, so a backfill that is interrupted
+ * picks up where it left off the next time migrations run. For a large log,
+ * run it ahead of the deploy with the {@link SchemaMigrator}'s command line.
+ */
+public class BackfillLogEntryRoles implements Migration {
+
+    /** Number of IDs updated at a time */
+    private static final int CHUNK = 10000;
+
+    @Override
+    public int getVersion () {
+        return 6;
+    }
+
+    @Override
+    public String getDescription () {
+        return "backfill log entry roles";
+    }
+
+    @Override
+    public Long getChecksum () {
+        return null;
+    }
+
+    @Override
+    public void migrate ( final Connection conn ) throws SQLException {
+        final List<String> viewable = new ArrayList<String>();
+        for ( final TransactionType type : TransactionType.values() ) {
+            if ( type.isPatientViewable() ) {
+                viewable.add( String.valueOf( type.ordinal() ) );
+            }
+        }
+        final String update = "update LogEntries l left join Users p on p.username = l.primaryUser "
+                + "left join Users s on s.username = l.secondaryUser "
+                + "set l.primaryRole = p.role, l.secondaryRole = s.role, l.patientViewable = l.logCode in ("
+                + String.join( ", ", viewable ) + ") "
+                + "where l.id >= ? and l.id < ? and l.patientViewable is null";
+
+        final long min;
+        final long max;
+        try ( final Statement stmt = conn.createStatement();
+                final ResultSet rs = stmt
+                        .executeQuery( "select min(id), max(id) from LogEntries where patientViewable is null" ) ) {
+            rs.next();
+            min = rs.getLong( 1 );
+            max = rs.getLong( 2 );
+            if ( rs.wasNull() ) {
+                return;
+            }
+        }
+        try ( final PreparedStatement ps = conn.prepareStatement( update ) ) {
+            for ( long from = min; from <= max; from += CHUNK ) {
+                ps.setLong( 1, from );
+                ps.setLong( 2, from + CHUNK );
+                ps.executeUpdate();
+            }
+        }
+    }
+
+}
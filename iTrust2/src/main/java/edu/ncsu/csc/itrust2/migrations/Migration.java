@@ -0,0 +1,48 @@
+package edu.ncsu.csc.itrust2.migrations;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A single, versioned change to the database schema. Migrations are applied
+ * in order of version by the {@link SchemaMigrator}, each exactly once, and
+ * must never be edited once they have shipped: any further change to the
+ * schema gets a new migration with a higher version.
+ */
+public interface Migration {
+
+    /**
+     * Retrieves the version of this migration. Versions are unique, and
+     * migrations are applied in ascending order of version.
+     *
+     * @return The version
+     */
+    int getVersion ();
+
+    /**
+     * Retrieves a short description of what this migration does
+     *
+     * @return The description
+     */
+    String getDescription ();
+
+    /**
+     * Retrieves a checksum of this migration's contents, which is recorded
+     * when it is applied so that later edits to an applied migration can be
+     * detected.
+     *
+     * @return The checksum, or null if there is nothing to check
+     */
+    Long getChecksum ();
+
+    /**
+     * Applies this migration
+     *
+     * @param conn
+     *            Connection to apply the migration over
+     * @throws SQLException
+     *             If any of the changes could not be made
+     */
+    void migrate ( Connection conn ) throws SQLException;
+
+}
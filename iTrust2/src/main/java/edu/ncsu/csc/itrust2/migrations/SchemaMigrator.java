@@ -0,0 +1,314 @@
+package edu.ncsu.csc.itrust2.migrations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+
+/**
+ * Brings the database schema up to date by applying, in order, every
+ * {@link Migration} that has not been applied to it yet. What has been applied
+ * is recorded in the `schema_history` table, along with a checksum of each SQL
+ * migration so that an applied migration that was later edited is caught
+ * rather than silently skipped.
+ *
+ * By default this runs when the application starts (see
+ * `schema.migrateOnStartup` in db.properties), before Hibernate is set up. To
+ * keep schema changes out of rolling restarts, turn that off and run the
+ * migrations explicitly ahead of the deploy instead:
+ *
+ * <pre>
+ * java -cp ... edu.ncsu.csc.itrust2.migrations.SchemaMigrator [migrate|info]
+ * </pre>
+ *
+ * A database that already has the iTrust2 tables but no history (one built by
+ * Hibernate's schema update) is baselined: the first migration is recorded as
+ * applied without being run, and everything after it is applied as normal.
+ * Only one node migrates at a time; the others wait on a MySQL named lock.
+ */
+public class SchemaMigrator {
+
+    /** Every migration, in the order they are applied. Append-only. */
+    private static final List<Migration> MIGRATIONS;
+
+    static {
+        final List<Migration> migrations = new ArrayList<Migration>( Arrays.asList(
+                new SqlMigration( 1, "baseline", "V1__baseline.sql" ),
+                new AddHotPathIndexes(),
+                new SqlMigration( 3, "log rollups", "V3__log_rollups.sql" ),
+                new SqlMigration( 4, "log search index", "V4__log_terms.sql" ),
+                new SqlMigration( 5, "log entry roles", "V5__log_entry_roles.sql" ),
+                new BackfillLogEntryRoles(),
+                new SqlMigration( 7, "login failure counts", "V7__login_failure_counts.sql" ),
+                new SqlMigration( 8, "log search index runs", "V8__log_terms_runs.sql" ) ) );
+        Collections.sort( migrations, Comparator.comparingInt( Migration::getVersion ) );
+        MIGRATIONS = Collections.unmodifiableList( migrations );
+    }
+
+    /** Table the applied migrations are recorded in */
+    private static final String HISTORY        = "schema_history";
+
+    /**
+     * A table created by the baseline migration, whose presence means the
+     * baseline has effectively been applied already
+     */
+    private static final String BASELINE_TABLE = "Users";
+
+    /** Name of the MySQL lock held while migrating */
+    private static final String LOCK           = "iTrust2.schema_migration";
+
+    /** Seconds to wait for another node to finish migrating */
+    private static final int    LOCK_TIMEOUT   = 300;
+
+    /**
+     * Applies every pending migration.
+     *
+     * @return The number of migrations applied
+     * @throws SQLException
+     *             If the history cannot be read or a migration fails
+     * @throws IllegalStateException
+     *             If an applied migration has been changed since, or the lock
+     *             could not be acquired
+     */
+    public static int migrate () throws SQLException {
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            lock( conn );
+            try {
+                createHistory( conn );
+                final Map<Integer, Long> applied = applied( conn );
+                if ( applied.isEmpty() && hasTable( conn, BASELINE_TABLE ) ) {
+                    final Migration baseline = MIGRATIONS.get( 0 );
+                    record( conn, baseline, "BASELINE", 0 );
+                    applied.put( baseline.getVersion(), baseline.getChecksum() );
+                }
+                validate( applied );
+
+                int count = 0;
+                for ( final Migration m : MIGRATIONS ) {
+                    if ( applied.containsKey( m.getVersion() ) ) {
+                        continue;
+                    }
+                    final long start = System.currentTimeMillis();
+                    m.migrate( conn );
+                    record( conn, m, m instanceof SqlMigration ? "SQL" : "JAVA",
+                            (int) ( System.currentTimeMillis() - start ) );
+                    System.out.println( "Applied schema migration V" + m.getVersion() + " (" + m.getDescription()
+                            + ")" );
+                    count++;
+                }
+                return count;
+            }
+            finally {
+                unlock( conn );
+            }
+        }
+    }
+
+    /**
+     * Lists each migration along with whether it has been applied
+     *
+     * @return One line per migration
+     * @throws SQLException
+     *             If the history cannot be read
+     */
+    public static List<String> info () throws SQLException {
+        final List<String> lines = new ArrayList<String>();
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            final Map<Integer, Long> applied = hasTable( conn, HISTORY ) ? applied( conn )
+                    : new LinkedHashMap<Integer, Long>();
+            for ( final Migration m : MIGRATIONS ) {
+                lines.add( "V" + m.getVersion() + " " + m.getDescription() + ": "
+                        + ( applied.containsKey( m.getVersion() ) ? "applied" : "pending" ) );
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Runs the migrations, or with `info` lists their status.
+     *
+     * @param args
+     *            `migrate` (the default) or `info`
+     */
+    public static void main ( final String args[] ) {
+        int status = 0;
+        try {
+            if ( args.length > 0 && "info".equals( args[0] ) ) {
+                info().forEach( System.out::println );
+            }
+            else {
+                System.out.println( migrate() + " migration(s) applied" );
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace();
+            status = 1;
+        }
+        finally {
+            DBUtil.shutdown();
+        }
+        System.exit( status );
+    }
+
+    /**
+     * Creates the history table if it does not exist yet
+     *
+     * @param conn
+     *            Connection to use
+     * @throws SQLException
+     *             If the table cannot be created
+     */
+    private static void createHistory ( final Connection conn ) throws SQLException {
+        try ( final Statement stmt = conn.createStatement() ) {
+            stmt.execute( "create table if not exists " + HISTORY + " (version integer not null, "
+                    + "description varchar(200) not null, type varchar(10) not null, checksum bigint, "
+                    + "installed_on datetime not null, execution_time integer not null, primary key (version))" );
+        }
+    }
+
+    /**
+     * Reads the migrations recorded as applied
+     *
+     * @param conn
+     *            Connection to use
+     * @return The checksum of each applied migration, by version
+     * @throws SQLException
+     *             If the history cannot be read
+     */
+    private static Map<Integer, Long> applied ( final Connection conn ) throws SQLException {
+        final Map<Integer, Long> applied = new LinkedHashMap<Integer, Long>();
+        try ( final Statement stmt = conn.createStatement();
+                final ResultSet rs = stmt.executeQuery( "select version, checksum from " + HISTORY
+                        + " order by version" ) ) {
+            while ( rs.next() ) {
+                final long checksum = rs.getLong( 2 );
+                applied.put( rs.getInt( 1 ), rs.wasNull() ? null : checksum );
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Checks that no applied migration has been changed since it was applied.
+     * Versions the history knows of but this code does not (applied by a newer
+     * deploy) are reported but tolerated, so that a node running the previous
+     * release can still start during a rolling upgrade.
+     *
+     * @param applied
+     *            Checksum of each applied migration, by version
+     */
+    private static void validate ( final Map<Integer, Long> applied ) {
+        for ( final Map.Entry<Integer, Long> entry : applied.entrySet() ) {
+            final Migration m = MIGRATIONS.stream().filter( x -> x.getVersion() == entry.getKey() ).findFirst()
+                    .orElse( null );
+            if ( null == m ) {
+                System.err.println( "Schema migration V" + entry.getKey() + " is applied but unknown to this build" );
+                continue;
+            }
+            final Long checksum = m.getChecksum();
+            if ( null != checksum && null != entry.getValue() && !checksum.equals( entry.getValue() ) ) {
+                throw new IllegalStateException( "Schema migration V" + m.getVersion() + " (" + m.getDescription()
+                        + ") has been changed since it was applied" );
+            }
+        }
+    }
+
+    /**
+     * Records a migration as applied
+     *
+     * @param conn
+     *            Connection to use
+     * @param m
+     *            The migration
+     * @param type
+     *            SQL, JAVA, or BASELINE for a migration that was not run
+     * @param millis
+     *            How long the migration took
+     * @throws SQLException
+     *             If the record cannot be written
+     */
+    private static void record ( final Connection conn, final Migration m, final String type, final int millis )
+            throws SQLException {
+        try ( final PreparedStatement ps = conn.prepareStatement( "insert into " + HISTORY
+                + " (version, description, type, checksum, installed_on, execution_time) values (?, ?, ?, ?, ?, ?)" ) ) {
+            ps.setInt( 1, m.getVersion() );
+            ps.setString( 2, m.getDescription() );
+            ps.setString( 3, type );
+            final Long checksum = m.getChecksum();
+            if ( null == checksum ) {
+                ps.setNull( 4, java.sql.Types.BIGINT );
+            }
+            else {
+                ps.setLong( 4, checksum );
+            }
+            ps.setTimestamp( 5, new Timestamp( System.currentTimeMillis() ) );
+            ps.setInt( 6, millis );
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Checks whether a table exists in the current database
+     *
+     * @param conn
+     *            Connection to use
+     * @param table
+     *            Name of the table
+     * @return true if it exists
+     * @throws SQLException
+     *             If the schema cannot be read
+     */
+    private static boolean hasTable ( final Connection conn, final String table ) throws SQLException {
+        try ( final ResultSet rs = conn.getMetaData().getTables( conn.getCatalog(), null, table, null ) ) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Takes the migration lock, waiting for another node to release it if
+     * needs be
+     *
+     * @param conn
+     *            Connection to hold the lock on
+     * @throws SQLException
+     *             If the lock cannot be requested
+     */
+    private static void lock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement ps = conn.prepareStatement( "select get_lock(?, ?)" ) ) {
+            ps.setString( 1, LOCK );
+            ps.setInt( 2, LOCK_TIMEOUT );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                if ( !rs.next() || 1 != rs.getInt( 1 ) ) {
+                    throw new IllegalStateException( "Timed out waiting for the schema migration lock" );
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the migration lock
+     *
+     * @param conn
+     *            Connection the lock is held on
+     * @throws SQLException
+     *             If the lock cannot be released
+     */
+    private static void unlock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement ps = conn.prepareStatement( "select release_lock(?)" ) ) {
+            ps.setString( 1, LOCK );
+            ps.executeQuery().close();
+        }
+    }
+
+}
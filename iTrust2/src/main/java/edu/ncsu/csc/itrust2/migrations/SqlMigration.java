@@ -0,0 +1,127 @@
+package edu.ncsu.csc.itrust2.migrations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A Migration made up of plain SQL, read from a script under
+ * `db/migration/` on the classpath. Statements are separated by a `;` at the
+ * end of a line, and lines starting with `--` are ignored.
+ */
+public class SqlMigration implements Migration {
+
+    /** Classpath directory that holds the migration scripts */
+    private static final String LOCATION = "db/migration/";
+
+    /** Version of this migration */
+    private final int           version;
+
+    /** Description of this migration */
+    private final String        description;
+
+    /** Name of the script, relative to {@link #LOCATION} */
+    private final String        script;
+
+    /**
+     * Creates a SqlMigration
+     *
+     * @param version
+     *            Version of the migration
+     * @param description
+     *            Short description of what it does
+     * @param script
+     *            Name of the script under `db/migration/`
+     */
+    public SqlMigration ( final int version, final String description, final String script ) {
+        this.version = version;
+        this.description = description;
+        this.script = script;
+    }
+
+    @Override
+    public int getVersion () {
+        return version;
+    }
+
+    @Override
+    public String getDescription () {
+        return description;
+    }
+
+    @Override
+    public Long getChecksum () {
+        final CRC32 crc = new CRC32();
+        crc.update( read().getBytes( StandardCharsets.UTF_8 ) );
+        return crc.getValue();
+    }
+
+    @Override
+    public void migrate ( final Connection conn ) throws SQLException {
+        try ( final Statement stmt = conn.createStatement() ) {
+            for ( final String sql : statements( read() ) ) {
+                stmt.execute( sql );
+            }
+        }
+    }
+
+    /**
+     * Reads the script from the classpath
+     *
+     * @return The contents of the script
+     */
+    private String read () {
+        try ( final InputStream in = SqlMigration.class.getClassLoader()
+                .getResourceAsStream( LOCATION + script ) ) {
+            if ( null == in ) {
+                throw new IllegalStateException( "Migration script " + LOCATION + script + " not found" );
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ( -1 != ( read = in.read( buffer ) ) ) {
+                out.write( buffer, 0, read );
+            }
+            return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+        }
+        catch ( final IOException e ) {
+            throw new IllegalStateException( "Migration script " + LOCATION + script + " could not be read", e );
+        }
+    }
+
+    /**
+     * Splits a script into its individual statements
+     *
+     * @param sql
+     *            The script
+     * @return Each statement, without its terminating `;`
+     */
+    public static List<String> statements ( final String sql ) {
+        final List<String> statements = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        for ( final String line : sql.split( "\r?\n" ) ) {
+            final String trimmed = line.trim();
+            if ( trimmed.isEmpty() || trimmed.startsWith( "--" ) ) {
+                continue;
+            }
+            current.append( current.length() > 0 ? " " : "" ).append( trimmed );
+            if ( trimmed.endsWith( ";" ) ) {
+                current.setLength( current.length() - 1 );
+                statements.add( current.toString().trim() );
+                current = new StringBuilder();
+            }
+        }
+        if ( current.toString().trim().length() > 0 ) {
+            statements.add( current.toString().trim() );
+        }
+        return statements;
+    }
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Versioned changes to the iTrust2 database schema, and the SchemaMigrator
+ * that applies them.
+ */
+package edu.ncsu.csc.itrust2.migrations;
@@ -3,10 +3,10 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Vector;
 
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -14,8 +14,11 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -35,7 +38,17 @@ import edu.ncsu.csc.itrust2.models.enums.Status;
  */
 
 @Entity
-@Table ( name = "AppointmentRequests" )
+@Table ( name = "AppointmentRequests", indexes = {
+        @Index ( name = "idx_appointmentrequests_hcp_status", columnList = "hcp_id, status" ),
+        @Index ( name = "idx_appointmentrequests_patient_status", columnList = "patient_id, status" ) } )
+@NamedQueries ( {
+        @NamedQuery ( name = "AppointmentRequest.forPatient",
+                query = "from AppointmentRequest a where a.patient.username = :patient and a.patient.role = :patientRole" ),
+        @NamedQuery ( name = "AppointmentRequest.forHCP",
+                query = "from AppointmentRequest a where a.hcp.username = :hcp and a.hcp.role = :hcpRole" ),
+        @NamedQuery ( name = "AppointmentRequest.forHCPAndPatient",
+                query = "from AppointmentRequest a where a.hcp.username = :hcp and a.hcp.role = :hcpRole"
+                        + " and a.patient.username = :patient and a.patient.role = :patientRole" ) } )
 public class AppointmentRequest extends DomainObject<AppointmentRequest> {
 
     /**
@@ -68,6 +81,24 @@ public class AppointmentRequest extends DomainObject<AppointmentRequest> {
         return requests;
     }
 
+    /**
+     * Retrieve a single page of the AppointmentRequests in the database,
+     * sorted by date.
+     *
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return The page of AppointmentRequests
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<AppointmentRequest> getAppointmentRequests ( final Integer page, final String after,
+            final Integer size ) {
+        return getPage( AppointmentRequest.class, Collections.emptyList(), "date", page, after, size );
+    }
+
     /**
      * Used so that Hibernate can construct and load objects
      */
@@ -94,8 +125,10 @@ public class AppointmentRequest extends DomainObject<AppointmentRequest> {
      *            Name of the patient
      * @return All of their AppointmentRequests
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<AppointmentRequest> getAppointmentRequestsForPatient ( final String patientName ) {
-        return getWhere( eqList( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ) );
+        return (List<AppointmentRequest>) getNamed( "AppointmentRequest.forPatient", "patient", patientName,
+                "patientRole", Role.ROLE_PATIENT );
     }
 
     /**
@@ -105,8 +138,10 @@ public class AppointmentRequest extends DomainObject<AppointmentRequest> {
      *            Name of the HCP
      * @return All AppointmentRequests involving this HCP
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<AppointmentRequest> getAppointmentRequestsForHCP ( final String hcpName ) {
-        return getWhere( eqList( "hcp", User.getByNameAndRole( hcpName, Role.ROLE_HCP ) ) );
+        return (List<AppointmentRequest>) getNamed( "AppointmentRequest.forHCP", "hcp", hcpName, "hcpRole",
+                Role.ROLE_HCP );
     }
 
     /**
@@ -120,12 +155,11 @@ public class AppointmentRequest extends DomainObject<AppointmentRequest> {
      *            Name of the Patient
      * @return The list of matching AppointmentRequests
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<AppointmentRequest> getAppointmentRequestsForHCPAndPatient ( final String hcpName,
             final String patientName ) {
-        final Vector<Criterion> criteria = new Vector<Criterion>();
-        criteria.add( eq( "hcp", User.getByNameAndRole( hcpName, Role.ROLE_HCP ) ) );
-        criteria.add( eq( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ) );
-        return getWhere( criteria );
+        return (List<AppointmentRequest>) getNamed( "AppointmentRequest.forHCPAndPatient", "hcp", hcpName,
+                "hcpRole", Role.ROLE_HCP, "patient", patientName, "patientRole", Role.ROLE_PATIENT );
     }
 
     /**
@@ -0,0 +1,90 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import java.util.function.Supplier;
+
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+
+/**
+ * In-memory copy of a read-mostly reference table, such as the ICD codes or the
+ * list of Hospitals. The contents are loaded on first use and then served from
+ * memory until an instance of the cached class is saved or deleted, at which
+ * point they are dropped and reloaded on the next use.
+ *
+ * The value cached is whatever the loader builds from the table, so a cache
+ * can hold precomputed views (for instance, a table split by prefix) alongside
+ * the full list. Cached values are shared between threads and must be treated
+ * as read-only.
+ *
+ * @param <T>
+ *            Type of the value built from the table
+ */
+class CatalogCache <T> {
+
+    /**
+     * Builds the cached value from the database
+     */
+    private final Supplier<T> loader;
+
+    /**
+     * The cached value, or null if it must be (re)loaded
+     */
+    private volatile T        contents;
+
+    /**
+     * Bumped on every invalidation, so that a load which raced with a write
+     * does not put data from before the write back into the cache
+     */
+    private volatile long     generation;
+
+    /**
+     * Creates a cache over the class provided, which is dropped whenever an
+     * instance of that class is saved or deleted.
+     *
+     * @param cls
+     *            The DomainObject class whose table is cached
+     * @param loader
+     *            Builds the value to cache from the database
+     */
+    CatalogCache ( final Class< ? extends DomainObject< ? >> cls, final Supplier<T> loader ) {
+        this.loader = loader;
+        DomainObject.onChange( cls, this::invalidate );
+    }
+
+    /**
+     * Retrieves the cached value, loading it from the database if necessary.
+     *
+     * @return The cached value
+     */
+    T get () {
+        T current = contents;
+        if ( null == current ) {
+            final long loadedAt = generation;
+            current = loader.get();
+            synchronized ( this ) {
+                if ( loadedAt == generation ) {
+                    contents = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Drops the cached value. It is dropped again once the current unit of work
+     * (if any) has ended, as until then other threads may still load the
+     * table as it was before the change.
+     */
+    void invalidate () {
+        clear();
+        HibernateUtil.afterUnitOfWork( this::clear );
+    }
+
+    /**
+     * Drops the cached value right away
+     */
+    private synchronized void clear () {
+        generation++;
+        contents = null;
+    }
+
+}
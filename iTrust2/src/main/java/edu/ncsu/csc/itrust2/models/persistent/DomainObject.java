@@ -1,17 +1,36 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.io.Serializable;
-import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import org.hibernate.Criteria;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.itrust2.utils.HibernateUtil;
@@ -31,6 +50,13 @@ import edu.ncsu.csc.itrust2.utils.HibernateUtil;
  * performance out of the underlying database system. It is not _required_ but
  * is better to have it than not.
  *
+ * Reads and writes made while a unit of work is bound to the current thread
+ * (which the UnitOfWorkFilter does for every HTTP request but those for static
+ * resources) share that unit's Session and Transaction, so a request costs one
+ * connection checkout and one commit no matter how many DomainObjects it
+ * touches, and none if it touches no DomainObject. Anywhere else, such as
+ * background jobs or tests, each call gets a Session of its own.
+ *
  * @author Kai Presler-Marshall
  *
  * @param <D>
@@ -45,7 +71,33 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * Lots of DomainObjects are retrieved by ID. This way we get compile-time
      * errors of typos
      */
-    static final protected String ID = "id";
+    static final protected String                             ID              = "id";
+
+    /** Number of records on a page when the caller does not ask for a size */
+    static final public int                                   DEFAULT_PAGE_SIZE = 50;
+
+    /** Largest number of records that may be requested on a single page */
+    static final public int                                   MAX_PAGE_SIZE     = 500;
+
+    /** Number of records read at a time when scanning through a table */
+    static final private int                                  SCAN_CHUNK_SIZE   = 500;
+
+    /**
+     * Actions to run whenever instances of a class (or its subclasses) are
+     * saved or deleted. See {@link #onChange(Class, Runnable)}.
+     */
+    static final private Map<Class< ? >, List<Runnable>> changeListeners = new ConcurrentHashMap<Class< ? >, List<Runnable>>();
+
+    /**
+     * How {@link #copyFrom(DomainObject, Boolean)} copies each class, worked
+     * out the first time that class is copied.
+     */
+    static final private ClassValue<FieldCopier[]>       COPY_PLANS      = new ClassValue<FieldCopier[]>() {
+        @Override
+        protected FieldCopier[] computeValue ( final Class< ? > cls ) {
+            return planCopy( cls );
+        }
+    };
 
     /**
      * Performs a getAll on the subtype of DomainObject in question. The
@@ -59,15 +111,17 @@ public abstract class DomainObject <D extends DomainObject<D>> {
     @Transactional ( readOnly = true )
     protected static List< ? extends DomainObject> getAll ( final Class cls ) {
         List< ? extends DomainObject> results = null;
-        final Session session = HibernateUtil.openSession();
+        final Session session = beginWork();
         try {
-            session.beginTransaction();
             results = session.createCriteria( cls ).list();
         }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
         finally {
             try {
-                session.getTransaction().commit();
-                session.close();
+                endWork( session );
             }
             catch ( final Exception e ) {
                 e.printStackTrace( System.out );
@@ -93,33 +147,92 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         if ( !this.getClass().equals( other.getClass() ) ) {
             throw new IllegalArgumentException( "Cannot copy between different types!" );
         }
-        final List<Field> fields = Arrays.asList( this.getClass().getDeclaredFields() );
         try {
-            for ( final Field f : fields ) {
-                final Integer modifiers = f.getModifiers();
-                if ( Modifier.isFinal( modifiers ) ) {
-                    continue;
+            for ( final FieldCopier copier : COPY_PLANS.get( this.getClass() ) ) {
+                if ( includeId || !copier.id ) {
+                    copier.setter.invokeExact( (Object) this, (Object) copier.getter.invokeExact( (Object) other ) );
                 }
+            }
+        }
+        catch ( final Error e ) {
+            // Such as running out of memory, which is not the caller's fault;
+            // only exceptions are taken to come from a bad argument
+            throw e;
+        }
+        catch ( final Throwable e ) {
+            throw new IllegalArgumentException( e );
+        }
 
-                f.setAccessible( true );
-                boolean id = false;
-                final List<Annotation> annotations = Arrays.asList( f.getAnnotations() );
-                for ( final Annotation annotation : annotations ) {
-                    if ( annotation.annotationType().equals( javax.persistence.Id.class ) ) {
-                        id = true;
-                    }
-                }
-                if ( ( id && includeId ) || !id ) {
-                    f.set( this, f.get( other ) );
-                }
+    }
 
+    /**
+     * Works out how {@link #copyFrom(DomainObject, Boolean)} copies the class
+     * provided: one {@link FieldCopier} for each of the non-final fields that
+     * it declares. This takes reflection, so it is only done once per class
+     * (see {@link #COPY_PLANS}).
+     *
+     * @param cls
+     *            The class to plan copies of
+     * @return The copiers for the fields of that class
+     */
+    private static FieldCopier[] planCopy ( final Class< ? > cls ) {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final List<FieldCopier> copiers = new ArrayList<FieldCopier>();
+        try {
+            for ( final Field f : cls.getDeclaredFields() ) {
+                final int modifiers = f.getModifiers();
+                if ( Modifier.isFinal( modifiers ) || Modifier.isStatic( modifiers ) ) {
+                    continue;
+                }
+                f.setAccessible( true );
+                // Erase the types so that every handle can be invoked exactly
+                copiers.add( new FieldCopier( lookup.unreflectGetter( f ).asType( FieldCopier.GETTER ),
+                        lookup.unreflectSetter( f ).asType( FieldCopier.SETTER ),
+                        f.isAnnotationPresent( javax.persistence.Id.class ) ) );
             }
-
         }
-        catch ( final Exception e ) {
+        catch ( final IllegalAccessException e ) {
             throw new IllegalArgumentException( e );
         }
+        return copiers.toArray( new FieldCopier[copiers.size()] );
+    }
+
+    /**
+     * Copies a single field from one DomainObject to another, through method
+     * handles resolved ahead of time.
+     */
+    private static final class FieldCopier {
+
+        /** Type of every getter: takes the object, returns the value */
+        private static final MethodType GETTER = MethodType.methodType( Object.class, Object.class );
+
+        /** Type of every setter: takes the object and the value */
+        private static final MethodType SETTER = MethodType.methodType( void.class, Object.class, Object.class );
 
+        /** Reads the field from the object being copied */
+        private final MethodHandle getter;
+
+        /** Writes the field on the object being copied to */
+        private final MethodHandle setter;
+
+        /** Whether the field is the ID */
+        private final boolean      id;
+
+        /**
+         * Creates a FieldCopier
+         *
+         * @param getter
+         *            Reads the field
+         * @param setter
+         *            Writes the field
+         * @param id
+         *            Whether the field is the ID
+         */
+        FieldCopier ( final MethodHandle getter, final MethodHandle setter, final boolean id ) {
+            this.getter = getter;
+            this.setter = setter;
+            this.id = id;
+        }
     }
 
     /**
@@ -139,24 +252,25 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      */
     @Transactional ( readOnly = true )
     protected static List< ? extends DomainObject> getWhere ( final Class cls, final List<Criterion> criteriaList ) {
-        final Session session = HibernateUtil.openSession();
+        final Session session = beginWork();
 
         List< ? extends DomainObject> results = null;
         try {
-            session.beginTransaction();
             final Criteria c = session.createCriteria( cls );
             for ( final Criterion criterion : criteriaList ) {
                 c.add( criterion );
             }
             results = c.list();
         }
-        catch ( final Exception e ) {
+        catch ( final RuntimeException e ) {
+            if ( abortWork( session ) ) {
+                throw e;
+            }
             e.printStackTrace();
         }
         finally {
             try {
-                session.getTransaction().commit();
-                session.close();
+                endWork( session );
             }
             catch ( final Exception e ) {
                 e.printStackTrace( System.out );
@@ -167,6 +281,417 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         return results;
     }
 
+    /**
+     * Method for retrieving DomainObjects with one of the named queries that
+     * subclasses declare with the @NamedQuery annotation. Hibernate compiles
+     * each named query once, when the SessionFactory is built (failing then if
+     * any of them are invalid), so unlike {@link #getWhere(Class, List)} no
+     * Criteria or SQL has to be generated on each call. The values are bound
+     * as parameters, so the statement itself is the same on every call and
+     * can be reused by the JDBC driver and the database.
+     *
+     * @param name
+     *            Name of the query, such as `User.byName`
+     * @param parameters
+     *            Names of the query's parameters, each followed by the value
+     *            to bind to it. A Collection is bound as a list, for use with
+     *            `in (:name)`.
+     * @return The resulting list of elements found
+     */
+    @Transactional ( readOnly = true )
+    protected static List< ? extends DomainObject> getNamed ( final String name, final Object... parameters ) {
+        if ( 0 != parameters.length % 2 ) {
+            throw new IllegalArgumentException( "Each parameter of " + name + " needs a name and a value" );
+        }
+        final Session session = beginWork();
+
+        List< ? extends DomainObject> results = null;
+        try {
+            final Query q = session.getNamedQuery( name );
+            for ( int i = 0; i < parameters.length; i += 2 ) {
+                if ( parameters[i + 1] instanceof Collection ) {
+                    q.setParameterList( (String) parameters[i], (Collection) parameters[i + 1] );
+                }
+                else {
+                    q.setParameter( (String) parameters[i], parameters[i + 1] );
+                }
+            }
+            results = q.list();
+        }
+        catch ( final RuntimeException e ) {
+            if ( abortWork( session ) ) {
+                throw e;
+            }
+            e.printStackTrace();
+        }
+        finally {
+            try {
+                endWork( session );
+            }
+            catch ( final Exception e ) {
+                e.printStackTrace( System.out );
+                // Continue
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Counts the DomainObjects that match a list of criteria (see
+     * {@link #getWhere(Class, List)}). The counting is done by the database, so
+     * none of the matching records are loaded.
+     *
+     * @param cls
+     *            Subclass of DomainObject to count
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @return The number of matching records
+     */
+    @Transactional ( readOnly = true )
+    protected static long countWhere ( final Class cls, final List<Criterion> criteriaList ) {
+        final Session session = beginWork();
+
+        long count = 0;
+        try {
+            final Criteria c = session.createCriteria( cls );
+            for ( final Criterion criterion : criteriaList ) {
+                c.add( criterion );
+            }
+            c.setProjection( Projections.rowCount() );
+            count = ( (Number) c.uniqueResult() ).longValue();
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        finally {
+            try {
+                endWork( session );
+            }
+            catch ( final Exception e ) {
+                e.printStackTrace( System.out );
+                // Continue
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks whether any DomainObject matches a list of criteria (see
+     * {@link #getWhere(Class, List)}). The database stops looking as soon as
+     * it finds a match, and only its ID is read.
+     *
+     * @param cls
+     *            Subclass of DomainObject to look for
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @return True if at least one record matches
+     */
+    @Transactional ( readOnly = true )
+    protected static boolean existsWhere ( final Class cls, final List<Criterion> criteriaList ) {
+        final Session session = beginWork();
+
+        boolean exists = false;
+        try {
+            final Criteria c = session.createCriteria( cls );
+            for ( final Criterion criterion : criteriaList ) {
+                c.add( criterion );
+            }
+            c.setProjection( Projections.id() );
+            c.setMaxResults( 1 );
+            exists = !c.list().isEmpty();
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        finally {
+            try {
+                endWork( session );
+            }
+            catch ( final Exception e ) {
+                e.printStackTrace( System.out );
+                // Continue
+            }
+        }
+
+        return exists;
+    }
+
+    /**
+     * Method for retrieving one page of the DomainObjects that match a list of
+     * criteria (see {@link #getWhere(Class, List)}), so that large tables can
+     * be read a piece at a time rather than all at once. Records are sorted
+     * by the field provided and then by ID, so that every record appears on
+     * exactly one page.
+     *
+     * A page may be requested either by number, which has the database skip
+     * over all of the records on the pages before it, or by the continuation
+     * token from the page before it, which has the database seek directly to
+     * the first record after that token. The latter stays fast however deep
+     * into the table the page is, and isn't thrown off by records added or
+     * removed in the meantime. If neither is provided, the first page is
+     * returned.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param orderBy
+     *            Field to sort by, or null to sort by ID alone. Must be the ID
+     *            or a field that is never null, of a numeric, String, or date
+     *            type.
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token of the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return The page of records found
+     * @throws IllegalArgumentException
+     *             If the page number, size, or token are invalid
+     */
+    protected static Page getPage ( final Class cls, final List<Criterion> criteriaList, final String orderBy,
+            final Integer page, final String after, final Integer size ) {
+        return getPage( cls, criteriaList, orderBy, false, page, after, size );
+    }
+
+    /**
+     * Retrieves one page of the DomainObjects that match a list of criteria,
+     * as {@link #getPage(Class, List, String, Integer, String, Integer)} does,
+     * but optionally sorted in descending rather than ascending order (by the
+     * field provided and then by ID), such as to list the newest records
+     * first. Continuation tokens are only valid for the direction they were
+     * created in.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param orderBy
+     *            Field to sort by, or null to sort by ID alone
+     * @param descending
+     *            Whether to sort from largest to smallest
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token of the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return The page of records found
+     * @throws IllegalArgumentException
+     *             If the page number, size, or token are invalid
+     */
+    @Transactional ( readOnly = true )
+    protected static Page getPage ( final Class cls, final List<Criterion> criteriaList, final String orderBy,
+            final boolean descending, final Integer page, final String after, final Integer size ) {
+        final int pageSize = null == size ? DEFAULT_PAGE_SIZE : size;
+        if ( pageSize < 1 || pageSize > MAX_PAGE_SIZE ) {
+            throw new IllegalArgumentException( "Page size must be between 1 and " + MAX_PAGE_SIZE );
+        }
+        if ( null != page && page < 0 ) {
+            throw new IllegalArgumentException( "Page number cannot be negative" );
+        }
+        // The offset has to fit in an int, and a page far past it would be
+        // empty anyway
+        if ( null != page && (long) page * pageSize > Integer.MAX_VALUE ) {
+            throw new IllegalArgumentException( "Page number is too large" );
+        }
+        if ( null != page && null != after ) {
+            throw new IllegalArgumentException( "Cannot request a page by both number and continuation token" );
+        }
+        final Session session = beginWork();
+
+        Page result = null;
+        try {
+            final ClassMetadata meta = session.getSessionFactory().getClassMetadata( cls );
+            final String id = meta.getIdentifierPropertyName();
+            final String sortBy = null == orderBy ? id : orderBy;
+            final Criteria c = session.createCriteria( cls );
+            for ( final Criterion criterion : criteriaList ) {
+                c.add( criterion );
+            }
+            if ( null != after ) {
+                c.add( seek( meta, sortBy, descending, after ) );
+            }
+            else if ( null != page ) {
+                c.setFirstResult( page * pageSize );
+            }
+            if ( !id.equals( sortBy ) ) {
+                c.addOrder( descending ? Order.desc( sortBy ) : Order.asc( sortBy ) );
+            }
+            c.addOrder( descending ? Order.desc( id ) : Order.asc( id ) );
+            // One more than needed tells us whether there is a next page
+            c.setMaxResults( pageSize + 1 );
+            final List<DomainObject> rows = c.list();
+
+            String next = null;
+            List<DomainObject> items = rows;
+            if ( rows.size() > pageSize ) {
+                items = new ArrayList<DomainObject>( rows.subList( 0, pageSize ) );
+                next = continuation( meta, sortBy, items.get( pageSize - 1 ) );
+            }
+            result = new Page( items, null != after ? null : null != page ? page : 0, pageSize, next );
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        finally {
+            try {
+                endWork( session );
+            }
+            catch ( final Exception e ) {
+                e.printStackTrace( System.out );
+                // Continue
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates the continuation token that picks up after the record provided.
+     * The token holds the values of the sort field and of the ID for that
+     * record, Base64 encoded so that callers treat it as opaque.
+     *
+     * @param meta
+     *            Hibernate's description of the class being paged through
+     * @param orderBy
+     *            Field the records are sorted by
+     * @param last
+     *            The last record on the page
+     * @return The continuation token
+     */
+    private static String continuation ( final ClassMetadata meta, final String orderBy, final DomainObject last ) {
+        String token = tokenPart( last.getId() );
+        if ( !meta.getIdentifierPropertyName().equals( orderBy ) ) {
+            token = tokenPart( meta.getPropertyValue( last, orderBy ) ) + "|" + token;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString( token.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Turns a continuation token back into a Criterion that matches only the
+     * records sorted after the one it was created from.
+     *
+     * @param meta
+     *            Hibernate's description of the class being paged through
+     * @param orderBy
+     *            Field the records are sorted by
+     * @param descending
+     *            Whether the records are sorted from largest to smallest
+     * @param after
+     *            The continuation token
+     * @return The Criterion to restrict the page by
+     * @throws IllegalArgumentException
+     *             If the token was not created for this sort order
+     */
+    private static Criterion seek ( final ClassMetadata meta, final String orderBy, final boolean descending,
+            final String after ) {
+        final String token = new String( Base64.getUrlDecoder().decode( after ), StandardCharsets.UTF_8 );
+        final String id = meta.getIdentifierPropertyName();
+        final Class idType = meta.getIdentifierType().getReturnedClass();
+        if ( id.equals( orderBy ) ) {
+            final Object lastId = tokenValue( idType, token );
+            return descending ? Restrictions.lt( id, lastId ) : Restrictions.gt( id, lastId );
+        }
+        final int split = token.indexOf( '|' );
+        if ( split < 0 ) {
+            throw new IllegalArgumentException( "Invalid continuation token" );
+        }
+        final Object key = tokenValue( meta.getPropertyType( orderBy ).getReturnedClass(),
+                token.substring( 0, split ) );
+        final Object lastId = tokenValue( idType, token.substring( split + 1 ) );
+        if ( descending ) {
+            return Restrictions.or( Restrictions.lt( orderBy, key ),
+                    Restrictions.and( Restrictions.eq( orderBy, key ), Restrictions.lt( id, lastId ) ) );
+        }
+        return Restrictions.or( Restrictions.gt( orderBy, key ),
+                Restrictions.and( Restrictions.eq( orderBy, key ), Restrictions.gt( id, lastId ) ) );
+    }
+
+    /**
+     * Writes out a single value for a continuation token. Dates are written as
+     * milliseconds since the epoch so they can be read back exactly.
+     *
+     * @param value
+     *            The value of the field
+     * @return The value as a String
+     */
+    private static String tokenPart ( final Object value ) {
+        if ( value instanceof Calendar ) {
+            return Long.toString( ( (Calendar) value ).getTimeInMillis() );
+        }
+        if ( value instanceof Date ) {
+            return Long.toString( ( (Date) value ).getTime() );
+        }
+        return String.valueOf( value );
+    }
+
+    /**
+     * Reads back a single value written by {@link #tokenPart(Object)}.
+     *
+     * @param type
+     *            Type of the field the value is for
+     * @param part
+     *            The value as it was written
+     * @return The value, as the type provided
+     * @throws IllegalArgumentException
+     *             If the value cannot be read as that type
+     */
+    private static Object tokenValue ( final Class type, final String part ) {
+        if ( String.class.equals( type ) ) {
+            return part;
+        }
+        if ( Long.class.equals( type ) || long.class.equals( type ) ) {
+            return Long.valueOf( part );
+        }
+        if ( Integer.class.equals( type ) || int.class.equals( type ) ) {
+            return Integer.valueOf( part );
+        }
+        if ( Calendar.class.isAssignableFrom( type ) ) {
+            final Calendar c = Calendar.getInstance();
+            c.setTimeInMillis( Long.parseLong( part ) );
+            return c;
+        }
+        if ( Date.class.isAssignableFrom( type ) ) {
+            return new Date( Long.parseLong( part ) );
+        }
+        throw new IllegalArgumentException( "Cannot page by a field of type " + type.getSimpleName() );
+    }
+
+    /**
+     * Runs an action on every DomainObject that matches a list of criteria
+     * (see {@link #getWhere(Class, List)}), in order of ID. Unlike getWhere,
+     * the records are not all loaded at once: they are read a chunk at a time,
+     * seeking past the last ID of the chunk before, and each chunk is let go
+     * of before the next is read, so scanning even the largest tables takes a
+     * constant amount of memory. The action is free to save or delete the
+     * records it is given, or any others.
+     *
+     * @param cls
+     *            Subclass of DomainObject to scan through
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param action
+     *            The action to run on each record found
+     * @param <T>
+     *            Type of the records found
+     */
+    protected static <T> void scan ( final Class cls, final List<Criterion> criteriaList,
+            final Consumer<T> action ) {
+        String after = null;
+        do {
+            final Page chunk = getPage( cls, criteriaList, null, null, after, SCAN_CHUNK_SIZE );
+            chunk.getItems().forEach( action );
+            after = chunk.getNext();
+        }
+        while ( null != after );
+    }
+
     /**
      * Provides the ability to quickly delete all instances of the current
      * class. Useful for clearing out data for testing or regeneration.
@@ -177,14 +702,108 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      *            class to delete instances of
      */
     public static void deleteAll ( final Class cls ) {
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        final List<DomainObject> instances = session.createCriteria( cls ).list();
-        for ( final DomainObject d : instances ) {
-            session.delete( d );
+        deleteWhere( cls, Collections.emptyMap() );
+    }
+
+    /**
+     * Deletes every DomainObject of a class whose fields match the values
+     * provided. Think of this as SQL similar to `DELETE FROM table WHERE
+     * field1=value1 AND field2=value2`, and for classes that are stored in a
+     * single table and have no collections or cascades to look after, that is
+     * exactly what is run: a single statement, with no records loaded into
+     * memory. For any other class, the records are loaded and deleted a chunk
+     * at a time so that Hibernate can clean up after each one. As with
+     * {@link #eq(String, Object)}, a null value matches no records.
+     *
+     * @param cls
+     *            Subclass of DomainObject to delete records of
+     * @param where
+     *            Map from each field to match on to the value it must have
+     * @return The number of records deleted
+     */
+    protected static int deleteWhere ( final Class cls, final Map<String, Object> where ) {
+        // Null equals nothing in SQL
+        if ( where.containsValue( null ) ) {
+            return 0;
         }
-        session.getTransaction().commit();
-        session.close();
+        final Session session = beginWork();
+        int deleted = 0;
+        try {
+            if ( isBulkSafe( session, cls ) ) {
+                final Map<String, Object> parameters = new HashMap<String, Object>();
+                final Query q = session
+                        .createQuery( "delete from " + cls.getName() + whereClause( where, parameters ) );
+                parameters.forEach( q::setParameter );
+                deleted = q.executeUpdate();
+            }
+            else {
+                // Work through the table a chunk at a time, so that deleting
+                // a large table doesn't need all of it in memory at once.
+                // Every chunk deleted leaves the next one at the front.
+                final Criteria c = session.createCriteria( cls );
+                where.forEach( ( field, value ) -> c.add( Restrictions.eq( field, value ) ) );
+                c.setMaxResults( SCAN_CHUNK_SIZE );
+                List<DomainObject> chunk;
+                do {
+                    chunk = c.list();
+                    for ( final DomainObject d : chunk ) {
+                        session.delete( d );
+                    }
+                    session.flush();
+                    session.clear();
+                    deleted += chunk.size();
+                }
+                while ( chunk.size() == SCAN_CHUNK_SIZE );
+            }
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        endWork( session );
+        changed( cls );
+        return deleted;
+    }
+
+    /**
+     * Checks whether a class can be deleted from with a single statement,
+     * which is the case when it is stored in a table of its own
+     * and Hibernate has no collections or cascades to look after for it.
+     *
+     * @param session
+     *            The Session in use
+     * @param cls
+     *            Subclass of DomainObject to check
+     * @return True if a bulk delete is safe to use on the class
+     */
+    private static boolean isBulkSafe ( final Session session, final Class cls ) {
+        final EntityPersister persister = ( (SessionFactoryImplementor) session.getSessionFactory() )
+                .getEntityPersister( cls.getName() );
+        return !persister.hasCollections() && !persister.hasCascades() && !persister.isInherited()
+                && !persister.getEntityMetamodel().hasSubclasses();
+    }
+
+    /**
+     * Builds the WHERE clause of a bulk statement that matches on the fields
+     * and values provided. The values are added to the map of named
+     * parameters to bind.
+     *
+     * @param where
+     *            Map from each field to match on to the value it must have
+     * @param parameters
+     *            Map of named parameters to add the values to
+     * @return The WHERE clause, or an empty String if there is nothing to
+     *         match on
+     */
+    private static String whereClause ( final Map<String, Object> where, final Map<String, Object> parameters ) {
+        final StringBuilder clause = new StringBuilder();
+        for ( final Map.Entry<String, Object> field : where.entrySet() ) {
+            final String name = "p" + parameters.size();
+            clause.append( 0 == clause.length() ? " where " : " and " ).append( field.getKey() ).append( " = :" )
+                    .append( name );
+            parameters.put( name, field.getValue() );
+        }
+        return clause.toString();
     }
 
     /**
@@ -193,12 +812,16 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * exists in the DB, then the existing record will be updated.
      */
     public void save () {
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        session.saveOrUpdate( this );
-        session.getTransaction().commit();
-        session.close();
-
+        final Session session = beginWork();
+        try {
+            session.saveOrUpdate( this );
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        endWork( session );
+        changed( getClass() );
     }
 
     /**
@@ -206,11 +829,16 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * cannot be reversed.
      */
     public void delete () {
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        session.delete( this );
-        session.getTransaction().commit();
-        session.close();
+        final Session session = beginWork();
+        try {
+            session.delete( this );
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        endWork( session );
+        changed( getClass() );
     }
 
     /**
@@ -232,12 +860,120 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         catch ( final Exception e ) {
             return null;
         }
+        final Session session = beginWork();
+        try {
+            session.load( obj, (Serializable) id );
+        }
+        catch ( final RuntimeException e ) {
+            abortWork( session );
+            throw e;
+        }
+        endWork( session );
+        return obj;
+    }
+
+    /**
+     * Registers an action to run whenever instances of the class provided (or
+     * of any of its subclasses) are saved or deleted through this class. Used
+     * to drop copies of data that are cached in memory.
+     *
+     * @param cls
+     *            The class to watch for changes to
+     * @param listener
+     *            The action to run on a change
+     */
+    protected static void onChange ( final Class cls, final Runnable listener ) {
+        changeListeners.computeIfAbsent( cls, c -> new CopyOnWriteArrayList<Runnable>() ).add( listener );
+    }
+
+    /**
+     * Notifies the listeners registered through
+     * {@link #onChange(Class, Runnable)} that instances of a class have been
+     * written. Saves and deletes made through DomainObject do this on their
+     * own; call it directly only after changing tables some other way (such as
+     * by regenerating the schema). Listeners for subclasses and superclasses of
+     * the class provided are notified too, so passing DomainObject.class
+     * notifies every listener.
+     *
+     * @param cls
+     *            The class that was saved or deleted
+     */
+    public static void changed ( final Class cls ) {
+        for ( final Map.Entry<Class< ? >, List<Runnable>> entry : changeListeners.entrySet() ) {
+            if ( entry.getKey().isAssignableFrom( cls ) || cls.isAssignableFrom( entry.getKey() ) ) {
+                entry.getValue().forEach( Runnable::run );
+            }
+        }
+    }
+
+    /**
+     * Retrieves the Session that a single read or write should be performed
+     * in. If a unit of work is bound to the current thread (see
+     * {@link HibernateUtil#beginUnitOfWork()}) its Session and Transaction are
+     * reused; otherwise a new Session is opened and a Transaction started just
+     * for this operation.
+     *
+     * @return The Session to use, with an active Transaction
+     */
+    private static Session beginWork () {
+        final Session bound = HibernateUtil.currentSession();
+        if ( null != bound ) {
+            return bound;
+        }
         final Session session = HibernateUtil.openSession();
         session.beginTransaction();
-        session.load( obj, (Serializable) id );
+        return session;
+    }
+
+    /**
+     * Finishes a single read or write started by {@link #beginWork()}. A
+     * Session of its own is committed and closed. The shared Session of a
+     * unit of work is instead flushed, so that constraint violations surface
+     * here rather than at the end of the request, and then cleared, so that
+     * objects handed back to callers are detached exactly as they would be
+     * from a Session of their own.
+     *
+     * @param session
+     *            The Session returned from {@link #beginWork()}
+     */
+    private static void endWork ( final Session session ) {
+        if ( !session.isOpen() ) {
+            return; // already cleaned up by abortWork
+        }
+        if ( session == HibernateUtil.currentSession() ) {
+            session.flush();
+            session.clear();
+            return;
+        }
         session.getTransaction().commit();
         session.close();
-        return obj;
+    }
+
+    /**
+     * Cleans up after a read or write started by {@link #beginWork()} has
+     * failed. The Transaction is rolled back and the Session closed, as a
+     * Session cannot be used again once it has thrown. If it belonged to a unit
+     * of work, the whole unit of work is rolled back and fails, so the caller
+     * must let the failure propagate.
+     *
+     * @param session
+     *            The Session returned from {@link #beginWork()}
+     * @return true if the Session belonged to a unit of work
+     */
+    private static boolean abortWork ( final Session session ) {
+        if ( session == HibernateUtil.currentSession() ) {
+            HibernateUtil.failUnitOfWork();
+            return true;
+        }
+        try {
+            if ( TransactionStatus.ACTIVE == session.getTransaction().getStatus() ) {
+                session.getTransaction().rollback();
+            }
+        }
+        finally {
+            session.close();
+        }
+        return false;
     }
 
     /**
@@ -304,6 +1040,21 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         return createCriterionList( eq( field, value ) );
     }
 
+    /**
+     * Creates a Map holding a single field and the value it must have, to pass
+     * to a bulk operation such as {@link #deleteWhere(Class, Map)}. As with
+     * {@link #eq(String, Object)}, a null value matches no records.
+     *
+     * @param field
+     *            The field to match on
+     * @param value
+     *            The value to compare against
+     * @return The Map that results
+     */
+    protected static Map<String, Object> eqMap ( final String field, final Object value ) {
+        return Collections.singletonMap( field, value );
+    }
+
     /**
      * Create an equals-relation Criterion between the field and the value
      * provided. This is used to retrieve DomainObjects from the database. Note
@@ -338,4 +1089,21 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         return Restrictions.between( field, lbound, ubound );
     }
 
+    /**
+     * Creates a Criterion matching records where a time field falls within the
+     * last however many minutes provided, so that time windows are checked by
+     * the database rather than after records have been retrieved.
+     *
+     * @param field
+     *            The Calendar field to check
+     * @param minutes
+     *            Length of the window, in minutes, ending now
+     * @return Criterion created
+     */
+    protected static Criterion within ( final String field, final int minutes ) {
+        final Calendar start = Calendar.getInstance();
+        start.add( Calendar.MINUTE, -minutes );
+        return Restrictions.gt( field, start );
+    }
+
 }
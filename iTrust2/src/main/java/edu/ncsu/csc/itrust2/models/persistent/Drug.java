@@ -1,5 +1,7 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.Entity;
@@ -186,9 +188,16 @@ public class Drug extends DomainObject<Drug> {
      *
      * @return all saved drugs
      */
-    @SuppressWarnings ( "unchecked" )
     public static List<Drug> getAll () {
-        return (List<Drug>) DomainObject.getAll( Drug.class );
+        return new ArrayList<Drug>( CACHE.get() );
     }
 
+    /**
+     * In-memory copy of the drug table. Dropped whenever a drug is added,
+     * edited, or removed.
+     */
+    @SuppressWarnings ( "unchecked" )
+    private static final CatalogCache<List<Drug>> CACHE = new CatalogCache<List<Drug>>( Drug.class,
+            () -> Collections.unmodifiableList( (List<Drug>) DomainObject.getAll( Drug.class ) ) );
+
 }
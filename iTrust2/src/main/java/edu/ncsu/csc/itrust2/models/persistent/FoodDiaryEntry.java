@@ -10,6 +10,7 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -28,7 +29,8 @@ import edu.ncsu.csc.itrust2.models.enums.MealType;
  *
  */
 @Entity
-@Table ( name = "FoodDiaryEntry" )
+@Table ( name = "FoodDiaryEntry", indexes = {
+        @Index ( name = "idx_fooddiaryentry_patient_date", columnList = "patient, date" ) } )
 public class FoodDiaryEntry extends DomainObject<FoodDiaryEntry> implements Serializable {
 
     /**
@@ -1,6 +1,8 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.Entity;
@@ -97,11 +99,18 @@ public class Hospital extends DomainObject<Hospital> implements Serializable {
      *
      * @return Hospitals found
      */
-    @SuppressWarnings ( "unchecked" )
     public static List<Hospital> getHospitals () {
-        return (List<Hospital>) getAll( Hospital.class );
+        return new ArrayList<Hospital>( CACHE.get() );
     }
 
+    /**
+     * In-memory copy of the Hospital table. Dropped whenever a Hospital is
+     * added, edited, or removed.
+     */
+    @SuppressWarnings ( "unchecked" )
+    private static final CatalogCache<List<Hospital>> CACHE = new CatalogCache<List<Hospital>>( Hospital.class,
+            () -> Collections.unmodifiableList( (List<Hospital>) getAll( Hospital.class ) ) );
+
     /**
      * Construct an empty Hospital record. Used for Hibernate.
      */
@@ -1,7 +1,9 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.persistence.Entity;
@@ -188,9 +190,8 @@ public class ICDCode extends DomainObject<Diagnosis> {
      *
      * @return The list of Codes
      */
-    @SuppressWarnings ( "unchecked" )
     public static List<ICDCode> getAll () {
-        return (List<ICDCode>) DomainObject.getAll( ICDCode.class );
+        return new ArrayList<ICDCode>( CACHE.get().all );
     }
 
     /**
@@ -200,25 +201,62 @@ public class ICDCode extends DomainObject<Diagnosis> {
      * @return The list of opthalmology codes.
      */
     public static List<ICDCode> getOphthalmologyCodes () {
-        final List<ICDCode> all = ICDCode.getAll();
-        final List<ICDCode> oph = new ArrayList<ICDCode>();
-
-        for ( final ICDCode code : all ) {
-            if ( code.getCode().charAt( 0 ) == 'O' ) {
-                oph.add( code );
-            }
-        }
-        return oph;
+        return new ArrayList<ICDCode>( CACHE.get().ophthalmology );
     }
 
     /**
      * Returns a list of all ICDCodes not related to ophthalmology
-     * 
+     *
      * @return The list of non-opthalmology codes
      */
     public static List<ICDCode> getGeneralCheckupCodes () {
-        return ICDCode.getAll().stream().filter( code -> code.getCode().charAt( 0 ) != 'O' )
-                .collect( Collectors.toList() );
+        return new ArrayList<ICDCode>( CACHE.get().general );
+    }
+
+    /**
+     * In-memory copy of the ICD code table, already split into ophthalmology
+     * and general checkup codes. Dropped whenever a code is added, edited, or
+     * removed.
+     */
+    private static final CatalogCache<Catalog> CACHE = new CatalogCache<Catalog>( ICDCode.class, Catalog::load );
+
+    /**
+     * Snapshot of the ICD code table, partitioned by prefix
+     */
+    private static final class Catalog {
+
+        /** Every code in the system */
+        private final List<ICDCode> all;
+
+        /** Codes related to ophthalmology (prefixed with O) */
+        private final List<ICDCode> ophthalmology;
+
+        /** All other codes */
+        private final List<ICDCode> general;
+
+        /**
+         * Partitions the codes provided
+         *
+         * @param codes
+         *            Every code in the system
+         */
+        private Catalog ( final List<ICDCode> codes ) {
+            all = Collections.unmodifiableList( codes );
+            final Map<Boolean, List<ICDCode>> split = codes.stream()
+                    .collect( Collectors.partitioningBy( code -> code.getCode().charAt( 0 ) == 'O' ) );
+            ophthalmology = Collections.unmodifiableList( split.get( true ) );
+            general = Collections.unmodifiableList( split.get( false ) );
+        }
+
+        /**
+         * Reads the ICD code table from the database
+         *
+         * @return The partitioned table
+         */
+        @SuppressWarnings ( "unchecked" )
+        private static Catalog load () {
+            return new Catalog( (List<ICDCode>) DomainObject.getAll( ICDCode.class ) );
+        }
     }
 
 }
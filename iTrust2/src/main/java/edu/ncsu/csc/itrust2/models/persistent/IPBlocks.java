@@ -0,0 +1,226 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+
+/**
+ * In-memory copy of the banned and locked-out IP addresses, as these are
+ * checked on every request. It is read from the database on first use, and is
+ * then kept current by applying each ban or lockout saved on this node to it
+ * as it is made, rather than by reading it all again. Bans and lockouts made by
+ * other nodes, or changed directly in the database, are picked up by reading
+ * it again every `login.blockRefreshSeconds` seconds (60) once
+ * {@link #start()} has been called.
+ */
+public class IPBlocks {
+
+    /** Seconds between reads of the whole copy from the database */
+    private static final int                REFRESH_SECONDS = DBUtil.setting( "login.blockRefreshSeconds", 60 );
+
+    /** Guards changes to {@link #current} and {@link #pending} */
+    private static final Object             LOCK            = new Object();
+
+    /** Held while the copy is read from the database, one read at a time */
+    private static final Object             REFRESH         = new Object();
+
+    /** The copy, or null if it has not been read yet */
+    private static volatile Blocks          current;
+
+    /**
+     * Changes made while the copy is being read from the database, to apply
+     * to what was read before it replaces the current copy; null when it is
+     * not being read
+     */
+    private static List<Consumer<Blocks>>   pending;
+
+    /** Reads the copy again in the background, if started */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Checks whether an IP is banned
+     *
+     * @param addr
+     *            The IP to check
+     * @return true if it is banned
+     */
+    static boolean isBanned ( final String addr ) {
+        return blocks().banned.contains( addr );
+    }
+
+    /**
+     * Checks whether an IP is locked out
+     *
+     * @param addr
+     *            The IP to check
+     * @return true if its latest lockout has not yet ended
+     */
+    static boolean isLocked ( final String addr ) {
+        final Long until = blocks().locked.get( addr );
+        return null != until && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Records a new ban of an IP
+     *
+     * @param addr
+     *            The IP banned
+     */
+    static void ban ( final String addr ) {
+        apply( blocks -> blocks.banned.add( addr ) );
+    }
+
+    /**
+     * Records that an IP is no longer banned
+     *
+     * @param addr
+     *            The IP cleared
+     */
+    static void unban ( final String addr ) {
+        apply( blocks -> blocks.banned.remove( addr ) );
+    }
+
+    /**
+     * Records a new lockout of an IP
+     *
+     * @param addr
+     *            The IP locked out
+     * @param until
+     *            When the lockout ends, in epoch millis
+     */
+    static void lock ( final String addr, final long until ) {
+        apply( blocks -> blocks.locked.merge( addr, until, Math::max ) );
+    }
+
+    /**
+     * Records that an IP is no longer locked out
+     *
+     * @param addr
+     *            The IP cleared
+     */
+    static void unlock ( final String addr ) {
+        apply( blocks -> blocks.locked.remove( addr ) );
+    }
+
+    /**
+     * Reads the whole copy from the database again. Changes recorded while it
+     * is being read are applied to it before it replaces the current copy, so
+     * none are lost.
+     */
+    public static void refresh () {
+        synchronized ( REFRESH ) {
+            synchronized ( LOCK ) {
+                pending = new ArrayList<Consumer<Blocks>>();
+            }
+            Blocks read = null;
+            try {
+                read = new Blocks( LoginBan.loadBannedIPs(), LoginLockout.loadLockedIPs() );
+            }
+            finally {
+                synchronized ( LOCK ) {
+                    if ( null != read ) {
+                        for ( final Consumer<Blocks> change : pending ) {
+                            change.accept( read );
+                        }
+                        current = read;
+                    }
+                    pending = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts reading the copy again every `login.blockRefreshSeconds` seconds
+     */
+    public static synchronized void start () {
+        if ( REFRESH_SECONDS < 1 || null != scheduler ) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-ip-blocks" );
+            t.setDaemon( true );
+            return t;
+        } );
+        scheduler.scheduleWithFixedDelay( () -> {
+            try {
+                refresh();
+            }
+            catch ( final Exception e ) {
+                e.printStackTrace();
+            }
+        }, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Stops reading the copy again in the background
+     */
+    public static synchronized void shutdown () {
+        if ( null != scheduler ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Retrieves the copy, reading it from the database if it has not been yet
+     *
+     * @return The copy
+     */
+    private static Blocks blocks () {
+        Blocks blocks = current;
+        if ( null == blocks ) {
+            synchronized ( REFRESH ) {
+                if ( null == current ) {
+                    refresh();
+                }
+            }
+            blocks = current;
+        }
+        return blocks;
+    }
+
+    /**
+     * Applies a change to the copy, and again to the copy being read from the
+     * database, if any
+     *
+     * @param change
+     *            The change to apply
+     */
+    private static void apply ( final Consumer<Blocks> change ) {
+        synchronized ( LOCK ) {
+            if ( null != current ) {
+                change.accept( current );
+            }
+            if ( null != pending ) {
+                pending.add( change );
+            }
+        }
+    }
+
+    /**
+     * The banned and locked-out IPs at one time
+     */
+    private static final class Blocks {
+
+        /** The banned IPs */
+        private final Set<String>       banned = ConcurrentHashMap.newKeySet();
+
+        /** When the latest lockout of each locked-out IP ends, in epoch millis */
+        private final Map<String, Long> locked = new ConcurrentHashMap<String, Long>();
+
+        private Blocks ( final Set<String> banned, final Map<String, Long> locked ) {
+            this.banned.addAll( banned );
+            this.locked.putAll( locked );
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -215,9 +217,16 @@ public class LOINC extends DomainObject<LOINC> {
      *
      * @return The list of Codes
      */
-    @SuppressWarnings ( "unchecked" )
     public static List<LOINC> getAll () {
-        return (List<LOINC>) DomainObject.getAll( LOINC.class );
+        return new ArrayList<LOINC>( CACHE.get() );
     }
 
+    /**
+     * In-memory copy of the LOINC code table. Dropped whenever a code is added,
+     * edited, or removed.
+     */
+    @SuppressWarnings ( "unchecked" )
+    private static final CatalogCache<List<LOINC>> CACHE = new CatalogCache<List<LOINC>>( LOINC.class,
+            () -> Collections.unmodifiableList( (List<LOINC>) DomainObject.getAll( LOINC.class ) ) );
+
 }
@@ -1,6 +1,7 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 
@@ -10,8 +11,11 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -29,7 +33,14 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
  *
  */
 @Entity
-@Table ( name = "LabProcedures" )
+@Table ( name = "LabProcedures", indexes = {
+        @Index ( name = "idx_labprocedures_labtech_status", columnList = "labtech, status" ),
+        @Index ( name = "idx_labprocedures_visit", columnList = "visit" ) } )
+@NamedQueries ( {
+        @NamedQuery ( name = "LabProcedure.forPatient",
+                query = "from LabProcedure l where l.patient.username = :patient and l.patient.role = :patientRole" ),
+        @NamedQuery ( name = "LabProcedure.forLabtech",
+                query = "from LabProcedure l where l.labtech.username = :labtech and l.labtech.role = :labtechRole" ) } )
 public class LabProcedure extends DomainObject<LabProcedure> {
 
     /**
@@ -129,8 +140,10 @@ public class LabProcedure extends DomainObject<LabProcedure> {
      *            the name of the patient
      * @return the lab procedures associated with the queried patient
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<LabProcedure> getForPatient ( final String patientName ) {
-        return getWhere( eqList( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ) );
+        return (List<LabProcedure>) getNamed( "LabProcedure.forPatient", "patient", patientName, "patientRole",
+                Role.ROLE_PATIENT );
     }
 
     /**
@@ -151,8 +164,30 @@ public class LabProcedure extends DomainObject<LabProcedure> {
      *            the name of the Lab Tech
      * @return the lab procedures of the queried Lab Tech
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<LabProcedure> getForLabtech ( final String techName ) {
-        return getWhere( eqList( "labtech", User.getByNameAndRole( techName, Role.ROLE_LABTECH ) ) );
+        return (List<LabProcedure>) getNamed( "LabProcedure.forLabtech", "labtech", techName, "labtechRole",
+                Role.ROLE_LABTECH );
+    }
+
+    /**
+     * Get a single page of the lab procedures assigned to a specific Lab Tech
+     *
+     * @param techName
+     *            the name of the Lab Tech
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of lab procedures for the queried Lab Tech
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<LabProcedure> getForLabtech ( final String techName, final Integer page, final String after,
+            final Integer size ) {
+        return getPage( LabProcedure.class,
+                eqList( "labtech", User.getByNameAndRole( techName, Role.ROLE_LABTECH ) ), ID, page, after, size );
     }
 
     /**
@@ -183,6 +218,23 @@ public class LabProcedure extends DomainObject<LabProcedure> {
         return procedures;
     }
 
+    /**
+     * Get a single page of the lab procedures in the database
+     *
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of lab procedures
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<LabProcedure> getLabProcedures ( final Integer page, final String after,
+            final Integer size ) {
+        return getPage( LabProcedure.class, Collections.emptyList(), ID, page, after, size );
+    }
+
     /**
      * Helper method to pass to the DomainObject class that performs a specific
      * query on the database.
@@ -1,21 +1,36 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Restrictions;
 
+import edu.ncsu.csc.itrust2.archive.LogArchive;
+import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.utils.AuditWriter;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -28,9 +43,19 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
  *
  */
 @Entity
-@Table ( name = "LogEntries" )
+@Table ( name = "LogEntries", indexes = {
+        @Index ( name = "idx_logentries_primary_time", columnList = "primaryUser, time" ),
+        @Index ( name = "idx_logentries_secondary_time", columnList = "secondaryUser, time" ),
+        @Index ( name = "idx_logentries_time", columnList = "time" ) } )
 public class LogEntry extends DomainObject<LogEntry> {
 
+    /**
+     * The types of event that patients may see in their own log
+     */
+    private static final Set<TransactionType> PATIENT_VIEWABLE = EnumSet.allOf( TransactionType.class ).stream()
+            .filter( TransactionType::isPatientViewable ).collect( Collectors.toCollection(
+                    () -> EnumSet.noneOf( TransactionType.class ) ) );
+
     /**
      * Type of event that has been logged
      */
@@ -60,6 +85,26 @@ public class LogEntry extends DomainObject<LogEntry> {
      */
     private String          message;
 
+    /**
+     * The role of the primary user when the event was logged, recorded with
+     * the event so that the log can be shown without looking users up
+     */
+    @Enumerated ( EnumType.STRING )
+    private Role            primaryRole;
+
+    /**
+     * The role of the secondary user when the event was logged, if there is
+     * one
+     */
+    @Enumerated ( EnumType.STRING )
+    private Role            secondaryRole;
+
+    /**
+     * Whether patients may see the event in their own log. Follows from the
+     * type of event.
+     */
+    private Boolean         patientViewable;
+
     /**
      * ID of the LogEntry
      */
@@ -68,13 +113,30 @@ public class LogEntry extends DomainObject<LogEntry> {
     private Long            id;
 
     /**
-     * Retrieve all LogEntries from the database.
+     * Retrieve all LogEntries, both archived and from the database.
      *
      * @return All LogEntries in the system
      */
-    @SuppressWarnings ( "unchecked" )
     public static List<LogEntry> getLogEntries () {
-        return (List<LogEntry>) getAll( LogEntry.class );
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        LogArchive.scan( entries::add );
+        entries.addAll( getWhere( new ArrayList<Criterion>() ) );
+        return entries;
+    }
+
+    /**
+     * Runs an action on every LogEntry, archived entries first and then those
+     * in the database, oldest first, without loading them all into memory at
+     * once. Use this rather than {@link #getLogEntries()} to work through the
+     * whole log.
+     *
+     * @param action
+     *            The action to run on each LogEntry
+     */
+    public static void scan ( final Consumer<LogEntry> action ) {
+        AuditWriter.flush();
+        LogArchive.scan( action );
+        scan( LogEntry.class, hot( new ArrayList<Criterion>() ), action );
     }
 
     /**
@@ -95,9 +157,24 @@ public class LogEntry extends DomainObject<LogEntry> {
 
     }
 
+    /**
+     * Retrieves the LogEntries in the database with the IDs provided, leaving
+     * out any that have been archived
+     *
+     * @param ids
+     *            The IDs to find
+     * @return The matching LogEntries, in no particular order
+     */
+    public static List<LogEntry> getByIds ( final Collection<Long> ids ) {
+        if ( ids.isEmpty() ) {
+            return new ArrayList<LogEntry>();
+        }
+        return getWhere( createCriterionList( Restrictions.in( ID, ids ) ) );
+    }
+
     /**
      * Retrieves a LogEntry list within the date range startDate and endDate is
-     * parsed by APILogEntry
+     * parsed by APILogEntry. Archived entries in the range come first.
      *
      * @param startDate
      *            The start date of the time range
@@ -108,11 +185,8 @@ public class LogEntry extends DomainObject<LogEntry> {
      */
 
     public static List<LogEntry> getByDateRange ( final Date startDate, final Date endDate ) {
-        final Calendar start = Calendar.getInstance();
-        start.setTime( startDate );
-        final Calendar end = Calendar.getInstance();
-        end.setTime( endDate );
-        end.add( Calendar.DAY_OF_MONTH, 1 ); // to make inclusive
+        final Calendar start = day( startDate, 0 );
+        final Calendar end = day( endDate, 1 ); // to make inclusive
 
         final String user = LoggerUtil.currentUser();
 
@@ -121,11 +195,14 @@ public class LogEntry extends DomainObject<LogEntry> {
         search.add(
                 Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) );
 
-        return getWhere( search );
+        return withArchived( user, start, end, getWhere( search ) );
     }
 
     /**
-     * Retrieve all LogEntries based on the where clause provided.
+     * Retrieve all LogEntries in the database based on the where clause
+     * provided, leaving out any that have already been archived. Entries still
+     * queued by the AuditWriter are written out first, so that nothing logged
+     * before the call is missing.
      *
      * @param where
      *            List of Criterion to and together and search for records by
@@ -133,20 +210,229 @@ public class LogEntry extends DomainObject<LogEntry> {
      */
     @SuppressWarnings ( "unchecked" )
     private static List<LogEntry> getWhere ( final List<Criterion> where ) {
-        return (List<LogEntry>) getWhere( LogEntry.class, where );
+        AuditWriter.flush();
+        return (List<LogEntry>) getWhere( LogEntry.class, hot( where ) );
     }
 
     /**
      * Retrieve all LogEntries where the user provided was either the primary or
-     * secondary user on the LogEntry.
+     * secondary user on the LogEntry. Archived entries come first.
      *
      * @param user
      *            The user to match on
      * @return All matching LogEntries
      */
     public static List<LogEntry> getAllForUser ( final String user ) {
-        return getWhere( createCriterionList(
-                Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) ) );
+        return withArchived( user, null, null, getWhere( createCriterionList(
+                Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) ) ) );
+    }
+
+    /**
+     * Adds the archived entries involving a user to entries found in the
+     * database
+     *
+     * @param user
+     *            The user to match on
+     * @param start
+     *            Earliest time to include, or null for no limit
+     * @param end
+     *            Time to stop before, or null for no limit
+     * @param hot
+     *            The entries found in the database
+     * @return The archived entries, oldest first, followed by the others
+     */
+    private static List<LogEntry> withArchived ( final String user, final Calendar start, final Calendar end,
+            final List<LogEntry> hot ) {
+        final List<LogEntry> entries = LogArchive.getForUser( user, start, end, null, 0, Integer.MAX_VALUE );
+        Collections.reverse( entries );
+        entries.addAll( hot );
+        return entries;
+    }
+
+    /**
+     * Retrieves one page of the LogEntries where the user provided was either
+     * the primary or secondary user, newest first. The filtering, sorting and
+     * paging are all done by the database, so only the entries on the page are
+     * loaded. Pages past the entries in the database are filled from the
+     * archive.
+     *
+     * @param user
+     *            The user to match on
+     * @param startDate
+     *            First day to include, or null to include everything
+     * @param endDate
+     *            Last day to include (inclusive), or null to include
+     *            everything
+     * @param patientViewable
+     *            Whether to include only events that patients may see
+     * @param page
+     *            Zero-based number of the page to retrieve
+     * @param size
+     *            Number of entries per page
+     * @return The page of entries
+     * @throws IllegalArgumentException
+     *             If the page number or size are invalid
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<LogEntry> getPageForUser ( final String user, final Date startDate, final Date endDate,
+            final boolean patientViewable, final int page, final int size ) {
+        AuditWriter.flush();
+        final List<Criterion> search = hot( forUser( user, startDate, endDate, patientViewable ) );
+        final Page<LogEntry> newest = getPage( LogEntry.class, search, "time", true, page, null, size );
+        if ( newest.getItems().size() == size || null == LogArchive.getArchivedThrough() ) {
+            return newest;
+        }
+
+        // Everything archived is older than everything in the database, so
+        // the archived entries pick up where the database's run out
+        final List<LogEntry> items = new ArrayList<LogEntry>( newest.getItems() );
+        final long skip = items.isEmpty() ? (long) page * size - countWhere( LogEntry.class, search ) : 0;
+        final boolean dated = null != startDate && null != endDate;
+        items.addAll( LogArchive.getForUser( user, dated ? day( startDate, 0 ) : null,
+                dated ? day( endDate, 1 ) : null, patientViewable ? PATIENT_VIEWABLE : null,
+                (int) Math.min( Integer.MAX_VALUE, Math.max( 0, skip ) ), size - items.size() ) );
+        return new Page<LogEntry>( items, page, size, null );
+    }
+
+    /**
+     * Retrieves the most recent LogEntries where the user provided was either
+     * the primary or secondary user, newest first. The newest entries with the
+     * user as primary and as secondary user are each read straight off the
+     * (user, time) indexes, with the database stopping after `top` of each,
+     * and the two are merged here; so however long the user's history is,
+     * only up to twice `top` entries are ever read. If the database holds
+     * fewer than `top`, the rest come from the archive, which only reads the
+     * blocks holding any of the user's entries, so nothing for a user with
+     * none archived.
+     *
+     * @param user
+     *            The user to match on
+     * @param top
+     *            Number of entries to retrieve, at most
+     *            {@link DomainObject#MAX_PAGE_SIZE}
+     * @param patientViewable
+     *            Whether to include only events that patients may see
+     * @return Up to `top` entries, newest first
+     * @throws IllegalArgumentException
+     *             If `top` is more than {@link DomainObject#MAX_PAGE_SIZE}
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static List<LogEntry> getTopForUser ( final String user, final int top, final boolean patientViewable ) {
+        if ( top < 1 ) {
+            return new ArrayList<LogEntry>();
+        }
+        AuditWriter.flush();
+        final List<LogEntry> recent = new ArrayList<LogEntry>();
+        for ( final String field : Arrays.asList( "primaryUser", "secondaryUser" ) ) {
+            final List<Criterion> search = new ArrayList<Criterion>( eqList( field, user ) );
+            if ( patientViewable ) {
+                search.add( Restrictions.in( "logCode", PATIENT_VIEWABLE ) );
+            }
+            final Page<LogEntry> page = getPage( LogEntry.class, hot( search ), "time", true, 0, null, top );
+            for ( final LogEntry le : page.getItems() ) {
+                // Skip anything already found with the user as primary
+                if ( "primaryUser".equals( field ) || !user.equals( le.getPrimaryUser() ) ) {
+                    recent.add( le );
+                }
+            }
+        }
+        recent.sort( Comparator.comparing( LogEntry::getTime ).thenComparing( LogEntry::getId ).reversed() );
+        if ( recent.size() >= top ) {
+            return new ArrayList<LogEntry>( recent.subList( 0, top ) );
+        }
+        recent.addAll( LogArchive.getForUser( user, null, null, patientViewable ? PATIENT_VIEWABLE : null, 0,
+                top - recent.size() ) );
+        return recent;
+    }
+
+    /**
+     * Counts the LogEntries that
+     * {@link #getPageForUser(String, Date, Date, boolean, int, int)} pages
+     * through, without loading any of them. Archived entries are counted
+     * from the archive.
+     *
+     * @param user
+     *            The user to match on
+     * @param startDate
+     *            First day to include, or null to include everything
+     * @param endDate
+     *            Last day to include (inclusive), or null to include
+     *            everything
+     * @param patientViewable
+     *            Whether to include only events that patients may see
+     * @return The number of matching entries
+     */
+    public static long countForUser ( final String user, final Date startDate, final Date endDate,
+            final boolean patientViewable ) {
+        AuditWriter.flush();
+        final boolean dated = null != startDate && null != endDate;
+        return countWhere( LogEntry.class, hot( forUser( user, startDate, endDate, patientViewable ) ) )
+                + LogArchive.countForUser( user, dated ? day( startDate, 0 ) : null,
+                        dated ? day( endDate, 1 ) : null, patientViewable ? PATIENT_VIEWABLE : null );
+    }
+
+    /**
+     * Builds the criteria for the entries involving a user, optionally limited
+     * to a range of days and to the events patients may see
+     *
+     * @param user
+     *            The user to match on
+     * @param startDate
+     *            First day to include, or null to include everything
+     * @param endDate
+     *            Last day to include (inclusive), or null to include
+     *            everything
+     * @param patientViewable
+     *            Whether to include only events that patients may see
+     * @return The criteria
+     */
+    private static List<Criterion> forUser ( final String user, final Date startDate, final Date endDate,
+            final boolean patientViewable ) {
+        final List<Criterion> search = new ArrayList<Criterion>();
+        search.add( Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) );
+        if ( null != startDate && null != endDate ) {
+            search.add( bt( "time", day( startDate, 0 ), day( endDate, 1 ) ) ); // to make inclusive
+        }
+        if ( patientViewable ) {
+            search.add( Restrictions.in( "logCode", PATIENT_VIEWABLE ) );
+        }
+        return search;
+    }
+
+    /**
+     * Limits a search of the database to the entries that have not been
+     * archived. Anything older is read from the archive instead, even if it
+     * has not been deleted from the database yet.
+     *
+     * @param where
+     *            The criteria to search by
+     * @return The criteria, plus one leaving out archived entries if there
+     *         are any
+     */
+    private static List<Criterion> hot ( final List<Criterion> where ) {
+        final Calendar through = LogArchive.getArchivedThrough();
+        if ( null == through ) {
+            return where;
+        }
+        final List<Criterion> search = new ArrayList<Criterion>( where );
+        search.add( Restrictions.ge( "time", through ) );
+        return search;
+    }
+
+    /**
+     * Turns a date into a time, some number of days after it
+     *
+     * @param date
+     *            The date
+     * @param days
+     *            Number of days to add
+     * @return The time
+     */
+    private static Calendar day ( final Date date, final int days ) {
+        final Calendar day = Calendar.getInstance();
+        day.setTime( date );
+        day.add( Calendar.DAY_OF_MONTH, days );
+        return day;
     }
 
     /**
@@ -170,6 +456,30 @@ public class LogEntry extends DomainObject<LogEntry> {
         this.setTime( Calendar.getInstance() );
     }
 
+    /**
+     * Recreates a LogEntry that has been moved out of the database into the
+     * archive, exactly as it was logged.
+     *
+     * @param id
+     *            The ID the entry had in the database
+     * @param code
+     *            The type of event that occurred
+     * @param primaryUser
+     *            The primary user that triggered the event
+     * @param secondaryUser
+     *            The secondary user involved
+     * @param message
+     *            An optional message for the event
+     * @param time
+     *            When the event occurred
+     */
+    public LogEntry ( final Long id, final TransactionType code, final String primaryUser,
+            final String secondaryUser, final String message, final Calendar time ) {
+        this( code, primaryUser, secondaryUser, message );
+        this.setId( id );
+        this.setTime( time );
+    }
+
     /**
      * Creates an empty LogEntry. Used by Hibernate.
      */
@@ -261,6 +571,91 @@ public class LogEntry extends DomainObject<LogEntry> {
      */
     public void setLogCode ( final TransactionType logCode ) {
         this.logCode = logCode;
+        this.patientViewable = null == logCode ? null : logCode.isPatientViewable();
+    }
+
+    /**
+     * Retrieves whether patients may see this LogEntry in their own log
+     *
+     * @return true if patients may see it
+     */
+    public boolean isPatientViewable () {
+        return Boolean.TRUE.equals( patientViewable );
+    }
+
+    /**
+     * Retrieves whether patients could see this LogEntry in their own log
+     * when it was logged, as recorded
+     *
+     * @return true or false, or null if it was not recorded
+     */
+    public Boolean getPatientViewable () {
+        return patientViewable;
+    }
+
+    /**
+     * Sets whether patients could see this LogEntry in their own log when it
+     * was logged, as when it is read back from the archive
+     *
+     * @param patientViewable
+     *            true or false, or null if it was not recorded
+     */
+    public void setPatientViewable ( final Boolean patientViewable ) {
+        this.patientViewable = patientViewable;
+    }
+
+    /**
+     * Retrieves the role the primary user had when the event was logged
+     *
+     * @return The role, or null if it is not known
+     */
+    public Role getPrimaryRole () {
+        return primaryRole;
+    }
+
+    /**
+     * Sets the role the primary user had when the event was logged
+     *
+     * @param primaryRole
+     *            The role
+     */
+    public void setPrimaryRole ( final Role primaryRole ) {
+        this.primaryRole = primaryRole;
+    }
+
+    /**
+     * Retrieves the role the secondary user had when the event was logged
+     *
+     * @return The role, or null if there is no secondary user or it is not
+     *         known
+     */
+    public Role getSecondaryRole () {
+        return secondaryRole;
+    }
+
+    /**
+     * Sets the role the secondary user had when the event was logged
+     *
+     * @param secondaryRole
+     *            The role
+     */
+    public void setSecondaryRole ( final Role secondaryRole ) {
+        this.secondaryRole = secondaryRole;
+    }
+
+    /**
+     * Retrieves the role a user involved in this LogEntry had when it was
+     * logged
+     *
+     * @param user
+     *            The primary or secondary user
+     * @return The role, or null if it is not known
+     */
+    public Role getRoleOf ( final String user ) {
+        if ( null == user ) {
+            return null;
+        }
+        return user.equals( primaryUser ) ? primaryRole : user.equals( secondaryUser ) ? secondaryRole : null;
     }
 
     /**
@@ -1,18 +1,16 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.util.Calendar;
-import java.util.List;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
-import org.hibernate.criterion.Criterion;
-
 /**
  * Class to hold failed login attempts. An entry is either for an IP address or
  * for a User, but not both. This way, IP lockouts and User lockouts are
@@ -28,7 +26,9 @@ import org.hibernate.criterion.Criterion;
  *
  */
 @Entity
-@Table ( name = "LoginAttempts" )
+@Table ( name = "LoginAttempts", indexes = {
+        @Index ( name = "idx_loginattempts_ip", columnList = "ip" ),
+        @Index ( name = "idx_loginattempts_user", columnList = "user_id" ) } )
 public class LoginAttempt extends DomainObject<LoginAttempt> {
 
     @Id
@@ -121,18 +121,6 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
         this.time = time;
     }
 
-    /**
-     * Retrieve a list of all LoginAttempts matching the criterion provided
-     *
-     * @param where
-     *            List of Criterion to and together and search for records by
-     * @return
-     */
-    @SuppressWarnings ( "unchecked" )
-    private static List<LoginAttempt> getWhere ( final List<Criterion> where ) {
-        return (List<LoginAttempt>) getWhere( LoginAttempt.class, where );
-    }
-
     /**
      * Returns the number of failed attempts for the given IP.
      *
@@ -141,7 +129,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      * @return the number of failures from the given IP
      */
     public static int getIPFailures ( final String addr ) {
-        return getWhere( eqList( "ip", addr ) ).size();
+        return (int) countWhere( LoginAttempt.class, eqList( "ip", addr ) );
     }
 
     /**
@@ -151,7 +139,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      *            The IP to clear.
      */
     public static void clearIP ( final String addr ) {
-        getWhere( eqList( "ip", addr ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginAttempt.class, eqMap( "ip", addr ) );
     }
 
     /**
@@ -162,7 +150,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      * @return The number of failed attempts for the User.
      */
     public static int getUserFailures ( final User user ) {
-        return getWhere( eqList( "user", user ) ).size();
+        return (int) countWhere( LoginAttempt.class, eqList( "user", user ) );
     }
 
     /**
@@ -172,7 +160,9 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      *            The user to clear.
      */
     public static void clearUser ( final User user ) {
-        getWhere( eqList( "user", user ) ).stream().forEach( e -> e.delete() );
+        if ( null != user ) {
+            deleteWhere( LoginAttempt.class, eqMap( "user", user ) );
+        }
     }
 
 }
@@ -1,17 +1,21 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
-import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 /**
  * Contains info about a LoginBan from the system. A ban does not expire, and
@@ -23,7 +27,9 @@ import org.hibernate.criterion.Criterion;
  *
  */
 @Entity
-@Table ( name = "LoginBans" )
+@Table ( name = "LoginBans", indexes = {
+        @Index ( name = "idx_loginbans_ip", columnList = "ip" ),
+        @Index ( name = "idx_loginbans_user", columnList = "user_id" ) } )
 public class LoginBan extends DomainObject<LoginBan> {
 
     @Id
@@ -116,26 +122,27 @@ public class LoginBan extends DomainObject<LoginBan> {
     }
 
     /**
-     * Retrieves all LoginBans for the criteria provided.
-     * 
-     * @param A
-     *            List of Criterion to search by to constrain what is retrieved
-     * @return The list of all matching LoginBans
+     * Saves the ban, adding it to the in-memory copy of the banned IPs if it is
+     * an IP ban.
      */
-    @SuppressWarnings ( "unchecked" )
-    private static List<LoginBan> getWhere ( final List<Criterion> where ) {
-        return (List<LoginBan>) getWhere( LoginBan.class, where );
+    @Override
+    public void save () {
+        super.save();
+        if ( null != ip ) {
+            IPBlocks.ban( ip );
+        }
     }
 
     /**
-     * Returns true if the given IP is banned.
+     * Returns true if the given IP is banned. Checked against an in-memory
+     * copy of the banned IPs, as this is done for every request.
      *
      * @param addr
      *            The IP to check
      * @return true if banned, false otherwise
      */
     public static boolean isIPBanned ( final String addr ) {
-        return getWhere( eqList( "ip", addr ) ).size() > 0;
+        return IPBlocks.isBanned( addr );
     }
 
     /**
@@ -146,7 +153,7 @@ public class LoginBan extends DomainObject<LoginBan> {
      * @return true if banned, false otherwise.
      */
     public static boolean isUserBanned ( final User user ) {
-        return getWhere( eqList( "user", user ) ).size() > 0;
+        return existsWhere( LoginBan.class, eqList( "user", user ) );
     }
 
     /**
@@ -156,7 +163,8 @@ public class LoginBan extends DomainObject<LoginBan> {
      *            The IP to clear.
      */
     public static void clearIP ( final String addr ) {
-        getWhere( eqList( "ip", addr ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginBan.class, eqMap( "ip", addr ) );
+        IPBlocks.unban( addr );
     }
 
     /**
@@ -166,6 +174,23 @@ public class LoginBan extends DomainObject<LoginBan> {
      *            The user to clear.
      */
     public static void clearUser ( final User user ) {
-        getWhere( eqList( "user", user ) ).stream().forEach( e -> e.delete() );
+        if ( null != user ) {
+            deleteWhere( LoginBan.class, eqMap( "user", user ) );
+        }
+    }
+
+    /**
+     * Retrieves every banned IP from the database
+     *
+     * @return The banned IPs
+     */
+    @SuppressWarnings ( "unchecked" )
+    static Set<String> loadBannedIPs () {
+        final Set<String> ips = new HashSet<String>();
+        for ( final LoginBan ban : (List<LoginBan>) getWhere( LoginBan.class,
+                createCriterionList( Restrictions.isNotNull( "ip" ) ) ) ) {
+            ips.add( ban.getIp() );
+        }
+        return Collections.unmodifiableSet( ips );
     }
 }
@@ -1,18 +1,22 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
-import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 /**
  * Class that holds a lockout for a user or ip. It contains a timestamp used to
@@ -25,9 +29,14 @@ import org.hibernate.criterion.Criterion;
  *
  */
 @Entity
-@Table ( name = "LoginLockouts" )
+@Table ( name = "LoginLockouts", indexes = {
+        @Index ( name = "idx_loginlockouts_ip_time", columnList = "ip, time" ),
+        @Index ( name = "idx_loginlockouts_user_time", columnList = "user_id, time" ) } )
 public class LoginLockout extends DomainObject<LoginLockout> {
 
+    /** How long a lockout lasts, in minutes */
+    private static final int LOCKOUT_MINUTES = 60;
+
     @Id
     @GeneratedValue ( strategy = GenerationType.AUTO )
     private Long     id;
@@ -119,6 +128,18 @@ public class LoginLockout extends DomainObject<LoginLockout> {
         this.time = time;
     }
 
+    /**
+     * Saves the lockout, adding it to the in-memory copy of the IP lockouts if
+     * it is an IP lockout.
+     */
+    @Override
+    public void save () {
+        super.save();
+        if ( null != ip && null != time ) {
+            IPBlocks.lock( ip, time.getTimeInMillis() + LOCKOUT_MINUTES * 60 * 1000L );
+        }
+    }
+
     /**
      * Returns the number of lockouts for the given IP within the timeframe set
      * to ban.
@@ -128,22 +149,7 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return The number of lockouts for the given IP
      */
     public static int getRecentIPLockouts ( final String addr ) {
-        final Long now = Calendar.getInstance().getTimeInMillis();
-        return getWhere( eqList( "ip", addr ) ).stream()
-                .filter( e -> ( now - e.getTime().getTimeInMillis() ) < 1440 * 60 * 1000 )
-                .collect( Collectors.toList() ).size(); // 1440 minutes
-    }
-
-    /**
-     * Retrieve a list of Lockouts matching the given criteria
-     *
-     * @param where
-     *            List of Criterion to and together and search for records by
-     * @return The list of matching records
-     */
-    @SuppressWarnings ( "unchecked" )
-    private static List<LoginLockout> getWhere ( final List<Criterion> where ) {
-        return (List<LoginLockout>) getWhere( LoginLockout.class, where );
+        return (int) countWhere( LoginLockout.class, Arrays.asList( eq( "ip", addr ), within( "time", 1440 ) ) );
     }
 
     /**
@@ -163,22 +169,21 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      *            The IP to clear
      */
     public static void clearIP ( final String addr ) {
-        getWhere( eqList( "ip", addr ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginLockout.class, eqMap( "ip", addr ) );
+        IPBlocks.unlock( addr );
     }
 
     /**
-     * Returns true if the given IP is locked out currently.
+     * Returns true if the given IP is locked out currently. Checked against an
+     * in-memory copy of the recent IP lockouts, as this is done for every
+     * request.
      *
      * @param addr
      *            The IP to check.
      * @return true if IP is locked out, flase otherwise
      */
     public static boolean isIPLocked ( final String addr ) {
-        final Long now = Calendar.getInstance().getTimeInMillis();
-        return getWhere( eqList( "ip", addr ) ).stream()
-                .filter( e -> ( now - e.getTime().getTimeInMillis() ) < 60 * 60 * 1000 ).collect( Collectors.toList() )
-                .size() > 0; // locked if within 60 minutes
-
+        return IPBlocks.isLocked( addr );
     }
 
     /**
@@ -190,10 +195,7 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return The number of lockouts for the user
      */
     public static int getRecentUserLockouts ( final User user ) {
-        final Long now = Calendar.getInstance().getTimeInMillis();
-        return getWhere( eqList( "user", user ) ).stream()
-                .filter( e -> ( now - e.getTime().getTimeInMillis() ) < 1440 * 60 * 1000 )
-                .collect( Collectors.toList() ).size(); // 1440 minutes
+        return (int) countWhere( LoginLockout.class, Arrays.asList( eq( "user", user ), within( "time", 1440 ) ) );
     }
 
     /**
@@ -203,7 +205,9 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      *            The User to clear.
      */
     public static void clearUser ( final User user ) {
-        getWhere( eqList( "user", user ) ).stream().forEach( e -> e.delete() );
+        if ( null != user ) {
+            deleteWhere( LoginLockout.class, eqMap( "user", user ) );
+        }
     }
 
     /**
@@ -214,10 +218,25 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return true if the user is locked out, false otherwise
      */
     public static boolean isUserLocked ( final User user ) {
-        final Long now = Calendar.getInstance().getTimeInMillis();
-        return getWhere( eqList( "user", user ) ).stream()
-                .filter( e -> ( now - e.getTime().getTimeInMillis() ) < 60 * 60 * 1000 ).collect( Collectors.toList() )
-                .size() > 0; // locked if within 60 minutes
+        // locked if within 60 minutes
+        return existsWhere( LoginLockout.class,
+                Arrays.asList( eq( "user", user ), within( "time", LOCKOUT_MINUTES ) ) );
+    }
+
+    /**
+     * Retrieves the IP lockouts still in force from the database
+     *
+     * @return When the latest lockout of each IP ends, in epoch millis
+     */
+    @SuppressWarnings ( "unchecked" )
+    static Map<String, Long> loadLockedIPs () {
+        final Map<String, Long> until = new HashMap<String, Long>();
+        for ( final LoginLockout lockout : (List<LoginLockout>) getWhere( LoginLockout.class,
+                Arrays.asList( Restrictions.isNotNull( "ip" ), within( "time", LOCKOUT_MINUTES ) ) ) ) {
+            final long end = lockout.getTime().getTimeInMillis() + LOCKOUT_MINUTES * 60 * 1000L;
+            until.merge( lockout.getIp(), end, Math::max );
+        }
+        return Collections.unmodifiableMap( until );
     }
 
 }
@@ -3,10 +3,11 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Vector;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.persistence.Entity;
@@ -15,10 +16,13 @@ import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
@@ -36,8 +40,18 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
  *
  */
 @Entity
-@Table ( name = "OfficeVisits" )
+@Table ( name = "OfficeVisits", indexes = {
+        @Index ( name = "idx_officevisits_patient_date", columnList = "patient_id, date" ),
+        @Index ( name = "idx_officevisits_hcp_date", columnList = "hcp_id, date" ) } )
 @Inheritance ( strategy = InheritanceType.JOINED )
+@NamedQueries ( {
+        @NamedQuery ( name = "OfficeVisit.forPatient",
+                query = "from OfficeVisit v where v.patient.username = :patient and v.patient.role = :patientRole" ),
+        @NamedQuery ( name = "OfficeVisit.forHCP",
+                query = "from OfficeVisit v where v.hcp.username = :hcp and v.hcp.role = :hcpRole" ),
+        @NamedQuery ( name = "OfficeVisit.forHCPAndPatient",
+                query = "from OfficeVisit v where v.hcp.username = :hcp and v.hcp.role = :hcpRole"
+                        + " and v.patient.username = :patient and v.patient.role = :patientRole" ) } )
 public class OfficeVisit extends DomainObject<OfficeVisit> {
 
     /**
@@ -127,8 +141,10 @@ public class OfficeVisit extends DomainObject<OfficeVisit> {
      *            the name of the patient
      * @return the office visits of the queried patient
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<OfficeVisit> getForPatient ( final String patientName ) {
-        return getWhere( eqList( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ) );
+        return (List<OfficeVisit>) getNamed( "OfficeVisit.forPatient", "patient", patientName, "patientRole",
+                Role.ROLE_PATIENT );
     }
 
     /**
@@ -138,8 +154,9 @@ public class OfficeVisit extends DomainObject<OfficeVisit> {
      *            the name of the HCP
      * @return the office visits of the queried HCP
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<OfficeVisit> getForHCP ( final String hcpName ) {
-        return getWhere( eqList( "hcp", User.getByNameAndRole( hcpName, Role.ROLE_HCP ) ) );
+        return (List<OfficeVisit>) getNamed( "OfficeVisit.forHCP", "hcp", hcpName, "hcpRole", Role.ROLE_HCP );
     }
 
     /**
@@ -151,11 +168,10 @@ public class OfficeVisit extends DomainObject<OfficeVisit> {
      *            the name of the patient
      * @return the office visits of the queried HCP, patient combo
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<OfficeVisit> getForHCPAndPatient ( final String hcpName, final String patientName ) {
-        final Vector<Criterion> criteria = new Vector<Criterion>();
-        criteria.add( eq( "hcp", User.getByNameAndRole( hcpName, Role.ROLE_HCP ) ) );
-        criteria.add( eq( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ) );
-        return getWhere( criteria );
+        return (List<OfficeVisit>) getNamed( "OfficeVisit.forHCPAndPatient", "hcp", hcpName, "hcpRole",
+                Role.ROLE_HCP, "patient", patientName, "patientRole", Role.ROLE_PATIENT );
 
     }
 
@@ -171,6 +187,33 @@ public class OfficeVisit extends DomainObject<OfficeVisit> {
         return visits;
     }
 
+    /**
+     * Runs an action on every office visit in the database without loading
+     * them all into memory at once
+     *
+     * @param action
+     *            the action to run on each office visit
+     */
+    public static void scan ( final Consumer<OfficeVisit> action ) {
+        scan( OfficeVisit.class, Collections.emptyList(), action );
+    }
+
+    /**
+     * Get a single page of the office visits in the database, sorted by date
+     *
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of office visits
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<OfficeVisit> getOfficeVisits ( final Integer page, final String after, final Integer size ) {
+        return getPage( OfficeVisit.class, Collections.emptyList(), "date", page, after, size );
+    }
+
     /**
      * Helper method to pass to the DomainObject class that performs a specific
      * query on the database.
@@ -0,0 +1,87 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import java.util.List;
+
+/**
+ * A single page of DomainObjects retrieved by
+ * {@link DomainObject#getPage(Class, List, String, Integer, String, Integer)}.
+ * Alongside the records themselves it carries a continuation token, which can
+ * be passed back as the `after` value to fetch the records that follow this
+ * page without the database having to skip over everything before them.
+ *
+ * @param <T>
+ *            Type of the records on the page
+ */
+public class Page <T> {
+
+    /** The records on this page */
+    private final List<T> items;
+
+    /** Zero-based number of this page, or null if it was requested by token */
+    private final Integer page;
+
+    /** Largest number of records the page could have held */
+    private final int     size;
+
+    /** Token for the following page, or null if this is the last one */
+    private final String  next;
+
+    /**
+     * Creates a Page.
+     *
+     * @param items
+     *            The records on this page
+     * @param page
+     *            Zero-based number of this page, or null if it was requested
+     *            by continuation token
+     * @param size
+     *            Largest number of records the page could have held
+     * @param next
+     *            Token for the following page, or null if there are no more
+     *            records
+     */
+    public Page ( final List<T> items, final Integer page, final int size, final String next ) {
+        this.items = items;
+        this.page = page;
+        this.size = size;
+        this.next = next;
+    }
+
+    /**
+     * Retrieves the records on this page
+     *
+     * @return The records on this page
+     */
+    public List<T> getItems () {
+        return items;
+    }
+
+    /**
+     * Retrieves the zero-based number of this page. Pages requested by
+     * continuation token have no number.
+     *
+     * @return The page number, or null
+     */
+    public Integer getPage () {
+        return page;
+    }
+
+    /**
+     * Retrieves the largest number of records this page could have held
+     *
+     * @return The page size
+     */
+    public int getSize () {
+        return size;
+    }
+
+    /**
+     * Retrieves the continuation token for the page after this one
+     *
+     * @return The token to pass as `after`, or null if this is the last page
+     */
+    public String getNext () {
+        return next;
+    }
+
+}
@@ -3,7 +3,6 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
@@ -20,7 +19,6 @@ import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 
-import org.hibernate.criterion.Criterion;
 import org.hibernate.validator.constraints.Length;
 
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
@@ -55,23 +53,7 @@ public class Patient extends User implements Serializable {
      * @return the patient with the queried username
      */
     public static Patient getByName ( final String username ) {
-        final List<Criterion> criteria = new ArrayList<>();
-        criteria.add( eq( "username", username ) );
-        return getWhere( criteria ).get( 0 );
-    }
-
-    /**
-     * Helper method to pass to the DomainObject class that performs a specific
-     * query on the database.
-     *
-     * @param where
-     *            List of Criterion to and together and search for records by
-     * @return The list of all patients found matching the Criterion provided
-     */
-    @SuppressWarnings ( "unchecked" )
-    private static List<Patient> getWhere ( final List<Criterion> where ) {
-        where.add( eq( "role", Role.ROLE_PATIENT ) );
-        return (List<Patient>) getWhere( User.class, where );
+        return (Patient) getNamed( "User.byNameAndRole", "name", username, "role", Role.ROLE_PATIENT ).get( 0 );
     }
 
     /**
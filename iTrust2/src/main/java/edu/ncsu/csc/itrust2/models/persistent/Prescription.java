@@ -4,6 +4,7 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -12,8 +13,10 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
@@ -32,7 +35,10 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
  * @author Kai Presler-Marshall
  */
 @Entity
-@Table ( name = "Prescriptions" )
+@Table ( name = "Prescriptions", indexes = {
+        @Index ( name = "idx_prescriptions_patient_end", columnList = "patient_id, endDate" ) } )
+@NamedQuery ( name = "Prescription.forPatient",
+        query = "from Prescription p where p.patient.username = :patient and p.patient.role = :patientRole" )
 public class Prescription extends DomainObject<Prescription> {
 
     @Id
@@ -251,8 +257,30 @@ public class Prescription extends DomainObject<Prescription> {
      *            The Patient to find Prescriptions for
      * @return The List of records that was found
      */
+    @SuppressWarnings ( "unchecked" )
     public static List<Prescription> getForPatient ( final String patient ) {
-        return getWhere( eqList( "patient", User.getByNameAndRole( patient, Role.ROLE_PATIENT ) ) );
+        return (List<Prescription>) getNamed( "Prescription.forPatient", "patient", patient, "patientRole",
+                Role.ROLE_PATIENT );
+    }
+
+    /**
+     * Returns a single page of the prescriptions for the given patient.
+     *
+     * @param patient
+     *            the patient whose prescriptions are being queried
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of prescriptions
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<Prescription> getForPatient ( final String patient, final Integer page, final String after,
+            final Integer size ) {
+        return getPage( Prescription.class,
+                eqList( "patient", User.getByNameAndRole( patient, Role.ROLE_PATIENT ) ), ID, page, after, size );
     }
 
     /**
@@ -293,4 +321,21 @@ public class Prescription extends DomainObject<Prescription> {
         return (List<Prescription>) DomainObject.getAll( Prescription.class );
     }
 
+    /**
+     * Gets a single page of the prescriptions in the system.
+     *
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of prescriptions
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<Prescription> getPrescriptions ( final Integer page, final String after,
+            final Integer size ) {
+        return getPage( Prescription.class, Collections.emptyList(), ID, page, after, size );
+    }
+
 }
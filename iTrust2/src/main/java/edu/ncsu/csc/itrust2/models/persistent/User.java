@@ -2,9 +2,13 @@ package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Vector;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -12,6 +16,8 @@ import javax.persistence.Enumerated;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.validation.constraints.Max;
@@ -23,11 +29,11 @@ import org.hibernate.annotations.LazyCollection;
 import org.hibernate.annotations.LazyCollectionOption;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.validator.constraints.Length;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
 import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
 
 /**
  * Basic class for a User in the system. This User class is a shared type that
@@ -43,6 +49,11 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
 @Entity
 @Table ( name = "Users" )
 @Inheritance ( strategy = InheritanceType.SINGLE_TABLE )
+@NamedQueries ( { @NamedQuery ( name = "User.byName", query = "from User u where u.username = :name" ),
+        @NamedQuery ( name = "User.byNameAndRole",
+                query = "from User u where u.username = :name and u.role = :role" ),
+        @NamedQuery ( name = "User.rolesByName",
+                query = "select u.username, u.role from User u where u.username in (:names)" ) } )
 public class User extends DomainObject<User> implements Serializable {
 
     /**
@@ -64,6 +75,22 @@ public class User extends DomainObject<User> implements Serializable {
         return (List<User>) getAll( User.class );
     }
 
+    /**
+     * Get a single page of the users in the database, sorted by username
+     *
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of users
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<User> getUsers ( final Integer page, final String after, final Integer size ) {
+        return getPage( User.class, Collections.emptyList(), "username", page, after, size );
+    }
+
     /**
      * Get the user by the username
      *
@@ -73,7 +100,7 @@ public class User extends DomainObject<User> implements Serializable {
      */
     public static User getByName ( final String name ) {
         try {
-            return getWhere( eqList( "username", name ) ).get( 0 );
+            return (User) getNamed( "User.byName", "name", name ).get( 0 );
         }
         catch ( final Exception e ) {
             return null;
@@ -90,12 +117,8 @@ public class User extends DomainObject<User> implements Serializable {
      * @return the user with this role and name
      */
     public static User getByNameAndRole ( final String name, final Role type ) {
-
-        final Vector<Criterion> criteria = new Vector<Criterion>();
-        criteria.add( eq( "username", name ) );
-        criteria.add( eq( "role", type ) );
         try {
-            return getWhere( criteria ).get( 0 );
+            return (User) getNamed( "User.byNameAndRole", "name", name, "role", type ).get( 0 );
         }
         catch ( final Exception e ) {
             return null;
@@ -103,6 +126,31 @@ public class User extends DomainObject<User> implements Serializable {
 
     }
 
+    /**
+     * Looks up the roles of several users at once, without loading the users
+     * themselves
+     *
+     * @param names
+     *            Usernames of the users; unknown and null names are skipped
+     * @return The role of each user found, by username
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Map<String, Role> getRoles ( final Collection<String> names ) {
+        final Set<String> known = new HashSet<String>( names );
+        known.remove( null );
+        final Map<String, Role> roles = new HashMap<String, Role>();
+        if ( known.isEmpty() ) {
+            return roles;
+        }
+        final List<Object[]> rows = (List<Object[]>) (List< ? >) getNamed( "User.rolesByName", "names", known );
+        if ( null != rows ) {
+            for ( final Object[] row : rows ) {
+                roles.put( (String) row[0], (Role) row[1] );
+            }
+        }
+        return roles;
+    }
+
     /**
      * Get all HCPs in the database
      *
@@ -122,6 +170,22 @@ public class User extends DomainObject<User> implements Serializable {
         return (List<Patient>) getAll( Patient.class );
     }
 
+    /**
+     * Get a single page of the patients in the database, sorted by username
+     *
+     * @param page
+     *            Zero-based number of the page to retrieve, or null
+     * @param after
+     *            Continuation token from the previous page, or null
+     * @param size
+     *            Number of records per page, or null for the default
+     * @return the page of patients
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<Patient> getPatients ( final Integer page, final String after, final Integer size ) {
+        return getPage( Patient.class, Collections.emptyList(), "username", page, after, size );
+    }
+
     /**
      * Get users where the passed query is true
      *
@@ -183,7 +247,7 @@ public class User extends DomainObject<User> implements Serializable {
         if ( !form.getPassword().equals( form.getPassword2() ) ) {
             throw new IllegalArgumentException( "Passwords do not match!" );
         }
-        final PasswordEncoder pe = new BCryptPasswordEncoder();
+        final PasswordEncoder pe = PasswordHasher.getInstance();
         setPassword( pe.encode( form.getPassword() ) );
         setEnabled( null != form.getEnabled() ? 1 : 0 );
         setRole( Role.valueOf( form.getRole() ) );
@@ -366,13 +430,7 @@ public class User extends DomainObject<User> implements Serializable {
     @Override
     public void delete () {
         try {
-            @SuppressWarnings ( "unchecked" )
-            final List<PasswordResetToken> list = (List<PasswordResetToken>) DomainObject
-                    .getAll( PasswordResetToken.class ).stream()
-                    .filter( x -> ( (PasswordResetToken) x ).getUser().equals( this ) ).collect( Collectors.toList() );
-            for ( final PasswordResetToken t : list ) {
-                t.delete();
-            }
+            scan( PasswordResetToken.class, eqList( "user", this ), ( final PasswordResetToken t ) -> t.delete() );
         }
         catch ( final Exception e ) {
             // ignore to allow a second attempt at deleting this object
@@ -0,0 +1,815 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import edu.ncsu.csc.itrust2.archive.LogArchive;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * An append-only journal of every logged event, kept on local disk alongside
+ * the LogEntries table, that shows whether it has been tampered with. Each
+ * event is written as one fixed-size record holding a SHA-256 hash of the
+ * record before it and of its own contents, so that changing, removing or
+ * reordering any record breaks the chain from that point on. The journal is
+ * split over files of `journal.fileRecords` records each, named after the
+ * sequence number of their first record, and is read back through memory
+ * mapped files.
+ *
+ * Each record is {@value #RECORD} bytes:
+ *
+ * <pre>
+ *   0  sequence number           8
+ *   8  time, epoch millis        8
+ *  16  TransactionType name     48 (1-byte length + UTF-8)
+ *  64  primary user             64 (1-byte length + UTF-8)
+ * 128  secondary user           64 (1-byte length + UTF-8, length 255 if none)
+ * 192  message                 288 (2-byte length + UTF-8, length 65535 if none)
+ * 480  SHA-256 of the previous record's hash and bytes 0-479 of this one
+ * </pre>
+ *
+ * Text too long for its field is cut short; LogEntries holds no more than 255
+ * characters of a message either. Records are in order of time as well as of
+ * sequence number (an entry that raced another onto the journal has its time
+ * moved on to match), so a range of time is found by binary search.
+ *
+ * Configured with these settings in db.properties:
+ * <ul>
+ * <li>`journal.enabled`: `true` (the default), or `false` to not keep a
+ * journal</li>
+ * <li>`journal.dir`: directory the journal is kept in (`journal`)</li>
+ * <li>`journal.fileRecords`: records per file (262144, for 128MB files)</li>
+ * <li>`journal.fsync`: `true` to flush each record to disk before `log`
+ * returns, rather than leaving that to the operating system</li>
+ * </ul>
+ *
+ * The chain only shows that the journal is consistent with itself, so the
+ * head printed by `verify` should be kept somewhere else as well; a journal
+ * that no longer leads up to a recorded head has been rewritten. Run by hand:
+ *
+ * <pre>
+ * java -cp ... edu.ncsu.csc.itrust2.utils.AuditJournal verify
+ * java -cp ... edu.ncsu.csc.itrust2.utils.AuditJournal replay [yyyy-MM-dd [yyyy-MM-dd]]
+ * </pre>
+ */
+public class AuditJournal {
+
+    /** Size in bytes of each record */
+    public static final int       RECORD       = 512;
+
+    /** Offset of the TransactionType name */
+    private static final int      CODE         = 16;
+
+    /** Offset of the primary user */
+    private static final int      PRIMARY      = 64;
+
+    /** Offset of the secondary user */
+    private static final int      SECONDARY    = 128;
+
+    /** Offset of the message */
+    private static final int      MESSAGE      = 192;
+
+    /** Offset of the hash */
+    private static final int      HASH         = 480;
+
+    /** Size of each hash */
+    private static final int      HASH_LENGTH  = 32;
+
+    /** Length recorded for a field that has no value */
+    private static final int      NONE         = -1;
+
+    /** Hash the first record is chained from */
+    private static final byte[]   GENESIS      = new byte[HASH_LENGTH];
+
+    /** Extension of each journal file */
+    private static final String   EXTENSION    = ".jnl";
+
+    /** The journal LoggerUtil writes to, or null if it is turned off */
+    private static final AuditJournal JOURNAL  = "false"
+            .equalsIgnoreCase( DBUtil.setting( "journal.enabled", "true" ) ) ? null
+                    : new AuditJournal( new File( DBUtil.setting( "journal.dir", "journal" ) ),
+                            DBUtil.setting( "journal.fileRecords", 262144 ),
+                            "true".equalsIgnoreCase( DBUtil.setting( "journal.fsync", "false" ) ) );
+
+    /** Directory the journal is kept in */
+    private final File            dir;
+
+    /** Records in each file */
+    private final int             fileRecords;
+
+    /** Whether each record is flushed to disk as it is written */
+    private final boolean         fsync;
+
+    /** File being written to, or null until the first append */
+    private FileChannel           current;
+
+    /** Number of records in the file being written to */
+    private long                  currentRecords;
+
+    /** Sequence number of the next record */
+    private long                  nextSequence;
+
+    /** Time of the last record */
+    private long                  lastTime;
+
+    /** Hash of the last record */
+    private byte[]                lastHash;
+
+    /**
+     * Opens a journal. Nothing is read or written until it is used.
+     *
+     * @param dir
+     *            Directory the journal is kept in
+     * @param fileRecords
+     *            Records to put in each file, at most enough for a 2GB file
+     * @param fsync
+     *            Whether to flush each record to disk as it is written
+     */
+    public AuditJournal ( final File dir, final int fileRecords, final boolean fsync ) {
+        this.dir = dir;
+        this.fileRecords = Math.max( 1, Math.min( fileRecords, Integer.MAX_VALUE / RECORD ) );
+        this.fsync = fsync;
+    }
+
+    /**
+     * Adds a LogEntry to the journal LoggerUtil writes to, if it is turned on.
+     * A failure is reported rather than stopping the event being logged.
+     *
+     * @param entry
+     *            The entry
+     */
+    public static void record ( final LogEntry entry ) {
+        if ( null != JOURNAL ) {
+            try {
+                JOURNAL.append( entry );
+            }
+            catch ( final IOException | RuntimeException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal LoggerUtil writes to, flushing it to disk
+     */
+    public static void shutdown () {
+        if ( null != JOURNAL ) {
+            try {
+                JOURNAL.close();
+            }
+            catch ( final IOException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Appends a LogEntry to the end of the journal. If the entry's time is
+     * earlier than that of the last record, it is moved on to match, so that
+     * the journal stays in order of time.
+     *
+     * @param entry
+     *            The entry
+     * @throws IOException
+     *             If the record could not be written
+     */
+    public synchronized void append ( final LogEntry entry ) throws IOException {
+        if ( null == current ) {
+            open();
+        }
+        if ( currentRecords >= fileRecords ) {
+            current.force( true );
+            current.close();
+            current = FileChannel.open( file( nextSequence ).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE );
+            currentRecords = 0;
+        }
+
+        if ( entry.getTime().getTimeInMillis() < lastTime ) {
+            final Calendar time = Calendar.getInstance();
+            time.setTimeInMillis( lastTime );
+            entry.setTime( time );
+        }
+        final ByteBuffer record = ByteBuffer.allocate( RECORD );
+        record.putLong( 0, nextSequence );
+        record.putLong( 8, entry.getTime().getTimeInMillis() );
+        putText( record, CODE, PRIMARY - CODE, 1, entry.getLogCode().name() );
+        putText( record, PRIMARY, SECONDARY - PRIMARY, 1, entry.getPrimaryUser() );
+        putText( record, SECONDARY, MESSAGE - SECONDARY, 1, entry.getSecondaryUser() );
+        putText( record, MESSAGE, HASH - MESSAGE, 2, entry.getMessage() );
+        final byte[] hash = hash( digest(), lastHash, record );
+        record.position( HASH );
+        record.put( hash );
+        record.rewind();
+
+        while ( record.hasRemaining() ) {
+            current.write( record, currentRecords * RECORD + RECORD - record.remaining() );
+        }
+        if ( fsync ) {
+            current.force( false );
+        }
+        currentRecords++;
+        nextSequence++;
+        lastTime = entry.getTime().getTimeInMillis();
+        lastHash = hash;
+    }
+
+    /**
+     * Flushes the journal to disk and closes the file being written to
+     *
+     * @throws IOException
+     *             If the file could not be closed
+     */
+    public synchronized void close () throws IOException {
+        if ( null != current ) {
+            current.force( true );
+            current.close();
+            current = null;
+        }
+    }
+
+    /**
+     * Runs an action on every record in a range of time, oldest first. Files
+     * wholly outside the range are skipped, and the first record in range is
+     * found by binary search.
+     *
+     * @param from
+     *            Earliest time to include, or null for no limit
+     * @param to
+     *            Time to stop before, or null for no limit
+     * @param action
+     *            The action to run on each record, as a LogEntry with no ID
+     * @throws IOException
+     *             If the journal could not be read
+     */
+    public void scan ( final Calendar from, final Calendar to, final Consumer<LogEntry> action ) throws IOException {
+        final long start = null == from ? Long.MIN_VALUE : from.getTimeInMillis();
+        final long stop = null == to ? Long.MAX_VALUE : to.getTimeInMillis();
+        final List<File> files = files();
+        for ( int f = 0; f < files.size(); f++ ) {
+            final ByteBuffer map = map( files.get( f ) );
+            final int records = map.capacity() / RECORD;
+            if ( 0 == records ) {
+                continue;
+            }
+            if ( map.getLong( 8 ) >= stop ) {
+                return;
+            }
+            if ( map.getLong( ( records - 1 ) * RECORD + 8 ) < start ) {
+                continue;
+            }
+            int low = 0;
+            int high = records;
+            while ( low < high ) {
+                final int mid = ( low + high ) >>> 1;
+                if ( map.getLong( mid * RECORD + 8 ) < start ) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            for ( int r = low; r < records; r++ ) {
+                if ( map.getLong( r * RECORD + 8 ) >= stop ) {
+                    return;
+                }
+                action.accept( entry( map, r * RECORD ) );
+            }
+        }
+    }
+
+    /**
+     * Checks the whole journal: that sequence numbers run on without a gap,
+     * from one file to the next, and that every record's hash matches the
+     * chain. Files are checked in parallel, each starting from the hash at the
+     * end of the file before it.
+     *
+     * @return The number of records checked
+     * @throws IOException
+     *             If the journal could not be read
+     * @throws IllegalStateException
+     *             At the first record found that breaks the chain
+     */
+    public long verify () throws IOException {
+        final List<File> files = files();
+        final List<ByteBuffer> maps = new ArrayList<ByteBuffer>();
+        for ( final File file : files ) {
+            maps.add( map( file ) );
+        }
+        final long[] counts = new long[files.size()];
+        IntStream.range( 0, files.size() ).parallel().forEach( f -> {
+            final ByteBuffer map = maps.get( f );
+            final int records = map.capacity() / RECORD;
+            byte[] previous = GENESIS;
+            long sequence = 0;
+            if ( f > 0 ) {
+                final ByteBuffer before = maps.get( f - 1 );
+                if ( before.capacity() < RECORD ) {
+                    throw new IllegalStateException( files.get( f - 1 ).getName() + " is empty" );
+                }
+                final int last = ( before.capacity() / RECORD - 1 ) * RECORD;
+                previous = new byte[HASH_LENGTH];
+                ( (ByteBuffer) before.duplicate().position( last + HASH ) ).get( previous );
+                sequence = before.getLong( last ) + 1;
+            }
+            final MessageDigest md = digest();
+            final ByteBuffer in = map.duplicate();
+            final ByteBuffer record = ByteBuffer.allocate( RECORD );
+            final byte[] bytes = record.array();
+            for ( int r = 0; r < records; r++ ) {
+                in.get( bytes );
+                if ( record.getLong( 0 ) != sequence ) {
+                    throw new IllegalStateException( files.get( f ).getName() + ": expected record " + sequence
+                            + " but found " + record.getLong( 0 ) );
+                }
+                md.update( previous );
+                md.update( bytes, 0, HASH );
+                final byte[] hash = md.digest();
+                for ( int i = 0; i < HASH_LENGTH; i++ ) {
+                    if ( hash[i] != bytes[HASH + i] ) {
+                        throw new IllegalStateException( "Journal record " + sequence + " has been altered" );
+                    }
+                }
+                previous = hash;
+                sequence++;
+            }
+            counts[f] = records;
+        } );
+        long total = 0;
+        for ( final long count : counts ) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Retrieves the head of the journal: the sequence number and hash of its
+     * last record. Keeping a copy of this elsewhere is what shows the journal
+     * up to that point has not been rewritten since.
+     *
+     * @return The head, as `sequence:hash` in hex, or null if the journal is
+     *         empty
+     * @throws IOException
+     *             If the journal could not be read
+     */
+    public String head () throws IOException {
+        final List<File> files = files();
+        for ( int f = files.size() - 1; f >= 0; f-- ) {
+            final ByteBuffer map = map( files.get( f ) );
+            final int records = map.capacity() / RECORD;
+            if ( records > 0 ) {
+                final int last = ( records - 1 ) * RECORD;
+                final byte[] hash = new byte[HASH_LENGTH];
+                ( (ByteBuffer) map.duplicate().position( last + HASH ) ).get( hash );
+                final StringBuilder head = new StringBuilder( map.getLong( last ) + ":" );
+                for ( final byte b : hash ) {
+                    head.append( String.format( "%02x", b ) );
+                }
+                return head.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restores entries missing from the LogEntries table from the journal for
+     * a range of time: every record in the range with no matching row is
+     * inserted, with a new ID, and added to the {@link LogRollups} counts and
+     * the {@link LogSearch} index. A record matches a row with the same type,
+     * users and message (as far as the record holds them) logged within a
+     * second of it, as the table keeps times to the second. Rows are never
+     * deleted: if any row in the range matches no record, such as one logged
+     * on another node or while this journal could not be written, nothing is
+     * replayed at all. Nothing before the archived-through time (see
+     * {@link LogArchive}) is replayed, as entries from then on are in the
+     * archive rather than the table.
+     *
+     * @param from
+     *            Earliest time to restore
+     * @param to
+     *            Time to stop before
+     * @return The number of entries written
+     * @throws IllegalStateException
+     *             If the table holds entries in the range that the journal
+     *             does not
+     * @throws IOException
+     *             If the journal could not be read
+     * @throws SQLException
+     *             If the table could not be read or written
+     */
+    public int replay ( final Calendar from, final Calendar to ) throws IOException, SQLException {
+        return replay( from, to, LogArchive.getArchivedThrough() );
+    }
+
+    /**
+     * Restores entries missing from the LogEntries table from the journal, as
+     * {@link #replay(Calendar, Calendar)} does, given the archived-through
+     * time
+     *
+     * @param from
+     *            Earliest time to restore; raised to the archived-through time
+     *            if before it
+     * @param to
+     *            Time to stop before
+     * @param through
+     *            The archived-through time, or null if nothing is archived
+     * @return The number of entries written
+     * @throws IllegalStateException
+     *             If the table holds entries in the range that the journal
+     *             does not
+     * @throws IOException
+     *             If the journal could not be read
+     * @throws SQLException
+     *             If the table could not be read or written
+     */
+    public int replay ( final Calendar from, final Calendar to, final Calendar through )
+            throws IOException, SQLException {
+        if ( null != through && through.after( from ) ) {
+            return through.before( to ) ? replay( through, to, null ) : 0;
+        }
+        AuditWriter.flush();
+        final TransactionType[] codes = TransactionType.values();
+        // Times of the rows in the range, oldest first, by what they hold
+        final Map<String, ArrayDeque<Long>> rows = new HashMap<String, ArrayDeque<Long>>();
+        try ( final Connection conn = DBUtil.getDedicatedConnection();
+                final PreparedStatement ps = conn.prepareStatement(
+                        "select logCode, message, primaryUser, secondaryUser, time from LogEntries "
+                                + "where time >= ? and time < ? order by time, id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY ) ) {
+            ps.setFetchSize( Integer.MIN_VALUE );
+            ps.setTimestamp( 1, new Timestamp( from.getTimeInMillis() ) );
+            ps.setTimestamp( 2, new Timestamp( to.getTimeInMillis() ) );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                while ( rs.next() ) {
+                    final Calendar time = Calendar.getInstance();
+                    time.setTimeInMillis( rs.getTimestamp( 5 ).getTime() );
+                    rows.computeIfAbsent( key( new LogEntry( null, codes[rs.getInt( 1 )], rs.getString( 3 ),
+                            rs.getString( 4 ), rs.getString( 2 ), time ) ), k -> new ArrayDeque<Long>() )
+                            .add( time.getTimeInMillis() );
+                }
+            }
+        }
+
+        // Records just outside the range may match rows just inside it
+        final Calendar before = (Calendar) from.clone();
+        before.add( Calendar.SECOND, -1 );
+        final Calendar after = (Calendar) to.clone();
+        after.add( Calendar.SECOND, 1 );
+        final List<LogEntry> missing = new ArrayList<LogEntry>();
+        final long[] unmatched = { 0 };
+        scan( before, after, entry -> {
+            final long time = entry.getTime().getTimeInMillis();
+            final ArrayDeque<Long> times = rows.get( key( entry ) );
+            while ( null != times && !times.isEmpty() && times.peekFirst() < time - 1000 ) {
+                times.removeFirst();
+                unmatched[0]++;
+            }
+            if ( null != times && !times.isEmpty() && times.peekFirst() <= time + 1000 ) {
+                times.removeFirst();
+            }
+            else if ( !entry.getTime().before( from ) && entry.getTime().before( to ) ) {
+                missing.add( entry );
+            }
+        } );
+        for ( final ArrayDeque<Long> times : rows.values() ) {
+            unmatched[0] += times.size();
+        }
+        if ( unmatched[0] > 0 ) {
+            throw new IllegalStateException( unmatched[0] + " log entries in the range are not in this journal; "
+                    + "it may not be the only one, or may be missing records, so nothing was replayed" );
+        }
+
+        int written = 0;
+        for ( int i = 0; i < missing.size(); i += 1000 ) {
+            final List<LogEntry> batch = missing.subList( i, Math.min( missing.size(), i + 1000 ) );
+            AuditWriter.write( batch );
+            written += batch.size();
+        }
+        return written;
+    }
+
+    /**
+     * Identifies an entry by what the journal holds of it, other than its time
+     *
+     * @param entry
+     *            The entry
+     * @return Its type, users and message, cut short as they would be in a
+     *         record
+     */
+    private static String key ( final LogEntry entry ) {
+        final ByteBuffer record = ByteBuffer.allocate( RECORD );
+        putText( record, CODE, PRIMARY - CODE, 1, entry.getLogCode().name() );
+        putText( record, PRIMARY, SECONDARY - PRIMARY, 1, entry.getPrimaryUser() );
+        putText( record, SECONDARY, MESSAGE - SECONDARY, 1, entry.getSecondaryUser() );
+        putText( record, MESSAGE, HASH - MESSAGE, 2, entry.getMessage() );
+        return new String( record.array(), CODE, HASH - CODE, StandardCharsets.ISO_8859_1 );
+    }
+
+    /**
+     * Verifies the journal, or with `replay` restores missing LogEntries from
+     * it. By
+     * default everything from the archived-through time (see
+     * {@link LogArchive}) or the start of the journal, whichever is later, up
+     * to now is replayed.
+     *
+     * @param args
+     *            `verify` (the default), or `replay` and optionally the first
+     *            and last days to rebuild, as yyyy-MM-dd
+     */
+    public static void main ( final String args[] ) {
+        int status = 0;
+        try {
+            if ( null == JOURNAL ) {
+                throw new IllegalStateException( "The audit journal is turned off" );
+            }
+            if ( args.length > 0 && "replay".equals( args[0] ) ) {
+                final Calendar from = args.length > 1 ? day( args[1], 0 ) : replayFrom();
+                final Calendar to = args.length > 2 ? day( args[2], 1 ) : Calendar.getInstance();
+                System.out.println( JOURNAL.replay( from, to ) + " log entries replayed" );
+            }
+            else {
+                final long start = System.currentTimeMillis();
+                final long records = JOURNAL.verify();
+                System.out.println( records + " journal records verified in "
+                        + ( System.currentTimeMillis() - start ) + "ms; head " + JOURNAL.head() );
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace();
+            status = 1;
+        }
+        finally {
+            DBUtil.shutdown();
+        }
+        System.exit( status );
+    }
+
+    /**
+     * Finds where a replay should start by default: nothing before the
+     * archived-through time is in the table to rebuild, and nothing before the
+     * first record is in the journal to rebuild it from
+     *
+     * @return The time to start from
+     * @throws IOException
+     *             If the journal could not be read
+     */
+    private static Calendar replayFrom () throws IOException {
+        final Calendar from = LogArchive.getArchivedThrough();
+        final Calendar[] first = { null };
+        JOURNAL.scan( null, null, entry -> {
+            if ( null == first[0] ) {
+                first[0] = entry.getTime();
+            }
+        } );
+        if ( null == first[0] ) {
+            throw new IllegalStateException( "The audit journal is empty" );
+        }
+        return null != from && from.after( first[0] ) ? from : first[0];
+    }
+
+    /**
+     * Parses a day given on the command line
+     *
+     * @param day
+     *            The day, as yyyy-MM-dd
+     * @param plus
+     *            Number of days to add
+     * @return Midnight at the start of the day
+     * @throws ParseException
+     *             If the day is not valid
+     */
+    private static Calendar day ( final String day, final int plus ) throws ParseException {
+        final SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd" );
+        format.setLenient( false );
+        final Calendar time = Calendar.getInstance();
+        time.setTime( format.parse( day ) );
+        time.add( Calendar.DAY_OF_MONTH, plus );
+        return time;
+    }
+
+    /**
+     * Picks up where the journal left off: finds the last file, drops any
+     * partial record a crash left at its end, and reads the sequence number,
+     * time and hash of the last record.
+     *
+     * @throws IOException
+     *             If the journal could not be read or opened for writing
+     */
+    private void open () throws IOException {
+        dir.mkdirs();
+        final List<File> files = files();
+        final File last = files.isEmpty() ? file( 0 ) : files.get( files.size() - 1 );
+        current = FileChannel.open( last.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE );
+        currentRecords = current.size() / RECORD;
+        current.truncate( currentRecords * RECORD );
+        nextSequence = sequenceOf( last );
+        lastHash = GENESIS;
+        lastTime = Long.MIN_VALUE;
+        if ( currentRecords > 0 ) {
+            final ByteBuffer record = ByteBuffer.allocate( RECORD );
+            current.read( record, ( currentRecords - 1 ) * RECORD );
+            nextSequence = record.getLong( 0 ) + 1;
+            lastTime = record.getLong( 8 );
+            lastHash = new byte[HASH_LENGTH];
+            ( (ByteBuffer) record.position( HASH ) ).get( lastHash );
+        }
+        else if ( files.size() > 1 ) {
+            // An empty file after a rollover: chain on from the one before
+            final ByteBuffer before = map( files.get( files.size() - 2 ) );
+            final int end = ( before.capacity() / RECORD - 1 ) * RECORD;
+            lastTime = before.getLong( end + 8 );
+            lastHash = new byte[HASH_LENGTH];
+            ( (ByteBuffer) before.duplicate().position( end + HASH ) ).get( lastHash );
+        }
+    }
+
+    /**
+     * Lists the journal's files
+     *
+     * @return The files, in order
+     */
+    private List<File> files () {
+        final List<File> files = new ArrayList<File>();
+        final File[] found = dir.listFiles( ( d, name ) -> name.endsWith( EXTENSION ) );
+        if ( null != found ) {
+            files.addAll( Arrays.asList( found ) );
+        }
+        Collections.sort( files );
+        return files;
+    }
+
+    /**
+     * Names the file that starts at a record
+     *
+     * @param sequence
+     *            Sequence number of the file's first record
+     * @return The file
+     */
+    private File file ( final long sequence ) {
+        return new File( dir, String.format( "audit-%016d%s", sequence, EXTENSION ) );
+    }
+
+    /**
+     * Reads the sequence number of a file's first record from its name
+     *
+     * @param file
+     *            The file
+     * @return The sequence number
+     */
+    private static long sequenceOf ( final File file ) {
+        final String name = file.getName();
+        return Long.parseLong( name.substring( "audit-".length(), name.length() - EXTENSION.length() ) );
+    }
+
+    /**
+     * Maps the whole records in a file into memory, read-only
+     *
+     * @param file
+     *            The file
+     * @return The mapped records
+     * @throws IOException
+     *             If the file could not be mapped
+     */
+    private static ByteBuffer map ( final File file ) throws IOException {
+        try ( final RandomAccessFile raf = new RandomAccessFile( file, "r" ) ) {
+            final long length = raf.length() / RECORD * RECORD;
+            return raf.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, length );
+        }
+    }
+
+    /**
+     * Turns a record back into a LogEntry
+     *
+     * @param map
+     *            The mapped records
+     * @param offset
+     *            Where the record starts
+     * @return The entry, without an ID
+     */
+    private static LogEntry entry ( final ByteBuffer map, final int offset ) {
+        final ByteBuffer record = ( (ByteBuffer) map.duplicate().position( offset ).limit( offset + RECORD ) )
+                .slice();
+        final Calendar time = Calendar.getInstance();
+        time.setTimeInMillis( record.getLong( 8 ) );
+        return new LogEntry( null, TransactionType.valueOf( getText( record, CODE, 1 ) ),
+                getText( record, PRIMARY, 1 ), getText( record, SECONDARY, 1 ), getText( record, MESSAGE, 2 ),
+                time );
+    }
+
+    /**
+     * Writes a length-prefixed piece of text into a record, cut short if it
+     * will not fit
+     *
+     * @param record
+     *            The record
+     * @param offset
+     *            Where the field starts
+     * @param size
+     *            Size of the field, including its length
+     * @param lengthBytes
+     *            Size of the length, 1 or 2 bytes
+     * @param text
+     *            The text, or null
+     */
+    private static void putText ( final ByteBuffer record, final int offset, final int size, final int lengthBytes,
+            final String text ) {
+        int length = NONE;
+        if ( null != text ) {
+            final byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+            length = Math.min( bytes.length, size - lengthBytes );
+            // Don't cut a character in half
+            while ( length < bytes.length && length > 0 && ( bytes[length] & 0xC0 ) == 0x80 ) {
+                length--;
+            }
+            record.position( offset + lengthBytes );
+            record.put( bytes, 0, length );
+        }
+        if ( 1 == lengthBytes ) {
+            record.put( offset, (byte) length );
+        }
+        else {
+            record.putShort( offset, (short) length );
+        }
+    }
+
+    /**
+     * Reads a piece of text written by
+     * {@link #putText(ByteBuffer, int, int, int, String)}
+     *
+     * @param record
+     *            The record
+     * @param offset
+     *            Where the field starts
+     * @param lengthBytes
+     *            Size of the length, 1 or 2 bytes
+     * @return The text, or null
+     */
+    private static String getText ( final ByteBuffer record, final int offset, final int lengthBytes ) {
+        final int length = 1 == lengthBytes ? record.get( offset ) & 0xFF : record.getShort( offset ) & 0xFFFF;
+        if ( length == ( 1 == lengthBytes ? 0xFF : 0xFFFF ) ) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        ( (ByteBuffer) record.duplicate().position( offset + lengthBytes ) ).get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Hashes a record onto the chain
+     *
+     * @param md
+     *            SHA-256 digest to use
+     * @param previous
+     *            Hash of the record before
+     * @param record
+     *            The record, starting at position 0
+     * @return The record's hash
+     */
+    private static byte[] hash ( final MessageDigest md, final byte[] previous, final ByteBuffer record ) {
+        md.reset();
+        md.update( previous );
+        md.update( (ByteBuffer) record.duplicate().position( 0 ).limit( HASH ) );
+        return md.digest();
+    }
+
+    /**
+     * Creates a SHA-256 digest
+     *
+     * @return The digest
+     */
+    private static MessageDigest digest () {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( final NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+}
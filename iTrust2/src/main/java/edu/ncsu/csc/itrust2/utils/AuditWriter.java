@@ -0,0 +1,397 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * Writes LogEntries to the database off the request thread. Entries are put
+ * on a bounded queue and a single background thread inserts them in JDBC
+ * batches, whenever a batch fills up or a short interval passes, so that
+ * logging an event costs a request no more than adding to a queue.
+ *
+ * Security events (logins, lockouts, bans, password changes and the like) are
+ * still written synchronously, before `log` returns, so that they cannot be
+ * lost if the server goes down. The behaviour is configured with these
+ * settings in db.properties:
+ * <ul>
+ * <li>`audit.mode`: `async` (the default), or `sync` to write every entry on
+ * the caller's thread</li>
+ * <li>`audit.syncTypes`: comma-separated TransactionTypes to always write
+ * synchronously, replacing the default set of security events</li>
+ * <li>`audit.queueSize`: entries that may be waiting at once (10000)</li>
+ * <li>`audit.batchSize`: most entries written in one batch (200)</li>
+ * <li>`audit.flushMillis`: longest an entry waits before being written
+ * (250)</li>
+ * </ul>
+ *
+ * If the queue is full the caller writes its entry itself rather than having
+ * it dropped. Readers of the log call {@link #flush()} first, so they always
+ * see every entry logged before they asked, and {@link #shutdown()} writes out
+ * everything still queued when the application stops.
+ */
+public class AuditWriter {
+
+    /** Security events written synchronously unless configured otherwise */
+    private static final Set<TransactionType>  DEFAULT_SYNC_TYPES = EnumSet.of( TransactionType.LOGIN_FAILURE,
+            TransactionType.LOGIN_SUCCESS, TransactionType.USER_LOCKOUT, TransactionType.IP_LOCKOUT,
+            TransactionType.USER_BANNED, TransactionType.IP_BANNED, TransactionType.CREATE_USER,
+            TransactionType.DELETE_USER, TransactionType.UPDATE_USER, TransactionType.PASSWORD_UPDATE_FAILURE,
+            TransactionType.PASSWORD_UPDATE_SUCCESS, TransactionType.PASSWORD_RESET_EMAIL_SENT );
+
+    /** Inserts a single LogEntry */
+    private static final String                INSERT             = "insert into LogEntries "
+            + "(id, logCode, message, primaryUser, secondaryUser, time, primaryRole, secondaryRole, patientViewable) "
+            + "values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** Whether every entry is written synchronously */
+    private static final boolean               SYNC               = "sync"
+            .equalsIgnoreCase( DBUtil.setting( "audit.mode", "async" ) );
+
+    /** Types of entry that are always written synchronously */
+    private static final Set<TransactionType>  SYNC_TYPES         = syncTypes();
+
+    /** Most entries written in one batch */
+    private static final int                   BATCH_SIZE         = DBUtil.setting( "audit.batchSize", 200 );
+
+    /** Longest an entry waits on the queue before being written */
+    private static final long                  FLUSH_MILLIS       = DBUtil.setting( "audit.flushMillis", 250 );
+
+    /** Entries waiting to be written */
+    private static final BlockingQueue<LogEntry> queue            = new ArrayBlockingQueue<LogEntry>(
+            DBUtil.setting( "audit.queueSize", 10000 ) );
+
+    /**
+     * Held while taking entries off the queue and writing them, so that a
+     * flush cannot return while a batch it should have waited for is still
+     * being written by the background thread
+     */
+    private static final Object                writeLock          = new Object();
+
+    /** Notified when a full batch is waiting, to wake the background thread */
+    private static final Object                batchReady         = new Object();
+
+    /** Whether the background thread should keep running */
+    private static volatile boolean            running            = true;
+
+    /** The background thread */
+    private static final Thread                writer             = start();
+
+    /**
+     * Writes a LogEntry, either right away or through the queue depending on
+     * its type and the configured mode.
+     *
+     * @param entry
+     *            The entry to write
+     */
+    public static void submit ( final LogEntry entry ) {
+        if ( SYNC || SYNC_TYPES.contains( entry.getLogCode() ) || !running || !queue.offer( entry ) ) {
+            writeSafely( Collections.singletonList( entry ) );
+        }
+        else if ( queue.size() >= BATCH_SIZE ) {
+            synchronized ( batchReady ) {
+                batchReady.notify();
+            }
+        }
+    }
+
+    /**
+     * Writes every entry queued so far, waiting for any batch already being
+     * written to finish first.
+     */
+    public static void flush () {
+        synchronized ( writeLock ) {
+            final List<LogEntry> batch = new ArrayList<LogEntry>();
+            while ( queue.drainTo( batch, BATCH_SIZE ) > 0 ) {
+                writeSafely( batch );
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread and writes everything still queued. Entries
+     * logged after this are written synchronously.
+     */
+    public static void shutdown () {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join( 10000 );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Starts the background thread
+     *
+     * @return The thread
+     */
+    private static Thread start () {
+        final Thread t = new Thread( AuditWriter::run, "iTrust2-audit-writer" );
+        t.setDaemon( true );
+        t.start();
+        return t;
+    }
+
+    /**
+     * Body of the background thread: writes whatever is queued each time a
+     * full batch is waiting or the flush interval passes. Entries only leave
+     * the queue while {@link #writeLock} is held, so a concurrent
+     * {@link #flush()} always waits for them.
+     */
+    private static void run () {
+        while ( running ) {
+            try {
+                synchronized ( batchReady ) {
+                    if ( queue.size() < BATCH_SIZE ) {
+                        batchReady.wait( FLUSH_MILLIS );
+                    }
+                }
+            }
+            catch ( final InterruptedException e ) {
+                // Shutting down; whatever is left is written by shutdown()
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Writes a batch, falling back to saving the entries one by one through
+     * Hibernate if the batch fails, and reporting any entry that still could
+     * not be saved rather than losing it silently.
+     *
+     * @param batch
+     *            The entries to write
+     */
+    private static void writeSafely ( final List<LogEntry> batch ) {
+        try {
+            write( batch );
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace();
+            for ( final LogEntry entry : batch ) {
+                try {
+                    HibernateUtil.withoutUnitOfWork( entry::save );
+                    LogRollups.add( entry );
+                    LogSearch.add( entry );
+                }
+                catch ( final Exception e2 ) {
+                    System.err.println( "Lost log entry: " + entry.getLogCode() + " " + entry.getPrimaryUser() + " "
+                            + entry.getSecondaryUser() + " " + entry.getMessage() );
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch of entries in a single transaction, each with a new ID
+     * reserved beforehand, and adds them to the {@link LogRollups} counts and the {@link LogSearch}
+     * index in the same transaction
+     *
+     * @param batch
+     *            The entries to write
+     * @throws SQLException
+     *             If the entries could not be written
+     */
+    static void write ( final List<LogEntry> batch ) throws SQLException {
+        final long first = reserveIds( batch.size() );
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            conn.setAutoCommit( false );
+            try {
+                long id = first;
+                fillRoles( conn, batch );
+                try ( final PreparedStatement ps = conn.prepareStatement( INSERT ) ) {
+                    for ( final LogEntry entry : batch ) {
+                        ps.setLong( 1, id++ );
+                        ps.setInt( 2, entry.getLogCode().ordinal() );
+                        ps.setString( 3, entry.getMessage() );
+                        ps.setString( 4, entry.getPrimaryUser() );
+                        if ( null == entry.getSecondaryUser() ) {
+                            ps.setNull( 5, Types.VARCHAR );
+                        }
+                        else {
+                            ps.setString( 5, entry.getSecondaryUser() );
+                        }
+                        ps.setTimestamp( 6, new Timestamp( entry.getTime().getTimeInMillis() ) );
+                        setRole( ps, 7, entry.getPrimaryRole() );
+                        setRole( ps, 8, entry.getSecondaryRole() );
+                        ps.setBoolean( 9, entry.isPatientViewable() );
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                LogRollups.add( conn, batch );
+                LogSearch.add( conn, batch, first );
+                conn.commit();
+            }
+            catch ( final SQLException e ) {
+                conn.rollback();
+                throw e;
+            }
+            finally {
+                conn.setAutoCommit( true );
+            }
+        }
+        DomainObject.changed( LogEntry.class );
+    }
+
+    /**
+     * Records the role of each user on a batch of entries whose role is not
+     * already known, looking all of them up in a single query
+     *
+     * @param conn
+     *            Connection to use
+     * @param batch
+     *            The entries
+     * @throws SQLException
+     *             If the roles could not be looked up
+     */
+    private static void fillRoles ( final Connection conn, final List<LogEntry> batch ) throws SQLException {
+        final Set<String> names = new HashSet<String>();
+        for ( final LogEntry entry : batch ) {
+            if ( null == entry.getPrimaryRole() ) {
+                names.add( entry.getPrimaryUser() );
+            }
+            if ( null == entry.getSecondaryRole() && null != entry.getSecondaryUser() ) {
+                names.add( entry.getSecondaryUser() );
+            }
+        }
+        if ( names.isEmpty() ) {
+            return;
+        }
+        final Map<String, Role> roles = new HashMap<String, Role>();
+        try ( final PreparedStatement ps = conn.prepareStatement( "select username, role from Users where username in ("
+                + String.join( ", ", Collections.nCopies( names.size(), "?" ) ) + ")" ) ) {
+            int i = 1;
+            for ( final String name : names ) {
+                ps.setString( i++, name );
+            }
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                while ( rs.next() ) {
+                    if ( null != rs.getString( 2 ) ) {
+                        roles.put( rs.getString( 1 ), Role.valueOf( rs.getString( 2 ) ) );
+                    }
+                }
+            }
+        }
+        for ( final LogEntry entry : batch ) {
+            if ( null == entry.getPrimaryRole() ) {
+                entry.setPrimaryRole( roles.get( entry.getPrimaryUser() ) );
+            }
+            if ( null == entry.getSecondaryRole() && null != entry.getSecondaryUser() ) {
+                entry.setSecondaryRole( roles.get( entry.getSecondaryUser() ) );
+            }
+        }
+    }
+
+    /**
+     * Binds a role that may not be known
+     *
+     * @param ps
+     *            The statement
+     * @param index
+     *            Parameter to bind
+     * @param role
+     *            The role, or null
+     * @throws SQLException
+     *             If the parameter could not be bound
+     */
+    private static void setRole ( final PreparedStatement ps, final int index, final Role role ) throws SQLException {
+        if ( null == role ) {
+            ps.setNull( index, Types.VARCHAR );
+        }
+        else {
+            ps.setString( index, role.name() );
+        }
+    }
+
+    /**
+     * Takes a block of IDs from the table Hibernate generates IDs from, in the
+     * same way Hibernate does, so that entries written here and ones saved
+     * through Hibernate never collide. This is done in a short transaction of
+     * its own, committed before the entries are written, as the row it locks
+     * holds up every other ID Hibernate hands out until then. IDs reserved for
+     * a batch that then fails are simply never used.
+     *
+     * @param count
+     *            Number of IDs needed
+     * @return The first of the IDs reserved
+     * @throws SQLException
+     *             If the IDs could not be reserved
+     */
+    private static long reserveIds ( final int count ) throws SQLException {
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            conn.setAutoCommit( false );
+            try {
+                final long next;
+                try ( final PreparedStatement ps = conn
+                        .prepareStatement( "select next_val from hibernate_sequence for update" );
+                        final ResultSet rs = ps.executeQuery() ) {
+                    if ( !rs.next() ) {
+                        throw new SQLException( "hibernate_sequence is empty" );
+                    }
+                    next = rs.getLong( 1 );
+                }
+                try ( final PreparedStatement ps = conn
+                        .prepareStatement( "update hibernate_sequence set next_val = ? where next_val = ?" ) ) {
+                    ps.setLong( 1, next + count );
+                    ps.setLong( 2, next );
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                return next;
+            }
+            catch ( final SQLException e ) {
+                conn.rollback();
+                throw e;
+            }
+            finally {
+                conn.setAutoCommit( true );
+            }
+        }
+    }
+
+    /**
+     * Reads the TransactionTypes to always write synchronously from
+     * `audit.syncTypes`, or falls back to the default security events
+     *
+     * @return The types
+     */
+    private static Set<TransactionType> syncTypes () {
+        final String configured = DBUtil.setting( "audit.syncTypes", null );
+        if ( null == configured ) {
+            return DEFAULT_SYNC_TYPES;
+        }
+        final Set<TransactionType> types = EnumSet.noneOf( TransactionType.class );
+        for ( final String name : configured.split( "," ) ) {
+            if ( !name.trim().isEmpty() ) {
+                types.add( TransactionType.valueOf( name.trim() ) );
+            }
+        }
+        return types;
+    }
+
+}
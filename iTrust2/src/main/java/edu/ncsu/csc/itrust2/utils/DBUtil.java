@@ -4,12 +4,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
 import javax.sql.DataSource;
 
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.apache.commons.dbcp2.BasicDataSource;
 
 /**
  * A bit of helper logic for interfacing with the DB manually rather than just
@@ -21,9 +22,29 @@ import org.springframework.jdbc.datasource.DriverManagerDataSource;
  */
 public class DBUtil {
 
-    static private String url      = null;
-    static private String username = null;
-    static private String password = null;
+    static private String          url        = null;
+    static private String          username   = null;
+    static private String          password   = null;
+
+    /**
+     * Every setting in db.properties, for the parts of the application
+     * configured there other than the connection itself. This includes the
+     * `pool.*` connection pool settings; anything left unset falls back to the
+     * defaults in {@link #pool}.
+     */
+    static private final Properties settings   = new Properties();
+
+    /**
+     * Whether to apply pending schema migrations when the application starts,
+     * read from `schema.migrateOnStartup` in db.properties
+     */
+    static private boolean          migrateOnStartup = true;
+
+    /**
+     * The connection pool shared by Hibernate and Spring Security. Created
+     * lazily on first use.
+     */
+    static private BasicDataSource  dataSource = null;
 
     static {
         InputStream input = null;
@@ -37,6 +58,9 @@ public class DBUtil {
             url = properties.getProperty( "url" );
             username = properties.getProperty( "username" );
             password = properties.getProperty( "password" );
+            settings.putAll( properties );
+            migrateOnStartup = !"false"
+                    .equalsIgnoreCase( properties.getProperty( "schema.migrateOnStartup", "true" ).trim() );
 
         }
         catch ( final Exception e ) {
@@ -65,15 +89,83 @@ public class DBUtil {
      * in production and this should not be emulated, but it makes it easier to
      * share among teammates and Jenkins.
      *
+     * The same pooled DataSource is handed out on every call, and is used both
+     * by Hibernate and by the Spring Security login queries, so that the whole
+     * application is bounded by a single set of physical connections.
+     *
      * @return data source
      */
-    static public DataSource dataSource () {
-        final DriverManagerDataSource driverManagerDataSource = new DriverManagerDataSource();
-        driverManagerDataSource.setDriverClassName( "com.mysql.jdbc.Driver" );
-        driverManagerDataSource.setUrl( url );
-        driverManagerDataSource.setUsername( username );
-        driverManagerDataSource.setPassword( password );
-        return driverManagerDataSource;
+    static synchronized public DataSource dataSource () {
+        if ( null == dataSource ) {
+            dataSource = pool();
+        }
+        return dataSource;
+    }
+
+    /**
+     * Builds the connection pool from the `pool.*` settings in db.properties.
+     * Connections are validated before being handed out and while idle,
+     * connections held for longer than `pool.removeAbandonedTimeout` seconds
+     * are reclaimed and logged with the stack trace that borrowed them (to
+     * track down leaks), and each connection keeps a cache of its prepared
+     * statements so that the same Hibernate queries are not re-prepared.
+     *
+     * @return The new connection pool
+     */
+    static private BasicDataSource pool () {
+        final BasicDataSource ds = new BasicDataSource();
+        ds.setDriverClassName( "com.mysql.jdbc.Driver" );
+        ds.setUrl( url );
+        ds.setUsername( username );
+        ds.setPassword( password );
+
+        // Size
+        ds.setInitialSize( setting( "pool.initialSize", 5 ) );
+        ds.setMaxTotal( setting( "pool.maxTotal", 100 ) );
+        ds.setMinIdle( setting( "pool.minIdle", 5 ) );
+        ds.setMaxIdle( setting( "pool.maxIdle", 20 ) );
+        ds.setMaxWaitMillis( setting( "pool.maxWaitMillis", 10000 ) );
+
+        // Validation
+        ds.setValidationQuery( setting( "pool.validationQuery", "SELECT 1" ) );
+        ds.setValidationQueryTimeout( setting( "pool.validationQueryTimeout", 5 ) );
+        ds.setTestOnBorrow( true );
+        ds.setTestWhileIdle( true );
+        ds.setTimeBetweenEvictionRunsMillis( setting( "pool.timeBetweenEvictionRunsMillis", 30000 ) );
+        ds.setMinEvictableIdleTimeMillis( setting( "pool.minEvictableIdleTimeMillis", 300000 ) );
+
+        // Leak detection
+        ds.setRemoveAbandonedOnBorrow( true );
+        ds.setRemoveAbandonedOnMaintenance( true );
+        ds.setRemoveAbandonedTimeout( setting( "pool.removeAbandonedTimeout", 300 ) );
+        ds.setLogAbandoned( true );
+
+        // Statement cache. Statements are prepared by MySQL itself, so the
+        // ones kept open here are parsed & planned only once per connection
+        ds.setPoolPreparedStatements( true );
+        ds.setMaxOpenPreparedStatements( setting( "pool.maxOpenPreparedStatements", 100 ) );
+        ds.addConnectionProperty( "useServerPrepStmts", "true" );
+
+        // Send JDBC batches (such as the audit log's) as multi-row inserts
+        ds.addConnectionProperty( "rewriteBatchedStatements", "true" );
+
+        return ds;
+    }
+
+    /**
+     * Closes the connection pool, and every connection in it. Call this only
+     * once nothing else will use the database.
+     */
+    static synchronized public void shutdown () {
+        if ( null != dataSource ) {
+            try {
+                dataSource.close();
+            }
+            catch ( final SQLException e ) {
+                e.printStackTrace();
+            }
+            dataSource = null;
+        }
     }
 
     /**
@@ -90,6 +182,65 @@ public class DBUtil {
         return conn;
     }
 
+    /**
+     * Opens a connection to the db of its own, outside the connection pool,
+     * for work that streams rows for longer than the pool lets a connection
+     * be held (see `pool.removeAbandonedTimeout`). The pool only sees a
+     * connection as in use when a statement is run on it, not while rows are
+     * read, so it would otherwise close the connection part way through. MAKE
+     * SURE TO CLOSE THE CONNECTION WHEN YOU ARE DONE WITH IT.
+     *
+     * @return database connection
+     * @throws SQLException
+     *             If the connection could not be opened
+     */
+    static public Connection getDedicatedConnection () throws SQLException {
+        return DriverManager.getConnection( url, username, password );
+    }
+
+    /**
+     * Reads a setting from db.properties
+     *
+     * @param key
+     *            The setting to read
+     * @param defaultValue
+     *            Value to use if the setting is missing
+     * @return The value of the setting
+     */
+    static public String setting ( final String key, final String defaultValue ) {
+        final String value = settings.getProperty( key );
+        return null == value ? defaultValue : value.trim();
+    }
+
+    /**
+     * Reads a numeric setting from db.properties
+     *
+     * @param key
+     *            The setting to read
+     * @param defaultValue
+     *            Value to use if the setting is missing or not a number
+     * @return The value of the setting
+     */
+    static public int setting ( final String key, final int defaultValue ) {
+        try {
+            return Integer.parseInt( settings.getProperty( key ).trim() );
+        }
+        catch ( final Exception e ) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Whether pending schema migrations should be applied when the application
+     * starts. When this is off, they must be run explicitly with
+     * SchemaMigrator before deploying.
+     *
+     * @return true if migrations run on startup
+     */
+    static public boolean migrateOnStartup () {
+        return migrateOnStartup;
+    }
+
     /**
      * Get the url found in db.properties
      *
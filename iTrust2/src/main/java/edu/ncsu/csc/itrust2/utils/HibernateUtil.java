@@ -1,9 +1,18 @@
 package edu.ncsu.csc.itrust2.utils;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+
+import edu.ncsu.csc.itrust2.migrations.SchemaMigrator;
 
 /**
  * A utility class for setting up the Hibernate SessionFactory
@@ -16,7 +25,14 @@ public class HibernateUtil {
     /**
      * SeesionFactory used
      */
-    private static SessionFactory sessionFactory = buildSessionFactory();
+    private static SessionFactory        sessionFactory = buildSessionFactory();
+
+    /**
+     * Unit of work bound to the current thread for the duration of a unit of
+     * work (usually a single HTTP request). When no unit of work is active,
+     * DomainObject falls back to opening a session per call.
+     */
+    private static final ThreadLocal<UnitOfWork> boundUnit      = new ThreadLocal<UnitOfWork>();
 
     /**
      * Creates a SessionFactory
@@ -25,18 +41,24 @@ public class HibernateUtil {
      */
     private static SessionFactory buildSessionFactory () {
         try {
+            // Bring the schema up to date first; Hibernate itself only maps
+            // onto it and never changes it
+            if ( DBUtil.migrateOnStartup() ) {
+                SchemaMigrator.migrate();
+            }
+
             // Create the SessionFactory from hibernate.cfg.xml
             final Configuration c = new Configuration();
             c.configure();
 
-            c.setProperty( "hibernate.connection.url", DBUtil.getUrl() );
-            c.setProperty( "hibernate.connection.username", DBUtil.getUsername() );
-            c.setProperty( "hibernate.connection.password", DBUtil.getPassword() );
+            // Hand Hibernate the shared connection pool rather than letting it
+            // build its own from a URL & credentials
+            c.getProperties().put( Environment.DATASOURCE, DBUtil.dataSource() );
 
             return c.buildSessionFactory();
             // return new Configuration().configure().buildSessionFactory();
         }
-        catch ( final HibernateException ex ) {
+        catch ( final HibernateException | SQLException ex ) {
             // Make sure you log the exception, as it might be swallowed
             System.err.println( "Initial SessionFactory creation failed." + ex );
             throw new ExceptionInInitializerError( ex );
@@ -52,6 +74,19 @@ public class HibernateUtil {
         return sessionFactory;
     }
 
+    /**
+     * Retrieves every persistent class known to Hibernate
+     *
+     * @return The mapped classes, including subclasses of mapped classes
+     */
+    public static List<Class< ? >> getMappedClasses () {
+        final List<Class< ? >> classes = new ArrayList<Class< ? >>();
+        for ( final ClassMetadata metadata : getSessionFactory().getAllClassMetadata().values() ) {
+            classes.add( metadata.getMappedClass() );
+        }
+        return classes;
+    }
+
     /**
      * Retrieve a Session from Hibernate. Wrapper code to avoid boilerplate.
      *
@@ -63,6 +98,155 @@ public class HibernateUtil {
         return getSessionFactory().openSession();
     }
 
+    /**
+     * Starts a unit of work on the current thread: a single Session and
+     * Transaction that every DomainObject read and write performed on this
+     * thread will share until {@link #endUnitOfWork(boolean)} is called. The
+     * Session is only opened, and a connection taken from the pool, when the
+     * first read or write is made, so a request that makes none costs nothing.
+     * Does nothing if a unit of work is already active.
+     *
+     * @return true if a new unit of work was started, false if one was
+     *         already active (and so belongs to the caller further up)
+     */
+    public static boolean beginUnitOfWork () {
+        if ( null != boundUnit.get() ) {
+            return false;
+        }
+        boundUnit.set( new UnitOfWork() );
+        return true;
+    }
+
+    /**
+     * Ends the unit of work bound to the current thread, committing or rolling
+     * back its Transaction and closing the Session, if one was opened.
+     *
+     * @param commit
+     *            Whether to commit (true) or roll back (false) the work done
+     */
+    public static void endUnitOfWork ( final boolean commit ) {
+        final UnitOfWork unit = boundUnit.get();
+        boundUnit.remove();
+        if ( null == unit ) {
+            return;
+        }
+        final Session session = unit.session;
+        try {
+            if ( null != session && TransactionStatus.ACTIVE == session.getTransaction().getStatus() ) {
+                if ( commit ) {
+                    session.getTransaction().commit();
+                }
+                else {
+                    session.getTransaction().rollback();
+                }
+            }
+        }
+        finally {
+            if ( null != session ) {
+                session.close();
+            }
+            unit.afterCompletion.forEach( Runnable::run );
+        }
+    }
+
+    /**
+     * Runs the action provided once the unit of work bound to the current
+     * thread has ended, or right away if there is none. Use this for anything
+     * that must only happen once changes are visible to other connections,
+     * such as dropping cached copies of data.
+     *
+     * @param action
+     *            The action to run
+     */
+    public static void afterUnitOfWork ( final Runnable action ) {
+        final UnitOfWork unit = boundUnit.get();
+        if ( null == unit ) {
+            action.run();
+            return;
+        }
+        unit.afterCompletion.add( action );
+    }
+
+    /**
+     * Fails the unit of work bound to the current thread after an operation in
+     * it has thrown: everything done in it so far is rolled back and its
+     * Session closed, as a Hibernate Session must not be reused once it has
+     * thrown. Any further read or write in the unit of work throws, rather
+     * than carrying on in a fresh Transaction and committing only the part of
+     * the work that came after the failure.
+     */
+    public static void failUnitOfWork () {
+        final UnitOfWork unit = boundUnit.get();
+        if ( null == unit ) {
+            return;
+        }
+        unit.failed = true;
+        final Session session = unit.session;
+        unit.session = null;
+        if ( null == session ) {
+            return;
+        }
+        try {
+            if ( TransactionStatus.ACTIVE == session.getTransaction().getStatus() ) {
+                session.getTransaction().rollback();
+            }
+        }
+        catch ( final HibernateException e ) {
+            e.printStackTrace( System.out );
+            // Continue; the session is being discarded anyways
+        }
+        finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Retrieves the Session of the unit of work bound to the current thread,
+     * opening it and starting its Transaction if this is the first read or
+     * write made in it.
+     *
+     * @return The bound Session, or null if no unit of work is active
+     * @throws IllegalStateException
+     *             If the unit of work has failed
+     */
+    public static Session currentSession () {
+        final UnitOfWork unit = boundUnit.get();
+        if ( null == unit ) {
+            return null;
+        }
+        if ( unit.failed ) {
+            throw new IllegalStateException( "The unit of work was rolled back after an earlier failure" );
+        }
+        if ( null == unit.session ) {
+            final Session session = openSession();
+            session.beginTransaction();
+            unit.session = session;
+        }
+        return unit.session;
+    }
+
+    /**
+     * Runs the provided work outside of any unit of work bound to the current
+     * thread, so that every read and write it performs is committed on its own
+     * the way it would be from a background job. The bound unit of work, if
+     * any, is restored afterwards.
+     *
+     * @param work
+     *            The work to run with a Session per call
+     */
+    public static void withoutUnitOfWork ( final Runnable work ) {
+        final UnitOfWork suspended = boundUnit.get();
+        boundUnit.remove();
+        try {
+            work.run();
+        }
+        finally {
+            if ( null != suspended ) {
+                boundUnit.set( suspended );
+            }
+        }
+    }
+
     /**
      * Close the SessionFactory
      */
@@ -72,4 +256,22 @@ public class HibernateUtil {
             sessionFactory.close();
         }
     }
+
+    /**
+     * What is kept about the unit of work bound to a thread
+     */
+    private static final class UnitOfWork {
+
+        /** The Session, or null until the first read or write */
+        private Session              session;
+
+        /** Whether an operation has failed, rolling back the unit of work */
+        private boolean              failed;
+
+        /**
+         * Actions to run once the unit of work has ended, whether it was
+         * committed or rolled back
+         */
+        private final List<Runnable> afterCompletion = new ArrayList<Runnable>();
+    }
 }
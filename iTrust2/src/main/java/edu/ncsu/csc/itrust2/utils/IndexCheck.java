@@ -0,0 +1,145 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Compares the indexes declared on the persistent classes (through
+ * `@Table(indexes = ...)`) against the indexes that actually exist in the
+ * database. The schema is built by the versioned migrations rather than from
+ * these annotations, so an index declared here but never added by a
+ * migration (or dropped by hand) would otherwise go unnoticed, and the hot
+ * queries relying on it would fall back to a full table scan.
+ */
+public class IndexCheck {
+
+    /**
+     * Finds each declared index that has no counterpart in the live schema. An
+     * index counts as present if the table has some index, under any name,
+     * whose leading columns are the declared columns in the declared order.
+     *
+     * @return A description of each missing index, as `table.index (columns)`;
+     *         empty if none are missing
+     * @throws SQLException
+     *             If the schema cannot be read
+     */
+    public static List<String> missingIndexes () throws SQLException {
+        final List<String> missing = new ArrayList<String>();
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            final DatabaseMetaData meta = conn.getMetaData();
+            for ( final Class< ? > cls : HibernateUtil.getMappedClasses() ) {
+                final Table table = cls.getAnnotation( Table.class );
+                if ( null == table || 0 == table.indexes().length ) {
+                    continue;
+                }
+                final Collection<List<String>> existing = existingIndexes( meta, conn.getCatalog(), table.name() );
+                for ( final Index index : table.indexes() ) {
+                    if ( !covered( columns( index ), existing ) ) {
+                        missing.add( table.name() + "." + index.name() + " (" + index.columnList() + ")" );
+                    }
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Runs {@link #missingIndexes()} and reports the outcome on standard error.
+     * Meant to be called once at startup; a missing index makes queries slow,
+     * not wrong, so nothing here stops the application from starting.
+     */
+    public static void report () {
+        try {
+            final List<String> missing = missingIndexes();
+            for ( final String index : missing ) {
+                System.err.println( "Missing database index: " + index );
+            }
+            if ( !missing.isEmpty() ) {
+                System.err.println( missing.size()
+                        + " declared index(es) missing; queries on these tables will scan the whole table" );
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the column lists of every index on a table
+     *
+     * @param meta
+     *            Database metadata to read from
+     * @param catalog
+     *            Catalog (database) the table lives in
+     * @param table
+     *            Name of the table
+     * @return The lower-cased columns of each index, in index order
+     * @throws SQLException
+     *             If the metadata cannot be read
+     */
+    private static Collection<List<String>> existingIndexes ( final DatabaseMetaData meta, final String catalog,
+            final String table ) throws SQLException {
+        final Map<String, TreeMap<Short, String>> indexes = new HashMap<String, TreeMap<Short, String>>();
+        try ( final ResultSet rs = meta.getIndexInfo( catalog, null, table, false, true ) ) {
+            while ( rs.next() ) {
+                if ( DatabaseMetaData.tableIndexStatistic == rs.getShort( "TYPE" ) ) {
+                    continue;
+                }
+                indexes.computeIfAbsent( rs.getString( "INDEX_NAME" ), k -> new TreeMap<Short, String>() )
+                        .put( rs.getShort( "ORDINAL_POSITION" ), rs.getString( "COLUMN_NAME" ).toLowerCase() );
+            }
+        }
+        final List<List<String>> columns = new ArrayList<List<String>>();
+        for ( final TreeMap<Short, String> index : indexes.values() ) {
+            columns.add( new ArrayList<String>( index.values() ) );
+        }
+        return columns;
+    }
+
+    /**
+     * Splits the column list of a declared index into its lower-cased column
+     * names, dropping any ASC/DESC qualifiers
+     *
+     * @param index
+     *            The declared index
+     * @return Its columns, in order
+     */
+    private static List<String> columns ( final Index index ) {
+        final List<String> columns = new ArrayList<String>();
+        for ( final String part : Arrays.asList( index.columnList().split( "," ) ) ) {
+            columns.add( part.trim().split( "\\s+" )[0].toLowerCase() );
+        }
+        return columns;
+    }
+
+    /**
+     * Checks whether any existing index starts with the given columns
+     *
+     * @param wanted
+     *            Columns of the declared index
+     * @param existing
+     *            Columns of each index on the table
+     * @return true if some existing index can serve the declared one
+     */
+    private static boolean covered ( final List<String> wanted, final Collection<List<String>> existing ) {
+        for ( final List<String> index : existing ) {
+            if ( index.size() >= wanted.size() && index.subList( 0, wanted.size() ).equals( wanted ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
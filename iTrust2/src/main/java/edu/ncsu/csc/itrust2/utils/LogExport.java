@@ -0,0 +1,264 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import edu.ncsu.csc.itrust2.archive.LogArchive;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * Writes out the log for a range of time, oldest first, for exporting. Entries
+ * go straight from the archive and from a forward-only database cursor to the
+ * output as they are read, so an export of any size takes the same, small,
+ * amount of memory: nothing is collected into a list on the way.
+ */
+public class LogExport {
+
+    /** Formats an export can be written in */
+    public enum Format {
+        /** One JSON object per line */
+        NDJSON ( "application/x-ndjson", "ndjson" ),
+        /** Comma-separated values, with a header row */
+        CSV ( "text/csv", "csv" );
+
+        /** MIME type of the format */
+        private final String contentType;
+
+        /** File extension for the format */
+        private final String extension;
+
+        private Format ( final String contentType, final String extension ) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * Retrieves the MIME type of the format
+         *
+         * @return The MIME type
+         */
+        public String getContentType () {
+            return contentType;
+        }
+
+        /**
+         * Retrieves the file extension for the format
+         *
+         * @return The extension, without a dot
+         */
+        public String getExtension () {
+            return extension;
+        }
+    }
+
+    /** Columns of a CSV export */
+    private static final String CSV_HEADER = "id,time,type,description,primaryUser,secondaryUser,message\n";
+
+    /** Serialises NDJSON lines */
+    private static final Gson   GSON       = new GsonBuilder().disableHtmlEscaping().create();
+
+    /**
+     * Runs an action on each LogEntry logged in a range of time, oldest first:
+     * archived entries from the archive, a block at a time, and the rest from
+     * a forward-only database cursor that streams rows as they are read. If
+     * the action throws, the query is cancelled rather than read to its end.
+     *
+     * @param from
+     *            Earliest time to include
+     * @param to
+     *            Time to stop before
+     * @param action
+     *            The action to run on each LogEntry
+     * @throws SQLException
+     *             If the entries could not be read from the database
+     */
+    public static void scan ( final Calendar from, final Calendar to, final Consumer<LogEntry> action )
+            throws SQLException {
+        AuditWriter.flush();
+        final Calendar through = LogArchive.getArchivedThrough();
+        Calendar hot = from;
+        if ( null != through && through.after( from ) ) {
+            LogArchive.scan( from, to, action );
+            hot = through;
+        }
+        if ( !hot.before( to ) ) {
+            return;
+        }
+
+        final TransactionType[] codes = TransactionType.values();
+        // Streamed over a connection of its own, as a long export would
+        // otherwise be taken for a leak and closed by the pool
+        try ( final Connection conn = DBUtil.getDedicatedConnection();
+                final PreparedStatement ps = conn.prepareStatement(
+                        "select id, logCode, message, primaryUser, secondaryUser, time from LogEntries "
+                                + "where time >= ? and time < ? order by time, id",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY ) ) {
+            ps.setFetchSize( Integer.MIN_VALUE );
+            ps.setTimestamp( 1, new Timestamp( hot.getTimeInMillis() ) );
+            ps.setTimestamp( 2, new Timestamp( to.getTimeInMillis() ) );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                try {
+                    while ( rs.next() ) {
+                        final Calendar time = Calendar.getInstance();
+                        time.setTimeInMillis( rs.getTimestamp( 6 ).getTime() );
+                        action.accept( new LogEntry( rs.getLong( 1 ), codes[rs.getInt( 2 )], rs.getString( 4 ),
+                                rs.getString( 5 ), rs.getString( 3 ), time ) );
+                    }
+                }
+                catch ( final RuntimeException e ) {
+                    // Closing a streamed result reads every row left in it
+                    // first, so stop the query before giving up on it (as
+                    // when the client goes away part way through an export)
+                    try {
+                        ps.cancel();
+                    }
+                    catch ( final SQLException cancel ) {
+                        e.addSuppressed( cancel );
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out the LogEntries logged in a range of time, oldest first. The
+     * writer is flushed but not closed.
+     *
+     * @param from
+     *            Earliest time to include
+     * @param to
+     *            Time to stop before
+     * @param format
+     *            Format to write the entries in
+     * @param out
+     *            Where to write them
+     * @return The number of entries written
+     * @throws SQLException
+     *             If the entries could not be read
+     * @throws IOException
+     *             If the entries could not be written
+     */
+    public static long export ( final Calendar from, final Calendar to, final Format format, final Writer out )
+            throws SQLException, IOException {
+        final DateFormat iso = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ss.SSSXXX" );
+        final long[] written = { 0 };
+        if ( Format.CSV == format ) {
+            out.write( CSV_HEADER );
+        }
+        try {
+            scan( from, to, entry -> {
+                try {
+                    if ( Format.CSV == format ) {
+                        writeCsv( out, entry, iso );
+                    }
+                    else {
+                        writeJson( out, entry, iso );
+                    }
+                }
+                catch ( final IOException e ) {
+                    throw new UncheckedIOException( e );
+                }
+                written[0]++;
+            } );
+        }
+        catch ( final UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        out.flush();
+        return written[0];
+    }
+
+    /**
+     * Writes one entry as a line of JSON
+     *
+     * @param out
+     *            Where to write it
+     * @param entry
+     *            The entry
+     * @param iso
+     *            Format for its time
+     * @throws IOException
+     *             If it could not be written
+     */
+    private static void writeJson ( final Writer out, final LogEntry entry, final DateFormat iso )
+            throws IOException {
+        final JsonObject json = new JsonObject();
+        json.addProperty( "id", entry.getId() );
+        json.addProperty( "time", iso.format( entry.getTime().getTime() ) );
+        json.addProperty( "type", entry.getLogCode().name() );
+        json.addProperty( "description", entry.getLogCode().getDescription() );
+        json.addProperty( "primaryUser", entry.getPrimaryUser() );
+        json.addProperty( "secondaryUser", entry.getSecondaryUser() );
+        json.addProperty( "message", entry.getMessage() );
+        GSON.toJson( json, out );
+        out.write( '\n' );
+    }
+
+    /**
+     * Writes one entry as a row of CSV
+     *
+     * @param out
+     *            Where to write it
+     * @param entry
+     *            The entry
+     * @param iso
+     *            Format for its time
+     * @throws IOException
+     *             If it could not be written
+     */
+    private static void writeCsv ( final Writer out, final LogEntry entry, final DateFormat iso )
+            throws IOException {
+        out.write( String.valueOf( entry.getId() ) );
+        out.write( ',' );
+        out.write( iso.format( entry.getTime().getTime() ) );
+        out.write( ',' );
+        out.write( entry.getLogCode().name() );
+        out.write( ',' );
+        out.write( csv( entry.getLogCode().getDescription() ) );
+        out.write( ',' );
+        out.write( csv( entry.getPrimaryUser() ) );
+        out.write( ',' );
+        out.write( csv( entry.getSecondaryUser() ) );
+        out.write( ',' );
+        out.write( csv( entry.getMessage() ) );
+        out.write( '\n' );
+    }
+
+    /**
+     * Quotes a CSV field if it needs to be. A field that a spreadsheet would
+     * take for a formula (starting with =, +, -, @, a tab or a carriage
+     * return) is prefixed with a ' so that it is shown as text instead.
+     *
+     * @param value
+     *            The value, or null for an empty field
+     * @return The field
+     */
+    private static String csv ( final String value ) {
+        if ( null == value ) {
+            return "";
+        }
+        final boolean formula = !value.isEmpty() && "=+-@\t\r".indexOf( value.charAt( 0 ) ) >= 0;
+        if ( !formula && value.indexOf( ',' ) < 0 && value.indexOf( '"' ) < 0 && value.indexOf( '\n' ) < 0
+                && value.indexOf( '\r' ) < 0 ) {
+            return value;
+        }
+        return "\"" + ( formula ? "'" : "" ) + value.replace( "\"", "\"\"" ) + "\"";
+    }
+
+}
@@ -0,0 +1,439 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import edu.ncsu.csc.itrust2.archive.LogArchive;
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * Hourly counts of LogEntries by TransactionType and primary user, kept in the
+ * LogRollups table so that questions like "how many failed logins were there
+ * each hour this week" are answered from a few hundred rows rather than by
+ * grouping the whole log. The counts are added to in the same transaction
+ * the AuditWriter writes the entries in, and stay when entries are archived,
+ * so they cover the log's whole history. Days are summed from hours.
+ *
+ * Counts from before the table existed, or that have drifted (such as after
+ * entries were deleted by hand), are filled in by rebuilding a range of time
+ * from the log itself:
+ *
+ * <pre>
+ * java -cp ... edu.ncsu.csc.itrust2.utils.LogRollups [yyyy-MM-dd [yyyy-MM-dd]]
+ * </pre>
+ */
+public class LogRollups {
+
+    /** Adds to the count for one hour, type and user */
+    private static final String ADD = "insert into LogRollups (bucket, logCode, primaryUser, count) "
+            + "values (?, ?, ?, ?) on duplicate key update count = count + values(count)";
+
+    /**
+     * Adds entries just written to the LogEntries table to the counts
+     *
+     * @param conn
+     *            Connection to use, in the transaction the entries were
+     *            written in
+     * @param entries
+     *            The entries
+     * @throws SQLException
+     *             If the counts could not be updated
+     */
+    static void add ( final Connection conn, final Collection<LogEntry> entries ) throws SQLException {
+        final Map<Key, Long> counts = new TreeMap<Key, Long>();
+        for ( final LogEntry entry : entries ) {
+            counts.merge( new Key( hour( entry.getTime() ), entry.getLogCode().ordinal(), entry.getPrimaryUser() ),
+                    1L, Long::sum );
+        }
+        add( conn, counts );
+    }
+
+    /**
+     * Adds an entry saved outside of a batch to the counts, over a connection
+     * of its own
+     *
+     * @param entry
+     *            The entry
+     * @throws SQLException
+     *             If the counts could not be updated
+     */
+    static void add ( final LogEntry entry ) throws SQLException {
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            add( conn, Collections.singletonList( entry ) );
+        }
+    }
+
+    /**
+     * Recounts a range of time from the log: the counts for each hour in the
+     * range are thrown away, and counted again from the LogEntries table, and
+     * from the archive for hours that have been archived. The database's part
+     * is counted by the database itself in a single statement.
+     *
+     * @param from
+     *            Start of the range; rounded down to the hour
+     * @param to
+     *            End of the range (exclusive); rounded up to the hour
+     * @return The number of entries counted
+     * @throws SQLException
+     *             If the counts could not be rebuilt
+     */
+    public static long rebuild ( final Calendar from, final Calendar to ) throws SQLException {
+        final Calendar start = hour( from );
+        final Calendar end = hour( to );
+        if ( end.before( to ) ) {
+            end.add( Calendar.HOUR_OF_DAY, 1 );
+        }
+        AuditWriter.flush();
+        final Calendar through = LogArchive.getArchivedThrough();
+        final Calendar hot = null != through && through.after( start ) ? through : start;
+
+        long counted = 0;
+        // Held open across a scan of the archive, which can take longer than
+        // the pool lets a connection be held, so it is a connection of its own
+        try ( final Connection conn = DBUtil.getDedicatedConnection() ) {
+            conn.setAutoCommit( false );
+            try {
+                try ( final PreparedStatement ps = conn
+                        .prepareStatement( "delete from LogRollups where bucket >= ? and bucket < ?" ) ) {
+                    ps.setTimestamp( 1, new Timestamp( start.getTimeInMillis() ) );
+                    ps.setTimestamp( 2, new Timestamp( end.getTimeInMillis() ) );
+                    ps.executeUpdate();
+                }
+                if ( hot.before( end ) ) {
+                    try ( final PreparedStatement ps = conn.prepareStatement(
+                            "insert into LogRollups (bucket, logCode, primaryUser, count) "
+                                    + "select date_format(time, '%Y-%m-%d %H:00:00'), logCode, primaryUser, count(*) "
+                                    + "from LogEntries where time >= ? and time < ? "
+                                    + "group by date_format(time, '%Y-%m-%d %H:00:00'), logCode, primaryUser" ) ) {
+                        ps.setTimestamp( 1, new Timestamp( hot.getTimeInMillis() ) );
+                        ps.setTimestamp( 2, new Timestamp( end.getTimeInMillis() ) );
+                        ps.executeUpdate();
+                    }
+                }
+                if ( hot.after( start ) ) {
+                    final Map<Key, Long> archived = new TreeMap<Key, Long>();
+                    LogArchive.scan( start, hot, entry -> archived.merge( new Key( hour( entry.getTime() ),
+                            entry.getLogCode().ordinal(), entry.getPrimaryUser() ), 1L, Long::sum ) );
+                    add( conn, archived );
+                }
+                try ( final PreparedStatement ps = conn.prepareStatement(
+                        "select coalesce(sum(count), 0) from LogRollups where bucket >= ? and bucket < ?" ) ) {
+                    ps.setTimestamp( 1, new Timestamp( start.getTimeInMillis() ) );
+                    ps.setTimestamp( 2, new Timestamp( end.getTimeInMillis() ) );
+                    try ( final ResultSet rs = ps.executeQuery() ) {
+                        rs.next();
+                        counted = rs.getLong( 1 );
+                    }
+                }
+                conn.commit();
+            }
+            catch ( final SQLException | RuntimeException e ) {
+                conn.rollback();
+                throw e;
+            }
+            finally {
+                conn.setAutoCommit( true );
+            }
+        }
+        return counted;
+    }
+
+    /**
+     * Counts LogEntries in each hour or day of a range of time, including the
+     * hours or days with none
+     *
+     * @param types
+     *            Types of entry to count, or null or empty to count all
+     * @param user
+     *            Primary user to count the entries of, or null for everyone
+     * @param from
+     *            Start of the first hour or day
+     * @param to
+     *            End of the range (exclusive)
+     * @param daily
+     *            Whether to count by day rather than by hour
+     * @return The count for the start of each hour or day, in order
+     * @throws SQLException
+     *             If the counts could not be read
+     */
+    public static Map<Date, Long> series ( final Set<TransactionType> types, final String user, final Calendar from,
+            final Calendar to, final boolean daily ) throws SQLException {
+        AuditWriter.flush();
+        final Map<Date, Long> series = new LinkedHashMap<Date, Long>();
+        final Calendar start = hour( from );
+        if ( daily ) {
+            start.set( Calendar.HOUR_OF_DAY, 0 );
+        }
+        final Calendar bucket = (Calendar) start.clone();
+        while ( bucket.before( to ) ) {
+            series.put( bucket.getTime(), 0L );
+            bucket.add( daily ? Calendar.DAY_OF_MONTH : Calendar.HOUR_OF_DAY, 1 );
+        }
+
+        final String group = daily ? "date(bucket)" : "bucket";
+        final StringBuilder sql = new StringBuilder( "select " + group + ", sum(count) from LogRollups "
+                + "where bucket >= ? and bucket < ?" );
+        appendTypes( sql, types );
+        if ( null != user ) {
+            sql.append( " and primaryUser = ?" );
+        }
+        sql.append( " group by " + group );
+
+        try ( final Connection conn = DBUtil.getConnection();
+                final PreparedStatement ps = conn.prepareStatement( sql.toString() ) ) {
+            final int i = bind( ps, 1, start, to, types );
+            if ( null != user ) {
+                ps.setString( i, user );
+            }
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                while ( rs.next() ) {
+                    final Date time = new Date( rs.getTimestamp( 1 ).getTime() );
+                    if ( series.containsKey( time ) ) {
+                        series.put( time, series.get( time ) + rs.getLong( 2 ) );
+                    }
+                }
+            }
+        }
+        return series;
+    }
+
+    /**
+     * Finds the primary users with the most LogEntries in a range of time
+     *
+     * @param types
+     *            Types of entry to count, or null or empty to count all
+     * @param role
+     *            Role the users must have, or null for any
+     * @param from
+     *            Start of the range; rounded down to the hour
+     * @param to
+     *            End of the range (exclusive)
+     * @param limit
+     *            Most users to return
+     * @return The count for each user, most first
+     * @throws SQLException
+     *             If the counts could not be read
+     */
+    public static Map<String, Long> top ( final Set<TransactionType> types, final Role role, final Calendar from,
+            final Calendar to, final int limit ) throws SQLException {
+        AuditWriter.flush();
+        final StringBuilder sql = new StringBuilder( "select r.primaryUser, sum(r.count) as total from LogRollups r" );
+        if ( null != role ) {
+            sql.append( " join Users u on u.username = r.primaryUser and u.role = ?" );
+        }
+        sql.append( " where bucket >= ? and bucket < ?" );
+        appendTypes( sql, types );
+        sql.append( " group by r.primaryUser order by total desc, r.primaryUser limit ?" );
+
+        final Map<String, Long> top = new LinkedHashMap<String, Long>();
+        try ( final Connection conn = DBUtil.getConnection();
+                final PreparedStatement ps = conn.prepareStatement( sql.toString() ) ) {
+            int i = 1;
+            if ( null != role ) {
+                ps.setString( i++, role.name() );
+            }
+            i = bind( ps, i, hour( from ), to, types );
+            ps.setInt( i, limit );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                while ( rs.next() ) {
+                    top.put( rs.getString( 1 ), rs.getLong( 2 ) );
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Rebuilds the counts for a range of days, by default the last week
+     *
+     * @param args
+     *            First and last days to rebuild, as yyyy-MM-dd; the last
+     *            defaults to today
+     */
+    public static void main ( final String args[] ) {
+        int status = 0;
+        try {
+            final SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd" );
+            format.setLenient( false );
+            final Calendar from = hour( Calendar.getInstance() );
+            from.set( Calendar.HOUR_OF_DAY, 0 );
+            final Calendar to = (Calendar) from.clone();
+            to.add( Calendar.DAY_OF_MONTH, 1 );
+            from.add( Calendar.DAY_OF_MONTH, -7 );
+            if ( args.length > 0 ) {
+                from.setTime( format.parse( args[0] ) );
+            }
+            if ( args.length > 1 ) {
+                to.setTime( format.parse( args[1] ) );
+                to.add( Calendar.DAY_OF_MONTH, 1 );
+            }
+            System.out.println( rebuild( from, to ) + " log entries counted" );
+        }
+        catch ( final SQLException | ParseException e ) {
+            e.printStackTrace();
+            status = 1;
+        }
+        finally {
+            DBUtil.shutdown();
+        }
+        System.exit( status );
+    }
+
+    /**
+     * Adds counts to the table, in order of key so that concurrent writers
+     * always lock rows in the same order
+     *
+     * @param conn
+     *            Connection to use
+     * @param counts
+     *            Count to add for each key, sorted
+     * @throws SQLException
+     *             If the counts could not be updated
+     */
+    private static void add ( final Connection conn, final Map<Key, Long> counts ) throws SQLException {
+        if ( counts.isEmpty() ) {
+            return;
+        }
+        try ( final PreparedStatement ps = conn.prepareStatement( ADD ) ) {
+            int batched = 0;
+            for ( final Map.Entry<Key, Long> count : counts.entrySet() ) {
+                ps.setTimestamp( 1, new Timestamp( count.getKey().hour ) );
+                ps.setInt( 2, count.getKey().code );
+                ps.setString( 3, count.getKey().user );
+                ps.setLong( 4, count.getValue() );
+                ps.addBatch();
+                if ( ++batched % 500 == 0 ) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Adds the condition on the types of entry to a query, if there is one
+     *
+     * @param sql
+     *            The query
+     * @param types
+     *            Types of entry to count, or null or empty for all
+     */
+    private static void appendTypes ( final StringBuilder sql, final Set<TransactionType> types ) {
+        if ( null != types && !types.isEmpty() ) {
+            sql.append( " and logCode in (" ).append( String.join( ", ", Collections.nCopies( types.size(), "?" ) ) )
+                    .append( ")" );
+        }
+    }
+
+    /**
+     * Binds the range of time and types of entry to a query
+     *
+     * @param ps
+     *            The query
+     * @param first
+     *            Parameter to start at
+     * @param from
+     *            Start of the range
+     * @param to
+     *            End of the range (exclusive)
+     * @param types
+     *            Types of entry, or null or empty for all
+     * @return The next parameter to bind
+     * @throws SQLException
+     *             If the parameters could not be bound
+     */
+    private static int bind ( final PreparedStatement ps, final int first, final Calendar from, final Calendar to,
+            final Set<TransactionType> types ) throws SQLException {
+        int i = first;
+        ps.setTimestamp( i++, new Timestamp( from.getTimeInMillis() ) );
+        ps.setTimestamp( i++, new Timestamp( to.getTimeInMillis() ) );
+        if ( null != types ) {
+            for ( final TransactionType type : types ) {
+                ps.setInt( i++, type.ordinal() );
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Rounds a time down to the hour
+     *
+     * @param time
+     *            The time
+     * @return The start of the hour, as a new Calendar
+     */
+    private static Calendar hour ( final Calendar time ) {
+        final Calendar hour = (Calendar) time.clone();
+        hour.set( Calendar.MINUTE, 0 );
+        hour.set( Calendar.SECOND, 0 );
+        hour.set( Calendar.MILLISECOND, 0 );
+        return hour;
+    }
+
+    /**
+     * Identifies one row of the LogRollups table
+     */
+    private static final class Key implements Comparable<Key> {
+
+        /** Start of the hour, in epoch millis */
+        private final long   hour;
+
+        /** TransactionType, by ordinal as in LogEntries */
+        private final int    code;
+
+        /** The primary user */
+        private final String user;
+
+        /**
+         * Creates a Key
+         *
+         * @param hour
+         *            Start of the hour
+         * @param code
+         *            TransactionType ordinal
+         * @param user
+         *            The primary user
+         */
+        private Key ( final Calendar hour, final int code, final String user ) {
+            this.hour = hour.getTimeInMillis();
+            this.code = code;
+            this.user = user;
+        }
+
+        @Override
+        public int compareTo ( final Key other ) {
+            int c = Long.compare( hour, other.hour );
+            if ( 0 == c ) {
+                c = Integer.compare( code, other.code );
+            }
+            return 0 == c ? user.compareTo( other.user ) : c;
+        }
+
+        @Override
+        public boolean equals ( final Object o ) {
+            return o instanceof Key && 0 == compareTo( (Key) o );
+        }
+
+        @Override
+        public int hashCode () {
+            return Long.hashCode( hour ) * 31 * 31 + code * 31 + user.hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,700 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import edu.ncsu.csc.itrust2.archive.LogArchive;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * A full-text index over the log, so that investigations can find the entries
+ * mentioning some words without scanning every message. Each entry's message,
+ * users and type description are split into lowercase words, and the LogTerms
+ * table holds, for each word and day, the IDs of the entries on that day
+ * containing it. The IDs are kept compressed as the gaps between them, so a
+ * day's list for even the most common word stays small, and a search reads
+ * only the lists for the words and days asked about.
+ *
+ * Words are added to in the same transaction the AuditWriter writes the
+ * entries in, and stay when entries are archived; matching entries are read
+ * back from the database or the archive. Each batch adds a new row for each of
+ * its words, keyed by the first ID in it, so that writing never rewrites (or
+ * waits on) a day's list so far. A day's rows for a word are merged into as few
+ * as possible once the day is over. Days from before the table existed are
+ * indexed by rebuilding them from the log itself:
+ *
+ * <pre>
+ * java -cp ... edu.ncsu.csc.itrust2.utils.LogSearch [yyyy-MM-dd [yyyy-MM-dd]]
+ * java -cp ... edu.ncsu.csc.itrust2.utils.LogSearch merge [yyyy-MM-dd [yyyy-MM-dd]]
+ * </pre>
+ *
+ * The second merges the rows of past days, and is meant to be run daily, such
+ * as from cron.
+ */
+public class LogSearch {
+
+    /** Longest word indexed; longer words are cut short */
+    static final int             MAX_TERM = 64;
+
+    /** Splits text into words */
+    private static final Pattern SPLIT    = Pattern.compile( "[^\\p{L}\\p{N}_]+" );
+
+    /** Most IDs kept in one row, well within what a mediumblob holds */
+    private static final int     MAX_RUN  = 100000;
+
+    /** Adds a row of IDs to the list for one word and day */
+    private static final String  ADD      = "insert into LogTerms (term, day, firstId, postings) values (?, ?, ?, ?)";
+
+    /**
+     * Entries matching a search: how many there are in all, and one page of
+     * them
+     */
+    public static final class Hits {
+
+        /** Number of entries matching */
+        private final long           total;
+
+        /** The entries on the page, newest first */
+        private final List<LogEntry> entries;
+
+        private Hits ( final long total, final List<LogEntry> entries ) {
+            this.total = total;
+            this.entries = entries;
+        }
+
+        /**
+         * Retrieves the number of entries matching the search
+         *
+         * @return The number of entries
+         */
+        public long getTotal () {
+            return total;
+        }
+
+        /**
+         * Retrieves the page of entries asked for, newest first
+         *
+         * @return The entries
+         */
+        public List<LogEntry> getEntries () {
+            return entries;
+        }
+    }
+
+    /**
+     * Splits text into the words it is indexed and searched by
+     *
+     * @param text
+     *            The text, or null
+     * @param terms
+     *            Set to add the words to
+     */
+    public static void terms ( final String text, final Set<String> terms ) {
+        if ( null == text ) {
+            return;
+        }
+        for ( final String word : SPLIT.split( text.toLowerCase( Locale.ROOT ) ) ) {
+            if ( !word.isEmpty() ) {
+                terms.add( word.length() > MAX_TERM ? word.substring( 0, MAX_TERM ) : word );
+            }
+        }
+    }
+
+    /**
+     * Finds the words an entry is indexed by
+     *
+     * @param entry
+     *            The entry
+     * @return Its words
+     */
+    static Set<String> terms ( final LogEntry entry ) {
+        final Set<String> terms = new HashSet<String>();
+        terms( entry.getMessage(), terms );
+        terms( entry.getPrimaryUser(), terms );
+        terms( entry.getSecondaryUser(), terms );
+        terms( entry.getLogCode().getDescription(), terms );
+        return terms;
+    }
+
+    /**
+     * Adds entries just written to the LogEntries table to the index
+     *
+     * @param conn
+     *            Connection to use, in the transaction the entries were
+     *            written in
+     * @param entries
+     *            The entries
+     * @param firstId
+     *            ID of the first entry; the others follow on from it in order
+     * @throws SQLException
+     *             If the index could not be updated
+     */
+    static void add ( final Connection conn, final List<LogEntry> entries, final long firstId )
+            throws SQLException {
+        final Map<Key, TreeSet<Long>> postings = new TreeMap<Key, TreeSet<Long>>();
+        long id = firstId;
+        for ( final LogEntry entry : entries ) {
+            collect( postings, entry, id++ );
+        }
+        add( conn, postings );
+    }
+
+    /**
+     * Adds an entry saved outside of a batch to the index, over a connection
+     * of its own
+     *
+     * @param entry
+     *            The entry, with its ID
+     * @throws SQLException
+     *             If the index could not be updated
+     */
+    static void add ( final LogEntry entry ) throws SQLException {
+        final Map<Key, TreeSet<Long>> postings = new TreeMap<Key, TreeSet<Long>>();
+        collect( postings, entry, entry.getId() );
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            add( conn, postings );
+        }
+    }
+
+    /**
+     * Finds the entries containing every word of a search, newest first
+     *
+     * @param query
+     *            The words to search for
+     * @param from
+     *            Start of the first day to search
+     * @param to
+     *            End of the range (exclusive)
+     * @param skip
+     *            Number of matching entries to skip over first
+     * @param limit
+     *            Most entries to retrieve
+     * @return The number of entries matching, and the page asked for
+     * @throws IllegalArgumentException
+     *             If the search has no words, or the page is invalid
+     * @throws SQLException
+     *             If the index could not be read
+     */
+    public static Hits search ( final String query, final Calendar from, final Calendar to, final int skip,
+            final int limit ) throws SQLException {
+        final Set<String> terms = new LinkedHashSet<String>();
+        terms( query, terms );
+        if ( terms.isEmpty() ) {
+            throw new IllegalArgumentException( "Search must contain at least one word" );
+        }
+        if ( skip < 0 || limit < 1 ) {
+            throw new IllegalArgumentException( "Invalid page" );
+        }
+        AuditWriter.flush();
+
+        final String sql = "select day, term, postings from LogTerms where term in ("
+                + String.join( ", ", Collections.nCopies( terms.size(), "?" ) )
+                + ") and day >= ? and day < ? order by day desc, term";
+        long total = 0;
+        final List<Long> ids = new ArrayList<Long>();
+        final Map<Long, Long> days = new HashMap<Long, Long>();
+        try ( final Connection conn = DBUtil.getConnection();
+                final PreparedStatement ps = conn.prepareStatement( sql ) ) {
+            ps.setFetchSize( Integer.MIN_VALUE );
+            int i = 1;
+            for ( final String term : terms ) {
+                ps.setBytes( i++, term.getBytes( StandardCharsets.UTF_8 ) );
+            }
+            ps.setDate( i++, new java.sql.Date( day( from ).getTimeInMillis() ) );
+            ps.setTimestamp( i, new Timestamp( to.getTimeInMillis() ) );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                // Rows come a day at a time, and each word's rows together;
+                // a word's rows are decoded as one list, and each day's lists
+                // are intersected once all of them have been read
+                final Map<String, ByteArrayOutputStream> lists = new HashMap<String, ByteArrayOutputStream>();
+                long day = Long.MIN_VALUE;
+                boolean more = rs.next();
+                while ( more ) {
+                    final long rowDay = rs.getDate( 1 ).getTime();
+                    if ( rowDay != day ) {
+                        lists.clear();
+                        day = rowDay;
+                    }
+                    final byte[] run = rs.getBytes( 3 );
+                    lists.computeIfAbsent( new String( rs.getBytes( 2 ), StandardCharsets.UTF_8 ),
+                            t -> new ByteArrayOutputStream() ).write( run, 0, run.length );
+                    more = rs.next();
+                    if ( !more || rs.getDate( 1 ).getTime() != day ) {
+                        if ( lists.size() == terms.size() ) {
+                            final List<long[]> decoded = new ArrayList<long[]>();
+                            for ( final ByteArrayOutputStream list : lists.values() ) {
+                                decoded.add( decode( list.toByteArray() ) );
+                            }
+                            final long[] matches = intersect( decoded );
+                            for ( int j = matches.length - 1; j >= 0; j-- ) {
+                                if ( total >= skip && ids.size() < limit ) {
+                                    ids.add( matches[j] );
+                                    days.put( matches[j], day );
+                                }
+                                total++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new Hits( total, resolve( ids, days ) );
+    }
+
+    /**
+     * Reindexes a range of days from the log: the index for each day in the
+     * range is thrown away, and built again from the LogEntries table, and
+     * from the archive for times that have been archived. Each day is rebuilt
+     * in a transaction of its own. The day's rows are deleted before its
+     * entries are read, which holds up entries being added to the day until
+     * it is rebuilt, so that none added meanwhile are lost.
+     *
+     * @param from
+     *            Start of the range; rounded down to the day
+     * @param to
+     *            End of the range (exclusive)
+     * @return The number of entries indexed
+     * @throws SQLException
+     *             If the index could not be rebuilt
+     */
+    public static long rebuild ( final Calendar from, final Calendar to ) throws SQLException {
+        AuditWriter.flush();
+        final Calendar through = LogArchive.getArchivedThrough();
+        long indexed = 0;
+        for ( final Calendar start = day( from ); start.before( to ); start.add( Calendar.DAY_OF_MONTH, 1 ) ) {
+            final Calendar end = (Calendar) start.clone();
+            end.add( Calendar.DAY_OF_MONTH, 1 );
+            final Calendar hot = null == through || through.before( start ) ? start
+                    : through.after( end ) ? end : through;
+
+            final Map<Key, TreeSet<Long>> postings = new TreeMap<Key, TreeSet<Long>>();
+            final long[] count = { 0 };
+            if ( hot.after( start ) ) {
+                LogArchive.scan( start, hot, entry -> {
+                    collect( postings, entry, entry.getId() );
+                    count[0]++;
+                } );
+            }
+
+            // Re-indexing a busy day can take longer than the pool lets a
+            // connection be held, so each day has a connection of its own
+            try ( final Connection conn = DBUtil.getDedicatedConnection() ) {
+                conn.setAutoCommit( false );
+                try {
+                    try ( final PreparedStatement ps = conn.prepareStatement( "delete from LogTerms where day = ?" ) ) {
+                        ps.setDate( 1, new java.sql.Date( start.getTimeInMillis() ) );
+                        ps.executeUpdate();
+                    }
+                    try ( final PreparedStatement ps = conn.prepareStatement(
+                            "select id, logCode, primaryUser, secondaryUser, message, time from LogEntries "
+                                    + "where time >= ? and time < ?" ) ) {
+                        ps.setTimestamp( 1, new Timestamp( hot.getTimeInMillis() ) );
+                        ps.setTimestamp( 2, new Timestamp( end.getTimeInMillis() ) );
+                        try ( final ResultSet rs = ps.executeQuery() ) {
+                            while ( rs.next() ) {
+                                final Calendar time = Calendar.getInstance();
+                                time.setTimeInMillis( rs.getTimestamp( 6 ).getTime() );
+                                collect( postings,
+                                        new LogEntry( rs.getLong( 1 ), TransactionType.values()[rs.getInt( 2 )],
+                                                rs.getString( 3 ), rs.getString( 4 ), rs.getString( 5 ), time ),
+                                        rs.getLong( 1 ) );
+                                count[0]++;
+                            }
+                        }
+                    }
+                    add( conn, postings );
+                    conn.commit();
+                }
+                catch ( final SQLException | RuntimeException e ) {
+                    conn.rollback();
+                    throw e;
+                }
+                finally {
+                    conn.setAutoCommit( true );
+                }
+            }
+            indexed += count[0];
+        }
+        return indexed;
+    }
+
+    /**
+     * Merges the rows for each word on each day of a range into as few rows as
+     * possible, each holding up to {@link #MAX_RUN} IDs. Each day is merged in
+     * a transaction of its own, with its rows locked, so that it holds up
+     * entries being added to the day until it is done; it is meant for days
+     * that are over.
+     *
+     * @param from
+     *            Start of the range; rounded down to the day
+     * @param to
+     *            End of the range (exclusive)
+     * @return The number of rows merged away
+     * @throws SQLException
+     *             If the index could not be merged
+     */
+    public static long merge ( final Calendar from, final Calendar to ) throws SQLException {
+        long merged = 0;
+        for ( final Calendar start = day( from ); start.before( to ); start.add( Calendar.DAY_OF_MONTH, 1 ) ) {
+            final java.sql.Date day = new java.sql.Date( start.getTimeInMillis() );
+            // As in rebuild, a connection of its own, as a day can take
+            // longer to merge than the pool lets a connection be held
+            try ( final Connection conn = DBUtil.getDedicatedConnection() ) {
+                conn.setAutoCommit( false );
+                try {
+                    final Map<Key, TreeSet<Long>> postings = new TreeMap<Key, TreeSet<Long>>();
+                    int rows = 0;
+                    try ( final PreparedStatement ps = conn
+                            .prepareStatement( "select term, postings from LogTerms where day = ? for update" ) ) {
+                        ps.setDate( 1, day );
+                        try ( final ResultSet rs = ps.executeQuery() ) {
+                            while ( rs.next() ) {
+                                final TreeSet<Long> ids = postings.computeIfAbsent( new Key(
+                                        new String( rs.getBytes( 1 ), StandardCharsets.UTF_8 ),
+                                        start.getTimeInMillis() ), k -> new TreeSet<Long>() );
+                                for ( final long id : decode( rs.getBytes( 2 ) ) ) {
+                                    ids.add( id );
+                                }
+                                rows++;
+                            }
+                        }
+                    }
+                    try ( final PreparedStatement ps = conn.prepareStatement( "delete from LogTerms where day = ?" ) ) {
+                        ps.setDate( 1, day );
+                        ps.executeUpdate();
+                    }
+                    merged += rows - add( conn, postings );
+                    conn.commit();
+                }
+                catch ( final SQLException | RuntimeException e ) {
+                    conn.rollback();
+                    throw e;
+                }
+                finally {
+                    conn.setAutoCommit( true );
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Reindexes a range of days, by default the last week, or merges the rows
+     * of a range of days, by default the week before today
+     *
+     * @param args
+     *            `merge` to merge rather than reindex, then the first and
+     *            last days, as yyyy-MM-dd; the last defaults to today when
+     *            reindexing, and to yesterday when merging
+     */
+    public static void main ( final String args[] ) {
+        int status = 0;
+        try {
+            final boolean merge = args.length > 0 && "merge".equals( args[0] );
+            final int first = merge ? 1 : 0;
+            final SimpleDateFormat format = new SimpleDateFormat( "yyyy-MM-dd" );
+            format.setLenient( false );
+            final Calendar from = day( Calendar.getInstance() );
+            final Calendar to = (Calendar) from.clone();
+            if ( !merge ) {
+                to.add( Calendar.DAY_OF_MONTH, 1 );
+            }
+            from.add( Calendar.DAY_OF_MONTH, -7 );
+            if ( args.length > first ) {
+                from.setTime( format.parse( args[first] ) );
+            }
+            if ( args.length > first + 1 ) {
+                to.setTime( format.parse( args[first + 1] ) );
+                to.add( Calendar.DAY_OF_MONTH, 1 );
+            }
+            if ( merge ) {
+                System.out.println( merge( from, to ) + " index rows merged" );
+            }
+            else {
+                System.out.println( rebuild( from, to ) + " log entries indexed" );
+            }
+        }
+        catch ( final SQLException | ParseException e ) {
+            e.printStackTrace();
+            status = 1;
+        }
+        finally {
+            DBUtil.shutdown();
+        }
+        System.exit( status );
+    }
+
+    /**
+     * Encodes a list of IDs to be added to the end of a day's list for a word.
+     * A zero starts each run of IDs added, followed by the first ID and then
+     * the gap to each next one, all as variable-length numbers; as no two IDs
+     * in a run are the same, a zero never appears as a gap.
+     *
+     * @param ids
+     *            The IDs, sorted
+     * @return The encoded run
+     */
+    public static byte[] encode ( final Set<Long> ids ) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream( 1 + ids.size() * 2 );
+        out.write( 0 );
+        long last = 0;
+        for ( final long id : ids ) {
+            long gap = id - last;
+            last = id;
+            while ( ( gap & ~0x7FL ) != 0 ) {
+                out.write( (int) ( gap & 0x7F ) | 0x80 );
+                gap >>>= 7;
+            }
+            out.write( (int) gap );
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a day's list for a word, which may be made up of several runs
+     *
+     * @param postings
+     *            The encoded list
+     * @return The IDs in it, sorted, each once
+     */
+    public static long[] decode ( final byte[] postings ) {
+        long[] ids = new long[16];
+        int count = 0;
+        long last = 0;
+        int i = 0;
+        while ( i < postings.length ) {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[i++];
+                gap |= (long) ( b & 0x7F ) << shift;
+                shift += 7;
+            }
+            while ( b < 0 );
+            if ( 0 == gap ) {
+                last = 0;
+                continue;
+            }
+            last += gap;
+            if ( count == ids.length ) {
+                ids = Arrays.copyOf( ids, count * 2 );
+            }
+            ids[count++] = last;
+        }
+        ids = Arrays.copyOf( ids, count );
+        Arrays.sort( ids );
+        int unique = 0;
+        for ( int j = 0; j < count; j++ ) {
+            if ( 0 == unique || ids[unique - 1] != ids[j] ) {
+                ids[unique++] = ids[j];
+            }
+        }
+        return Arrays.copyOf( ids, unique );
+    }
+
+    /**
+     * Finds the IDs in every one of some sorted lists, starting from the
+     * shortest
+     *
+     * @param lists
+     *            The lists
+     * @return The IDs in all of them, sorted
+     */
+    public static long[] intersect ( final List<long[]> lists ) {
+        lists.sort( ( a, b ) -> Integer.compare( a.length, b.length ) );
+        long[] result = lists.get( 0 );
+        for ( int l = 1; l < lists.size() && result.length > 0; l++ ) {
+            final long[] other = lists.get( l );
+            final long[] both = new long[result.length];
+            int count = 0;
+            int j = 0;
+            for ( final long id : result ) {
+                while ( j < other.length && other[j] < id ) {
+                    j++;
+                }
+                if ( j < other.length && other[j] == id ) {
+                    both[count++] = id;
+                }
+            }
+            result = Arrays.copyOf( both, count );
+        }
+        return result;
+    }
+
+    /**
+     * Reads entries found in the index back from the database, or from the
+     * archive for any that have been archived
+     *
+     * @param ids
+     *            IDs of the entries, in the order to return them
+     * @param days
+     *            Start of the day each entry was logged on, by ID
+     * @return The entries that could be found, in order
+     */
+    private static List<LogEntry> resolve ( final List<Long> ids, final Map<Long, Long> days ) {
+        final Map<Long, LogEntry> found = new HashMap<Long, LogEntry>();
+        LogEntry.getByIds( ids ).forEach( entry -> found.put( entry.getId(), entry ) );
+
+        final Set<Long> archivedDays = new TreeSet<Long>();
+        for ( final Long id : ids ) {
+            if ( !found.containsKey( id ) ) {
+                archivedDays.add( days.get( id ) );
+            }
+        }
+        for ( final Long day : archivedDays ) {
+            final Calendar start = Calendar.getInstance();
+            start.setTimeInMillis( day );
+            final Calendar end = (Calendar) start.clone();
+            end.add( Calendar.DAY_OF_MONTH, 1 );
+            LogArchive.scan( start, end, entry -> {
+                if ( days.containsKey( entry.getId() ) ) {
+                    found.put( entry.getId(), entry );
+                }
+            } );
+        }
+
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        for ( final Long id : ids ) {
+            if ( found.containsKey( id ) ) {
+                entries.add( found.get( id ) );
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Adds an entry's words to the lists being built
+     *
+     * @param postings
+     *            IDs for each word and day
+     * @param entry
+     *            The entry
+     * @param id
+     *            Its ID
+     */
+    private static void collect ( final Map<Key, TreeSet<Long>> postings, final LogEntry entry, final long id ) {
+        final long day = day( entry.getTime() ).getTimeInMillis();
+        for ( final String term : terms( entry ) ) {
+            postings.computeIfAbsent( new Key( term, day ), k -> new TreeSet<Long>() ).add( id );
+        }
+    }
+
+    /**
+     * Adds IDs to the index as new rows, each of up to {@link #MAX_RUN} IDs and
+     * keyed by the first of them. As no ID is ever added twice, no row added
+     * clashes with one already there.
+     *
+     * @param conn
+     *            Connection to use
+     * @param postings
+     *            IDs to add for each word and day, sorted
+     * @return The number of rows added
+     * @throws SQLException
+     *             If the index could not be updated
+     */
+    private static int add ( final Connection conn, final Map<Key, TreeSet<Long>> postings ) throws SQLException {
+        if ( postings.isEmpty() ) {
+            return 0;
+        }
+        int batched = 0;
+        try ( final PreparedStatement ps = conn.prepareStatement( ADD ) ) {
+            for ( final Map.Entry<Key, TreeSet<Long>> list : postings.entrySet() ) {
+                final List<Long> ids = new ArrayList<Long>( list.getValue() );
+                for ( int i = 0; i < ids.size(); i += MAX_RUN ) {
+                    final List<Long> run = ids.subList( i, Math.min( ids.size(), i + MAX_RUN ) );
+                    ps.setBytes( 1, list.getKey().term.getBytes( StandardCharsets.UTF_8 ) );
+                    ps.setDate( 2, new java.sql.Date( list.getKey().day ) );
+                    ps.setLong( 3, run.get( 0 ) );
+                    ps.setBytes( 4, encode( new TreeSet<Long>( run ) ) );
+                    ps.addBatch();
+                    if ( ++batched % 500 == 0 ) {
+                        ps.executeBatch();
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+        return batched;
+    }
+
+    /**
+     * Rounds a time down to the day
+     *
+     * @param time
+     *            The time
+     * @return The start of the day, as a new Calendar
+     */
+    private static Calendar day ( final Calendar time ) {
+        final Calendar day = (Calendar) time.clone();
+        day.set( Calendar.HOUR_OF_DAY, 0 );
+        day.set( Calendar.MINUTE, 0 );
+        day.set( Calendar.SECOND, 0 );
+        day.set( Calendar.MILLISECOND, 0 );
+        return day;
+    }
+
+    /**
+     * Identifies one row of the LogTerms table
+     */
+    private static final class Key implements Comparable<Key> {
+
+        /** The word */
+        private final String term;
+
+        /** Start of the day, in epoch millis */
+        private final long   day;
+
+        /**
+         * Creates a key
+         *
+         * @param term
+         *            The word
+         * @param day
+         *            Start of the day
+         */
+        private Key ( final String term, final long day ) {
+            this.term = term;
+            this.day = day;
+        }
+
+        @Override
+        public int compareTo ( final Key other ) {
+            final int byTerm = term.compareTo( other.term );
+            return 0 != byTerm ? byTerm : Long.compare( day, other.day );
+        }
+
+        @Override
+        public boolean equals ( final Object o ) {
+            return o instanceof Key && 0 == compareTo( (Key) o );
+        }
+
+        @Override
+        public int hashCode () {
+            return term.hashCode() * 31 + Long.hashCode( day );
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 
@@ -21,7 +22,10 @@ public class LoggerUtil {
     /**
      * Most complete logger utility. Usually won't need all of this information,
      * but if you do, it has it all. The time of the event is added
-     * automatically and is assumed to be the current time.
+     * automatically and is assumed to be the current time. The entry is
+     * added to the {@link AuditJournal} straight away, and written to the
+     * database by the {@link AuditWriter}, which for most events happens
+     * shortly after this returns rather than before.
      *
      * @param code
      *            The TransactionType of the event that occurred
@@ -34,8 +38,20 @@ public class LoggerUtil {
      */
     static public void log ( final TransactionType code, final String primaryUser, final String secondaryUser,
             final String message ) {
-        final LogEntry le = new LogEntry( code, primaryUser, secondaryUser, message );
-        le.save();
+        log( new LogEntry( code, primaryUser, secondaryUser, message ) );
+    }
+
+    /**
+     * Logs an entry. The roles of its users are recorded with it: any not
+     * already set are looked up by the AuditWriter, for a whole batch of
+     * entries at once.
+     *
+     * @param le
+     *            The entry
+     */
+    static private void log ( final LogEntry le ) {
+        AuditJournal.record( le );
+        AuditWriter.submit( le );
     }
 
     /**
@@ -73,7 +89,9 @@ public class LoggerUtil {
      *            The Primary User involved
      */
     static public void log ( final TransactionType code, final User primaryUser ) {
-        log( code, primaryUser.getUsername() );
+        final LogEntry le = new LogEntry( code, primaryUser.getUsername(), null, null );
+        le.setPrimaryRole( primaryUser.getRole() );
+        log( le );
     }
 
     /**
@@ -99,28 +117,19 @@ public class LoggerUtil {
     }
 
     /**
-     * Get the top logged events for a single user specified by name.
+     * Get the most recent logged events for a single user specified by name.
      *
      * @param user
      *            User to find LogEntries for
      * @param top
-     *            Number of events to find
-     * @return A List of the LogEntry Entries for the user. If the number of
-     *         Entries is less than `top`, returns all
+     *            Number of events to find; no more than
+     *            {@link DomainObject#MAX_PAGE_SIZE} are found, however many are
+     *            asked for
+     * @return A List of the LogEntry Entries for the user, newest first. If the
+     *         number of Entries is less than `top`, returns all
      */
     static public List<LogEntry> getTopForUser ( final String user, final Integer top ) {
-        final List<LogEntry> all = getAllForUser( user );
-        all.sort( ( x1, x2 ) -> x1.getTime().compareTo( x2.getTime() ) );
-        try {
-            return all.subList( 0, top );
-        }
-        catch ( final IndexOutOfBoundsException e ) { /*
-                                                       * If num < top (ie, fewer
-                                                       * records exist than were
-                                                       * requested) return all
-                                                       */
-            return all;
-        }
+        return LogEntry.getTopForUser( user, Math.min( top, DomainObject.MAX_PAGE_SIZE ), false );
     }
 
     /**
@@ -134,8 +143,10 @@ public class LoggerUtil {
      *            The secondary user involved
      */
     public static void log ( final TransactionType code, final User primary, final User secondary ) {
-        log( code, primary.getUsername(), secondary.getUsername(), null );
-
+        final LogEntry le = new LogEntry( code, primary.getUsername(), secondary.getUsername(), null );
+        le.setPrimaryRole( primary.getRole() );
+        le.setSecondaryRole( secondary.getRole() );
+        log( le );
     }
 
     /**
@@ -0,0 +1,507 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts failed logins per IP address and per username over a sliding window
+ * of time, in memory, so that deciding whether to lock someone out costs no
+ * database access at all. Each IP address or username has a small ring of
+ * counters, one for each slice of the window, and only its own lock: counting
+ * a failure touches one counter, and counting the failures in the window adds
+ * up a fixed number of them, however many failures there have been. Failures
+ * older than the window drop out on their own.
+ *
+ * So that a restart does not wipe the slate clean for an attacker, the
+ * counters that have changed are written to the LoginFailureCounts table every
+ * so often, and read back in when the application starts.
+ *
+ * So that a run of logins with many different usernames or addresses cannot
+ * use up memory, only so many IP addresses and usernames are counted in
+ * memory. Once that many are, failures for any others are counted straight in
+ * the table instead, until a whole window has passed without that happening.
+ * The behaviour is configured with these settings in db.properties:
+ * <ul>
+ * <li>`login.failureWindowMinutes`: how long a failure counts for (60)</li>
+ * <li>`login.snapshotSeconds`: how often the counters are saved (30)</li>
+ * <li>`login.maxTracked`: how many IP addresses and usernames are counted in
+ * memory at most (100000)</li>
+ * </ul>
+ *
+ * Each node counts the failures it sees itself; with several nodes behind a
+ * load balancer, an attacker gets up to that many times the attempts before a
+ * lockout. Nodes may share the table, as each keeps the larger of its own
+ * count and the saved one for each slice when saving.
+ */
+public class LoginThrottle {
+
+    /** Scope of the counters for IP addresses */
+    public static final String          IP       = "ip";
+
+    /** Scope of the counters for usernames */
+    public static final String          USER     = "user";
+
+    /** Number of slices each window is divided into */
+    static final int                    SLICES   = 12;
+
+    /** How often the counters are saved, in seconds */
+    private static final int            SNAPSHOT_SECONDS = DBUtil.setting( "login.snapshotSeconds", 30 );
+
+    /** The counters for the application */
+    private static final LoginThrottle  THROTTLE = new LoginThrottle(
+            TimeUnit.MINUTES.toMillis( DBUtil.setting( "login.failureWindowMinutes", 60 ) ),
+            DBUtil.setting( "login.maxTracked", 100000 ) );
+
+    /** Saves the counters in the background, if started */
+    private static ScheduledExecutorService scheduler;
+
+    /** Length of one slice of the window, in milliseconds */
+    private final long                  slice;
+
+    /** Most IP addresses and usernames counted in memory */
+    private final int                   capacity;
+
+    /**
+     * Until when, as a slice, failures for IP addresses and usernames not
+     * counted in memory may have been counted in the table instead
+     */
+    private volatile long               overflowUntil = Long.MIN_VALUE;
+
+    /** Counters by scope and name */
+    private final Map<String, Window>   windows  = new ConcurrentHashMap<String, Window>();
+
+    /** Counters changed since they were last saved, by scope and name */
+    private final Set<String>           changed  = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an empty set of counters, with no limit on how many IP addresses
+     * and usernames are counted in memory
+     *
+     * @param window
+     *            How long a failure counts for, in milliseconds
+     */
+    public LoginThrottle ( final long window ) {
+        this( window, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Creates an empty set of counters
+     *
+     * @param window
+     *            How long a failure counts for, in milliseconds
+     * @param capacity
+     *            Most IP addresses and usernames to count in memory; failures
+     *            for any more are counted in the database
+     */
+    public LoginThrottle ( final long window, final int capacity ) {
+        this.slice = Math.max( 1, window / SLICES );
+        this.capacity = capacity;
+    }
+
+    /**
+     * Counts the recent failed logins from an IP address
+     *
+     * @param addr
+     *            The IP address
+     * @return The number of failures in the window
+     */
+    public static int getIPFailures ( final String addr ) {
+        return THROTTLE.count( IP, addr, System.currentTimeMillis() );
+    }
+
+    /**
+     * Records a failed login from an IP address
+     *
+     * @param addr
+     *            The IP address
+     */
+    public static void recordIPFailure ( final String addr ) {
+        THROTTLE.record( IP, addr, System.currentTimeMillis() );
+    }
+
+    /**
+     * Forgets the failed logins from an IP address
+     *
+     * @param addr
+     *            The IP address
+     */
+    public static void clearIP ( final String addr ) {
+        THROTTLE.clear( IP, addr );
+    }
+
+    /**
+     * Counts the recent failed logins as a user
+     *
+     * @param username
+     *            Name of the user
+     * @return The number of failures in the window
+     */
+    public static int getUserFailures ( final String username ) {
+        return THROTTLE.count( USER, username, System.currentTimeMillis() );
+    }
+
+    /**
+     * Records a failed login as a user
+     *
+     * @param username
+     *            Name of the user
+     */
+    public static void recordUserFailure ( final String username ) {
+        THROTTLE.record( USER, username, System.currentTimeMillis() );
+    }
+
+    /**
+     * Forgets the failed logins as a user
+     *
+     * @param username
+     *            Name of the user
+     */
+    public static void clearUser ( final String username ) {
+        if ( null != username ) {
+            THROTTLE.clear( USER, username );
+        }
+    }
+
+    /**
+     * Reads back the counters saved before the application last stopped, then
+     * starts saving them every `login.snapshotSeconds` seconds
+     */
+    public static synchronized void start () {
+        if ( null != scheduler ) {
+            return;
+        }
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            THROTTLE.load( conn, System.currentTimeMillis() );
+        }
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-login-throttle" );
+            t.setDaemon( true );
+            return t;
+        } );
+        scheduler.scheduleWithFixedDelay( LoginThrottle::snapshot, SNAPSHOT_SECONDS, SNAPSHOT_SECONDS,
+                TimeUnit.SECONDS );
+    }
+
+    /**
+     * Stops saving the counters in the background, and saves them one last
+     * time
+     */
+    public static synchronized void shutdown () {
+        if ( null != scheduler ) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            snapshot();
+        }
+    }
+
+    /**
+     * Saves the counters, reporting rather than throwing any failure
+     */
+    private static void snapshot () {
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            THROTTLE.save( conn, System.currentTimeMillis() );
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Counts the failures for an IP address or user in the window ending now
+     *
+     * @param scope
+     *            {@link #IP} or {@link #USER}
+     * @param name
+     *            The IP address or username
+     * @param now
+     *            The time now, in epoch millis
+     * @return The number of failures
+     */
+    public int count ( final String scope, final String name, final long now ) {
+        final Window window = windows.get( scope + ":" + name );
+        if ( null != window ) {
+            return window.count( now / slice );
+        }
+        if ( now / slice > overflowUntil ) {
+            return 0;
+        }
+        try ( final Connection conn = DBUtil.getConnection();
+                final PreparedStatement ps = conn.prepareStatement( "select coalesce(sum(count), 0) from "
+                        + "LoginFailureCounts where scope = ? and name = ? and slice > ? and slice <= ?" ) ) {
+            ps.setString( 1, scope );
+            ps.setString( 2, name );
+            ps.setLong( 3, now / slice - SLICES );
+            ps.setLong( 4, now / slice );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                return rs.next() ? rs.getInt( 1 ) : 0;
+            }
+        }
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Retrieves the number of IP addresses and usernames counted in memory
+     *
+     * @return The number counted
+     */
+    public int size () {
+        return windows.size();
+    }
+
+    /**
+     * Records a failure for an IP address or user
+     *
+     * @param scope
+     *            {@link #IP} or {@link #USER}
+     * @param name
+     *            The IP address or username
+     * @param now
+     *            The time of the failure, in epoch millis
+     */
+    public void record ( final String scope, final String name, final long now ) {
+        final String key = scope + ":" + name;
+        final long current = now / slice;
+        // While failures may be in the table, a new IP address or username
+        // must not start again from zero in memory, so it goes to the table
+        final boolean full = current <= overflowUntil || windows.size() >= capacity;
+        // Done inside compute so that it cannot race with the window being
+        // dropped as empty
+        final Window counted = windows.compute( key, ( k, w ) -> {
+            if ( null == w && full ) {
+                return null;
+            }
+            final Window window = null == w ? new Window() : w;
+            window.add( current, 1 );
+            return window;
+        } );
+        if ( null != counted ) {
+            changed.add( key );
+            return;
+        }
+        overflowUntil = Math.max( overflowUntil, current + SLICES );
+        try ( final Connection conn = DBUtil.getConnection();
+                final PreparedStatement ps = conn.prepareStatement(
+                        "insert into LoginFailureCounts (scope, name, slice, count) values (?, ?, ?, 1) "
+                                + "on duplicate key update count = count + 1" ) ) {
+            ps.setString( 1, scope );
+            ps.setString( 2, name );
+            ps.setLong( 3, current );
+            ps.executeUpdate();
+        }
+        catch ( final SQLException e ) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forgets the failures for an IP address or user
+     *
+     * @param scope
+     *            {@link #IP} or {@link #USER}
+     * @param name
+     *            The IP address or username
+     */
+    public void clear ( final String scope, final String name ) {
+        final String key = scope + ":" + name;
+        if ( null != windows.remove( key ) ) {
+            changed.add( key );
+        }
+        else if ( System.currentTimeMillis() / slice <= overflowUntil ) {
+            try ( final Connection conn = DBUtil.getConnection();
+                    final PreparedStatement ps = conn
+                            .prepareStatement( "delete from LoginFailureCounts where scope = ? and name = ?" ) ) {
+                ps.setString( 1, scope );
+                ps.setString( 2, name );
+                ps.executeUpdate();
+            }
+            catch ( final SQLException e ) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Saves the counters changed since they were last saved, and drops
+     * counters whose failures have all left the window, from memory and from
+     * the table. Each slice saved keeps the larger of its count here and the
+     * count already in the table, so that nodes sharing the table do not wipe
+     * out each other's counts; a counter cleared here is deleted from the
+     * table.
+     *
+     * @param conn
+     *            Connection to save over
+     * @param now
+     *            The time now, in epoch millis
+     * @throws SQLException
+     *             If the counters could not be saved
+     */
+    public void save ( final Connection conn, final long now ) throws SQLException {
+        final long current = now / slice;
+        for ( final String key : windows.keySet() ) {
+            windows.computeIfPresent( key, ( k, w ) -> 0 == w.count( current ) ? null : w );
+        }
+        final List<String> keys = new ArrayList<String>( changed );
+        changed.removeAll( keys );
+
+        conn.setAutoCommit( false );
+        try {
+            try ( final PreparedStatement ps = conn
+                    .prepareStatement( "delete from LoginFailureCounts where slice <= ?" ) ) {
+                ps.setLong( 1, current - SLICES );
+                ps.executeUpdate();
+            }
+            try ( final PreparedStatement delete = conn
+                    .prepareStatement( "delete from LoginFailureCounts where scope = ? and name = ?" );
+                    final PreparedStatement insert = conn.prepareStatement(
+                            "insert into LoginFailureCounts (scope, name, slice, count) values (?, ?, ?, ?) "
+                                    + "on duplicate key update count = greatest(count, values(count))" ) ) {
+                for ( final String key : keys ) {
+                    final int colon = key.indexOf( ':' );
+                    final Window window = windows.get( key );
+                    if ( null == window ) {
+                        delete.setString( 1, key.substring( 0, colon ) );
+                        delete.setString( 2, key.substring( colon + 1 ) );
+                        delete.addBatch();
+                    }
+                    else {
+                        for ( final long[] counted : window.slices( current ) ) {
+                            insert.setString( 1, key.substring( 0, colon ) );
+                            insert.setString( 2, key.substring( colon + 1 ) );
+                            insert.setLong( 3, counted[0] );
+                            insert.setLong( 4, counted[1] );
+                            insert.addBatch();
+                        }
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+            }
+            conn.commit();
+        }
+        catch ( final SQLException | RuntimeException e ) {
+            conn.rollback();
+            changed.addAll( keys );
+            throw e;
+        }
+        finally {
+            conn.setAutoCommit( true );
+        }
+    }
+
+    /**
+     * Reads the counters saved, adding the failures still in the window to
+     * those in memory. Any beyond the most that may be counted in memory are
+     * left to be counted in the table.
+     *
+     * @param conn
+     *            Connection to read over
+     * @param now
+     *            The time now, in epoch millis
+     * @throws SQLException
+     *             If the counters could not be read
+     */
+    public void load ( final Connection conn, final long now ) throws SQLException {
+        try ( final PreparedStatement ps = conn
+                .prepareStatement( "select scope, name, slice, count from LoginFailureCounts where slice > ?" ) ) {
+            ps.setLong( 1, now / slice - SLICES );
+            try ( final ResultSet rs = ps.executeQuery() ) {
+                while ( rs.next() ) {
+                    final String key = rs.getString( 1 ) + ":" + rs.getString( 2 );
+                    Window window = windows.get( key );
+                    if ( null == window ) {
+                        if ( windows.size() >= capacity ) {
+                            overflowUntil = Math.max( overflowUntil, now / slice + SLICES );
+                            continue;
+                        }
+                        window = windows.computeIfAbsent( key, k -> new Window() );
+                    }
+                    window.add( rs.getLong( 3 ), rs.getInt( 4 ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * A ring of counters for one IP address or user, one for each slice of the
+     * window. Each counter is stamped with the slice it is counting, so a
+     * counter left over from an earlier lap of the ring is recognised and
+     * started again rather than added to.
+     */
+    private static final class Window {
+
+        /** Number of failures in each slice */
+        private final int[]  counts = new int[SLICES];
+
+        /** Slice each counter is counting, as time divided by slice length */
+        private final long[] stamps = new long[SLICES];
+
+        /**
+         * Adds failures to a slice
+         *
+         * @param at
+         *            The slice
+         * @param failures
+         *            Number of failures
+         */
+        synchronized void add ( final long at, final int failures ) {
+            final int i = (int) Math.floorMod( at, (long) SLICES );
+            if ( stamps[i] != at ) {
+                stamps[i] = at;
+                counts[i] = 0;
+            }
+            counts[i] += failures;
+        }
+
+        /**
+         * Counts the failures in the window ending with a slice
+         *
+         * @param current
+         *            The latest slice
+         * @return The number of failures
+         */
+        synchronized int count ( final long current ) {
+            int total = 0;
+            for ( int i = 0; i < SLICES; i++ ) {
+                if ( stamps[i] > current - SLICES && stamps[i] <= current ) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Lists the slices in the window ending with a slice that have any
+         * failures
+         *
+         * @param current
+         *            The latest slice
+         * @return Each slice and its number of failures
+         */
+        synchronized List<long[]> slices ( final long current ) {
+            final List<long[]> slices = new ArrayList<long[]>();
+            for ( int i = 0; i < SLICES; i++ ) {
+                if ( counts[i] > 0 && stamps[i] > current - SLICES && stamps[i] <= current ) {
+                    slices.add( new long[] { stamps[i], counts[i] } );
+                }
+            }
+            return slices;
+        }
+    }
+
+}
@@ -0,0 +1,298 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Hashes and checks passwords with BCrypt on a small pool of threads of its
+ * own, rather than on the thread serving the request. BCrypt is slow on
+ * purpose, so a burst of logins hashed on request threads could otherwise tie
+ * up every one of them and hold up everything else. The pool has a thread per
+ * core and a short queue; once that is full, a request to hash is turned away
+ * straight away with a {@link BusyException}, which is answered with
+ * <code>503 Service Unavailable</code> and a <code>Retry-After</code> header.
+ *
+ * Every password in the application is hashed and checked through
+ * {@link #getInstance()}. The behaviour is configured with these settings in
+ * db.properties:
+ * <ul>
+ * <li>`password.bcryptCost`: BCrypt cost (log rounds) of new hashes (10). Run
+ * this class to time each cost on the server.</li>
+ * <li>`password.hashThreads`: number of hashing threads (one per core)</li>
+ * <li>`password.hashQueue`: passwords that may wait for a thread (four per
+ * thread)</li>
+ * <li>`password.retryAfterSeconds`: how long a client turned away is told to
+ * wait (2)</li>
+ * </ul>
+ */
+public class PasswordHasher implements PasswordEncoder {
+
+    /**
+     * Thrown when there are already as many passwords waiting to be hashed as
+     * the queue holds. As an AuthenticationException, it is passed to the
+     * FailureHandler when it happens during a login.
+     */
+    public static final class BusyException extends AuthenticationServiceException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates the exception
+         */
+        public BusyException () {
+            super( "Too many passwords are being checked; try again in " + RETRY_AFTER_SECONDS + " seconds" );
+        }
+    }
+
+    /** How long a client turned away is told to wait, in seconds */
+    public static final int             RETRY_AFTER_SECONDS = DBUtil.setting( "password.retryAfterSeconds", 2 );
+
+    /** The hasher for the application */
+    private static final PasswordHasher HASHER;
+    static {
+        final int threads = DBUtil.setting( "password.hashThreads", Runtime.getRuntime().availableProcessors() );
+        HASHER = new PasswordHasher( DBUtil.setting( "password.bcryptCost", 10 ), threads,
+                DBUtil.setting( "password.hashQueue", 4 * threads ) );
+    }
+
+    /** Hashes and checks the passwords */
+    private final BCryptPasswordEncoder bcrypt;
+
+    /** Runs the hashing */
+    private final ThreadPoolExecutor    executor;
+
+    /** Number of passwords hashed or checked */
+    private final AtomicLong            hashes              = new AtomicLong();
+
+    /** Number of requests to hash turned away */
+    private final AtomicLong            rejected            = new AtomicLong();
+
+    /** Total time spent hashing, in nanoseconds */
+    private final AtomicLong            hashNanos           = new AtomicLong();
+
+    /** Longest time spent on one hash, in nanoseconds */
+    private final AtomicLong            maxHashNanos        = new AtomicLong();
+
+    /** Total time requests waited for a hash, queueing included */
+    private final AtomicLong            waitNanos           = new AtomicLong();
+
+    /**
+     * Creates a hasher with a pool of its own
+     *
+     * @param cost
+     *            BCrypt cost of new hashes, from 4 to 31
+     * @param threads
+     *            Number of hashing threads
+     * @param queue
+     *            Number of passwords that may wait for a thread
+     */
+    public PasswordHasher ( final int cost, final int threads, final int queue ) {
+        bcrypt = new BCryptPasswordEncoder( cost );
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor( threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>( Math.max( 1, queue ) ), r -> {
+                    final Thread t = new Thread( r, "iTrust2-hash-" + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                } );
+    }
+
+    /**
+     * Retrieves the hasher for the application
+     *
+     * @return The hasher
+     */
+    public static PasswordHasher getInstance () {
+        return HASHER;
+    }
+
+    /**
+     * Hashes a password
+     *
+     * @param rawPassword
+     *            The password
+     * @return The BCrypt hash
+     * @throws BusyException
+     *             If too many passwords are waiting to be hashed
+     */
+    @Override
+    public String encode ( final CharSequence rawPassword ) {
+        return run( () -> bcrypt.encode( rawPassword ) );
+    }
+
+    /**
+     * Checks a password against a hash
+     *
+     * @param rawPassword
+     *            The password
+     * @param encodedPassword
+     *            The BCrypt hash
+     * @return true if they match
+     * @throws BusyException
+     *             If too many passwords are waiting to be hashed
+     */
+    @Override
+    public boolean matches ( final CharSequence rawPassword, final String encodedPassword ) {
+        return run( () -> bcrypt.matches( rawPassword, encodedPassword ) );
+    }
+
+    /**
+     * Runs a hash on the pool and waits for it
+     *
+     * @param hash
+     *            The hash to run
+     * @return What it returned
+     * @throws BusyException
+     *             If the queue is full
+     */
+    private <T> T run ( final Callable<T> hash ) {
+        final long queued = System.nanoTime();
+        final Future<T> result;
+        try {
+            result = executor.submit( () -> {
+                final long start = System.nanoTime();
+                try {
+                    return hash.call();
+                }
+                finally {
+                    final long took = System.nanoTime() - start;
+                    hashes.incrementAndGet();
+                    hashNanos.addAndGet( took );
+                    maxHashNanos.accumulateAndGet( took, Math::max );
+                }
+            } );
+        }
+        catch ( final RejectedExecutionException e ) {
+            rejected.incrementAndGet();
+            throw new BusyException();
+        }
+        try {
+            return result.get();
+        }
+        catch ( final InterruptedException e ) {
+            result.cancel( true );
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch ( final ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException ) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException( e.getCause() );
+        }
+        finally {
+            waitNanos.addAndGet( System.nanoTime() - queued );
+        }
+    }
+
+    /**
+     * Retrieves the number of hashing threads
+     *
+     * @return The number of threads
+     */
+    public int getThreads () {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Retrieves the number of passwords being hashed right now
+     *
+     * @return The number being hashed
+     */
+    public int getActive () {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Retrieves the number of passwords waiting for a thread right now
+     *
+     * @return The queue depth
+     */
+    public int getQueued () {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Retrieves the number of passwords hashed or checked
+     *
+     * @return The number of hashes
+     */
+    public long getHashes () {
+        return hashes.get();
+    }
+
+    /**
+     * Retrieves the number of requests to hash turned away as the queue was
+     * full
+     *
+     * @return The number turned away
+     */
+    public long getRejected () {
+        return rejected.get();
+    }
+
+    /**
+     * Retrieves the average time spent on one hash
+     *
+     * @return The average, in milliseconds
+     */
+    public double getAverageHashMillis () {
+        final long count = hashes.get();
+        return 0 == count ? 0 : hashNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Retrieves the longest time spent on one hash
+     *
+     * @return The longest, in milliseconds
+     */
+    public double getMaxHashMillis () {
+        return maxHashNanos.get() / 1e6;
+    }
+
+    /**
+     * Retrieves the average time a request waited for its hash, including the
+     * time spent in the queue
+     *
+     * @return The average, in milliseconds
+     */
+    public double getAverageWaitMillis () {
+        final long count = hashes.get();
+        return 0 == count ? 0 : waitNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Times hashing a password at each BCrypt cost, to help choose
+     * `password.bcryptCost` for this server. Aim for the highest cost that
+     * still hashes in around a quarter of a second.
+     *
+     * @param args
+     *            Lowest and highest cost to time (8 and 14)
+     */
+    public static void main ( final String args[] ) {
+        final int from = args.length > 0 ? Integer.parseInt( args[0] ) : 8;
+        final int to = args.length > 1 ? Integer.parseInt( args[1] ) : 14;
+        for ( int cost = from; cost <= to; cost++ ) {
+            final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder( cost );
+            encoder.encode( "warm up" );
+            final int runs = 5;
+            final long start = System.nanoTime();
+            for ( int i = 0; i < runs; i++ ) {
+                encoder.encode( "password" + i );
+            }
+            System.out.printf( "cost %2d: %8.1f ms%n", cost, ( System.nanoTime() - start ) / 1e6 / runs );
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+-- Baseline schema: every table and foreign key as Hibernate generated them
+-- before migrations were introduced. Databases that already have these tables
+-- are baselined at this version rather than running it.
+
+create table AppointmentRequests (id bigint not null, comments varchar(255), date datetime, status varchar(255), type varchar(255), hcp_id varchar(100), patient_id varchar(100), primary key (id));
+create table BasicEyeMetrics (id bigint not null, leftAxis integer, leftCylinder double precision, leftSphere double precision, leftVisualAcuity varchar(255), rightAxis integer, rightCylinder double precision, rightSphere double precision, rightVisualAcuity varchar(255), hcp_id varchar(100), patient_id varchar(100), primary key (id));
+create table BasicHealthMetrics (id bigint not null, diastolic integer, hdl integer, headCircumference float, height float, houseSmokingStatus integer, ldl integer, patientSmokingStatus integer, systolic integer, tri integer, weight float, hcp_id varchar(100), patient_id varchar(100), primary key (id));
+create table Diagnoses (id bigint not null, note varchar(255), code_id bigint, visit_id bigint not null, primary key (id));
+create table Drugs (id bigint not null, code varchar(255), description varchar(255), name varchar(255), primary key (id));
+create table FoodDiaryEntry (id bigint not null, calories integer, carbs integer, date bigint, fat integer, fiber integer, food varchar(255), mealType varchar(255), patient varchar(255), protein integer, servings integer, sodium integer, sugars integer, primary key (id));
+create table GeneralCheckup (id bigint not null, primary key (id));
+create table GeneralOphthalmologyVisit (id bigint not null, basiceyemetrics_id bigint, primary key (id));
+create table Hospitals (name varchar(255) not null, address varchar(255), state varchar(255), zip varchar(255), primary key (name));
+create table ICDCodes (id bigint not null, code varchar(255), description varchar(255), primary key (id));
+create table LabProcedures (id bigint not null, comments varchar(255), priority varchar(255), status varchar(255), labtech varchar(100), LOINC_code bigint, patient varchar(100), visit bigint not null, primary key (id));
+create table LogEntries (id bigint not null, logCode integer, message varchar(255), primaryUser varchar(255), secondaryUser varchar(255), time datetime, primary key (id));
+create table LoginAttempts (id bigint not null, ip varchar(255), time datetime, user_id varchar(100), primary key (id));
+create table LoginBans (id bigint not null, ip varchar(255), time datetime, user_id varchar(100), primary key (id));
+create table LoginLockouts (id bigint not null, ip varchar(255), time datetime, user_id varchar(100), primary key (id));
+create table LOINCCodes (id bigint not null, code varchar(255), commonName varchar(255), component varchar(255), property varchar(255), primary key (id));
+create table OfficeVisits (id bigint not null, date datetime, notes varchar(255), type varchar(255), appointment_id bigint, basichealthmetrics_id bigint, hcp_id varchar(100), hospital_id varchar(100), patient_id varchar(100), primary key (id));
+create table OphthalmologySurgery (surgeryType integer, id bigint not null, basiceyemetrics_id bigint, primary key (id));
+create table PasswordResetTokens (id bigint not null, creationTime bigint not null, tempPassword varchar(255), user_id varchar(100), primary key (id));
+create table PERSONAL_REPRESENTATIVES (patient_id varchar(255) not null, representative_id varchar(255) not null, primary key (patient_id, representative_id));
+create table Prescriptions (id bigint not null, dosage integer not null, endDate datetime, renewals integer not null, startDate datetime, drug_id bigint, patient_id varchar(100), prescriptions_id bigint, primary key (id));
+create table Users (DTYPE varchar(31) not null, username varchar(255) not null, enabled integer, password varchar(255), role varchar(255), address1 varchar(255), address2 varchar(255), bloodType varchar(255), causeOfDeath varchar(255), city varchar(255), dateOfBirth datetime, dateOfDeath datetime, email varchar(255), ethnicity varchar(255), firstName varchar(255), gender varchar(255), lastName varchar(255), phone varchar(255), preferredName varchar(255), state varchar(255), zip varchar(255), specialty varchar(255), father_id varchar(100), mother_id varchar(100), primary key (username));
+create table hibernate_sequence (next_val bigint);
+insert into hibernate_sequence values ( 1 );
+
+alter table AppointmentRequests add constraint FKlpa5tri2ufo8t7bt7nusa1pss foreign key (hcp_id) references Users (username);
+alter table AppointmentRequests add constraint FKo65c0ooyqou8d1x56y37u1nau foreign key (patient_id) references Users (username);
+alter table BasicEyeMetrics add constraint FK1i2xk0o28of7ho070xbrnh4o6 foreign key (hcp_id) references Users (username);
+alter table BasicEyeMetrics add constraint FK1vjfpnwsfmxx7d4btocvpb7p4 foreign key (patient_id) references Users (username);
+alter table BasicHealthMetrics add constraint FKd9uamofafbqloq2v2j2o4f0pg foreign key (hcp_id) references Users (username);
+alter table BasicHealthMetrics add constraint FKj6od5nqw6nvjgmpuilsfj3ad foreign key (patient_id) references Users (username);
+alter table Diagnoses add constraint FKthsk14tdxoeeadlpvkot8fdhb foreign key (code_id) references ICDCodes (id);
+alter table Diagnoses add constraint FKchbkmm1cp30vpspntly0rtey7 foreign key (visit_id) references OfficeVisits (id);
+alter table GeneralCheckup add constraint FK2wbtwlmltnisdqk1lgfpjp4v5 foreign key (id) references OfficeVisits (id);
+alter table GeneralOphthalmologyVisit add constraint FKbweobfqdh6mae1kool8o9f8in foreign key (basiceyemetrics_id) references BasicEyeMetrics (id);
+alter table GeneralOphthalmologyVisit add constraint FKbg7vgoib3gdg7abc76cbw9csf foreign key (id) references OfficeVisits (id);
+alter table LabProcedures add constraint FKn8ctd2oj7knwaxxfakrmwybj6 foreign key (labtech) references Users (username);
+alter table LabProcedures add constraint FKq97sa9kb1vkse9jbn0s38drei foreign key (LOINC_code) references LOINCCodes (id);
+alter table LabProcedures add constraint FKd9netwr78cspphyqtctsdy9cl foreign key (patient) references Users (username);
+alter table LabProcedures add constraint FKi9ebvbpol0sj2m2ydhkabdchj foreign key (visit) references OfficeVisits (id);
+alter table LoginAttempts add constraint FK6me6sh9op6gntvqnqqqiev95q foreign key (user_id) references Users (username);
+alter table LoginBans add constraint FKpmi5daj2jt8w5gq9maxjpro1f foreign key (user_id) references Users (username);
+alter table LoginLockouts add constraint FKhndsii960xs59bv7a7x5669ii foreign key (user_id) references Users (username);
+alter table OfficeVisits add constraint FKa378o7qribmv174xg3313xhs6 foreign key (appointment_id) references AppointmentRequests (id);
+alter table OfficeVisits add constraint FKqefm0yuujxxvdwht36oouf0yd foreign key (basichealthmetrics_id) references BasicHealthMetrics (id);
+alter table OfficeVisits add constraint FKbab3eg3ny5gyexxue5aye6l3e foreign key (hcp_id) references Users (username);
+alter table OfficeVisits add constraint FKpstqc1ap6ryg080rudb1kfva7 foreign key (hospital_id) references Hospitals (name);
+alter table OfficeVisits add constraint FKf1hncv08r8upvhnt0jua1ej9v foreign key (patient_id) references Users (username);
+alter table OphthalmologySurgery add constraint FKdehrm11ldbwqbugm259k22qp0 foreign key (basiceyemetrics_id) references BasicEyeMetrics (id);
+alter table OphthalmologySurgery add constraint FKoalsyv9hhk7c5wximdruyuuoe foreign key (id) references OfficeVisits (id);
+alter table PasswordResetTokens add constraint FKdtqvlc6is6k5ibp1xc1nshrc8 foreign key (user_id) references Users (username);
+alter table PERSONAL_REPRESENTATIVES add constraint FKerampcjqvom4n51b48roy18cg foreign key (representative_id) references Users (username);
+alter table PERSONAL_REPRESENTATIVES add constraint FK5nawc84reem90hcs25erro2sw foreign key (patient_id) references Users (username);
+alter table Prescriptions add constraint FKrr7q2rw34mv2h8p24dwo2sw39 foreign key (drug_id) references Drugs (id);
+alter table Prescriptions add constraint FK11c0dywqeqm53244c088xriq0 foreign key (patient_id) references Users (username);
+alter table Prescriptions add constraint FKdd7xdn7139u7dlls7ajydf4rh foreign key (prescriptions_id) references GeneralCheckup (id);
+alter table Users add constraint FKdxicw81tr7r4ou51exr8pjj0w foreign key (father_id) references Users (username);
+alter table Users add constraint FK398g7ytgyn2pmps81pxwa3ri6 foreign key (mother_id) references Users (username);
@@ -0,0 +1,7 @@
+-- Hourly counts of LogEntries by type and primary user, kept up to date by the
+-- AuditWriter, for the admin activity statistics. Existing history is counted
+-- by running edu.ncsu.csc.itrust2.utils.LogRollups over it.
+
+create table LogRollups (bucket datetime not null, logCode integer not null, primaryUser varchar(255) not null, count bigint not null, primary key (bucket, logCode, primaryUser));
+create index idx_logrollups_code_bucket on LogRollups (logCode, bucket);
+create index idx_logrollups_user_bucket on LogRollups (primaryUser, bucket);
@@ -0,0 +1,7 @@
+-- Full-text index over LogEntries: for each lowercase word and day, the IDs of
+-- the entries containing it, gap-encoded. Kept up to date by the AuditWriter;
+-- existing history is indexed by running edu.ncsu.csc.itrust2.utils.LogSearch
+-- over it. Words are binary so that no two of them compare equal.
+
+create table LogTerms (term varbinary(256) not null, day date not null, postings mediumblob not null, primary key (term, day));
+create index idx_logterms_day on LogTerms (day);
@@ -0,0 +1,5 @@
+-- The roles of the users on each LogEntry when it was logged, and whether
+-- patients may see it, so that the log can be shown without looking users up.
+-- Existing rows are filled in by the next migration.
+
+alter table LogEntries add column primaryRole varchar(255), add column secondaryRole varchar(255), add column patientViewable bit;
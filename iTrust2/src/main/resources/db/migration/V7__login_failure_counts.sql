@@ -0,0 +1,5 @@
+-- Snapshots of the LoginThrottle's in-memory counts of failed logins, by IP
+-- address or username and slice of time, so that they survive a restart.
+
+create table LoginFailureCounts (scope varchar(8) not null, name varchar(255) not null, slice bigint not null, count integer not null, primary key (scope, name, slice));
+create index idx_loginfailurecounts_slice on LoginFailureCounts (slice);
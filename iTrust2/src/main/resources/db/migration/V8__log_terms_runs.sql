@@ -0,0 +1,6 @@
+-- Keeps the IDs added to the full-text index for a word and day as separate
+-- rows, each keyed by its first ID, rather than appending them all to one
+-- ever-growing row; LogSearch merges a finished day's rows afterwards. Rows
+-- already there are keyed 0, which no entry has as its ID.
+
+alter table LogTerms add column firstId bigint not null default 0 after day, drop primary key, add primary key (term, day, firstId);
@@ -1,10 +1,18 @@
 package edu.ncsu.csc.itrust2.apitest;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -23,11 +31,13 @@ import com.google.gson.Gson;
 
 import edu.ncsu.csc.itrust2.config.RootConfiguration;
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryRequestBody;
+import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTableRow;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.mvc.config.WebMvcConfiguration;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
  * Test for API functionality for interacting with log entries.
@@ -104,4 +114,109 @@ public class APILogEntryTest {
                 .contentType( MediaType.APPLICATION_JSON ) ).andExpect( status().isOk() );
     }
 
+    /**
+     * Tests that a patient's log is paged by the database: only the events
+     * patients may see are counted, newest first, with the roles of the other
+     * users filled in
+     */
+    @WithMockUser ( username = "logpagepatient", roles = { "USER", "PATIENT" } )
+    @Test
+    public void testLogPagingForPatient () throws Exception {
+        final User patient = new User( "logpagepatient",
+                "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.", Role.ROLE_PATIENT, 1 );
+        patient.save();
+        final User hcp = new User( "logpagehcp", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
+                Role.ROLE_HCP, 1 );
+        hcp.save();
+
+        final long viewable = LogEntry.countForUser( "logpagepatient", null, null, true );
+        for ( int i = 0; i < 15; i++ ) {
+            LoggerUtil.log( TransactionType.PATIENT_DEMOGRAPHICS_VIEW, "logpagehcp", "logpagepatient", "" + i );
+            LoggerUtil.log( TransactionType.VIEW_USERS, "logpagepatient" ); // not patient-viewable
+        }
+
+        final LogEntryRequestBody temp = new LogEntryRequestBody();
+        temp.setStartDate( "" );
+        temp.setEndDate( "" );
+        temp.setPage( 1 );
+        temp.setPageLength( 10 );
+
+        final String content = mvc
+                .perform( post( "/api/v1/logentries/range" ).content( gson.toJson( temp ) )
+                        .contentType( MediaType.APPLICATION_JSON ) )
+                .andExpect( status().isOk() ).andExpect( header().string( "X-Total-Count", "" + ( viewable + 15 ) ) )
+                .andReturn().getResponse().getContentAsString();
+
+        final LogEntryTableRow[] rows = gson.fromJson( content, LogEntryTableRow[].class );
+        assertEquals( 10, rows.length );
+        assertEquals( "logpagehcp", rows[0].getPrimary() );
+        assertEquals( Role.ROLE_HCP.toString(), rows[0].getRole() );
+        assertEquals( (int) ( ( viewable + 15 + 9 ) / 10 ), rows[0].getNumPages() );
+
+        temp.setPageLength( 0 );
+        mvc.perform( post( "/api/v1/logentries/range" ).content( gson.toJson( temp ) )
+                .contentType( MediaType.APPLICATION_JSON ) ).andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests that an admin can find entries by the words in them, newest first
+     * and a page at a time
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testSearch () throws Exception {
+        final String word = "searchtest" + System.currentTimeMillis();
+        for ( int i = 0; i < 12; i++ ) {
+            LoggerUtil.log( TransactionType.PATIENT_DEMOGRAPHICS_VIEW, "hcp", "patient",
+                    "HCP hcp viewed demographics " + word + " " + i );
+        }
+        LoggerUtil.log( TransactionType.VIEW_USERS, "admin", word );
+
+        final String content = mvc
+                .perform( get( "/api/v1/logentries/search?q=" + word.toUpperCase() + "+demographics&pageLength=10" ) )
+                .andExpect( status().isOk() ).andExpect( header().string( "X-Total-Count", "12" ) ).andReturn()
+                .getResponse().getContentAsString();
+        final LogEntryTableRow[] rows = gson.fromJson( content, LogEntryTableRow[].class );
+        assertEquals( 10, rows.length );
+        assertEquals( "hcp", rows[0].getPrimary() );
+        assertEquals( 2, rows[0].getNumPages() );
+
+        mvc.perform( get( "/api/v1/logentries/search?q=" + word + "&page=2&pageLength=10" ) )
+                .andExpect( status().isOk() ).andExpect( header().string( "X-Total-Count", "13" ) );
+        mvc.perform( get( "/api/v1/logentries/search?q=--" ) ).andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests that an admin can export a day of the log as NDJSON or CSV,
+     * optionally gzipped
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testExport () throws Exception {
+        final String word = "exporttest" + System.currentTimeMillis();
+        LoggerUtil.log( TransactionType.PATIENT_DEMOGRAPHICS_VIEW, "hcp", "patient", "Viewed, \"" + word + "\"" );
+        final String today = new SimpleDateFormat( "MM/dd/yyyy" ).format( Calendar.getInstance().getTime() );
+
+        final String ndjson = mvc.perform( get( "/api/v1/logentries/export?start=" + today + "&end=" + today ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        assertTrue( ndjson.contains( "\"message\":\"Viewed, \\\"" + word + "\\\"\"" ) );
+
+        final String csv = mvc
+                .perform( get( "/api/v1/logentries/export?format=csv&start=" + today + "&end=" + today ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        assertTrue( csv.startsWith( "id,time,type," ) );
+        assertTrue( csv.contains( ",hcp,patient,\"Viewed, \"\"" + word + "\"\"\"\n" ) );
+
+        final byte[] gzipped = mvc
+                .perform( get( "/api/v1/logentries/export?format=csv&gzip=true&start=" + today + "&end=" + today ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsByteArray();
+        try ( final BufferedReader in = new BufferedReader(
+                new InputStreamReader( new GZIPInputStream( new ByteArrayInputStream( gzipped ) ), "UTF-8" ) ) ) {
+            assertEquals( "id,time,type,description,primaryUser,secondaryUser,message", in.readLine() );
+        }
+
+        mvc.perform( get( "/api/v1/logentries/export?format=xml&start=" + today + "&end=" + today ) )
+                .andExpect( status().isBadRequest() );
+    }
+
 }
@@ -1,5 +1,7 @@
 package edu.ncsu.csc.itrust2.apitest;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -12,6 +14,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -20,10 +25,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import edu.ncsu.csc.itrust2.config.CachedUserDetailsService;
+import edu.ncsu.csc.itrust2.config.CustomSecurityService;
 import edu.ncsu.csc.itrust2.config.RootConfiguration;
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
 import edu.ncsu.csc.itrust2.forms.personnel.PersonnelForm;
 import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.Specialty;
 import edu.ncsu.csc.itrust2.models.enums.State;
 import edu.ncsu.csc.itrust2.mvc.config.WebMvcConfiguration;
 
@@ -124,6 +132,53 @@ public class APIPersonnelTest {
 
     }
 
+    /**
+     * Tests that a specialty changed through the API is seen by the user it
+     * belongs to while they are logged in, without logging in again
+     *
+     * @throws Exception
+     */
+    @Test
+    @WithMockUser ( username = "hcp", roles = { "HCP" } )
+    public void testSpecialtyChangeWhileLoggedIn () throws Exception {
+        mvc.perform( delete( "/api/v1/personnel" ) );
+
+        final UserForm hcp = new UserForm( "hcp", "123456", Role.ROLE_HCP, 1 );
+        mvc.perform( post( "/api/v1/users" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( hcp ) ) );
+
+        final PersonnelForm personnel = new PersonnelForm();
+        personnel.setAddress1( "1 Test Street" );
+        personnel.setAddress2( "Address Part 2" );
+        personnel.setCity( "Prag" );
+        personnel.setEmail( "hcp@itrust.cz" );
+        personnel.setFirstName( "Test" );
+        personnel.setLastName( "HCP" );
+        personnel.setPhone( "123-456-7890" );
+        personnel.setSelf( "hcp" );
+        personnel.setState( State.NC.toString() );
+        personnel.setZip( "27514" );
+        personnel.setSpecialty( Specialty.SPECIALTY_NONE.toString() );
+        mvc.perform( post( "/api/v1/personnel" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( personnel ) ) ).andExpect( status().isOk() );
+
+        // Log in as Spring Security would, keeping the specialty read now
+        final UserDetails principal = new CachedUserDetailsService().loadUserByUsername( "hcp" );
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken( principal, null, principal.getAuthorities() ) );
+        final CustomSecurityService security = new CustomSecurityService();
+        assertTrue( security.hasSpecialty( Specialty.SPECIALTY_NONE.toString() ) );
+
+        personnel.setSpecialty( Specialty.SPECIALTY_OPTOMETRY.toString() );
+        mvc.perform( put( "/api/v1/personnel/hcp" ).contentType( MediaType.APPLICATION_JSON )
+                .content( TestUtils.asJsonString( personnel ) ) ).andExpect( status().isOk() );
+
+        assertTrue( security.hasSpecialty( Specialty.SPECIALTY_OPTOMETRY.toString() ) );
+        assertFalse( security.hasSpecialty( Specialty.SPECIALTY_NONE.toString() ) );
+
+        mvc.perform( delete( "/api/v1/personnel" ) );
+    }
+
     /**
      * Tests getting personnel by their roles.
      *
@@ -0,0 +1,110 @@
+package edu.ncsu.csc.itrust2.apitest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.google.gson.Gson;
+
+import edu.ncsu.csc.itrust2.config.RootConfiguration;
+import edu.ncsu.csc.itrust2.controllers.api.comm.ActivityCount;
+import edu.ncsu.csc.itrust2.controllers.api.comm.HashingStatistics;
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.mvc.config.WebMvcConfiguration;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
+
+/**
+ * Test for the API functionality for activity statistics.
+ */
+@RunWith ( SpringJUnit4ClassRunner.class )
+@ContextConfiguration ( classes = { RootConfiguration.class, WebMvcConfiguration.class } )
+@WebAppConfiguration
+public class APIStatisticsTest {
+
+    private MockMvc               mvc;
+    private final Gson            gson = new Gson();
+    @Autowired
+    private WebApplicationContext context;
+
+    /**
+     * Sets up test
+     */
+    @Before
+    public void setup () {
+        mvc = MockMvcBuilders.webAppContextSetup( context ).build();
+    }
+
+    /**
+     * Tests that logged events are counted in today's bucket and that the
+     * most active users are found
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testSeriesAndTop () throws Exception {
+        final User user = new User( "statsapitest", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
+                Role.ROLE_PATIENT, 1 );
+        user.save();
+
+        final ActivityCount[] before = series();
+        for ( int i = 0; i < 5; i++ ) {
+            LoggerUtil.log( TransactionType.LOGIN_FAILURE, "statsapitest" );
+        }
+        final ActivityCount[] after = series();
+        assertEquals( 7, after.length );
+        assertEquals( before[6].getCount() + 5, after[6].getCount() );
+
+        final String content = mvc
+                .perform( get( "/api/v1/statistics/top?type=LOGIN_FAILURE&role=ROLE_PATIENT&limit=100" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final ActivityCount[] top = gson.fromJson( content, ActivityCount[].class );
+        boolean found = false;
+        for ( final ActivityCount count : top ) {
+            found |= "statsapitest".equals( count.getUser() ) && count.getCount() >= 5;
+        }
+        assertEquals( true, found );
+
+        mvc.perform( get( "/api/v1/statistics/series?bucket=minute" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/statistics/series?bucket=hour&start=01/01/2000" ) )
+                .andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/statistics/top?start=02/30/2017" ) ).andExpect( status().isBadRequest() );
+    }
+
+    private ActivityCount[] series () throws Exception {
+        final String content = mvc
+                .perform( get( "/api/v1/statistics/series?type=LOGIN_FAILURE&user=statsapitest&bucket=day" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        return gson.fromJson( content, ActivityCount[].class );
+    }
+
+    /**
+     * Tests that the password hashing statistics count the hashes done
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testHashing () throws Exception {
+        PasswordHasher.getInstance().encode( "123456" );
+        final String content = mvc.perform( get( "/api/v1/statistics/hashing" ) ).andExpect( status().isOk() )
+                .andReturn().getResponse().getContentAsString();
+        final HashingStatistics stats = gson.fromJson( content, HashingStatistics.class );
+        assertTrue( stats.getThreads() > 0 );
+        assertTrue( stats.getHashes() > 0 );
+        assertTrue( stats.getMaxHashMillis() > 0 );
+    }
+
+}
@@ -1,5 +1,7 @@
 package edu.ncsu.csc.itrust2.apitest;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -8,6 +10,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.UnsupportedEncodingException;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -19,9 +23,14 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 import edu.ncsu.csc.itrust2.config.RootConfiguration;
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
 import edu.ncsu.csc.itrust2.models.enums.Role;
@@ -109,6 +118,55 @@ public class APIUserTest {
 
     }
 
+    /**
+     * Tests retrieving Users a page at a time, both by page number and by
+     * following continuation tokens, and ensures that every User appears on
+     * exactly one page.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUserPaging () throws Exception {
+        final int total = User.getUsers().size();
+
+        final Set<String> seen = new HashSet<String>();
+        String after = null;
+        do {
+            final MockHttpServletRequestBuilder request = get( "/api/v1/users" ).param( "size", "2" );
+            if ( null != after ) {
+                request.param( "after", after );
+            }
+            final String content = mvc.perform( request ).andExpect( status().isOk() ).andReturn().getResponse()
+                    .getContentAsString();
+            final JsonObject page = new JsonParser().parse( content ).getAsJsonObject();
+            assertTrue( page.getAsJsonArray( "items" ).size() <= 2 );
+            for ( final JsonElement user : page.getAsJsonArray( "items" ) ) {
+                assertTrue( seen.add( user.getAsJsonObject().get( "username" ).getAsString() ) );
+            }
+            after = page.get( "next" ).isJsonNull() ? null : page.get( "next" ).getAsString();
+        }
+        while ( null != after );
+        assertEquals( total, seen.size() );
+
+        // Page numbers should line up with the pages found by token
+        final String first = mvc.perform( get( "/api/v1/users" ).param( "page", "0" ).param( "size", "2" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final JsonObject page = new JsonParser().parse( first ).getAsJsonObject();
+        assertEquals( 0, page.get( "page" ).getAsInt() );
+        assertFalse( page.getAsJsonArray( "items" ).size() == 0 && total > 0 );
+        final String past = mvc.perform( get( "/api/v1/users" ).param( "page", Integer.toString( total ) ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        assertTrue( new JsonParser().parse( past ).getAsJsonObject().get( "next" ).isJsonNull() );
+
+        // Bad paging parameters are rejected
+        mvc.perform( get( "/api/v1/users" ).param( "size", "0" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/users" ).param( "page", "-1" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/users" ).param( "page", Integer.toString( Integer.MAX_VALUE ) ).param( "size",
+                "500" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/users" ).param( "after", "not-a-token!" ) )
+                .andExpect( status().isBadRequest() );
+    }
+
     @Test
     @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
     public void testAdminRole () throws UnsupportedEncodingException, Exception {
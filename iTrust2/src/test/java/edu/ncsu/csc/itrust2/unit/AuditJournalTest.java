@@ -0,0 +1,160 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.utils.AuditJournal;
+import edu.ncsu.csc.itrust2.utils.LogRollups;
+
+public class AuditJournalTest {
+
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = Files.createTempDirectory( "journal" ).toFile();
+    }
+
+    @After
+    public void tearDown () {
+        for ( final File f : dir.listFiles() ) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Creates an entry logged some minutes after midnight on 1 March 2017
+     */
+    private static LogEntry entry ( final int minute, final String secondary, final String message ) {
+        final Calendar time = Calendar.getInstance();
+        time.clear();
+        time.set( 2017, Calendar.MARCH, 1, 0, minute );
+        return new LogEntry( null, TransactionType.LOGIN_SUCCESS, "patient", secondary, message, time );
+    }
+
+    private static Calendar minute ( final int minute ) {
+        return entry( minute, null, null ).getTime();
+    }
+
+    /**
+     * Records read back as written, across files and across a restart, and
+     * the whole chain verifies
+     */
+    @Test
+    public void testAppendScanVerify () throws IOException {
+        AuditJournal journal = new AuditJournal( dir, 3, false );
+        for ( int i = 0; i < 5; i++ ) {
+            journal.append( entry( i, 0 == i % 2 ? "hcp" : null, "message " + i ) );
+        }
+        journal.close();
+
+        // Picks up the chain where it left off
+        journal = new AuditJournal( dir, 3, false );
+        journal.append( entry( 5, null, null ) );
+        journal.close();
+
+        assertEquals( 2, dir.listFiles().length );
+        assertEquals( 6, journal.verify() );
+        assertTrue( journal.head().startsWith( "5:" ) );
+
+        final List<LogEntry> all = new ArrayList<LogEntry>();
+        journal.scan( null, null, all::add );
+        assertEquals( 6, all.size() );
+        assertEquals( "hcp", all.get( 0 ).getSecondaryUser() );
+        assertNull( all.get( 1 ).getSecondaryUser() );
+        assertEquals( "message 3", all.get( 3 ).getMessage() );
+        assertNull( all.get( 5 ).getMessage() );
+        assertEquals( TransactionType.LOGIN_SUCCESS, all.get( 4 ).getLogCode() );
+        assertEquals( minute( 4 ), all.get( 4 ).getTime() );
+
+        final List<LogEntry> range = new ArrayList<LogEntry>();
+        journal.scan( minute( 2 ), minute( 5 ), range::add );
+        assertEquals( 3, range.size() );
+        assertEquals( minute( 2 ), range.get( 0 ).getTime() );
+        assertEquals( minute( 4 ), range.get( 2 ).getTime() );
+    }
+
+    /**
+     * An entry older than the last one is moved on in time, so the journal
+     * stays in order, and over-long text is cut short
+     */
+    @Test
+    public void testOrderAndTruncation () throws IOException {
+        final AuditJournal journal = new AuditJournal( dir, 100, false );
+        journal.append( entry( 10, null, null ) );
+        final LogEntry late = entry( 5, null, new String( new char[400] ).replace( '\0', 'x' ) );
+        journal.append( late );
+        journal.close();
+
+        assertEquals( minute( 10 ), late.getTime() );
+        final List<LogEntry> all = new ArrayList<LogEntry>();
+        journal.scan( null, null, all::add );
+        assertEquals( minute( 10 ), all.get( 1 ).getTime() );
+        assertEquals( 286, all.get( 1 ).getMessage().length() );
+    }
+
+    /**
+     * Changing a single byte of any record is caught
+     */
+    @Test
+    public void testTamperingDetected () throws IOException {
+        final AuditJournal journal = new AuditJournal( dir, 100, false );
+        for ( int i = 0; i < 4; i++ ) {
+            journal.append( entry( i, null, "message " + i ) );
+        }
+        journal.close();
+        assertEquals( 4, journal.verify() );
+
+        try ( final RandomAccessFile raf = new RandomAccessFile( dir.listFiles()[0], "rw" ) ) {
+            raf.seek( 2 * AuditJournal.RECORD + 200 );
+            raf.write( 'y' );
+        }
+        try {
+            journal.verify();
+            fail( "Altered record was not caught" );
+        }
+        catch ( final IllegalStateException e ) {
+            assertTrue( e.getMessage(), e.getMessage().contains( "record 2" ) );
+        }
+    }
+
+    /**
+     * Nothing from before the archived-through time is replayed, as the table
+     * holds none of it, so none of it is counted again
+     */
+    @Test
+    public void testReplayStopsAtArchive () throws Exception {
+        final AuditJournal journal = new AuditJournal( dir, 100, false );
+        for ( int i = 0; i < 4; i++ ) {
+            journal.append( entry( i, null, "archived " + i ) );
+        }
+        journal.close();
+
+        final Set<TransactionType> types = EnumSet.of( TransactionType.LOGIN_SUCCESS );
+        final Map<Date, Long> before = LogRollups.series( types, "patient", minute( 0 ), minute( 60 ), false );
+        assertEquals( 0, journal.replay( minute( 0 ), minute( 60 ), minute( 10 ) ) );
+        assertEquals( before, LogRollups.series( types, "patient", minute( 0 ), minute( 60 ), false ) );
+    }
+
+}
@@ -0,0 +1,136 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import edu.ncsu.csc.itrust2.config.CachedUserDetailsService;
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
+import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
+import edu.ncsu.csc.itrust2.models.persistent.User;
+
+public class CachedUserDetailsServiceTest {
+
+    private static final String            NAME    = "CachedUser";
+
+    private final CachedUserDetailsService service = new CachedUserDetailsService();
+
+    private User                           user;
+
+    /**
+     * Starts each test with an enabled user with no bans or lockouts, read
+     * fresh from the database
+     */
+    @Before
+    public void setUp () {
+        user = User.getByName( NAME );
+        if ( null == user ) {
+            user = new User();
+            user.setUsername( NAME );
+            user.setRole( Role.ROLE_HCP );
+        }
+        user.setPassword( "pw" );
+        user.setEnabled( 1 );
+        user.save();
+        LoginLockout.clearUser( user );
+        LoginBan.clearUser( user );
+        CachedUserDetailsService.invalidate( NAME );
+    }
+
+    /**
+     * Clears the bans and lockouts left by a test
+     */
+    @After
+    public void tearDown () {
+        LoginLockout.clearUser( user );
+        LoginBan.clearUser( user );
+        CachedUserDetailsService.invalidate( NAME );
+    }
+
+    /**
+     * A banned user is returned disabled, and enabled again once the ban is
+     * lifted
+     */
+    @Test
+    public void testBanned () {
+        assertTrue( service.loadUserByUsername( NAME ).isEnabled() );
+
+        final LoginBan ban = new LoginBan();
+        ban.setUser( user );
+        ban.setTime( Calendar.getInstance() );
+        ban.save();
+        CachedUserDetailsService.invalidate( NAME );
+        assertFalse( service.loadUserByUsername( NAME ).isEnabled() );
+
+        LoginBan.clearUser( user );
+        CachedUserDetailsService.invalidate( NAME );
+        assertTrue( service.loadUserByUsername( NAME ).isEnabled() );
+    }
+
+    /**
+     * A locked-out user is returned disabled until the lockout ends, and then
+     * enabled again without having to be read again
+     */
+    @Test
+    public void testLockedUntil () throws InterruptedException {
+        // Ends two seconds from now, as lockouts last an hour
+        final Calendar time = Calendar.getInstance();
+        time.add( Calendar.MINUTE, -60 );
+        time.add( Calendar.SECOND, 2 );
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setUser( user );
+        lockout.setTime( time );
+        lockout.save();
+        CachedUserDetailsService.invalidate( NAME );
+        assertFalse( service.loadUserByUsername( NAME ).isEnabled() );
+
+        Thread.sleep( 2500 );
+        assertTrue( service.loadUserByUsername( NAME ).isEnabled() );
+    }
+
+    /**
+     * A change to the password or enabled flag is seen as soon as the user is
+     * invalidated, rather than once they expire from the cache
+     */
+    @Test
+    public void testInvalidate () {
+        final String before = service.loadUserByUsername( NAME ).getPassword();
+
+        user.setPassword( "changed" );
+        user.save();
+        assertEquals( before, service.loadUserByUsername( NAME ).getPassword() );
+        CachedUserDetailsService.invalidate( NAME );
+        assertEquals( "changed", service.loadUserByUsername( NAME ).getPassword() );
+
+        user.setEnabled( 0 );
+        user.save();
+        assertTrue( service.loadUserByUsername( NAME ).isEnabled() );
+        CachedUserDetailsService.invalidate( NAME );
+        assertFalse( service.loadUserByUsername( NAME ).isEnabled() );
+    }
+
+    /**
+     * A login under a name that differs only in case resolves to the name as
+     * stored, and shares its cache entry
+     */
+    @Test
+    public void testMixedCase () {
+        final UserDetails details = service.loadUserByUsername( NAME.toLowerCase() );
+        assertEquals( NAME, details.getUsername() );
+        assertEquals( NAME, service.loadUserByUsername( NAME.toUpperCase() ).getUsername() );
+
+        user.setEnabled( 0 );
+        user.save();
+        CachedUserDetailsService.invalidate( NAME.toUpperCase() );
+        assertFalse( service.loadUserByUsername( NAME.toLowerCase() ).isEnabled() );
+    }
+
+}
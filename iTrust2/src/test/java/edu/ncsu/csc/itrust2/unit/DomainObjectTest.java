@@ -86,6 +86,28 @@ public class DomainObjectTest {
         assertEquals( h2.getName(), ( (Hospital) Hospital.getById( Hospital.class, h.getId() ) ).getName() );
     }
 
+    /**
+     * Tests that copying without the ID copies every other field, and leaves
+     * the ID alone, both the first time a class is copied and once its copy
+     * plan is cached
+     */
+    @Test
+    public void testCopyWithoutId () {
+        final Hospital h = new Hospital( "iTrust Copy Source", "1 Copy Lane", "27607", State.NC.toString() );
+        final Hospital h2 = new Hospital();
+        h2.setName( "iTrust Copy Target" );
+
+        // Copy twice, to exercise the copy plan once it has been cached
+        for ( int i = 0; i < 2; i++ ) {
+            h2.copyFrom( h, false );
+
+            assertEquals( "iTrust Copy Target", h2.getName() );
+            assertEquals( h.getAddress(), h2.getAddress() );
+            assertEquals( h.getZip(), h2.getZip() );
+            assertEquals( h.getState(), h2.getState() );
+        }
+    }
+
     @Test
     public void testGetBy () {
         assertNull( DomainObject.getBy( User.class, "a", "b" ) );
@@ -1,6 +1,7 @@
 package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -109,4 +110,33 @@ public class ICDCodeTest {
         code = new ICDCode(form);
 
     }
+
+    /**
+     * Tests that the cached code lists pick up codes as they are added and
+     * removed, and split them into ophthalmology and general checkup codes.
+     */
+    @Test
+    public void testCodeListsFollowChanges () {
+        final ICDCode oph = new ICDCode();
+        oph.setCode( "O99.9" );
+        oph.setDescription( "Cache test ophthalmology code" );
+        final ICDCode general = new ICDCode();
+        general.setCode( "Z99.9" );
+        general.setDescription( "Cache test general code" );
+
+        final int total = ICDCode.getAll().size(); // warm the cache
+        oph.save();
+        general.save();
+
+        assertEquals( total + 2, ICDCode.getAll().size() );
+        assertTrue( ICDCode.getOphthalmologyCodes().stream().anyMatch( c -> "O99.9".equals( c.getCode() ) ) );
+        assertFalse( ICDCode.getOphthalmologyCodes().stream().anyMatch( c -> "Z99.9".equals( c.getCode() ) ) );
+        assertTrue( ICDCode.getGeneralCheckupCodes().stream().anyMatch( c -> "Z99.9".equals( c.getCode() ) ) );
+        assertFalse( ICDCode.getGeneralCheckupCodes().stream().anyMatch( c -> "O99.9".equals( c.getCode() ) ) );
+
+        oph.delete();
+        general.delete();
+        assertEquals( total, ICDCode.getAll().size() );
+        assertFalse( ICDCode.getAll().stream().anyMatch( c -> "O99.9".equals( c.getCode() ) ) );
+    }
 }
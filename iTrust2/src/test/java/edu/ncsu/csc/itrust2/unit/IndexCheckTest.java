@@ -0,0 +1,23 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.utils.IndexCheck;
+
+/**
+ * Checks that the schema Hibernate maintains has every index declared on the
+ * persistent classes.
+ */
+public class IndexCheckTest {
+
+    @Test
+    public void testNoMissingIndexes () throws SQLException {
+        assertEquals( Collections.emptyList(), IndexCheck.missingIndexes() );
+    }
+
+}
@@ -142,4 +142,26 @@ public class LockoutTest {
 
         assertNull( ban.getUser() );
     }
+
+    @Test
+    public void testClearOnlyMatching () {
+        final String ip = "111.111.111.112";
+        final String other = "111.111.111.113";
+        LoginAttempt.clearIP( ip );
+        LoginAttempt.clearIP( other );
+
+        for ( final String addr : new String[] { ip, ip, other } ) {
+            final LoginAttempt attempt = new LoginAttempt();
+            attempt.setTime( Calendar.getInstance() );
+            attempt.setIp( addr );
+            attempt.save();
+        }
+        assertEquals( 2, LoginAttempt.getIPFailures( ip ) );
+
+        // Clearing one IP should leave the attempts from any other alone
+        LoginAttempt.clearIP( ip );
+        assertEquals( 0, LoginAttempt.getIPFailures( ip ) );
+        assertEquals( 1, LoginAttempt.getIPFailures( other ) );
+        LoginAttempt.clearIP( other );
+    }
 }
@@ -1,11 +1,21 @@
 package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTableRow;
+import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 public class LogEntryTest {
 
@@ -31,4 +41,58 @@ public class LogEntryTest {
 
     }
 
+    /**
+     * Tests that scanning through the log visits every LogEntry exactly once
+     */
+    @Test
+    public void testScan () {
+        for ( int i = 0; i < 3; i++ ) {
+            LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "patient" );
+        }
+
+        final Set<Long> seen = new HashSet<Long>();
+        LogEntry.scan( entry -> assertTrue( seen.add( entry.getId() ) ) );
+
+        assertEquals( LogEntry.getLogEntries().size(), seen.size() );
+    }
+
+    /**
+     * Tests that entries logged through the asynchronous writer, in more than
+     * one batch, are all there as soon as the log is read back, each with its
+     * own ID
+     */
+    @Test
+    public void testAsyncWrites () {
+        final String user = "asyncLogUser" + System.currentTimeMillis();
+        for ( int i = 0; i < 450; i++ ) {
+            LoggerUtil.log( TransactionType.VIEW_USERS, user, "entry " + i );
+        }
+        LoggerUtil.log( TransactionType.USER_BANNED, user );
+
+        final List<LogEntry> entries = LogEntry.getAllForUser( user );
+        assertEquals( 451, entries.size() );
+        final Set<Long> ids = new HashSet<Long>();
+        entries.forEach( e -> assertTrue( ids.add( e.getId() ) ) );
+    }
+
+    /**
+     * Tests that the roles of the users are recorded with each entry when it
+     * is written, and the patient-viewable flag follows from its type
+     */
+    @Test
+    public void testRolesRecorded () {
+        final String user = "roleLogUser" + System.currentTimeMillis();
+        LoggerUtil.log( TransactionType.PATIENT_DEMOGRAPHICS_VIEW, "hcp", user, "roles" );
+        LoggerUtil.log( TransactionType.VIEW_USERS, user );
+
+        final List<LogEntry> entries = LogEntry.getAllForUser( user );
+        assertEquals( 2, entries.size() );
+        final LogEntry viewed = entries.get( 0 );
+        assertEquals( Role.ROLE_HCP, viewed.getPrimaryRole() );
+        assertEquals( Role.ROLE_HCP, viewed.getRoleOf( "hcp" ) );
+        assertNull( viewed.getSecondaryRole() ); // not a user
+        assertTrue( viewed.isPatientViewable() );
+        assertFalse( entries.get( 1 ).isPatientViewable() );
+    }
+
 }
@@ -0,0 +1,73 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.utils.LogSearch;
+
+public class LogSearchTest {
+
+    /**
+     * Text is split into lowercase words, ignoring punctuation
+     */
+    @Test
+    public void testTerms () {
+        final Set<String> terms = new HashSet<String>();
+        LogSearch.terms( "HCP hcp edited demographics for patient with username patient_1.", terms );
+        assertEquals( new HashSet<String>( Arrays.asList( "hcp", "edited", "demographics", "for", "patient",
+                "with", "username", "patient_1" ) ), terms );
+
+        final Set<String> none = new HashSet<String>();
+        LogSearch.terms( null, none );
+        LogSearch.terms( " -- ", none );
+        assertTrue( none.isEmpty() );
+    }
+
+    /**
+     * Lists decode as encoded, including when several runs have been appended
+     * to one another out of order and with repeats
+     */
+    @Test
+    public void testEncodeDecode () {
+        final byte[] first = LogSearch.encode( new TreeSet<Long>( Arrays.asList( 5L, 6L, 300L, 1L << 40 ) ) );
+        assertArrayEquals( new long[] { 5L, 6L, 300L, 1L << 40 }, LogSearch.decode( first ) );
+
+        final byte[] second = LogSearch.encode( new TreeSet<Long>( Arrays.asList( 2L, 6L, 1000L ) ) );
+        final byte[] both = Arrays.copyOf( first, first.length + second.length );
+        System.arraycopy( second, 0, both, first.length, second.length );
+        assertArrayEquals( new long[] { 2L, 5L, 6L, 300L, 1000L, 1L << 40 }, LogSearch.decode( both ) );
+
+        // Consecutive IDs take a byte each
+        final Set<Long> run = new TreeSet<Long>();
+        for ( long id = 1000000; id < 1001000; id++ ) {
+            run.add( id );
+        }
+        assertEquals( 1 + 3 + 999, LogSearch.encode( run ).length );
+    }
+
+    /**
+     * Only IDs in every list are kept
+     */
+    @Test
+    public void testIntersect () {
+        final List<long[]> lists = new ArrayList<long[]>();
+        lists.add( new long[] { 1, 2, 3, 5, 8, 13 } );
+        lists.add( new long[] { 2, 3, 5, 7, 11, 13 } );
+        lists.add( new long[] { 3, 13 } );
+        assertArrayEquals( new long[] { 3, 13 }, LogSearch.intersect( lists ) );
+
+        lists.add( new long[] {} );
+        assertEquals( 0, LogSearch.intersect( lists ).length );
+    }
+
+}
@@ -0,0 +1,251 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.archive.LogSegment;
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+public class LogSegmentTest {
+
+    private File dir;
+
+    @Before
+    public void setUp () throws IOException {
+        dir = Files.createTempDirectory( "logsegment" ).toFile();
+    }
+
+    @After
+    public void tearDown () {
+        for ( final File f : dir.listFiles() ) {
+            f.setWritable( true );
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Creates an entry logged on a given day of March 2017
+     */
+    private static LogEntry entry ( final long id, final int day, final String primary, final String secondary ) {
+        final Calendar time = Calendar.getInstance();
+        time.clear();
+        time.set( 2017, Calendar.MARCH, day, 12, 0 );
+        return new LogEntry( id, TransactionType.VIEW_USER_LOG, primary, secondary, "message " + id, time );
+    }
+
+    /**
+     * Entries read back newest first, exactly as written, and only from the
+     * range asked for
+     */
+    @Test
+    public void testAppendAndRead () throws IOException {
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        segment.append( Arrays.asList( entry( 1, 1, "hcp", "patient" ), entry( 2, 2, "patient", null ) ) );
+        segment.append( Arrays.asList( entry( 3, 10, "admin", null ), entry( 4, 20, "patient", "hcp" ) ) );
+
+        assertEquals( Arrays.asList( "2017-03" ), LogSegment.months( dir ) );
+
+        final List<LogEntry> all = segment.read( null, null, e -> true );
+        assertEquals( Arrays.asList( 4L, 3L, 2L, 1L ), ids( all ) );
+        final LogEntry first = all.get( 3 );
+        assertEquals( TransactionType.VIEW_USER_LOG, first.getLogCode() );
+        assertEquals( "hcp", first.getPrimaryUser() );
+        assertEquals( "patient", first.getSecondaryUser() );
+        assertEquals( "message 1", first.getMessage() );
+        assertEquals( entry( 1, 1, "hcp", null ).getTime(), first.getTime() );
+        assertEquals( null, all.get( 2 ).getSecondaryUser() );
+
+        final Calendar from = entry( 0, 2, "x", null ).getTime();
+        final Calendar to = entry( 0, 20, "x", null ).getTime();
+        assertEquals( Arrays.asList( 3L, 2L ), ids( segment.read( from, to, e -> true ) ) );
+        assertEquals( Arrays.asList( 4L, 2L, 1L ), ids( segment.read( null, null,
+                e -> "patient".equals( e.getPrimaryUser() ) || "patient".equals( e.getSecondaryUser() ) ) ) );
+    }
+
+    /**
+     * An entry archived twice is returned once, and anything a crash left past
+     * the last complete block is ignored and then overwritten
+     */
+    @Test
+    public void testDuplicatesAndTornWrites () throws IOException {
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        segment.append( Arrays.asList( entry( 1, 1, "hcp", null ), entry( 2, 2, "hcp", null ) ) );
+
+        try ( final FileOutputStream out = new FileOutputStream( new File( dir, "LogEntries-2017-03.seg" ),
+                true ) ) {
+            out.write( new byte[] { 1, 2, 3, 4, 5 } );
+        }
+        try ( final FileOutputStream out = new FileOutputStream( new File( dir, "LogEntries-2017-03.idx" ),
+                true ) ) {
+            out.write( new byte[] { 9, 9, 9 } );
+        }
+        assertEquals( Arrays.asList( 2L, 1L ), ids( segment.read( null, null, e -> true ) ) );
+
+        segment.append( Arrays.asList( entry( 2, 2, "hcp", null ), entry( 3, 3, "hcp", null ) ) );
+        assertEquals( Arrays.asList( 3L, 2L, 1L ), ids( segment.read( null, null, e -> true ) ) );
+    }
+
+    /**
+     * Scanning streams entries oldest first, skipping any archived again
+     */
+    @Test
+    public void testScan () throws IOException {
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        segment.append( Arrays.asList( entry( 1, 1, "hcp", null ), entry( 2, 2, "hcp", null ) ) );
+        segment.append( Arrays.asList( entry( 2, 2, "hcp", null ), entry( 3, 3, "hcp", null ) ) );
+        segment.append( Arrays.asList( entry( 4, 3, "hcp", null ), entry( 5, 20, "hcp", null ) ) );
+
+        final List<LogEntry> all = new ArrayList<LogEntry>();
+        segment.scan( null, null, all::add );
+        assertEquals( Arrays.asList( 1L, 2L, 3L, 4L, 5L ), ids( all ) );
+
+        final List<LogEntry> range = new ArrayList<LogEntry>();
+        segment.scan( entry( 0, 2, "x", null ).getTime(), entry( 0, 20, "x", null ).getTime(), range::add );
+        assertEquals( Arrays.asList( 2L, 3L, 4L ), ids( range ) );
+    }
+
+    /**
+     * A user's entries are found and counted from the users recorded for each
+     * block, including where a range cuts through a block, and a user in no
+     * block has none
+     */
+    @Test
+    public void testForUser () throws IOException {
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        segment.append( Arrays.asList( entry( 1, 1, "hcp", "patient" ), entry( 2, 2, "patient", null ) ) );
+        segment.append( Arrays.asList( entry( 3, 10, "admin", null ), entry( 4, 20, "patient", "hcp" ) ) );
+        segment.append( Arrays.asList( entry( 4, 20, "patient", "hcp" ), entry( 5, 21, "patient", "patient" ) ) );
+
+        assertEquals( Arrays.asList( 5L, 4L, 2L, 1L ), ids( segment.readForUser( "patient", null, null, null ) ) );
+        assertEquals( 4, segment.countForUser( "patient", null, null, null ) );
+        assertEquals( 2, segment.countForUser( "hcp", null, null, null ) );
+        assertEquals( 1, segment.countForUser( "admin", null, null, null ) );
+        assertEquals( 0, segment.countForUser( "nobody", null, null, null ) );
+        assertTrue( segment.readForUser( "nobody", null, null, null ).isEmpty() );
+        assertEquals( 0, segment.countForUser( "patient", null, null,
+                EnumSet.of( TransactionType.LOGIN_SUCCESS ) ) );
+
+        final Calendar from = entry( 0, 2, "x", null ).getTime();
+        final Calendar to = entry( 0, 21, "x", null ).getTime();
+        assertEquals( 2, segment.countForUser( "patient", from, to, null ) );
+        assertEquals( Arrays.asList( 4L, 2L ), ids( segment.readForUser( "patient", from, to, null ) ) );
+    }
+
+    /**
+     * Nothing can be added to a sealed segment
+     */
+    @Test
+    public void testSeal () throws IOException {
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        segment.append( Arrays.asList( entry( 1, 1, "hcp", null ) ) );
+        segment.seal();
+        assertTrue( segment.isSealed() );
+        try {
+            segment.append( Arrays.asList( entry( 2, 2, "hcp", null ) ) );
+            fail( "Appended to a sealed segment" );
+        }
+        catch ( final IllegalStateException e ) {
+            // expected
+        }
+        assertEquals( 1, segment.read( null, null, e -> true ).size() );
+    }
+
+    /**
+     * The roles and whether patients could see an entry are read back as they
+     * were archived, not as they would be now
+     */
+    @Test
+    public void testRolesKept () throws IOException {
+        final LogEntry logged = entry( 1, 1, "hcp", "patient" );
+        logged.setPrimaryRole( Role.ROLE_ADMIN );
+        logged.setSecondaryRole( Role.ROLE_PATIENT );
+        logged.setPatientViewable( false );
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        segment.append( Arrays.asList( logged, entry( 2, 2, "patient", null ) ) );
+
+        final List<LogEntry> all = segment.read( null, null, e -> true );
+        assertEquals( Role.ROLE_ADMIN, all.get( 1 ).getRoleOf( "hcp" ) );
+        assertEquals( Role.ROLE_PATIENT, all.get( 1 ).getRoleOf( "patient" ) );
+        assertEquals( Boolean.FALSE, all.get( 1 ).getPatientViewable() );
+        assertEquals( null, all.get( 0 ).getPrimaryRole() );
+    }
+
+    /**
+     * A block archived before the roles were kept still reads back, without
+     * them, and blocks appended after it keep them
+     */
+    @Test
+    public void testFirstFormat () throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try ( final DataOutputStream out = new DataOutputStream( new DeflaterOutputStream( bytes ) ) ) {
+            out.writeLong( 1 );
+            out.writeLong( entry( 1, 1, "hcp", null ).getTime().getTimeInMillis() );
+            out.writeUTF( TransactionType.VIEW_USER_LOG.name() );
+            out.writeUTF( "hcp" );
+            out.writeBoolean( false );
+            out.writeBoolean( true );
+            out.writeUTF( "message 1" );
+        }
+        final byte[] block = bytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update( block );
+        final long time = entry( 1, 1, "hcp", null ).getTime().getTimeInMillis();
+        Files.write( new File( dir, "LogEntries-2017-03.seg" ).toPath(), block );
+        Files.write( new File( dir, "LogEntries-2017-03.idx" ).toPath(), ByteBuffer.allocate( 40 ).putLong( time )
+                .putLong( time ).putLong( 0 ).putInt( block.length ).putInt( 1 ).putLong( crc.getValue() ).array() );
+
+        final LogSegment segment = new LogSegment( dir, "2017-03" );
+        final LogEntry later = entry( 2, 2, "hcp", null );
+        later.setPrimaryRole( Role.ROLE_HCP );
+        segment.append( Arrays.asList( later ) );
+
+        final List<LogEntry> all = segment.read( null, null, e -> true );
+        assertEquals( Arrays.asList( 2L, 1L ), ids( all ) );
+        assertEquals( "message 1", all.get( 1 ).getMessage() );
+        assertEquals( null, all.get( 1 ).getPrimaryRole() );
+        assertEquals( Role.ROLE_HCP, all.get( 0 ).getPrimaryRole() );
+    }
+
+    /**
+     * Months are named and started as expected
+     */
+    @Test
+    public void testMonths () {
+        final Calendar time = entry( 0, 31, "x", null ).getTime();
+        assertEquals( "2017-03", LogSegment.monthOf( time ) );
+        final Calendar start = LogSegment.startOf( "2017-03" );
+        assertEquals( 1, start.get( Calendar.DAY_OF_MONTH ) );
+        assertEquals( Calendar.MARCH, start.get( Calendar.MONTH ) );
+        assertEquals( 0, start.get( Calendar.HOUR_OF_DAY ) );
+    }
+
+    private static List<Long> ids ( final List<LogEntry> entries ) {
+        final List<Long> ids = new ArrayList<Long>();
+        entries.forEach( e -> ids.add( e.getId() ) );
+        return ids;
+    }
+
+}
@@ -3,6 +3,8 @@ package edu.ncsu.csc.itrust2.unit;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.List;
+
 import org.junit.Test;
 
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
@@ -65,4 +67,25 @@ public class LogTest {
         assertEquals( null, sameUserEntry.getSecondaryUser() );
 
     }
+
+    /**
+     * Tests that getTopForUser returns the newest entries first, whether the
+     * user was the primary or the secondary user on them
+     */
+    @Test
+    public void testTopForUserNewestFirst () {
+        final String user = "topUser" + System.currentTimeMillis();
+        LoggerUtil.log( TransactionType.VIEW_USERS, user, "first" );
+        LoggerUtil.log( TransactionType.PATIENT_DEMOGRAPHICS_VIEW, "topHcp", user, "second" );
+        LoggerUtil.log( TransactionType.VIEW_USERS, user, "third" );
+
+        final List<LogEntry> top = LoggerUtil.getTopForUser( user, 2 );
+        assertEquals( 2, top.size() );
+        assertEquals( "third", top.get( 0 ).getMessage() );
+        assertEquals( "second", top.get( 1 ).getMessage() );
+
+        assertEquals( 3, LoggerUtil.getTopForUser( user, 10 ).size() );
+        assertEquals( 0, LoggerUtil.getTopForUser( user, 0 ).size() );
+    }
+
 }
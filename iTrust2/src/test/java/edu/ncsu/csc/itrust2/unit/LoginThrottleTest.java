@@ -0,0 +1,82 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.utils.LoginThrottle;
+
+public class LoginThrottleTest {
+
+    /** Length of the window used by the tests */
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis( 60 );
+
+    /** A time to start counting at */
+    private static final long NOW    = 1500000000000L;
+
+    /**
+     * Failures are counted separately for each IP address and user, and
+     * clearing one leaves the rest alone
+     */
+    @Test
+    public void testCount () {
+        final LoginThrottle throttle = new LoginThrottle( WINDOW );
+        assertEquals( 0, throttle.count( LoginThrottle.IP, "127.0.0.1", NOW ) );
+
+        for ( int i = 0; i < 3; i++ ) {
+            throttle.record( LoginThrottle.IP, "127.0.0.1", NOW + i * 1000 );
+        }
+        throttle.record( LoginThrottle.USER, "127.0.0.1", NOW );
+        throttle.record( LoginThrottle.IP, "10.0.0.1", NOW );
+        assertEquals( 3, throttle.count( LoginThrottle.IP, "127.0.0.1", NOW + 5000 ) );
+        assertEquals( 1, throttle.count( LoginThrottle.USER, "127.0.0.1", NOW + 5000 ) );
+        assertEquals( 1, throttle.count( LoginThrottle.IP, "10.0.0.1", NOW + 5000 ) );
+
+        throttle.clear( LoginThrottle.IP, "127.0.0.1" );
+        assertEquals( 0, throttle.count( LoginThrottle.IP, "127.0.0.1", NOW + 5000 ) );
+        assertEquals( 1, throttle.count( LoginThrottle.USER, "127.0.0.1", NOW + 5000 ) );
+        assertEquals( 1, throttle.count( LoginThrottle.IP, "10.0.0.1", NOW + 5000 ) );
+    }
+
+    /**
+     * Failures stop counting once they have left the window, oldest first,
+     * and the counters they used are reused afterwards
+     */
+    @Test
+    public void testExpiry () {
+        final LoginThrottle throttle = new LoginThrottle( WINDOW );
+        throttle.record( LoginThrottle.USER, "patient", NOW );
+        throttle.record( LoginThrottle.USER, "patient", NOW + TimeUnit.MINUTES.toMillis( 30 ) );
+        assertEquals( 2, throttle.count( LoginThrottle.USER, "patient", NOW + TimeUnit.MINUTES.toMillis( 45 ) ) );
+        assertEquals( 1, throttle.count( LoginThrottle.USER, "patient", NOW + TimeUnit.MINUTES.toMillis( 75 ) ) );
+        assertEquals( 0, throttle.count( LoginThrottle.USER, "patient", NOW + TimeUnit.MINUTES.toMillis( 100 ) ) );
+
+        // A full lap of the ring later, the first counter starts again from
+        // zero rather than adding to the failure that has expired
+        final LoginThrottle again = new LoginThrottle( WINDOW );
+        again.record( LoginThrottle.IP, "127.0.0.1", NOW );
+        again.record( LoginThrottle.IP, "127.0.0.1", NOW + WINDOW );
+        assertEquals( 1, again.count( LoginThrottle.IP, "127.0.0.1", NOW + WINDOW ) );
+    }
+
+    /**
+     * Once as many IP addresses and users are counted in memory as allowed,
+     * no more are added, and those already counted carry on being counted
+     */
+    @Test
+    public void testCapacity () {
+        final LoginThrottle throttle = new LoginThrottle( WINDOW, 2 );
+        throttle.record( LoginThrottle.IP, "10.0.0.1", NOW );
+        throttle.record( LoginThrottle.IP, "10.0.0.2", NOW );
+        assertEquals( 2, throttle.size() );
+
+        throttle.record( LoginThrottle.IP, "10.0.0.3", NOW );
+        assertEquals( 2, throttle.size() );
+        throttle.record( LoginThrottle.IP, "10.0.0.1", NOW + 1000 );
+        assertEquals( 2, throttle.count( LoginThrottle.IP, "10.0.0.1", NOW + 1000 ) );
+        assertEquals( 2, throttle.size() );
+    }
+
+}
@@ -0,0 +1,79 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import edu.ncsu.csc.itrust2.utils.PasswordHasher;
+
+public class PasswordHasherTest {
+
+    /**
+     * Hashes are ordinary BCrypt hashes of the cost configured, and are checked
+     * like them
+     */
+    @Test
+    public void testHash () {
+        final PasswordHasher hasher = new PasswordHasher( 4, 1, 1 );
+        final String hash = hasher.encode( "123456" );
+        assertTrue( hash.startsWith( "$2a$04$" ) );
+        assertTrue( hasher.matches( "123456", hash ) );
+        assertFalse( hasher.matches( "654321", hash ) );
+        assertTrue( new BCryptPasswordEncoder().matches( "123456", hash ) );
+        assertTrue( hasher.matches( "123456", new BCryptPasswordEncoder().encode( "123456" ) ) );
+
+        assertEquals( 4, hasher.getHashes() );
+        assertEquals( 0, hasher.getRejected() );
+        assertEquals( 0, hasher.getQueued() );
+        assertTrue( hasher.getMaxHashMillis() > 0 );
+        assertTrue( hasher.getAverageWaitMillis() >= hasher.getAverageHashMillis() );
+    }
+
+    /**
+     * Once the one thread is busy and the one place in the queue is taken,
+     * further passwords are turned away rather than left waiting
+     */
+    @Test
+    public void testBusy () throws Exception {
+        final PasswordHasher hasher = new PasswordHasher( 12, 1, 1 );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final AtomicInteger hashed = new AtomicInteger();
+        final AtomicInteger busy = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < 6; i++ ) {
+            final Thread t = new Thread( () -> {
+                try {
+                    start.await();
+                    hasher.encode( "123456" );
+                    hashed.incrementAndGet();
+                }
+                catch ( final PasswordHasher.BusyException e ) {
+                    busy.incrementAndGet();
+                }
+                catch ( final InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            } );
+            t.start();
+            threads.add( t );
+        }
+        start.countDown();
+        for ( final Thread t : threads ) {
+            t.join();
+        }
+
+        assertTrue( busy.get() > 0 );
+        assertEquals( 6, hashed.get() + busy.get() );
+        assertEquals( hashed.get(), hasher.getHashes() );
+        assertEquals( busy.get(), hasher.getRejected() );
+    }
+
+}
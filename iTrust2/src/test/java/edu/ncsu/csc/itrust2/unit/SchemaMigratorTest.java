@@ -0,0 +1,41 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.migrations.SchemaMigrator;
+import edu.ncsu.csc.itrust2.migrations.SqlMigration;
+import edu.ncsu.csc.itrust2.models.persistent.User;
+
+public class SchemaMigratorTest {
+
+    /**
+     * Scripts are split on a trailing `;`, across lines, ignoring comments
+     */
+    @Test
+    public void testStatements () {
+        final String sql = "-- leading comment\n" + "create table A (id bigint);\n\n" + "create table B (\n"
+                + "  id bigint\n" + ");\r\n" + "insert into A values ( 1 )";
+        assertEquals( Arrays.asList( "create table A (id bigint)", "create table B ( id bigint )",
+                "insert into A values ( 1 )" ), SqlMigration.statements( sql ) );
+    }
+
+    /**
+     * Once Hibernate is up the schema is current, so migrating again is a
+     * no-op and every migration reports as applied
+     */
+    @Test
+    public void testMigrateIsIdempotent () throws SQLException {
+        User.getUsers(); // make sure startup migrations have run
+        assertEquals( 0, SchemaMigrator.migrate() );
+        for ( final String line : SchemaMigrator.info() ) {
+            assertTrue( line, line.endsWith( ": applied" ) );
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import edu.ncsu.csc.itrust2.models.enums.BloodType;
+import edu.ncsu.csc.itrust2.models.enums.Ethnicity;
+import edu.ncsu.csc.itrust2.models.enums.Gender;
+import edu.ncsu.csc.itrust2.models.enums.State;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.Patient;
+
+/**
+ * Microbenchmark for DomainObject.copyFrom, comparing the cached per-class
+ * copy plan against the reflective field walk it replaced. It needs no
+ * database; run it with the test classpath:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:... edu.ncsu.csc.itrust2.utils.CopyFromBenchmark
+ * </pre>
+ *
+ * Each approach is warmed up before being timed, so the figures printed are
+ * for code the JIT has already compiled.
+ */
+public class CopyFromBenchmark {
+
+    /** Copies made while warming up each approach */
+    private static final int WARMUP     = 200000;
+
+    /** Copies made in each timed round */
+    private static final int ITERATIONS = 1000000;
+
+    /** Timed rounds for each approach */
+    private static final int ROUNDS     = 5;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args
+     *            command line arguments (unused)
+     */
+    public static void main ( final String args[] ) {
+        final Patient source = samplePatient();
+        final Patient target = new Patient();
+
+        final Runnable cached = () -> target.copyFrom( source, true );
+        final Runnable reflective = () -> reflectiveCopy( target, source, true );
+
+        run( reflective, WARMUP );
+        run( cached, WARMUP );
+        for ( int round = 1; round <= ROUNDS; round++ ) {
+            report( "reflective", run( reflective, ITERATIONS ) );
+            report( "cached plan", run( cached, ITERATIONS ) );
+        }
+    }
+
+    /**
+     * Times an approach over a number of copies
+     *
+     * @param copy
+     *            makes a single copy
+     * @param iterations
+     *            number of copies to make
+     * @return average time per copy, in nanoseconds
+     */
+    private static double run ( final Runnable copy, final int iterations ) {
+        final long start = System.nanoTime();
+        for ( int i = 0; i < iterations; i++ ) {
+            copy.run();
+        }
+        return (double) ( System.nanoTime() - start ) / iterations;
+    }
+
+    /**
+     * Prints the time taken by an approach
+     *
+     * @param name
+     *            name of the approach
+     * @param nanos
+     *            average time per copy, in nanoseconds
+     */
+    private static void report ( final String name, final double nanos ) {
+        System.out.println( String.format( "%-12s %8.1f ns/copy", name, nanos ) );
+    }
+
+    /**
+     * The reflective copy that DomainObject.copyFrom used to make, looking up
+     * the fields and their annotations afresh on every call. Kept here as the
+     * baseline.
+     *
+     * @param self
+     *            object to copy to
+     * @param other
+     *            object to copy from
+     * @param includeId
+     *            whether to copy the ID
+     */
+    private static void reflectiveCopy ( final DomainObject< ? > self, final DomainObject< ? > other,
+            final Boolean includeId ) {
+        final List<Field> fields = Arrays.asList( self.getClass().getDeclaredFields() );
+        try {
+            for ( final Field f : fields ) {
+                final Integer modifiers = f.getModifiers();
+                if ( Modifier.isFinal( modifiers ) ) {
+                    continue;
+                }
+
+                f.setAccessible( true );
+                boolean id = false;
+                final List<Annotation> annotations = Arrays.asList( f.getAnnotations() );
+                for ( final Annotation annotation : annotations ) {
+                    if ( annotation.annotationType().equals( javax.persistence.Id.class ) ) {
+                        id = true;
+                    }
+                }
+                if ( ( id && includeId ) || !id ) {
+                    f.set( self, f.get( other ) );
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            throw new IllegalArgumentException( e );
+        }
+    }
+
+    /**
+     * Builds a Patient with most of its fields filled in
+     *
+     * @return the Patient
+     */
+    private static Patient samplePatient () {
+        final Patient p = new Patient();
+        p.setFirstName( "Bench" );
+        p.setPreferredName( "Mark" );
+        p.setLastName( "Patient" );
+        p.setEmail( "bench@itrust.test" );
+        p.setAddress1( "1 Benchmark Way" );
+        p.setCity( "Raleigh" );
+        p.setState( State.NC );
+        p.setZip( "27606" );
+        p.setPhone( "919-555-0100" );
+        p.setDateOfBirth( Calendar.getInstance() );
+        p.setBloodType( BloodType.APos );
+        p.setEthnicity( Ethnicity.Caucasian );
+        p.setGender( Gender.Female );
+        return p;
+    }
+
+}
@@ -21,6 +21,7 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.Specialty;
 import edu.ncsu.csc.itrust2.models.enums.State;
 import edu.ncsu.csc.itrust2.models.persistent.Diagnosis;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
 import edu.ncsu.csc.itrust2.models.persistent.Drug;
 import edu.ncsu.csc.itrust2.models.persistent.Hospital;
 import edu.ncsu.csc.itrust2.models.persistent.ICDCode;
@@ -79,6 +80,7 @@ public class HibernateDataGenerator {
                 (MetadataImplementor) new MetadataSources( ssrb.build() ).buildMetadata() );
         export.drop( true, true );
         export.create( true, true );
+        DomainObject.changed( DomainObject.class );
 
         generateUsers();
         generateTestFaculties();